@@ -1,13 +1,11 @@
 package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
 
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetSocketAddress;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * The {@code AckProcessor} class is responsible for processing and sending acknowledgment (ACK) messages
- * for received data packets. It uses a {@link DatagramSocket} to send these ACK messages asynchronously.
+ * for received data packets. It uses a {@link UdpTransport} to send these ACK messages asynchronously.
  *
  * <p>When you call {@link #addAck(InetSocketAddress, String)}, an {@link AckProcessor.AckEntry} is created
  * and placed in a queue. Once {@link #start()} is invoked, a continuous background loop handles these entries
@@ -16,9 +14,9 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 public class AckProcessor {
 
     /**
-     * The socket used for sending ACK messages.
+     * The transport used for sending ACK messages.
      */
-    private final DatagramSocket socket;
+    private final UdpTransport transport;
 
     /**
      * A thread-safe queue that holds acknowledgment entries (destination and UUID).
@@ -27,12 +25,12 @@ public class AckProcessor {
     private final ConcurrentLinkedQueue<AckEntry> ackQueue = new ConcurrentLinkedQueue<>();
 
     /**
-     * Constructs a new {@code AckProcessor} with the specified {@link DatagramSocket}.
+     * Constructs a new {@code AckProcessor} with the specified {@link UdpTransport}.
      *
-     * @param socket The {@link DatagramSocket} used for sending ACK messages.
+     * @param transport The {@link UdpTransport} used for sending ACK messages.
      */
-    public AckProcessor(DatagramSocket socket) {
-        this.socket = socket;
+    public AckProcessor(UdpTransport transport) {
+        this.transport = transport;
     }
 
     /**
@@ -64,15 +62,7 @@ public class AckProcessor {
                     // Create an ACK message with type "ACK" and the UUID as a parameter.
                     Message ackMsg = new Message("ACK", new Object[] { entry.uuid }, null);
                     // Optionally, you could also call ackMsg.setUUID(entry.uuid) if your protocol requires it.
-                    String encodedAck = MessageCodec.encode(ackMsg);
-                    byte[] data = encodedAck.getBytes();
-                    DatagramPacket packet = new DatagramPacket(
-                            data,
-                            data.length,
-                            entry.destination.getAddress(),
-                            entry.destination.getPort()
-                    );
-                    socket.send(packet);
+                    transport.send(ackMsg, entry.destination);
                     System.out.println("Sent ACK for UUID " + entry.uuid + " to " + entry.destination);
                 } catch (Exception e) {
                     e.printStackTrace();
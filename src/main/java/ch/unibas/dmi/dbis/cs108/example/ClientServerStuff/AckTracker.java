@@ -0,0 +1,257 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Tracks which reliable messages were received from each peer and writes that information as a
+ * selective-ACK header in front of binary datagrams going back to the peer.
+ *
+ * <p>
+ * The header is {@link #HEADER_SIZE} bytes: the marker {@link #MAGIC}, the latest received
+ * sequence number (u32) and a 32-bit field whose bit {@code i} acknowledges sequence number
+ * {@code latest - 1 - i}. Every datagram repeats the whole field, so a lost datagram rarely
+ * costs a retransmission. It is read with {@link #readHeader(ByteBuffer, InetSocketAddress, AckListener)}
+ * before the frames of the datagram.
+ * </p>
+ *
+ * <p>
+ * {@link UdpTransport} fills the header into the room reserved at the start of every binary
+ * datagram right before it is sent. If no datagram goes to a peer within the ACK delay after a
+ * reliable message arrived, {@link #start(UdpTransport, long)} sends a datagram that carries
+ * nothing but the header.
+ * </p>
+ *
+ * <p>
+ * The tracker also remembers the last {@link #HISTORY} sequence numbers of every peer in a
+ * sliding bitset, so {@link #onReceived(InetSocketAddress, long)} recognizes retransmissions of
+ * messages that were already received (because their ACK got lost) and the caller can drop them
+ * before they reach any handler. Messages too old for the header are acknowledged with an
+ * explicit {@code ACK} message carrying the sequence number.
+ * </p>
+ */
+public class AckTracker {
+
+    /** First byte of a selective-ACK header; distinct from every frame marker. */
+    public static final byte MAGIC = (byte) 0xB9;
+
+    /** Size of the header in bytes: marker, latest sequence number and bitfield. */
+    public static final int HEADER_SIZE = 9;
+
+    /** Number of sequence numbers below the latest one the bitfield covers. */
+    public static final int WINDOW = 32;
+
+    /**
+     * Number of sequence numbers below the latest one that are remembered for duplicate
+     * detection. Must exceed the send window of {@link ReliableUDPSender}: a sender cannot get
+     * that far ahead before the older message was received, so anything older is a duplicate.
+     */
+    public static final int HISTORY = 1024;
+
+    /** Default time a received reliable message may wait for outgoing traffic to carry its ACK. */
+    public static final long DEFAULT_ACK_DELAY_MILLIS = 20;
+
+    /**
+     * Receives the acknowledgements carried by a header.
+     */
+    public interface AckListener {
+        /**
+         * Called once per header read.
+         *
+         * @param peer   the peer that sent the header
+         * @param latest the latest sequence number the peer received
+         * @param bits   bit {@code i} set means {@code latest - 1 - i} was received
+         */
+        void onAck(InetSocketAddress peer, long latest, int bits);
+    }
+
+    /**
+     * The receive window of one peer; guarded by its own monitor.
+     */
+    private static final class Window {
+        long latest;
+        int bits;
+        /** Bit {@code seq % HISTORY} is set if {@code seq} was received; covers {@code latest - HISTORY + 1..latest}. */
+        final long[] seen = new long[HISTORY / 64];
+        /** When the oldest not yet advertised message arrived, {@code 0} if none. */
+        long unackedSince;
+        /** Sequence numbers too old for the header, waiting for an explicit ACK; created on demand. */
+        ArrayDeque<Long> lateAcks;
+
+        boolean isSeen(long seq) {
+            int slot = (int) (seq & (HISTORY - 1));
+            return (seen[slot >>> 6] & (1L << slot)) != 0;
+        }
+
+        void setSeen(long seq, boolean value) {
+            int slot = (int) (seq & (HISTORY - 1));
+            if (value) {
+                seen[slot >>> 6] |= 1L << slot;
+            } else {
+                seen[slot >>> 6] &= ~(1L << slot);
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<InetSocketAddress, Window> windows = new ConcurrentHashMap<>();
+
+    /** Pre-bound window factory, avoids allocating a lambda per message. */
+    private final Function<InetSocketAddress, Window> newWindow = address -> new Window();
+
+    /**
+     * Records a reliable message received from {@code peer} and schedules its ACK. Duplicates
+     * are acknowledged again, since the sender evidently missed the first ACK.
+     *
+     * @param peer the sender
+     * @param seq  the message's sequence number
+     * @return {@code true} if the message is new, {@code false} if it was received before and
+     *         must not be processed again
+     */
+    public boolean onReceived(InetSocketAddress peer, long seq) {
+        Window window = windows.computeIfAbsent(peer, newWindow);
+        synchronized (window) {
+            boolean fresh;
+            if (seq > window.latest) {
+                long shift = seq - window.latest;
+                if (window.latest == 0 || shift > WINDOW) {
+                    window.bits = 0;
+                } else {
+                    window.bits = (int) (((long) window.bits << shift) | (1L << (shift - 1)));
+                }
+                // Forget the slots the window slides over.
+                if (window.latest == 0 || shift >= HISTORY) {
+                    Arrays.fill(window.seen, 0L);
+                } else {
+                    for (long skipped = window.latest + 1; skipped < seq; skipped++) {
+                        window.setSeen(skipped, false);
+                    }
+                }
+                window.latest = seq;
+                window.setSeen(seq, true);
+                fresh = true;
+            } else {
+                long distance = window.latest - seq;
+                if (distance >= HISTORY) {
+                    fresh = false;
+                } else {
+                    fresh = !window.isSeen(seq);
+                    window.setSeen(seq, true);
+                }
+                if (distance > WINDOW) {
+                    if (window.lateAcks == null) {
+                        window.lateAcks = new ArrayDeque<>();
+                    }
+                    window.lateAcks.addLast(seq);
+                } else if (distance > 0) {
+                    window.bits |= 1 << (distance - 1);
+                }
+            }
+            if (window.unackedSince == 0) {
+                window.unackedSince = System.currentTimeMillis();
+            }
+            return fresh;
+        }
+    }
+
+    /**
+     * Writes the header for {@code peer} at absolute position {@code index}.
+     *
+     * @param peer   the destination of the datagram
+     * @param buffer the datagram buffer, with at least {@link #HEADER_SIZE} bytes of room at {@code index}
+     * @param index  where the header goes
+     * @return {@code false} if nothing was received from the peer yet and no header was written
+     */
+    public boolean writeHeader(InetSocketAddress peer, ByteBuffer buffer, int index) {
+        Window window = windows.get(peer);
+        if (window == null) {
+            return false;
+        }
+        synchronized (window) {
+            if (window.latest == 0) {
+                return false;
+            }
+            buffer.put(index, MAGIC);
+            buffer.putInt(index + 1, (int) window.latest);
+            buffer.putInt(index + 5, window.bits);
+            window.unackedSince = 0;
+            return true;
+        }
+    }
+
+    /**
+     * Consumes a header at the start of the datagram, if there is one.
+     *
+     * @param datagram the received datagram, between position and limit
+     * @param sender   the address it came from
+     * @param listener receives the acknowledgements
+     * @return {@code true} if a header was consumed
+     * @throws IllegalArgumentException if the header is truncated
+     */
+    public static boolean readHeader(ByteBuffer datagram, InetSocketAddress sender, AckListener listener) {
+        if (!datagram.hasRemaining() || datagram.get(datagram.position()) != MAGIC) {
+            return false;
+        }
+        if (datagram.remaining() < HEADER_SIZE) {
+            throw new IllegalArgumentException("Truncated ACK header");
+        }
+        datagram.get();
+        long latest = Integer.toUnsignedLong(datagram.getInt());
+        int bits = datagram.getInt();
+        listener.onAck(sender, latest, bits);
+        return true;
+    }
+
+    /**
+     * Forgets the receive window of a peer, e.g. after it disconnected.
+     *
+     * @param peer the address to forget
+     */
+    public void remove(InetSocketAddress peer) {
+        windows.remove(peer);
+    }
+
+    /**
+     * Sends a header-only datagram to every peer whose ACK has waited longer than
+     * {@code ackDelayMillis} for outgoing traffic, checking twice per delay. Sequence numbers
+     * too old for the header are acknowledged with {@code ACK} messages in the same pass.
+     *
+     * @param transport      the transport to send the standalone ACKs with
+     * @param ackDelayMillis how long an ACK may wait to be piggybacked
+     */
+    public void start(UdpTransport transport, long ackDelayMillis) {
+        long interval = Math.max(1, ackDelayMillis / 2);
+        AsyncManager.runLoop(() -> {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<InetSocketAddress, Window> entry : windows.entrySet()) {
+                Window window = entry.getValue();
+                long since;
+                Long late = null;
+                synchronized (window) {
+                    since = window.unackedSince;
+                    if (window.lateAcks != null) {
+                        late = window.lateAcks.pollFirst();
+                    }
+                }
+                while (late != null) {
+                    transport.send(new Message("ACK", new Object[]{ late }, "GAME"), entry.getKey());
+                    synchronized (window) {
+                        late = window.lateAcks.pollFirst();
+                    }
+                }
+                if (since != 0 && now - since >= ackDelayMillis) {
+                    transport.sendAckOnly(entry.getKey());
+                }
+            }
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A compact, length-prefixed binary alternative to the text based {@link MessageCodec}.
+ *
+ * <p>
+ * The <strong>frame layout</strong> is:
+ * </p>
+ * <pre>
+ *   u8   MAGIC (0xB7)
+ *   u16  length of the body that follows
+ *   var  sequence number   (unsigned LEB128 varint), {@code 0} if not sent reliably
+ *   u8   delivery channel, see {@link DeliveryChannel#getId()}
+ *   var  channel sequence  (varint, only on sequenced channels)
+ *   str  message type
+ *   str  option            (nullable)
+ *   u8   uuid kind,        then 16 raw bytes ({@code 1}), a str ({@code 2}) or nothing for null ({@code 0})
+ *   u8   parameter count,  then per parameter: u8 tag + value
+ *   u8   concealed count,  then per entry: str
+ * </pre>
+ * <ul>
+ *   <li><strong>str</strong> – an unsigned 16-bit byte length followed by UTF-8 bytes;
+ *       a length of {@code 0xFFFF} encodes {@code null}</li>
+ *   <li>Parameters are written in their native width: {@code I} int32, {@code L} int64,
+ *       {@code F} float32, {@code D} float64, {@code B} one byte boolean, {@code S} str,
+ *       {@code X} u16 byte length followed by raw bytes ({@code byte[]}), {@code N} null</li>
+ * </ul>
+ *
+ * <p>
+ * Because the magic byte can never start a text encoded message (those always begin
+ * with the message type), both formats can be told apart by looking at the first byte
+ * of a datagram. See {@link WireFormat#detect(byte[], int, int)}.
+ * </p>
+ *
+ * <p>
+ * The actual serialization lives in {@link MessageWriter} and {@link MessageReader}, which
+ * work directly on (pooled) {@link ByteBuffer}s.
+ * </p>
+ */
+public class BinaryMessageCodec {
+
+    /** First byte of every binary encoded message. */
+    public static final byte MAGIC = (byte) 0xB7;
+
+    /** Size of the fixed frame header (magic + body length). */
+    public static final int HEADER_SIZE = 3;
+
+    /** String length marker used to encode {@code null}. */
+    static final int NULL_LENGTH = 0xFFFF;
+
+    static final byte TAG_INT = 'I';
+    static final byte TAG_LONG = 'L';
+    static final byte TAG_FLOAT = 'F';
+    static final byte TAG_DOUBLE = 'D';
+    static final byte TAG_BOOLEAN = 'B';
+    static final byte TAG_STRING = 'S';
+    static final byte TAG_NULL = 'N';
+    static final byte TAG_BYTES = 'X';
+
+    static final byte UUID_NULL = 0;
+    static final byte UUID_BINARY = 1;
+    static final byte UUID_STRING = 2;
+
+    /**
+     * Encodes the given {@link Message} into a binary frame.
+     *
+     * <p>This allocates the returned array; the networking code writes directly into
+     * pooled buffers with {@link MessageWriter} instead.</p>
+     *
+     * @param message the message to encode
+     * @return the encoded frame, including magic byte and length prefix
+     * @throws IllegalArgumentException if the encoded body does not fit into a frame
+     */
+    public static byte[] encode(Message message) {
+        return encode(message, message.getChannelSequence());
+    }
+
+    /**
+     * Encodes a message with the given channel sequence number, see
+     * {@link MessageWriter#write(Message, long, ByteBuffer)}.
+     */
+    static byte[] encode(Message message, long channelSequence) {
+        ByteBuffer out = ByteBuffer.allocate(estimateSize(message));
+        MessageWriter.write(message, channelSequence, out);
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    /**
+     * Decodes a binary frame into a {@link Message}.
+     *
+     * @param data   the buffer containing the frame
+     * @param offset the offset of the magic byte
+     * @param length the number of valid bytes starting at {@code offset}
+     * @return the decoded message
+     * @throws IllegalArgumentException if the data is not a valid binary frame
+     */
+    public static Message decode(byte[] data, int offset, int length) {
+        return MessageReader.read(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Computes an upper bound for the encoded size so that a single buffer
+     * allocation is sufficient.
+     */
+    static int estimateSize(Message message) {
+        byte[] body = message.getEncodedBody();
+        if (body != null) {
+            return HEADER_SIZE + 10 + 1 + 10 + body.length;
+        }
+        int size = HEADER_SIZE + 10 + 1 + 10 + 2;
+        size += maxStringSize(message.getMessageType());
+        size += maxStringSize(message.getOption());
+        size += 1 + maxStringSize(message.peekUUID());
+        Object[] params = message.getParameters();
+        if (params != null) {
+            for (Object p : params) {
+                size += 1 + 8;
+                if (p instanceof byte[]) {
+                    size += 2 + ((byte[]) p).length;
+                } else if (p != null && !(p instanceof Number) && !(p instanceof Boolean)) {
+                    size += maxStringSize(p.toString());
+                }
+            }
+        }
+        String[] concealed = message.getConcealedParameters();
+        if (concealed != null) {
+            for (String c : concealed) {
+                size += maxStringSize(c);
+            }
+        }
+        return size;
+    }
+
+    private static int maxStringSize(String value) {
+        // UTF-8 needs at most three bytes per UTF-16 char.
+        return 2 + (value == null ? 0 : value.length() * 3);
+    }
+}
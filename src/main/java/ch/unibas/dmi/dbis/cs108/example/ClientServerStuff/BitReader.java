@@ -0,0 +1,72 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * Reads the values written by a {@link BitWriter}. Not thread-safe.
+ */
+public final class BitReader {
+
+    private final byte[] data;
+    private int position;
+
+    /**
+     * Creates a reader positioned at the first bit.
+     *
+     * @param data the bytes to read
+     */
+    public BitReader(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Reads an unsigned value.
+     *
+     * @param bits the width of the value, 0 to 64
+     * @return the value in the low {@code bits} bits
+     * @throws IllegalArgumentException if fewer than {@code bits} bits are left
+     */
+    public long read(int bits) {
+        if (bits < 0 || bits > 64) {
+            throw new IllegalArgumentException("Cannot read " + bits + " bits");
+        }
+        if (bits > remaining()) {
+            throw new IllegalArgumentException("Truncated bit stream: " + bits + " bits wanted, " + remaining() + " left");
+        }
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            value = (value << 1) | ((data[position >>> 3] >>> (7 - (position & 7))) & 1);
+            position++;
+        }
+        return value;
+    }
+
+    /**
+     * @return the next bit
+     * @throws IllegalArgumentException if the stream is exhausted
+     */
+    public boolean readBoolean() {
+        return read(1) != 0;
+    }
+
+    /**
+     * Reads whole bytes, not necessarily aligned to a byte boundary.
+     *
+     * @param count the number of bytes
+     * @return the bytes
+     * @throws IllegalArgumentException if fewer than {@code count} bytes are left
+     */
+    public byte[] readBytes(int count) {
+        if (count * 8L > remaining()) {
+            throw new IllegalArgumentException("Truncated bit stream: " + count + " bytes wanted, " + remaining() + " bits left");
+        }
+        byte[] bytes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            bytes[i] = (byte) read(8);
+        }
+        return bytes;
+    }
+
+    /** @return the number of bits not read yet, including the padding of the last byte */
+    public int remaining() {
+        return data.length * 8 - position;
+    }
+}
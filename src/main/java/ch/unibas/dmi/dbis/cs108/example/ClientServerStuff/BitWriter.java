@@ -0,0 +1,85 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.util.Arrays;
+
+/**
+ * Writes values of arbitrary bit width back to back into a growing byte array, most
+ * significant bit first. The counterpart of {@link BitReader}.
+ *
+ * <p>
+ * Used where a byte per value is too much, e.g. for the quantized fields of a
+ * {@link WorldSnapshot} (see {@link Quantizer}). Not thread-safe.
+ * </p>
+ */
+public final class BitWriter {
+
+    private byte[] buffer;
+    private int bitLength;
+
+    /**
+     * Creates a writer.
+     *
+     * @param initialBytes the expected size of the output, grown as needed
+     */
+    public BitWriter(int initialBytes) {
+        this.buffer = new byte[Math.max(1, initialBytes)];
+    }
+
+    /**
+     * Appends the low {@code bits} bits of {@code value}.
+     *
+     * @param value the value; higher bits are ignored
+     * @param bits  the number of bits to write, 0 to 64
+     */
+    public void write(long value, int bits) {
+        if (bits < 0 || bits > 64) {
+            throw new IllegalArgumentException("Cannot write " + bits + " bits");
+        }
+        ensureCapacity(bitLength + bits);
+        for (int i = bits - 1; i >= 0; i--) {
+            if (((value >>> i) & 1) != 0) {
+                buffer[bitLength >>> 3] |= (byte) (0x80 >>> (bitLength & 7));
+            }
+            bitLength++;
+        }
+    }
+
+    /**
+     * Appends one bit.
+     *
+     * @param value the bit
+     */
+    public void writeBoolean(boolean value) {
+        write(value ? 1 : 0, 1);
+    }
+
+    /**
+     * Appends whole bytes, not necessarily aligned to a byte boundary.
+     *
+     * @param bytes the bytes
+     */
+    public void writeBytes(byte[] bytes) {
+        for (byte b : bytes) {
+            write(b, 8);
+        }
+    }
+
+    /** @return the number of bits written so far */
+    public int getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * @return the bits written so far, padded with zero bits to a whole byte
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, (bitLength + 7) >>> 3);
+    }
+
+    private void ensureCapacity(int bits) {
+        int bytes = (bits + 7) >>> 3;
+        if (bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(bytes, buffer.length * 2));
+        }
+    }
+}
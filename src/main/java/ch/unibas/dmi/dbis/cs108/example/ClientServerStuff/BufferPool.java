@@ -0,0 +1,109 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-size pool of reusable direct {@link ByteBuffer}s for sending and receiving datagrams.
+ *
+ * <p>
+ * Every buffer has {@link #BUFFER_SIZE} bytes, which is large enough for any datagram this
+ * game sends. Callers {@link #acquire()} a cleared buffer, serialize into it with
+ * {@link MessageWriter}, hand it to a {@link java.nio.channels.DatagramChannel} and
+ * {@link #release(ByteBuffer)} it again. Once the pool is warm no buffer is ever allocated.
+ * </p>
+ *
+ * <p>
+ * If the pool runs dry a fresh buffer is allocated instead of blocking, so a burst can
+ * never stall the network threads. Such buffers are kept on release as long as there is
+ * room, and {@link #getMisses()} tells how often this happened.
+ * </p>
+ */
+public class BufferPool {
+
+    /** Size of every pooled buffer in bytes. */
+    public static final int BUFFER_SIZE = 2048;
+
+    /** Number of buffers the shared pool keeps around. */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Helper class for lazy initialization of the shared pool.
+     */
+    private static class SingletonHelper {
+        private static final BufferPool INSTANCE = new BufferPool(BUFFER_SIZE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Returns the pool shared by the server and client networking code.
+     *
+     * @return the shared {@code BufferPool}
+     */
+    public static BufferPool getInstance() {
+        return SingletonHelper.INSTANCE;
+    }
+
+    /** The idle buffers. */
+    private final ArrayBlockingQueue<ByteBuffer> free;
+
+    /** Size of the buffers handed out by this pool. */
+    private final int bufferSize;
+
+    /** Number of times {@link #acquire()} had to allocate because the pool was empty. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a pool and pre-allocates all of its buffers.
+     *
+     * @param bufferSize the size of each buffer in bytes
+     * @param capacity   the number of buffers to keep
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            free.offer(ByteBuffer.allocateDirect(bufferSize));
+        }
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating a new one if none is idle.
+     *
+     * @return a buffer with position {@code 0} and limit {@code capacity}
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers of a different size are ignored.
+     *
+     * @param buffer the buffer to return, may be {@code null}
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer != null && buffer.capacity() == bufferSize) {
+            free.offer(buffer);
+        }
+    }
+
+    /**
+     * @return the number of idle buffers
+     */
+    public int available() {
+        return free.size();
+    }
+
+    /**
+     * @return how often the pool was empty and a buffer had to be allocated
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,124 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The receive side of the {@link DeliveryChannel}s: decides per peer and channel when a
+ * received message is handed to the application.
+ *
+ * <ul>
+ *   <li>{@link DeliveryChannel#UNRELIABLE_SEQUENCED}: delivered if it is newer than
+ *       everything of the same message type received on the channel so far, dropped otherwise.
+ *       A late {@code INPUT} is therefore not dropped just because a newer snapshot ACK
+ *       overtook it.</li>
+ *   <li>{@link DeliveryChannel#RELIABLE_UNORDERED}: delivered immediately.</li>
+ *   <li>{@link DeliveryChannel#RELIABLE_ORDERED}: delivered in channel sequence order. A message
+ *       that arrives early is held until the gap before it is filled by a retransmission; the
+ *       sender's window bounds how many can be held. Duplicates are dropped.</li>
+ * </ul>
+ *
+ * <p>
+ * Messages without a channel sequence number, e.g. from text-format peers, are delivered
+ * immediately. Each channel keeps its own state, so a gap on the ordered channel never delays
+ * the other two.
+ * </p>
+ */
+public class ChannelReceiver {
+
+    /**
+     * The receive state of one peer; guarded by its own monitor.
+     */
+    private static final class Streams {
+        /** Newest channel sequence number seen on the unreliable-sequenced channel, by message type. */
+        final HashMap<String, long[]> latestSequenced = new HashMap<>();
+
+        /** Channel sequence number the reliable-ordered channel delivers next. */
+        long nextOrdered = 1;
+
+        /** Reliable-ordered messages that arrived ahead of {@link #nextOrdered}. */
+        final TreeMap<Long, Message> held = new TreeMap<>();
+    }
+
+    private final ConcurrentHashMap<InetSocketAddress, Streams> streams = new ConcurrentHashMap<>();
+
+    /** Pre-bound streams factory, avoids allocating a lambda per message. */
+    private final Function<InetSocketAddress, Streams> newStreams = address -> new Streams();
+
+    /** Pre-bound holder factory for {@link Streams#latestSequenced}. */
+    private static final Function<String, long[]> NEW_LATEST = type -> new long[1];
+
+    /**
+     * Passes a received message to {@code deliver} once its channel allows it, together
+     * with any held messages it unblocks. {@code deliver} runs on the calling thread, in order.
+     *
+     * @param peer    the sender
+     * @param message the received message
+     * @param deliver receives the messages that are ready
+     * @return {@code false} if the message was dropped as stale or duplicate
+     */
+    public boolean receive(InetSocketAddress peer, Message message, Consumer<Message> deliver) {
+        long channelSeq = message.getChannelSequence();
+        DeliveryChannel channel = message.getChannel();
+        if (channelSeq == 0 || !channel.isSequenced()) {
+            deliver.accept(message);
+            return true;
+        }
+        Streams state = streams.computeIfAbsent(peer, newStreams);
+        synchronized (state) {
+            if (channel == DeliveryChannel.UNRELIABLE_SEQUENCED) {
+                long[] latest = state.latestSequenced.computeIfAbsent(message.getMessageType(), NEW_LATEST);
+                if (channelSeq <= latest[0]) {
+                    return false;
+                }
+                latest[0] = channelSeq;
+                deliver.accept(message);
+                return true;
+            }
+
+            if (channelSeq < state.nextOrdered) {
+                return false;
+            }
+            if (channelSeq > state.nextOrdered) {
+                return state.held.putIfAbsent(channelSeq, message) == null;
+            }
+            deliver.accept(message);
+            state.nextOrdered++;
+            Map.Entry<Long, Message> next;
+            while ((next = state.held.firstEntry()) != null && next.getKey() == state.nextOrdered) {
+                state.held.pollFirstEntry();
+                deliver.accept(next.getValue());
+                state.nextOrdered++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param peer the sender
+     * @return the number of reliable-ordered messages from {@code peer} waiting for a gap to fill
+     */
+    public int getHeldCount(InetSocketAddress peer) {
+        Streams state = streams.get(peer);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.held.size();
+        }
+    }
+
+    /**
+     * Forgets the receive state of a peer, e.g. after it disconnected.
+     *
+     * @param peer the address to forget
+     */
+    public void remove(InetSocketAddress peer) {
+        streams.remove(peer);
+    }
+}
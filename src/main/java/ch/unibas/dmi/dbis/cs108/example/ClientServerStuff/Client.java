@@ -9,11 +9,10 @@ import lombok.Getter;
 
 import javax.swing.SwingUtilities;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
@@ -33,7 +32,7 @@ import java.net.UnknownHostException;
  *   <li>Managing a {@link Game} instance responsible for local game logic.</li>
  *   <li>Handling chat functionality through a {@link ChatManager.ClientChatManager}.</li>
  *   <li>Queuing and sending outgoing {@link Message} objects via {@link #outgoingQueue}.</li>
- *   <li>Receiving incoming {@link Message} objects via {@link #incomingQueue} and dispatching them to handlers.</li>
+ *   <li>Receiving incoming {@link Message} objects on the transport's I/O thread and dispatching them to handlers.</li>
  *   <li>Providing reliable and best-effort UDP message sending through {@link ReliableUDPSender}.</li>
  *   <li>Handling acknowledgments (ACKs) for messages using an {@link AckProcessor}.</li>
  *   <li>Optionally tracking round-trip times (ping) via a {@link PingManager} (disabled by default in this code).</li>
@@ -67,6 +66,11 @@ public class Client {
      */
     public static int SERVER_PORT = 9876;
 
+    /**
+     * The interval between two PINGs used to measure the round-trip time, in milliseconds.
+     */
+    private static final long PING_PERIOD_MILLIS = 1000;
+
     /**
      * Manages all chat functionality on the client side.
      */
@@ -78,12 +82,6 @@ public class Client {
      */
     private static final LinkedBlockingQueue<Message> outgoingQueue = new LinkedBlockingQueue<>();
 
-    /**
-     * A thread-safe queue for incoming messages received from the server or other clients.
-     * This queue is processed in a background loop.
-     */
-    private static final LinkedBlockingQueue<Message> incomingQueue = new LinkedBlockingQueue<>();
-
     /**
      * The {@link Game} instance handling local game logic, such as objects and event responses.
      */
@@ -115,15 +113,56 @@ public class Client {
     private AckProcessor ackProcessor;
 
     /**
-     * The underlying UDP socket used by this client for sending and receiving data.
+     * Tracks the reliable messages received from the server in binary format; their ACKs
+     * ride in the header of the datagrams we send back.
      */
-    private DatagramSocket clientSocket;
+    private final AckTracker ackTracker = new AckTracker();
 
     /**
-     * Tracks ping (round-trip time) data if started. Inactive by default.
+     * Orders and filters the messages received from the server per {@link DeliveryChannel}.
+     */
+    private final ChannelReceiver channelReceiver = new ChannelReceiver();
+
+    /** Reassembles messages the server had to split into several datagrams. */
+    private final FragmentAssembler fragmentAssembler = new FragmentAssembler();
+
+    /** When the session of the last {@link DisconnectNotice} we acted on ended; repeats are ignored. */
+    private volatile long lastDisconnectedAt;
+
+    /**
+     * The underlying UDP channel used by this client for sending and receiving data.
+     */
+    private DatagramChannel clientChannel;
+
+    /**
+     * Non-blocking transport that owns {@link #clientChannel}.
+     */
+    private UdpTransport transport;
+
+    /**
+     * The wire format this client speaks. It is announced implicitly by the first
+     * datagram ({@code REGISTER}) and used for every message afterwards. Defaults to
+     * {@link WireFormat#BINARY}; start with {@code -Dwire.format=text} to debug.
+     */
+    private final WireFormat wireFormat = WireFormat.fromSystemProperty();
+
+    /**
+     * The resolved server address, cached so that best-effort sends do not resolve the host
+     * for every packet. Refreshed whenever {@link #SERVER_ADDRESS} or {@link #SERVER_PORT} change.
+     */
+    private volatile InetSocketAddress resolvedServerAddress;
+
+    /**
+     * Tracks ping (round-trip time) data; its PONG samples also feed the RTO of
+     * the reliable sender.
      */
     private PingManager pingManager;
 
+    /**
+     * The client's estimate of the server clock and tick, fed by the PONGs.
+     */
+    private final ClockSync clockSync = new ClockSync();
+
     /**
      * The singleton instance of this client.
      */
@@ -183,92 +222,30 @@ public class Client {
      */
     public void run() {
         try {
-            // Initialize the client socket once.
-            clientSocket = new DatagramSocket();
+            // Initialize the client channel once, bound to an ephemeral port.
+            clientChannel = DatagramChannel.open();
+            clientChannel.bind(null);
+            transport = new UdpTransport(clientChannel, destination -> wireFormat, this::onPacket);
+            if (wireFormat == WireFormat.BINARY) {
+                transport.setAckTracker(ackTracker);
+                ackTracker.start(transport, AckTracker.DEFAULT_ACK_DELAY_MILLIS);
+            }
 
             // Initialize the reliable sender without a fixed destination.
-            myReliableUDPSender = new ReliableUDPSender(clientSocket, 50, 1000);
+            myReliableUDPSender = new ReliableUDPSender(transport, 50, RttEstimator.DEFAULT_INITIAL_RTO_MILLIS);
 
-            // Initialize the AckProcessor using the same socket.
-            ackProcessor = new AckProcessor(clientSocket);
+            // Initialize the AckProcessor using the same transport.
+            ackProcessor = new AckProcessor(transport);
             ackProcessor.start();
 
-            // Receiver Task: Continuously listen for UDP packets and enqueue decoded messages.
-        
-            AsyncManager.runLoop(() -> {
-                while (true) {
-                    try {
-                        byte[] receiveData = new byte[1024];
-                        DatagramPacket receivePacket = new DatagramPacket(receiveData, receiveData.length);
-                        clientSocket.receive(receivePacket);
-
-                        String response = new String(
-                            receivePacket.getData(), 0, receivePacket.getLength(),
-                            StandardCharsets.UTF_8
-                        );
-                        System.out.println("Received (UDP): " + response);
-
-                        Message receivedMessage = MessageCodec.decode(response);
-
-                        // Immediate ACK handling: consume and loop again
-                        if ("ACK".equalsIgnoreCase(receivedMessage.getMessageType())) {
-                            if (receivedMessage.getParameters() != null
-                                && receivedMessage.getParameters().length > 0) {
-                                String ackUuid = receivedMessage.getParameters()[0].toString();
-                                myReliableUDPSender.acknowledge(ackUuid);
-                                System.out.println("Client: acknowledged UUID " + ackUuid);
-                            }
-                            continue;  // skip normal dispatch for ACKs
-                        }
-                        else{
-
-                            // Dispatch all other messages
-                            messageHub.dispatch(receivedMessage);
-                            //if (!"Game".equalsIgnoreCase(receivedMessage.getOption())) {
-                                //InetSocketAddress dest = new InetSocketAddress(
-                                        //InetAddress.getByName(SERVER_ADDRESS), SERVER_PORT);
-                                //ackProcessor.addAck(dest, receivedMessage.getUUID());
-                                //incomingQueue.offer(receivedMessage);
-                            //}
-                        }
-
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
-            });
+            // Periodic PING/PONG round-trip measurement and clock synchronization;
+            // onPacket hands it the PONGs, so it must exist before the first datagram.
+            pingManager = new PingManager(PING_PERIOD_MILLIS, clockSync, myReliableUDPSender,
+                    Client::sendMessageBestEffort);
 
-
-            // Process incoming messages.
-            AsyncManager.runLoop(() -> {
-                try {
-                    Message msg = incomingQueue.take();
-                    if (msg != null) {
-                        if ("ACK".equalsIgnoreCase(msg.getMessageType())) {
-                            // Process the ACK message.
-                            if (msg.getParameters() != null && msg.getParameters().length > 0) {
-                                String ackUuid = msg.getParameters()[0].toString();
-                                myReliableUDPSender.acknowledge(ackUuid);
-                            } else {
-                                System.out.println("Received ACK with no parameters.");
-                            }
-                        } else {
-                            // For non-ACK messages, if the message has a UUID and option != "GAME",
-                            // add it to the ACK processor.
-                            if (msg.getUUID() != null && !"GAME".equalsIgnoreCase(msg.getOption())) {
-                                InetSocketAddress dest = new InetSocketAddress(
-                                        InetAddress.getByName(SERVER_ADDRESS), SERVER_PORT
-                                );
-                                ackProcessor.addAck(dest, msg.getUUID());
-                            }
-                            // Dispatch the message via the MessageHub.
-                            //messageHub.dispatch(msg);
-                        }
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
+            // Receiver: the transport's I/O thread decodes every datagram in onPacket.
+            transport.start("client-udp-io");
+            pingManager.start();
 
             // Sender Task: Continuously poll outgoingQueue and send messages.
             AsyncManager.runLoop(() -> {
@@ -281,12 +258,8 @@ public class Client {
                         InetAddress dest = InetAddress.getByName(SERVER_ADDRESS);
 
                         if ("GAME".equalsIgnoreCase(msg.getOption())) {
-                            // best‑effort
-                            String encoded = MessageCodec.encode(msg);
-                            byte[] data     = encoded.getBytes(StandardCharsets.UTF_8);
-                            DatagramPacket packet = new DatagramPacket(data, data.length, dest, SERVER_PORT);
-                            clientSocket.send(packet);
-                            System.out.println("Best effort sent: " + encoded);
+                            // best‑effort, straight from a pooled buffer
+                            transport.send(msg, serverSocketAddress());
 
                         } else if ("CLIENT".equalsIgnoreCase(msg.getOption())) {
                             // local update
@@ -321,6 +294,118 @@ public class Client {
         }
     }
 
+    /**
+     * Handles one datagram on the transport's I/O thread: unpacks the messages it carries,
+     * settles ACKs for our reliable sends right away and dispatches everything else via the
+     * {@link MessageHub}.
+     *
+     * @param datagram the received datagram
+     * @param sender   the address it came from
+     */
+    private void onPacket(ByteBuffer datagram, InetSocketAddress sender) {
+        try {
+            // Selective ACKs for our reliable sends come first, ahead of any frame.
+            AckTracker.readHeader(datagram, sender, myReliableUDPSender::acknowledge);
+
+            // The server packs all messages of a tick into as few datagrams as possible.
+            while (datagram.hasRemaining()) {
+                Message receivedMessage;
+                if (MessageFragmenter.isFragment(datagram)) {
+                    // Fragments are acknowledged one by one; the reassembled message is not.
+                    receivedMessage = fragmentAssembler.accept(sender, datagram,
+                            wireFormat == WireFormat.BINARY ? ackTracker : null);
+                    if (receivedMessage == null) {
+                        continue;
+                    }
+                } else {
+                    receivedMessage = WireFormat.read(datagram);
+                }
+                if (UdpTransport.DEBUG && !"GAME".equalsIgnoreCase(receivedMessage.getOption())) {
+                    System.out.println("Received (UDP): " + receivedMessage);
+                }
+
+                // Immediate ACK handling: skip normal dispatch for ACKs
+                if ("ACK".equalsIgnoreCase(receivedMessage.getMessageType())) {
+                    if (receivedMessage.getParameters() != null
+                        && receivedMessage.getParameters().length > 0) {
+                        Object acked = receivedMessage.getParameters()[0];
+                        if (acked instanceof Number) {
+                            myReliableUDPSender.acknowledge(sender, ((Number) acked).longValue());
+                        } else {
+                            myReliableUDPSender.acknowledge(sender, acked.toString());
+                        }
+                        if (UdpTransport.DEBUG) {
+                            System.out.println("Client: acknowledged " + acked);
+                        }
+                    }
+                    continue;
+                }
+
+                // PONGs are timed on arrival rather than after queueing behind the dispatch.
+                if (pingManager.receive(receivedMessage, sender)) {
+                    continue;
+                }
+
+                if (DisconnectNotice.is(receivedMessage)) {
+                    onDisconnectNotice(receivedMessage, sender);
+                    continue;
+                }
+
+                if (receivedMessage.getChannel().isReliable() && !acknowledgeReliable(receivedMessage, sender)) {
+                    // Already handled; the retransmission only needed a new ACK.
+                    continue;
+                }
+
+                // Dispatch all other messages once their channel releases them
+                channelReceiver.receive(sender, receivedMessage, messageHub::dispatch);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Dropping undecodable packet: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets everything kept for the server's session after it disconnected us, so its
+     * sequence numbers, which start over, are not taken for retransmissions, and restarts our
+     * own numbering. Messages still waiting for an ACK are given up; the next request
+     * registers us again.
+     *
+     * @param notice the {@link DisconnectNotice}
+     * @param sender the server's address
+     */
+    private void onDisconnectNotice(Message notice, InetSocketAddress sender) {
+        long disconnectedAt = DisconnectNotice.disconnectedAtOf(notice);
+        if (disconnectedAt == lastDisconnectedAt) {
+            // A repeat of a notice we acted on; our new session may have started already.
+            return;
+        }
+        lastDisconnectedAt = disconnectedAt;
+        System.err.println("Disconnected by the server: " + DisconnectNotice.reasonOf(notice));
+        ackTracker.remove(sender);
+        channelReceiver.remove(sender);
+        fragmentAssembler.remove(sender);
+        myReliableUDPSender.removePeer(sender);
+        transport.removePeer(sender);
+    }
+
+    /**
+     * Acknowledges a message the server sent reliably. In binary format the ACK is piggybacked
+     * on the next datagram to the server; text peers get an ACK message of their own.
+     *
+     * @param msg    the received message
+     * @param sender the address it came from
+     * @return {@code false} if the message is a binary retransmission that was already received
+     */
+    private boolean acknowledgeReliable(Message msg, InetSocketAddress sender) {
+        if (wireFormat == WireFormat.BINARY) {
+            return msg.getSequenceNumber() <= 0 || ackTracker.onReceived(sender, msg.getSequenceNumber());
+        }
+        if (msg.getUUID() != null && !msg.getUUID().isEmpty()) {
+            ackProcessor.addAck(sender, msg.getUUID());
+        }
+        return true;
+    }
+
     /**
      * Sends a {@link Message} in a static context by updating its concealed parameters
      * with the current username, then enqueuing it for sending.
@@ -367,18 +452,8 @@ public class Client {
             }
             msg.setConcealedParameters(concealed);
 
-            // Prepare the destination using the static SERVER_ADDRESS and SERVER_PORT.
-            InetAddress dest = InetAddress.getByName(SERVER_ADDRESS);
-
-            // Encode the message and convert to bytes.
-            String encoded = MessageCodec.encode(msg);
-            byte[] data = encoded.getBytes();
-
-            // Create and send the UDP packet immediately.
-            DatagramPacket packet = new DatagramPacket(data, data.length, dest, SERVER_PORT);
-            instance.clientSocket.send(packet);
-
-            System.out.println("Best effort sent immediately: " + encoded);
+            // Encode into a pooled buffer and queue the UDP packet for immediate sending.
+            instance.transport.send(msg, instance.serverSocketAddress());
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -413,7 +488,9 @@ public class Client {
             InetAddress addr = InetAddress.getByName(SERVER_ADDRESS);
             InetSocketAddress dest = new InetSocketAddress(addr, SERVER_PORT);
             self.ackProcessor.addAck(dest, uuid);
-            System.out.println("Sent ACK for UUID " + uuid + " to " + dest);
+            if (UdpTransport.DEBUG) {
+                System.out.println("Sent ACK for UUID " + uuid + " to " + dest);
+            }
         } catch (UnknownHostException e) {
             e.printStackTrace();
         }
@@ -443,7 +520,6 @@ public class Client {
      * Processes server responses not related to ACK.
      * Common types include:
      * <ul>
-     *   <li>PONG: For ping results.</li>
      *   <li>CREATE: Add a new game object to the client's {@link Game}.</li>
      *   <li>CHANGENAME: Rename an existing game object.</li>
      *   <li>LOGIN: Associate the client with a game object on the server.</li>
@@ -455,13 +531,6 @@ public class Client {
      * @param msg The response {@link Message} from the server.
      */
     private void processServerResponse(Message msg) {
-        if ("PONG".equalsIgnoreCase(msg.getMessageType())) {
-            if (pingManager != null) {
-                // game.updatePingIndicator(pingManager.getTimeDifferenceMillis());
-            }
-            return;
-        }
-
         if ("CREATE".equalsIgnoreCase(msg.getMessageType())) {
             Object[] params = msg.getParameters();
             if (params != null) {
@@ -662,6 +731,28 @@ public class Client {
         }
     }
 
+    /**
+     * Returns the server's socket address, resolving it again only if the configured
+     * host or port changed since the last call.
+     *
+     * @return the address to send server-bound packets to
+     * @throws UnknownHostException if {@link #SERVER_ADDRESS} cannot be resolved
+     */
+    private InetSocketAddress serverSocketAddress() throws UnknownHostException {
+        InetSocketAddress cached = resolvedServerAddress;
+        if (cached == null
+                || cached.getPort() != SERVER_PORT
+                || !SERVER_ADDRESS.equals(cached.getHostString())) {
+            cached = new InetSocketAddress(InetAddress.getByName(SERVER_ADDRESS), SERVER_PORT);
+            if (!SERVER_ADDRESS.equals(cached.getHostString())) {
+                // Literal IPs resolve without a host name; keep the configured string as key.
+                cached = new InetSocketAddress(InetAddress.getByAddress(SERVER_ADDRESS, cached.getAddress().getAddress()), SERVER_PORT);
+            }
+            resolvedServerAddress = cached;
+        }
+        return cached;
+    }
+
     /**
      * Sets the server address to which this client will connect.
      *
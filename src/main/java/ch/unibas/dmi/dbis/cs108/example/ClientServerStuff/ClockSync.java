@@ -0,0 +1,171 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * Estimates the server's clock and simulation tick from PING/PONG exchanges, the way NTP does.
+ *
+ * <p>
+ * A PING carries its local send time {@code t0}; the server answers with the time it received
+ * the PING, {@code t1}, and the time it sent the PONG, {@code t2}, both on its own clock; the
+ * client notes the arrival time {@code t3}. Each exchange yields
+ * </p>
+ * <ul>
+ *   <li>a round-trip delay {@code d = (t3 - t0) - (t2 - t1)}, i.e. without the server's
+ *       processing time, and</li>
+ *   <li>a clock offset {@code o = ((t1 - t0) + (t2 - t3)) / 2}, exact if both directions
+ *       take equally long and off by at most {@code d / 2} otherwise.</li>
+ * </ul>
+ * <ul>
+ *   <li>Like NTP's clock filter, only the sample with the smallest delay among the last
+ *       {@link #FILTER_SIZE} is trusted, as it suffered the least queueing; its offset is
+ *       smoothed with {@code O = 7/8 O + 1/8 o}.</li>
+ *   <li>The round-trip time is smoothed with {@code RTT = 7/8 RTT + 1/8 d} and the jitter,
+ *       as in RFC 3550, with {@code J = 15/16 J + 1/16 |d - d_prev|}.</li>
+ * </ul>
+ *
+ * <p>
+ * The PONG also names the game whose world snapshots the client receives and its tick at
+ * {@code t2}; from there the tick advances at the game's tick rate, so
+ * {@link #serverTick(String, long, int)} can say which tick the server is at right now.
+ * Every PONG moves this anchor, so a server loop that runs slow does not make the estimate
+ * drift for longer than one ping period. All times are in microseconds. All methods are
+ * thread-safe.
+ * </p>
+ */
+public class ClockSync {
+
+    /** Number of recent samples the clock filter picks from. */
+    public static final int FILTER_SIZE = 8;
+
+    private final long[] filterOffsets = new long[FILTER_SIZE];
+    private final long[] filterDelays = new long[FILTER_SIZE];
+    private int filterCount;
+    private int filterNext;
+
+    private boolean hasSample;
+    private double offset;
+    private double rtt;
+    private double jitter;
+    private long lastDelay;
+
+    private String anchorGameId;
+    private long anchorServerTime;
+    private long anchorTick;
+
+    /**
+     * Adds the result of one PING/PONG exchange.
+     *
+     * @param t0     local time the PING was sent
+     * @param t1     server time the PING was received
+     * @param t2     server time the PONG was sent
+     * @param t3     local time the PONG was received
+     * @param gameId the game whose tick the PONG reports, or {@code null} if none
+     * @param tick   that game's tick at {@code t2}
+     */
+    public synchronized void onPong(long t0, long t1, long t2, long t3, String gameId, long tick) {
+        long delay = Math.max(0, (t3 - t0) - (t2 - t1));
+        long sampleOffset = ((t1 - t0) + (t2 - t3)) / 2;
+
+        filterOffsets[filterNext] = sampleOffset;
+        filterDelays[filterNext] = delay;
+        filterNext = (filterNext + 1) % FILTER_SIZE;
+        filterCount = Math.min(filterCount + 1, FILTER_SIZE);
+        int best = 0;
+        for (int i = 1; i < filterCount; i++) {
+            if (filterDelays[i] < filterDelays[best]) {
+                best = i;
+            }
+        }
+
+        if (!hasSample) {
+            hasSample = true;
+            offset = filterOffsets[best];
+            rtt = delay;
+        } else {
+            offset += (filterOffsets[best] - offset) / 8;
+            rtt += (delay - rtt) / 8;
+            jitter += (Math.abs(delay - lastDelay) - jitter) / 16;
+        }
+        lastDelay = delay;
+
+        if (gameId != null) {
+            anchorGameId = gameId;
+            anchorServerTime = t2;
+            anchorTick = tick;
+        }
+    }
+
+    /**
+     * @return {@code true} once at least one exchange completed
+     */
+    public synchronized boolean hasEstimate() {
+        return hasSample;
+    }
+
+    /**
+     * @return the estimated server clock minus the local clock
+     */
+    public synchronized long getOffset() {
+        return Math.round(offset);
+    }
+
+    /**
+     * @return the smoothed round-trip time, without the server's processing time
+     */
+    public synchronized long getRtt() {
+        return Math.round(rtt);
+    }
+
+    /**
+     * @return the jitter of the round-trip time
+     */
+    public synchronized long getJitter() {
+        return Math.round(jitter);
+    }
+
+    /**
+     * @param localTime a local time
+     * @return the server time at that moment
+     */
+    public synchronized long serverTime(long localTime) {
+        return localTime + Math.round(offset);
+    }
+
+    /**
+     * @param gameId         a game
+     * @param localTime      a local time
+     * @param ticksPerSecond the game's tick rate
+     * @return the tick the server's game is at at that moment, or -1 if no PONG reported that game
+     */
+    public synchronized long serverTick(String gameId, long localTime, int ticksPerSecond) {
+        if (anchorGameId == null || !anchorGameId.equals(gameId)) {
+            return -1;
+        }
+        long elapsed = serverTime(localTime) - anchorServerTime;
+        return anchorTick + Math.floorDiv(elapsed * ticksPerSecond, 1_000_000L);
+    }
+
+    /**
+     * Like {@link #serverTick(String, long, int)}, but on the time line of {@link #tickTime(long, int)},
+     * in which the world snapshots of the game are interpolated.
+     *
+     * @param gameId         a game
+     * @param localTime      a local time
+     * @param ticksPerSecond the game's tick rate
+     * @return the server's game time at that moment, or -1 if no PONG reported that game
+     */
+    public synchronized long serverTickTime(String gameId, long localTime, int ticksPerSecond) {
+        if (anchorGameId == null || !anchorGameId.equals(gameId)) {
+            return -1;
+        }
+        return tickTime(anchorTick, ticksPerSecond) + serverTime(localTime) - anchorServerTime;
+    }
+
+    /**
+     * @param tick           a tick of a game
+     * @param ticksPerSecond the game's tick rate
+     * @return the game time the tick starts at, counted from tick 0
+     */
+    public static long tickTime(long tick, int ticksPerSecond) {
+        return tick * 1_000_000 / ticksPerSecond;
+    }
+}
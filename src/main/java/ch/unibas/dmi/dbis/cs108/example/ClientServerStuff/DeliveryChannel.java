@@ -0,0 +1,106 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * The logical channels a {@link Message} can travel on. Every channel has its own sequence
+ * space, so loss or delay on one of them never holds back the others.
+ *
+ * <ul>
+ *   <li>{@link #UNRELIABLE_SEQUENCED} – sent once, never retransmitted. The receiver drops
+ *       anything older than the newest message it already got on this channel. Meant for
+ *       state that is superseded every tick, such as {@code WORLDSNAP}, {@code MOVE} and
+ *       {@code INPUT}.</li>
+ *   <li>{@link #RELIABLE_UNORDERED} – retransmitted until acknowledged and handed to the
+ *       application as soon as it arrives, e.g. {@code CREATEGO} and {@code DELETEGO}.</li>
+ *   <li>{@link #RELIABLE_ORDERED} – retransmitted until acknowledged and handed to the
+ *       application strictly in send order, e.g. lobby and chat traffic.</li>
+ * </ul>
+ *
+ * <p>
+ * Reliability is provided by {@link ReliableUDPSender}, the receive side ordering and stale
+ * filtering by {@link ChannelReceiver}.
+ * </p>
+ */
+public enum DeliveryChannel {
+
+    UNRELIABLE_SEQUENCED(0, false, true),
+    RELIABLE_UNORDERED(1, true, false),
+    RELIABLE_ORDERED(2, true, true);
+
+    private static final DeliveryChannel[] BY_ID = values();
+
+    private final int id;
+    private final boolean reliable;
+    private final boolean sequenced;
+
+    DeliveryChannel(int id, boolean reliable, boolean sequenced) {
+        this.id = id;
+        this.reliable = reliable;
+        this.sequenced = sequenced;
+    }
+
+    /**
+     * @return the channel's identifier on the wire
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return {@code true} if messages on this channel are retransmitted until acknowledged
+     */
+    public boolean isReliable() {
+        return reliable;
+    }
+
+    /**
+     * @return {@code true} if messages on this channel carry a channel sequence number
+     */
+    public boolean isSequenced() {
+        return sequenced;
+    }
+
+    /**
+     * Looks up a channel by its wire identifier.
+     *
+     * @param id the identifier
+     * @return the channel
+     * @throws IllegalArgumentException if no channel has that identifier
+     */
+    public static DeliveryChannel fromId(int id) {
+        if (id < 0 || id >= BY_ID.length) {
+            throw new IllegalArgumentException("Unknown delivery channel: " + id);
+        }
+        return BY_ID[id];
+    }
+
+    /**
+     * Picks the default channel for a message that was not assigned one explicitly.
+     * Best-effort {@code GAME} traffic and per-tick state are unreliable-sequenced, object
+     * creation and deletion are reliable-unordered, everything else is reliable-ordered.
+     *
+     * @param message the message
+     * @return the channel to send it on
+     */
+    public static DeliveryChannel forMessage(Message message) {
+        String type = message.getMessageType();
+        if (type != null) {
+            switch (type) {
+                case "SNAPSHOT":
+                case WorldSnapshot.TYPE:
+                case "MOVE":
+                case InputCommand.TYPE:
+                case "KEY_PRESS":
+                case "KEY_RELEASE":
+                case DisconnectNotice.TYPE:
+                    return UNRELIABLE_SEQUENCED;
+                case "CREATEGO":
+                case "DELETEGO":
+                case WorldImage.TYPE:
+                    return RELIABLE_UNORDERED;
+                default:
+                    break;
+            }
+        }
+        return "GAME".equalsIgnoreCase(message.getOption()) ? UNRELIABLE_SEQUENCED : RELIABLE_ORDERED;
+    }
+}
@@ -0,0 +1,66 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * Tells a client that the server ended its session and forgot everything it kept for it.
+ *
+ * <pre>
+ *   DISCONNECT {RESPONSE}[reason, disconnectedAt]
+ * </pre>
+ *
+ * <p>
+ * The server numbers its reliable and ordered messages to a client it meets again from 1,
+ * so a client that kept its receive state would take them for retransmissions it already
+ * handled and drop them. On this notice the client forgets the server's sequence numbers,
+ * channel streams and fragments and restarts its own numbering; its next request registers
+ * it again and both sides start clean. The notice travels best-effort on
+ * {@link DeliveryChannel#UNRELIABLE_SEQUENCED} and is repeated while the client keeps talking
+ * to the old session (see {@link DisconnectedPeers}), so {@code disconnectedAt} tells the
+ * client which notices it already acted on.
+ * </p>
+ */
+public final class DisconnectNotice {
+
+    /** Message type of a disconnect notice. */
+    public static final String TYPE = "DISCONNECT";
+
+    private DisconnectNotice() {
+    }
+
+    /**
+     * Creates a notice.
+     *
+     * @param reason         why the server ended the session, shown to the user
+     * @param disconnectedAt when the server ended the session, in milliseconds since the epoch
+     * @return the message to send
+     */
+    public static Message create(String reason, long disconnectedAt) {
+        return new Message(TYPE, new Object[]{ reason, disconnectedAt }, "RESPONSE");
+    }
+
+    /**
+     * @param msg a received message
+     * @return whether it is a disconnect notice
+     */
+    public static boolean is(Message msg) {
+        return TYPE.equals(msg.getMessageType());
+    }
+
+    /**
+     * @param msg a disconnect notice
+     * @return the reason it gives, or {@code null} if it gives none
+     */
+    public static String reasonOf(Message msg) {
+        Object[] params = msg.getParameters();
+        return params == null || params.length == 0 || params[0] == null ? null : params[0].toString();
+    }
+
+    /**
+     * @param msg a disconnect notice
+     * @return when the session it ends was ended, or {@code 0} if the notice does not say
+     */
+    public static long disconnectedAtOf(Message msg) {
+        Object[] params = msg.getParameters();
+        return params != null && params.length > 1 && params[1] instanceof Number
+                ? ((Number) params[1]).longValue() : 0;
+    }
+}
@@ -0,0 +1,91 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the clients the server disconnected until they start a new session.
+ *
+ * <p>
+ * Until a client has acted on its {@link DisconnectNotice}, it still retransmits the messages
+ * of its old session. Their sequence numbers would make the first messages of the new session
+ * look like duplicates, so the server drops everything a disconnected client sends until a
+ * reliable message with the first sequence number arrives, and answers every dropped message
+ * with the notice again in case it was lost. A client that does not come back is forgotten
+ * after {@link #LINGER_PROPERTY} milliseconds.
+ * </p>
+ */
+public class DisconnectedPeers {
+
+    /** System property holding how long a disconnected client is remembered, in milliseconds. */
+    public static final String LINGER_PROPERTY = "net.disconnectLingerMillis";
+
+    /** Default linger: far longer than a client keeps retransmitting. */
+    public static final long DEFAULT_LINGER_MILLIS = 60_000;
+
+    private final long lingerMillis;
+
+    /** The notice each disconnected client was sent. */
+    private final ConcurrentHashMap<InetSocketAddress, Message> notices = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the registry with the linger of {@link #LINGER_PROPERTY}.
+     */
+    public DisconnectedPeers() {
+        this(Long.getLong(LINGER_PROPERTY, DEFAULT_LINGER_MILLIS));
+    }
+
+    /**
+     * Creates the registry.
+     *
+     * @param lingerMillis how long a disconnected client is remembered
+     */
+    public DisconnectedPeers(long lingerMillis) {
+        this.lingerMillis = lingerMillis;
+    }
+
+    /**
+     * Records that the server ended a client's session.
+     *
+     * @param peer   the client's address
+     * @param reason why the session ended
+     * @return the notice to send to the client
+     */
+    public Message disconnect(InetSocketAddress peer, String reason) {
+        long now = System.currentTimeMillis();
+        notices.values().removeIf(notice -> now - DisconnectNotice.disconnectedAtOf(notice) > lingerMillis);
+        Message notice = DisconnectNotice.create(reason, now);
+        notices.put(peer, notice);
+        return notice;
+    }
+
+    /**
+     * Screens a message from a client. A message of a client that is not disconnected, or
+     * the first reliable message of its new session, passes; in the latter case the client
+     * is forgotten here, and the caller should drop whatever its old session left behind.
+     *
+     * @param peer the sender
+     * @param msg  the received message
+     * @return {@code null} if the message passes, otherwise a copy of the notice to send again
+     */
+    public Message screen(InetSocketAddress peer, Message msg) {
+        Message notice = notices.get(peer);
+        if (notice == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - DisconnectNotice.disconnectedAtOf(notice) > lingerMillis
+                || (msg.getChannel().isReliable() && msg.getSequenceNumber() <= 1)) {
+            notices.remove(peer, notice);
+            return null;
+        }
+        return notice.clone();
+    }
+
+    /**
+     * @param peer a client's address
+     * @return whether the client is disconnected and has not started a new session yet
+     */
+    public boolean isDisconnected(InetSocketAddress peer) {
+        return notices.containsKey(peer);
+    }
+}
@@ -0,0 +1,203 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Reassembles the fragments written by {@link MessageFragmenter} into messages.
+ *
+ * <p>
+ * Incomplete messages are kept per peer. Unreliable ones are dropped once their first fragment
+ * is older than {@link #TIMEOUT_PROPERTY}; reliable ones are kept until the sender's
+ * retransmissions complete them, since their fragments were already acknowledged. The bytes a
+ * peer may tie up in incomplete messages are capped at {@link #MAX_BYTES_PROPERTY}: a reliable
+ * fragment that does not fit is neither stored nor acknowledged, so the sender retries it later,
+ * and an unreliable one is dropped.
+ * </p>
+ */
+public class FragmentAssembler {
+
+    /** System property holding how long an unreliable message may take to reassemble, in milliseconds. */
+    public static final String TIMEOUT_PROPERTY = "fragment.timeoutMillis";
+
+    /** System property holding the maximum number of bytes buffered per peer. */
+    public static final String MAX_BYTES_PROPERTY = "fragment.maxBytesPerPeer";
+
+    /** Default reassembly timeout for unreliable messages. */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 2_000;
+
+    /** Default per-peer memory cap, enough for a few messages of the maximum frame size. */
+    public static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+    /**
+     * One message being reassembled.
+     */
+    private static final class Partial {
+        final byte[][] pieces;
+        final boolean reliable;
+        final long firstArrivalMillis;
+        int received;
+        int length;
+
+        Partial(int count, boolean reliable, long now) {
+            this.pieces = new byte[count][];
+            this.reliable = reliable;
+            this.firstArrivalMillis = now;
+        }
+    }
+
+    /**
+     * The incomplete messages of one peer; guarded by its own monitor.
+     */
+    private static final class PeerFragments {
+        final HashMap<Integer, Partial> partials = new HashMap<>();
+        int bufferedBytes;
+    }
+
+    private final long timeoutMillis;
+    private final int maxBytesPerPeer;
+    private final ConcurrentHashMap<InetSocketAddress, PeerFragments> peers = new ConcurrentHashMap<>();
+
+    /** Pre-bound peer factory, avoids allocating a lambda per fragment. */
+    private final Function<InetSocketAddress, PeerFragments> newPeer = address -> new PeerFragments();
+
+    /**
+     * Creates an assembler with the limits from {@link #TIMEOUT_PROPERTY} and {@link #MAX_BYTES_PROPERTY}.
+     */
+    public FragmentAssembler() {
+        this(Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_MILLIS), Integer.getInteger(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Creates an assembler.
+     *
+     * @param timeoutMillis   how long an unreliable message may take to reassemble
+     * @param maxBytesPerPeer the maximum number of bytes buffered per peer
+     */
+    public FragmentAssembler(long timeoutMillis, int maxBytesPerPeer) {
+        this.timeoutMillis = timeoutMillis;
+        this.maxBytesPerPeer = maxBytesPerPeer;
+    }
+
+    /**
+     * Consumes one fragment from the datagram and returns the message it completes.
+     *
+     * @param peer       the sender
+     * @param in         the datagram, positioned at a fragment (see {@link MessageFragmenter#isFragment(ByteBuffer)})
+     * @param ackTracker records reliable fragments and filters out retransmitted ones;
+     *                   {@code null} if the peer does not use selective ACKs
+     * @return the reassembled message, or {@code null} if it is not complete yet or the
+     *         fragment was dropped
+     * @throws IllegalArgumentException if the fragment is malformed
+     */
+    public Message accept(InetSocketAddress peer, ByteBuffer in, AckTracker ackTracker) {
+        int groupId;
+        int index;
+        int count;
+        int length;
+        long seq;
+        try {
+            if (in.get() != MessageFragmenter.MAGIC) {
+                throw new IllegalArgumentException("Not a fragment");
+            }
+            seq = MessageReader.getVarLong(in);
+            groupId = in.getInt();
+            index = in.getShort() & 0xFFFF;
+            count = in.getShort() & 0xFFFF;
+            length = in.getShort() & 0xFFFF;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated fragment", e);
+        }
+        if (count == 0 || count > MessageFragmenter.MAX_FRAGMENTS || index >= count
+                || length > MessageFragmenter.PAYLOAD_SIZE || length > in.remaining()) {
+            throw new IllegalArgumentException("Invalid fragment " + index + "/" + count + " of " + length + " bytes");
+        }
+        int payloadStart = in.position();
+        in.position(payloadStart + length);
+
+        PeerFragments state = peers.computeIfAbsent(peer, newPeer);
+        byte[] complete;
+        synchronized (state) {
+            long now = System.currentTimeMillis();
+            evictExpired(state, now);
+            boolean reliable = seq > 0;
+            Partial partial = state.partials.get(groupId);
+            if (partial != null && (partial.pieces.length != count || partial.reliable != reliable)) {
+                throw new IllegalArgumentException("Fragment does not match its group " + groupId);
+            }
+            if (state.bufferedBytes + length > maxBytesPerPeer) {
+                System.err.println("Reassembly buffer for " + peer + " is full, dropping fragment " + index + "/" + count);
+                return null;
+            }
+            if (reliable && ackTracker != null && !ackTracker.onReceived(peer, seq)) {
+                // A retransmission of a fragment we already have.
+                return null;
+            }
+            if (partial == null) {
+                partial = new Partial(count, reliable, now);
+                state.partials.put(groupId, partial);
+            }
+            if (partial.pieces[index] != null) {
+                return null;
+            }
+            byte[] piece = new byte[length];
+            in.get(payloadStart, piece);
+            partial.pieces[index] = piece;
+            partial.received++;
+            partial.length += length;
+            state.bufferedBytes += length;
+            if (partial.received < count) {
+                return null;
+            }
+            state.partials.remove(groupId);
+            state.bufferedBytes -= partial.length;
+            complete = new byte[partial.length];
+            int offset = 0;
+            for (byte[] p : partial.pieces) {
+                System.arraycopy(p, 0, complete, offset, p.length);
+                offset += p.length;
+            }
+        }
+        return MessageReader.read(ByteBuffer.wrap(complete));
+    }
+
+    /**
+     * @param peer the sender
+     * @return the number of bytes buffered in incomplete messages from {@code peer}
+     */
+    public int getBufferedBytes(InetSocketAddress peer) {
+        PeerFragments state = peers.get(peer);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            evictExpired(state, System.currentTimeMillis());
+            return state.bufferedBytes;
+        }
+    }
+
+    /**
+     * Forgets the incomplete messages of a peer, e.g. after it disconnected.
+     *
+     * @param peer the address to forget
+     */
+    public void remove(InetSocketAddress peer) {
+        peers.remove(peer);
+    }
+
+    private void evictExpired(PeerFragments state, long now) {
+        Iterator<Partial> it = state.partials.values().iterator();
+        while (it.hasNext()) {
+            Partial partial = it.next();
+            if (!partial.reliable && now - partial.firstArrivalMillis >= timeoutMillis) {
+                state.bufferedBytes -= partial.length;
+                it.remove();
+            }
+        }
+    }
+}
@@ -8,10 +8,18 @@ import javafx.scene.canvas.GraphicsContext;
 import ch.unibas.dmi.dbis.cs108.example.NotConcurrentStuff.MessageHogger;
 import lombok.Getter;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
  * The {@code Game} class manages a collection of {@link GameObject}s within a given
@@ -21,6 +29,14 @@ import java.util.concurrent.Future;
 @Getter
 public class Game {
 
+    /** System property holding the number of world snapshots the server sends per second. */
+    public static final String SNAPSHOT_RATE_PROPERTY = "snapshot.rate";
+
+    /** Default snapshot rate; clients interpolate between snapshots, so a third of the tick rate suffices. */
+    public static final int DEFAULT_SNAPSHOT_RATE = 20;
+
+    private static final Function<String, InterpolationBuffer> NEW_BUFFER = id -> new InterpolationBuffer();
+
     private final String gameId;
     private final String gameName;
     private final CopyOnWriteArrayList<GameObject> gameObjects = new CopyOnWriteArrayList<>();
@@ -39,9 +55,23 @@ public class Game {
     private volatile int targetFps = 60;         // desired frames per second
     private volatile long tickCount = 0;         // increments each loop
 
+    private final int snapshotRate = Math.max(1, Integer.getInteger(SNAPSHOT_RATE_PROPERTY, DEFAULT_SNAPSHOT_RATE));
+
+    // World snapshots from the server, applied at the start of the next tick (clients only).
+    private final ConcurrentLinkedQueue<WorldSnapshot> pendingSnapshots = new ConcurrentLinkedQueue<>();
+    private long lastSnapshotTick = -1;
+
+    // Remote objects are shown a little in the past, between the snapshots around that time.
+    private final InterpolationClock interpolationClock = new InterpolationClock();
+    private final Map<String, InterpolationBuffer> interpolationBuffers = new HashMap<>();  // loop thread only
+
+    // The snapshots rebuilt so far; the server encodes each new one against one of them.
+    private final SnapshotHistory receivedSnapshots;
+
     public Game(String gameId, String gameName) {
         this.gameId = gameId;
         this.gameName = gameName;
+        this.receivedSnapshots = new SnapshotHistory(gameId);
 
         // Initialize the dedicated message hogger for GAME messages.
         this.gameMessageHogger = new MessageHogger() {
@@ -49,7 +79,11 @@ public class Game {
             protected void processBestEffortMessage(Message msg) {
                 // Only process if msg.getOption() == "GAME"
                 
-                    if ("GAME".equalsIgnoreCase(msg.getOption())) {
+                    if (WorldSnapshot.TYPE.equals(msg.getMessageType())) {
+                        if (Game.this.gameId.equals(WorldSnapshot.gameIdOf(msg))) {
+                            offerSnapshot(msg);
+                        }
+                    } else if ("GAME".equalsIgnoreCase(msg.getOption())) {
                         String[] concealed = msg.getConcealedParameters();
                         if (concealed != null && concealed.length >= 2) {
                             String targetGameObjectUuid = concealed[0];
@@ -98,6 +132,28 @@ public class Game {
         AsyncManager.run(() -> routeMessageToGameObject(msg));
     }
 
+    /**
+     * Applies an input of the local player right away instead of waiting for the server's
+     * snapshot, and marks the object as predicted so that authoritative snapshots are
+     * reconciled with the inputs the server has not applied yet (see {@link InputHistory}).
+     *
+     * @param msg an {@link InputCommand} whose first concealed parameter is the controlled object
+     */
+    public void predictInput(Message msg) {
+        String[] concealed = msg.getConcealedParameters();
+        if (concealed == null || concealed.length == 0 || concealed[0] == null) {
+            return;
+        }
+        for (GameObject go : gameObjects) {
+            if (go.getId().equals(concealed[0])) {
+                go.setPredicted(true);
+                go.setInterpolated(false);
+                go.addIncomingMessage(msg);
+                return;
+            }
+        }
+    }
+
     /**
      * Routes the message to the correct GameObject by matching the first concealed
      * parameter to the object's UUID.
@@ -116,6 +172,110 @@ public class Game {
         }
     }
 
+    /**
+     * Rebuilds a received world snapshot from its baseline, acknowledges it, feeds its arrival
+     * time to the {@link InterpolationClock} and queues it for the next tick.
+     */
+    private void offerSnapshot(Message msg) {
+        WorldSnapshot snapshot;
+        try {
+            snapshot = WorldSnapshot.fromMessage(msg, receivedSnapshots);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Dropping world snapshot: " + e.getMessage());
+            return;
+        }
+        if (snapshot == null) {
+            // Its baseline is gone; without an ACK for it the server soon sends everything again.
+            return;
+        }
+        receivedSnapshots.put(snapshot);
+        Client.sendMessageBestEffort(new Message(WorldSnapshot.ACK_TYPE, new Object[]{ gameId, snapshot.getTick() }, "GAME"));
+
+        interpolationClock.onSnapshot(serverTimeOf(snapshot.getTick()), System.nanoTime() / 1000);
+        pendingSnapshots.add(snapshot);
+    }
+
+    /**
+     * @return the server time of a tick in microseconds, assuming the server runs at our {@code targetFps};
+     *         {@link ClockSync#serverTickTime(String, long, int)} estimates the server's current time on the same line
+     */
+    private long serverTimeOf(long tick) {
+        return ClockSync.tickTime(tick, targetFps);
+    }
+
+    /**
+     * @return the client's estimate of the server clock, or {@code null} on the server
+     */
+    private static ClockSync clockSync() {
+        Client client = Client.getInstance();
+        return client == null ? null : client.getClockSync();
+    }
+
+    /**
+     * Moves the pending world snapshots into the interpolation buffers of their objects and
+     * reconciles the objects this client predicts with the newest one. Runs on the loop thread.
+     */
+    private void applyPendingSnapshots() {
+        WorldSnapshot newest = null;
+        WorldSnapshot snapshot;
+        while ((snapshot = pendingSnapshots.poll()) != null) {
+            if (snapshot.getTick() <= lastSnapshotTick) {
+                // Overtaken by a newer one.
+                continue;
+            }
+            lastSnapshotTick = snapshot.getTick();
+            newest = snapshot;
+            long serverTime = serverTimeOf(snapshot.getTick());
+            for (int i = 0; i < snapshot.size(); i++) {
+                interpolationBuffers.computeIfAbsent(snapshot.getId(i), NEW_BUFFER).add(serverTime, snapshot.getState(i));
+            }
+        }
+        if (newest == null) {
+            return;
+        }
+        for (GameObject go : gameObjects) {
+            if (go.isPredicted()) {
+                int i = newest.indexOf(go.getId());
+                if (i >= 0) {
+                    go.applySnapshotState(newest.getState(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands every remote object its state at the current render time. Runs on the loop thread.
+     */
+    private void applyInterpolatedStates() {
+        if (interpolationBuffers.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime() / 1000;
+        ClockSync clockSync = clockSync();
+        long renderTime = clockSync == null ? interpolationClock.renderTime(now)
+                : interpolationClock.renderTime(now, clockSync.serverTickTime(gameId, now, targetFps), clockSync.getRtt());
+        long maxExtrapolation = interpolationClock.getMaxExtrapolation();
+        for (GameObject go : gameObjects) {
+            InterpolationBuffer buffer = interpolationBuffers.get(go.getId());
+            if (buffer == null || go.isPredicted()) {
+                continue;
+            }
+            float[] state = buffer.sample(renderTime, maxExtrapolation);
+            if (state != null) {
+                go.setInterpolated(true);
+                go.applySnapshotState(state);
+            }
+        }
+        if (interpolationBuffers.size() > gameObjects.size()) {
+            // Forget the buffers of deleted objects.
+            Set<String> ids = new HashSet<>(gameObjects.size() * 2);
+            for (GameObject go : gameObjects) {
+                ids.add(go.getId());
+            }
+            interpolationBuffers.keySet().retainAll(ids);
+        }
+    }
+
     /**
      * Creates a new GameObject of the specified type and parameters,
      * assigns it the given UUID, and adds it to this game.
@@ -138,16 +298,54 @@ public class Game {
             return newObject;
         });
     }
+
+    /**
+     * Creates the game objects of several {@code CREATEGO} messages at once, e.g. from a
+     * {@link WorldImage}, and adds them in a single step instead of copying the object list
+     * once per object. Objects whose UUID already exists are skipped.
+     *
+     * @param createMessages {@code CREATEGO} messages: object UUID, game id, type, constructor params
+     * @return the number of objects added
+     */
+    public Future<Integer> addGameObjectsAsync(List<Message> createMessages) {
+        return AsyncManager.run(() -> {
+            Set<String> known = new HashSet<>();
+            for (GameObject go : gameObjects) {
+                known.add(go.getId());
+            }
+            List<GameObject> created = new ArrayList<>(createMessages.size());
+            for (Message msg : createMessages) {
+                Object[] params = msg.getParameters();
+                String uuid = params[0].toString();
+                if (!known.add(uuid)) {
+                    continue;
+                }
+                try {
+                    GameObject newObject = GameObjectFactory.create(params[2].toString(),
+                            Arrays.copyOfRange(params, 3, params.length));
+                    newObject.setId(uuid);
+                    newObject.setParentGame(this);
+                    created.add(newObject);
+                } catch (RuntimeException e) {
+                    System.err.println("Skipping game object " + uuid + ": " + e.getMessage());
+                }
+            }
+            gameObjects.addAll(created);
+            return created.size();
+        });
+    }
     
 
     /**
      * The main loop that processes all objects at a fixed framerate (targetFps):
      * 1) Drains inbound messages for each object
      * 2) Processes commands for each object
-     * 3) Performs local updates with deltaTime
+     * 3) Performs local updates with deltaTime, except for remote objects shown from snapshots
      * 4) Checks and resolves collisions among collidable objects
      * 5) Increments tickCount
-     * 6) Sleeps the thread to maintain the target framerate
+     * 6) If authoritative, sends each member one snapshot of the objects it can see,
+     *    {@link #SNAPSHOT_RATE_PROPERTY} times per second
+     * 7) Sleeps the thread to maintain the target framerate
      */
     public void startPlayersCommandProcessingLoop() {
         final long[] lastFrameTime = { System.nanoTime() };
@@ -157,11 +355,19 @@ public class Game {
             float deltaTime = (startFrameTime - lastFrameTime[0]) / 1_000_000_000f;
             lastFrameTime[0] = startFrameTime;
 
+            // 0) Clients adopt the authoritative state first
+            if (!authoritative) {
+                applyPendingSnapshots();
+                applyInterpolatedStates();
+            }
+
             // 1) & 2) Process inbound messages & commands, then update each GameObject
             for (GameObject go : gameObjects) {
                 go.processIncomingMessages();
                 //go.processCommands();
-                go.myUpdateLocal(deltaTime);
+                if (!go.isInterpolated()) {
+                    go.myUpdateLocal(deltaTime);
+                }
             }
 
             // 3) Check and resolve collisions among collidable objects
@@ -187,7 +393,12 @@ public class Game {
             // 4) Increment the global tickCount
             tickCount++;
 
-            // 5) Sleep to maintain the target framerate
+            // 5) Publish the result of this tick, one datagram per member instead of one per object
+            if (authoritative && tickCount % Math.max(1, Math.round(targetFps / (float) snapshotRate)) == 0) {
+                Server.getInstance().sendWorldSnapshot(this, tickCount);
+            }
+
+            // 6) Sleep to maintain the target framerate
             long targetFrameTimeNanos = 1_000_000_000L / targetFps;
             long frameProcessingTime = System.nanoTime() - startFrameTime;
             long sleepTimeNanos = targetFrameTimeNanos - frameProcessingTime;
@@ -0,0 +1,201 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.util.Arrays;
+
+/**
+ * The buttons a client holds during one input tick, sent once per tick instead of one
+ * {@code KEY_PRESS} per held key.
+ *
+ * <pre>
+ *   INPUT {GAME}[tick, buttons]
+ * </pre>
+ *
+ * <p>
+ * {@code tick} is the client's input tick, an {@link InputHistory#nextSequence() input
+ * sequence number}; {@code buttons} holds one bitmask per tick, newest first: the one of
+ * {@code tick}, then the ones of the ticks before it. Repeating the last
+ * {@link #REDUNDANCY_PROPERTY} ticks in every packet masks the loss of single packets without
+ * retransmissions, so the command travels on {@link DeliveryChannel#UNRELIABLE_SEQUENCED}.
+ * The receiver sorts the inputs into an {@link InputQueue}.
+ * </p>
+ */
+public final class InputCommand {
+
+    /** Message type of an input command. */
+    public static final String TYPE = "INPUT";
+
+    /** System property holding the number of ticks per command, the newest included. */
+    public static final String REDUNDANCY_PROPERTY = "input.redundancy";
+
+    /** Default redundancy: a command survives the loss of the three before it. */
+    public static final int DEFAULT_REDUNDANCY = 4;
+
+    /** Move left. */
+    public static final int LEFT = 1;
+    /** Move right. */
+    public static final int RIGHT = 1 << 1;
+    /** Jump. */
+    public static final int JUMP = 1 << 2;
+    /** Grab the closest player, or release the grabbed one. */
+    public static final int GRAB = 1 << 3;
+    /** Enter or leave throwing mode. */
+    public static final int AIM = 1 << 4;
+    /** Throw the grabbed player. */
+    public static final int THROW = 1 << 5;
+
+    /** Input ticks wrap around after this many; they run from 1 to this value. */
+    private static final int TICKS = InputHistory.SEQUENCE_MODULUS - 1;
+
+    private final int tick;
+    private final byte[] buttons;
+
+    /**
+     * Creates a command.
+     *
+     * @param tick    the newest input tick
+     * @param buttons the button bitmasks of {@code tick} and the ticks before it, newest first
+     */
+    public InputCommand(int tick, byte[] buttons) {
+        if (tick <= 0 || tick > TICKS || buttons.length == 0) {
+            throw new IllegalArgumentException("Invalid " + TYPE + " command: tick " + tick + ", " + buttons.length + " inputs");
+        }
+        this.tick = tick;
+        this.buttons = buttons;
+    }
+
+    /**
+     * @param keyName the name of a key, e.g. {@code KeyCode.LEFT.toString()}
+     * @return the button the key is bound to, or 0 if it is not bound
+     */
+    public static int buttonOf(String keyName) {
+        switch (keyName) {
+            case "LEFT":
+                return LEFT;
+            case "RIGHT":
+                return RIGHT;
+            case "UP":
+                return JUMP;
+            case "E":
+                return GRAB;
+            case "F":
+                return AIM;
+            case "R":
+                return THROW;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @param tick an input tick
+     * @return the input tick before it
+     */
+    public static int previous(int tick) {
+        return Math.floorMod(tick - 2, TICKS) + 1;
+    }
+
+    /**
+     * @param tick an input tick
+     * @param than another input tick, or 0 for none
+     * @return {@code true} if {@code tick} comes after {@code than}, allowing for wrap-around
+     */
+    public static boolean isNewer(int tick, int than) {
+        if (than == 0) {
+            return true;
+        }
+        int distance = Math.floorMod(tick - than, TICKS);
+        return distance > 0 && distance < TICKS / 2;
+    }
+
+    /** @return the newest input tick */
+    public int getTick() {
+        return tick;
+    }
+
+    /** @return the number of ticks in the command */
+    public int size() {
+        return buttons.length;
+    }
+
+    /**
+     * @param i 0 for the newest tick, 1 for the one before, ...
+     * @return the buttons held during that tick
+     */
+    public int getButtons(int i) {
+        return buttons[i] & 0xFF;
+    }
+
+    /**
+     * @return {@code true} if no button was held in any of the ticks
+     */
+    public boolean isIdle() {
+        for (byte b : buttons) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the command as a message; the caller adds the concealed parameters
+     */
+    public Message toMessage() {
+        return new Message(TYPE, new Object[]{ tick, buttons }, "GAME");
+    }
+
+    /**
+     * @param message a {@value #TYPE} message
+     * @return the command
+     * @throws IllegalArgumentException if the message is malformed
+     */
+    public static InputCommand fromMessage(Message message) {
+        Object[] params = message.getParameters();
+        if (params == null || params.length < 2 || !(params[0] instanceof Number) || !(params[1] instanceof byte[])) {
+            throw new IllegalArgumentException("Malformed " + TYPE + " message");
+        }
+        return new InputCommand(((Number) params[0]).intValue(), (byte[]) params[1]);
+    }
+
+    /**
+     * Numbers the input ticks of a client and remembers the last few, so every command can
+     * repeat them. Thread-safe.
+     */
+    public static final class Recorder {
+
+        private final byte[] recent;
+        private int count;
+
+        /**
+         * Creates a recorder with the redundancy from {@link #REDUNDANCY_PROPERTY}.
+         */
+        public Recorder() {
+            this(Integer.getInteger(REDUNDANCY_PROPERTY, DEFAULT_REDUNDANCY));
+        }
+
+        /**
+         * Creates a recorder.
+         *
+         * @param redundancy the number of ticks per command, the newest included
+         */
+        public Recorder(int redundancy) {
+            if (redundancy <= 0 || redundancy > 0xFF) {
+                throw new IllegalArgumentException("Input redundancy must be between 1 and 255: " + redundancy);
+            }
+            this.recent = new byte[redundancy];
+        }
+
+        /**
+         * Starts the next input tick.
+         *
+         * @param buttons the buttons held during it
+         * @return the command holding it and the ticks before it
+         */
+        public synchronized InputCommand next(int buttons) {
+            System.arraycopy(recent, 0, recent, 1, recent.length - 1);
+            recent[0] = (byte) buttons;
+            count = Math.min(count + 1, recent.length);
+            return new InputCommand(InputHistory.nextSequence(), Arrays.copyOf(recent, count));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The recent simulation steps of an object this client predicts, with the buttons applied in
+ * each (see {@link InputCommand}), so they can be replayed on top of an authoritative state
+ * from the server.
+ *
+ * <p>
+ * Every input tick of the client has a 16-bit input sequence number (see
+ * {@link #nextSequence()}). The server reports the newest one it has applied to the object and
+ * how many steps it simulated since; the client then resets the object to the server's state
+ * and replays the steps it recorded after that point (client-side prediction with server
+ * reconciliation). The history is a ring of {@link #CAPACITY_PROPERTY} steps; it has to cover
+ * the round trip time. Thread-safe.
+ * </p>
+ */
+public class InputHistory {
+
+    /** System property holding the number of steps kept. */
+    public static final String CAPACITY_PROPERTY = "prediction.steps";
+
+    /** Default capacity, two seconds at 60 steps per second. */
+    public static final int DEFAULT_CAPACITY = 120;
+
+    /** Input sequence numbers wrap around at this value; 0 means "no input". */
+    public static final int SEQUENCE_MODULUS = 1 << 16;
+
+    /** The input sequence of this client, shared by all objects it controls. */
+    private static final AtomicInteger lastSequence = new AtomicInteger();
+
+    private final long[] steps;
+    private final int[] sequences;
+    private final int[] buttons;
+    private int count;
+    private int next;
+
+    /**
+     * Creates a history with the capacity from {@link #CAPACITY_PROPERTY}.
+     */
+    public InputHistory() {
+        this(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Creates a history.
+     *
+     * @param capacity the number of steps kept
+     */
+    public InputHistory(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Input history capacity must be positive: " + capacity);
+        }
+        this.steps = new long[capacity];
+        this.sequences = new int[capacity];
+        this.buttons = new int[capacity];
+    }
+
+    /**
+     * @return a new input sequence number, never 0
+     */
+    public static int nextSequence() {
+        return lastSequence.updateAndGet(seq -> seq + 1 >= SEQUENCE_MODULUS ? 1 : seq + 1);
+    }
+
+    /**
+     * Records one simulation step, overwriting the oldest one if the ring is full.
+     *
+     * @param step     the step counter of the object, increasing by one per step
+     * @param sequence the input sequence applied in the step, 0 if none
+     * @param applied  the buttons applied in the step
+     */
+    public synchronized void record(long step, int sequence, int applied) {
+        steps[next] = step;
+        sequences[next] = sequence;
+        buttons[next] = applied;
+        next = (next + 1) % steps.length;
+        count = Math.min(count + 1, steps.length);
+    }
+
+    /**
+     * @param sequence an input sequence number
+     * @return the step the input was applied in, or -1 if it is not in the history
+     */
+    public synchronized long stepOf(int sequence) {
+        if (sequence == 0) {
+            return -1;
+        }
+        for (int i = 1; i <= count; i++) {
+            int slot = Math.floorMod(next - i, steps.length);
+            if (sequences[slot] == sequence) {
+                return steps[slot];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param step a step
+     * @return the buttons of every recorded step after {@code step}, oldest first
+     */
+    public synchronized int[] buttonsAfter(long step) {
+        int[] result = new int[count];
+        int size = 0;
+        for (int i = count; i >= 1; i--) {
+            int slot = Math.floorMod(next - i, steps.length);
+            if (steps[slot] > step) {
+                result[size++] = buttons[slot];
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
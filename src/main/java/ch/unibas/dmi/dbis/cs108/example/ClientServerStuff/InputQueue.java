@@ -0,0 +1,114 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * The inputs of one player that arrived but were not applied yet, in input tick order.
+ *
+ * <p>
+ * {@link InputCommand}s repeat earlier ticks, so the same tick usually arrives several times
+ * and a tick lost in one packet is filled in from the next. The queue keeps every tick once,
+ * drops ticks that are not newer than the last one applied, and hands out one tick per
+ * simulation step. If the queue overflows, e.g. after a stall, the oldest ticks are dropped
+ * so the player does not lag behind. Not thread-safe; the game loop is the only one to use it.
+ * </p>
+ */
+public class InputQueue {
+
+    /** Returned by {@link #poll()} if there is no input. */
+    public static final int NONE = -1;
+
+    /** Ticks kept, 0.8 seconds at 20 input ticks per second. */
+    public static final int CAPACITY = 16;
+
+    private final int[] ticks = new int[CAPACITY];
+    private final int[] buttons = new int[CAPACITY];
+    private int count;
+
+    private int lastTick;
+    private int lastButtons;
+    private int pressed;
+
+    /**
+     * Adds the ticks of a command that are newer than the last one applied and not queued yet.
+     *
+     * @param command the command
+     */
+    public void offer(InputCommand command) {
+        int tick = command.getTick();
+        for (int i = 0; i < command.size(); i++, tick = InputCommand.previous(tick)) {
+            offer(tick, command.getButtons(i));
+        }
+    }
+
+    private void offer(int tick, int held) {
+        if (!InputCommand.isNewer(tick, lastTick)) {
+            return;
+        }
+        // Find the insertion point, scanning from the newest tick as most ticks arrive in order.
+        int at = count;
+        while (at > 0 && InputCommand.isNewer(ticks[at - 1], tick)) {
+            at--;
+        }
+        if (at > 0 && ticks[at - 1] == tick) {
+            return;
+        }
+        if (count == CAPACITY) {
+            if (at == 0) {
+                // Older than everything in a full queue.
+                return;
+            }
+            System.arraycopy(ticks, 1, ticks, 0, count - 1);
+            System.arraycopy(buttons, 1, buttons, 0, count - 1);
+            count--;
+            at--;
+        }
+        System.arraycopy(ticks, at, ticks, at + 1, count - at);
+        System.arraycopy(buttons, at, buttons, at + 1, count - at);
+        ticks[at] = tick;
+        buttons[at] = held;
+        count++;
+    }
+
+    /**
+     * Takes the oldest queued tick.
+     *
+     * @return the buttons held during it, or {@link #NONE} if the queue is empty
+     */
+    public int poll() {
+        if (count == 0) {
+            return NONE;
+        }
+        int tick = ticks[0];
+        int held = buttons[0];
+        System.arraycopy(ticks, 1, ticks, 0, count - 1);
+        System.arraycopy(buttons, 1, buttons, 0, count - 1);
+        count--;
+
+        // A gap means the client was idle in between and sent nothing, or too much got lost.
+        int before = lastTick != 0 && InputCommand.previous(tick) == lastTick ? lastButtons : 0;
+        pressed = held & ~before;
+        lastTick = tick;
+        lastButtons = held;
+        return held;
+    }
+
+    /**
+     * @return the input tick last returned by {@link #poll()}, 0 if none
+     */
+    public int getLastTick() {
+        return lastTick;
+    }
+
+    /**
+     * @return the buttons of the tick last returned by {@link #poll()} that were not held in the tick before
+     */
+    public int getPressed() {
+        return pressed;
+    }
+
+    /**
+     * @return the number of queued ticks
+     */
+    public int size() {
+        return count;
+    }
+}
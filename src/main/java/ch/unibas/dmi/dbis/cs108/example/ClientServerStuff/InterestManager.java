@@ -0,0 +1,170 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import ch.unibas.dmi.dbis.cs108.example.gameObjects.GameObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which members of a game session receive an update about a game object.
+ *
+ * <p>
+ * A member's view is centred on the object it controls, i.e. the object its {@code INPUT}
+ * messages are addressed to (see {@link #setFocus(String, String)}). Updates about an object
+ * only go to members whose focus lies within {@link #RADIUS_PROPERTY} of it. Members that have
+ * not controlled anything yet, or whose object is gone, see the whole session and get every
+ * update, so nobody misses state they might be looking at.
+ * </p>
+ *
+ * <p>
+ * The client draws the level on a screen-sized canvas without a camera, so the default radius
+ * covers a full-HD screen from any point on it; it only cuts traffic in levels larger than
+ * that and should be lowered if the client ever gets a scrolling view.
+ * </p>
+ */
+public class InterestManager {
+
+    /** System property holding the area-of-interest radius in world units (pixels). */
+    public static final String RADIUS_PROPERTY = "interest.radius";
+
+    /** Default radius: the diagonal of a 1920x1080 screen, rounded up. */
+    public static final int DEFAULT_RADIUS = 2250;
+
+    private final float radiusSquared;
+
+    /** The object each member controls, by username. */
+    private final ConcurrentHashMap<String, String> focusByUser = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an interest manager with the radius from {@link #RADIUS_PROPERTY}.
+     */
+    public InterestManager() {
+        this(Integer.getInteger(RADIUS_PROPERTY, DEFAULT_RADIUS));
+    }
+
+    /**
+     * Creates an interest manager.
+     *
+     * @param radius the distance up to which a member is interested in an object
+     */
+    public InterestManager(float radius) {
+        if (radius <= 0) {
+            throw new IllegalArgumentException("Interest radius must be positive: " + radius);
+        }
+        this.radiusSquared = radius * radius;
+    }
+
+    /**
+     * Records the object a member controls; its view is centred there from now on.
+     *
+     * @param username the member
+     * @param objectId the id of the controlled object, or {@code null} to forget it
+     */
+    public void setFocus(String username, String objectId) {
+        if (objectId == null) {
+            focusByUser.remove(username);
+        } else if (!objectId.equals(focusByUser.get(username))) {
+            focusByUser.put(username, objectId);
+        }
+    }
+
+    /**
+     * Forgets a member, e.g. after it disconnected.
+     *
+     * @param username the member
+     */
+    public void remove(String username) {
+        focusByUser.remove(username);
+    }
+
+    /**
+     * Selects the members of a session that an update about {@code source} is relevant for.
+     *
+     * @param game   the session {@code source} belongs to
+     * @param source the object the update is about
+     * @return the usernames of the interested members
+     */
+    public List<String> interested(Game game, GameObject source) {
+        Set<String> members = game.getUsers();
+        List<String> result = new ArrayList<>(members.size());
+
+        // Collect the focus of every member first, so the objects are scanned only once.
+        Map<String, List<String>> membersByFocus = new HashMap<>();
+        for (String member : members) {
+            String focus = focusByUser.get(member);
+            if (focus == null) {
+                result.add(member);
+            } else {
+                membersByFocus.computeIfAbsent(focus, id -> new ArrayList<>(1)).add(member);
+            }
+        }
+        if (membersByFocus.isEmpty()) {
+            return result;
+        }
+
+        float x = source.getX() + source.getWidth() / 2;
+        float y = source.getY() + source.getHeight() / 2;
+        for (GameObject go : game.getGameObjects()) {
+            List<String> viewers = membersByFocus.remove(go.getId());
+            if (viewers == null) {
+                continue;
+            }
+            float dx = go.getX() + go.getWidth() / 2 - x;
+            float dy = go.getY() + go.getHeight() / 2 - y;
+            if (dx * dx + dy * dy <= radiusSquared) {
+                result.addAll(viewers);
+            }
+        }
+        // Focused objects that no longer exist: those members see everything again.
+        for (List<String> viewers : membersByFocus.values()) {
+            result.addAll(viewers);
+        }
+        return result;
+    }
+
+    /**
+     * Selects the objects a member of a session can see.
+     *
+     * @param username   the member
+     * @param game       the session
+     * @param candidates the objects to choose from, all belonging to {@code game}
+     * @return {@code candidates} itself if the member sees all of them, otherwise a new list
+     *         with the visible ones
+     */
+    public List<GameObject> visible(String username, Game game, List<GameObject> candidates) {
+        String focusId = focusByUser.get(username);
+        if (focusId == null) {
+            return candidates;
+        }
+        GameObject focus = null;
+        for (GameObject go : game.getGameObjects()) {
+            if (go.getId().equals(focusId)) {
+                focus = go;
+                break;
+            }
+        }
+        if (focus == null) {
+            return candidates;
+        }
+        float x = focus.getX() + focus.getWidth() / 2;
+        float y = focus.getY() + focus.getHeight() / 2;
+        List<GameObject> result = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            GameObject go = candidates.get(i);
+            float dx = go.getX() + go.getWidth() / 2 - x;
+            float dy = go.getY() + go.getHeight() / 2 - y;
+            boolean seen = dx * dx + dy * dy <= radiusSquared;
+            if (result == null && !seen) {
+                // First invisible object: from here on the member gets a list of its own.
+                result = new ArrayList<>(candidates.subList(0, i));
+            } else if (result != null && seen) {
+                result.add(go);
+            }
+        }
+        return result == null ? candidates : result;
+    }
+}
@@ -0,0 +1,118 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * The recent authoritative states of one remote object, each stamped with the server time it
+ * was taken at. The client samples the buffer at a render time somewhat behind the server (see
+ * {@link InterpolationClock}), so there usually is a snapshot on either side of it and the object
+ * moves smoothly between them however unevenly the snapshots arrive.
+ *
+ * <p>
+ * If the newest snapshot is older than the render time, i.e. the next one is late, the object
+ * is extrapolated along the line through the two newest snapshots, for at most a given time.
+ * Every field of the state is interpolated and extrapolated linearly. Not thread-safe; the
+ * game loop is the only one to use it.
+ * </p>
+ */
+public class InterpolationBuffer {
+
+    /** Snapshots kept, over a second at 20 snapshots per second. */
+    public static final int CAPACITY = 32;
+
+    private final SnapshotState[] ring = new SnapshotState[CAPACITY];
+    private int first;
+    private int count;
+
+    /** Returned by {@link #sample(long, long)}, reused between calls. */
+    private float[] sample = new float[0];
+
+    /**
+     * Adds a snapshot, dropping the oldest one if the buffer is full.
+     *
+     * @param serverTime the server time the state was taken at
+     * @param state      the state; not copied
+     * @return {@code false} if the snapshot is not newer than the newest one, which is kept
+     */
+    public boolean add(long serverTime, float[] state) {
+        if (count > 0 && serverTime <= get(count - 1).timestamp) {
+            return false;
+        }
+        if (count == CAPACITY) {
+            first = (first + 1) % CAPACITY;
+            count--;
+        }
+        ring[(first + count) % CAPACITY] = new SnapshotState(state, serverTime);
+        count++;
+        return true;
+    }
+
+    /**
+     * @return the number of snapshots kept
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Computes the state at a server time. Snapshots before the two around it are dropped, since
+     * the render time only moves forward.
+     *
+     * @param renderTime       the server time to render at
+     * @param maxExtrapolation how far past the newest snapshot to extrapolate
+     * @return the state, valid until the next call, or {@code null} if the buffer is empty
+     */
+    public float[] sample(long renderTime, long maxExtrapolation) {
+        if (count == 0) {
+            return null;
+        }
+        SnapshotState oldest = get(0);
+        SnapshotState newest = get(count - 1);
+        if (renderTime <= oldest.timestamp) {
+            return copy(oldest.state);
+        }
+        if (renderTime >= newest.timestamp) {
+            if (count == 1) {
+                return copy(newest.state);
+            }
+            long time = Math.min(renderTime, newest.timestamp + maxExtrapolation);
+            return lerp(get(count - 2), newest, time);
+        }
+        int i = 0;
+        while (get(i + 1).timestamp <= renderTime) {
+            i++;
+        }
+        SnapshotState from = get(i);
+        first = (first + i) % CAPACITY;
+        count -= i;
+        return lerp(from, get(1), renderTime);
+    }
+
+    private SnapshotState get(int index) {
+        return ring[(first + index) % CAPACITY];
+    }
+
+    private float[] lerp(SnapshotState from, SnapshotState to, long time) {
+        if (from.state.length != to.state.length) {
+            // The layout changed in between; there is nothing to blend.
+            return copy(to.state);
+        }
+        float alpha = (float) (time - from.timestamp) / (to.timestamp - from.timestamp);
+        float[] out = output(to.state.length);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = from.state[i] + (to.state[i] - from.state[i]) * alpha;
+        }
+        return out;
+    }
+
+    private float[] copy(float[] state) {
+        float[] out = output(state.length);
+        System.arraycopy(state, 0, out, 0, state.length);
+        return out;
+    }
+
+    private float[] output(int length) {
+        if (sample.length != length) {
+            sample = new float[length];
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,143 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * Decides which server time the remote objects of a game are rendered at: the server time
+ * that corresponds to now, minus a delay that adapts to how evenly the world snapshots arrive.
+ *
+ * <ul>
+ *   <li>Every snapshot yields a transit sample {@code T = local arrival time - server time}. It
+ *       contains the clock offset and the network delay; only its variation matters here.</li>
+ *   <li>The offset is the smoothed transit, {@code O = 15/16 O + 1/16 T}; following it keeps
+ *       the render time in step with the server even if the two clocks drift.</li>
+ *   <li>The jitter is the interarrival jitter of RFC 3550,
+ *       {@code J = 15/16 J + 1/16 |T - T_prev|}.</li>
+ *   <li>The snapshot interval {@code I} is smoothed the same way from the server times of
+ *       consecutive snapshots, starting at the first one measured.</li>
+ *   <li>The delay is {@code I + 2 J}, clamped to {@link #MAX_DELAY_PROPERTY}: with one interval
+ *       there are two snapshots around the render time when they arrive on time, and the
+ *       jitter term covers the ones that are late.</li>
+ * </ul>
+ *
+ * <p>
+ * Once the client's {@link ClockSync} knows the server's game time, the render time is taken from
+ * there instead of from the transit offset, see {@link #renderTime(long, long, long)}. All times
+ * are in microseconds. All methods are thread-safe.
+ * </p>
+ */
+public class InterpolationClock {
+
+    /** System property holding the upper bound of the delay in milliseconds. */
+    public static final String MAX_DELAY_PROPERTY = "interpolation.maxDelayMillis";
+
+    /** System property holding how far past the newest snapshot objects are extrapolated, in milliseconds. */
+    public static final String MAX_EXTRAPOLATION_PROPERTY = "interpolation.maxExtrapolationMillis";
+
+    /** Default upper bound of the delay. */
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 250;
+
+    /** Default extrapolation limit, two snapshot intervals at 20 snapshots per second. */
+    public static final long DEFAULT_MAX_EXTRAPOLATION_MILLIS = 100;
+
+    private final long maxDelayMicros;
+    private final long maxExtrapolationMicros;
+
+    private boolean hasSample;
+    private long lastServerTime;
+    private long lastTransit;
+    private double offset;
+    private double jitter;
+    private double interval;
+
+    /**
+     * Creates a clock with the limits from {@link #MAX_DELAY_PROPERTY} and
+     * {@link #MAX_EXTRAPOLATION_PROPERTY}.
+     */
+    public InterpolationClock() {
+        this(Long.getLong(MAX_DELAY_PROPERTY, DEFAULT_MAX_DELAY_MILLIS),
+                Long.getLong(MAX_EXTRAPOLATION_PROPERTY, DEFAULT_MAX_EXTRAPOLATION_MILLIS));
+    }
+
+    /**
+     * Creates a clock.
+     *
+     * @param maxDelayMillis         the upper bound of the delay
+     * @param maxExtrapolationMillis how far past the newest snapshot objects are extrapolated
+     */
+    public InterpolationClock(long maxDelayMillis, long maxExtrapolationMillis) {
+        if (maxDelayMillis <= 0 || maxExtrapolationMillis < 0) {
+            throw new IllegalArgumentException("Invalid interpolation limits: " + maxDelayMillis + ", " + maxExtrapolationMillis);
+        }
+        this.maxDelayMicros = maxDelayMillis * 1000;
+        this.maxExtrapolationMicros = maxExtrapolationMillis * 1000;
+    }
+
+    /**
+     * Records the arrival of a snapshot. Snapshots older than one seen before are ignored.
+     *
+     * @param serverTime the server time the snapshot was taken at
+     * @param localTime  the local time it arrived at
+     */
+    public synchronized void onSnapshot(long serverTime, long localTime) {
+        long transit = localTime - serverTime;
+        if (!hasSample) {
+            hasSample = true;
+            offset = transit;
+        } else if (serverTime <= lastServerTime) {
+            return;
+        } else {
+            jitter += (Math.abs(transit - lastTransit) - jitter) / 16;
+            long gap = serverTime - lastServerTime;
+            interval = interval == 0 ? gap : interval + (gap - interval) / 16;
+            offset += (transit - offset) / 16;
+        }
+        lastServerTime = serverTime;
+        lastTransit = transit;
+    }
+
+    /**
+     * @return the current delay behind the server
+     */
+    public synchronized long getDelay() {
+        return Math.min(maxDelayMicros, Math.round(interval + 2 * jitter));
+    }
+
+    /**
+     * @return the jitter measured so far
+     */
+    public synchronized long getJitter() {
+        return Math.round(jitter);
+    }
+
+    /**
+     * @return how far past the newest snapshot objects are extrapolated
+     */
+    public long getMaxExtrapolation() {
+        return maxExtrapolationMicros;
+    }
+
+    /**
+     * @param localTime the local time
+     * @return the server time to render remote objects at, {@code localTime} minus offset and delay
+     */
+    public synchronized long renderTime(long localTime) {
+        return localTime - Math.round(offset) - getDelay();
+    }
+
+    /**
+     * Computes the render time from the server time estimated by a {@link ClockSync}. The newest
+     * snapshot left the server half a round trip ago, so the render time is that estimate minus
+     * {@code rtt / 2} minus the delay. Unlike the transit offset, the estimate is not skewed by
+     * snapshots that queued on their way.
+     *
+     * @param localTime  the local time
+     * @param serverTime the server time at {@code localTime}, or a negative value if there is no estimate
+     * @param rtt        the round-trip time of the estimate
+     * @return the server time to render remote objects at; {@link #renderTime(long)} without an estimate
+     */
+    public synchronized long renderTime(long localTime, long serverTime, long rtt) {
+        if (serverTime < 0) {
+            return renderTime(localTime);
+        }
+        return serverTime - rtt / 2 - getDelay();
+    }
+}
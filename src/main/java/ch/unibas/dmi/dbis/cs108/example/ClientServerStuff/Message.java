@@ -2,6 +2,7 @@ package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
 
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Represents a protocol message that includes a message type, an array of parameters,
@@ -9,6 +10,13 @@ import java.util.UUID;
  * and a unique identifier (UUID).
  *
  * <p>
+ * The sequence number is the message's identity on the wire: {@link ReliableUDPSender} assigns
+ * it per connection when the message is sent, and ACKs refer to it. The UUID is only created
+ * when {@link #getUUID()} is first called, so messages nobody asks about never pay for one and
+ * binary frames leave it out.
+ * </p>
+ *
+ * <p>
  * The sequence number is intended to be appended as the last concealed parameter when
  * encoding or decoding this message. Concealed parameters are meant to contain
  * sensitive or hidden information (e.g., user or game session data) that is not
@@ -48,10 +56,37 @@ public class Message {
     private long sequenceNumber;
 
     /**
-     * A globally unique identifier (UUID) for this message instance.
+     * The logical channel this message travels on, or {@code null} to derive it from the
+     * type and option with {@link DeliveryChannel#forMessage(Message)}.
+     */
+    private DeliveryChannel channel;
+
+    /**
+     * The position of this message in its channel's sequence space, used by the receiver
+     * to order or discard it. {@code 0} means unsequenced.
+     */
+    private long channelSequence;
+
+    /**
+     * A globally unique identifier (UUID) for this message instance, or {@code null}
+     * until one is requested or set.
      */
     private String uuid;
 
+    /**
+     * Whether {@link #uuid} was generated or set explicitly; an explicitly set
+     * {@code null} stays {@code null}.
+     */
+    private boolean uuidAssigned;
+
+    /**
+     * The binary encoding of everything after the per-connection header (type, option, UUID,
+     * parameters and concealed parameters), or {@code null} if it has not been frozen with
+     * {@link MessageWriter#freezeBody(Message)}. Copies made with {@link #clone()} share it, so
+     * a broadcast encodes its payload once. Every setter of those fields drops it.
+     */
+    private volatile byte[] encodedBody;
+
     /**
      * Constructs a new {@code Message} with all fields, including concealed parameters.
      *
@@ -70,8 +105,7 @@ public class Message {
             this.concealedParameters = concealedParameters;
         }
         this.sequenceNumber = 0; // default until set
-        // Generate a new UUID upon creation.
-        this.uuid = UUID.randomUUID().toString();
+        // The UUID is generated lazily by getUUID().
     }
 
     /**
@@ -102,6 +136,7 @@ public class Message {
      */
     public void setMessageType(String messageType) {
         this.messageType = messageType;
+        this.encodedBody = null;
     }
 
     /**
@@ -120,6 +155,7 @@ public class Message {
      */
     public void setParameters(Object[] parameters) {
         this.parameters = parameters;
+        this.encodedBody = null;
     }
 
     /**
@@ -138,6 +174,7 @@ public class Message {
      */
     public void setOption(String option) {
         this.option = option;
+        this.encodedBody = null;
     }
 
     /**
@@ -156,6 +193,7 @@ public class Message {
      */
     public void setConcealedParameters(String[] concealedParameters) {
         this.concealedParameters = concealedParameters;
+        this.encodedBody = null;
     }
 
     /**
@@ -177,11 +215,54 @@ public class Message {
     }
 
     /**
-     * Returns the UUID of this message.
+     * Retrieves the logical channel this message travels on.
+     *
+     * @return The channel set explicitly, or the default for this message's type and option.
+     */
+    public DeliveryChannel getChannel() {
+        return channel != null ? channel : DeliveryChannel.forMessage(this);
+    }
+
+    /**
+     * Puts this message on a specific logical channel, overriding the default.
+     *
+     * @param channel The channel, or {@code null} to use the default.
+     */
+    public void setChannel(DeliveryChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Retrieves the position of this message in its channel's sequence space.
      *
-     * @return The UUID as a {@link String}.
+     * @return The channel sequence number, {@code 0} if unsequenced.
      */
-    public String getUUID() {
+    public long getChannelSequence() {
+        return channelSequence;
+    }
+
+    /**
+     * Sets the position of this message in its channel's sequence space. Assigned by the
+     * sending side of the transport.
+     *
+     * @param channelSequence The channel sequence number.
+     */
+    public void setChannelSequence(long channelSequence) {
+        this.channelSequence = channelSequence;
+    }
+
+    /**
+     * Returns the UUID of this message, generating a random one on the first call
+     * unless a UUID was set explicitly.
+     *
+     * @return The UUID as a {@link String}, or {@code null} if {@code null} was set.
+     */
+    public synchronized String getUUID() {
+        if (!uuidAssigned) {
+            uuid = randomUUID();
+            uuidAssigned = true;
+            encodedBody = null;
+        }
         return uuid;
     }
 
@@ -191,8 +272,46 @@ public class Message {
      *
      * @param uuid The unique identifier to set.
      */
-    public void setUUID(String uuid) {
+    public synchronized void setUUID(String uuid) {
         this.uuid = uuid;
+        this.uuidAssigned = true;
+        this.encodedBody = null;
+    }
+
+    /**
+     * Returns the UUID without generating one, for encoders and lookups that
+     * must not create it as a side effect.
+     *
+     * @return The UUID, or {@code null} if none was requested or set yet.
+     */
+    synchronized String peekUUID() {
+        return uuid;
+    }
+
+    /**
+     * @return the frozen binary body, see {@link MessageWriter#freezeBody(Message)}, or {@code null}
+     */
+    byte[] getEncodedBody() {
+        return encodedBody;
+    }
+
+    /**
+     * @param encodedBody the binary body matching the current fields
+     */
+    void setEncodedBody(byte[] encodedBody) {
+        this.encodedBody = encodedBody;
+    }
+
+    /**
+     * Creates a version 4 UUID from {@link ThreadLocalRandom}. Message UUIDs only need to
+     * be unique, not unpredictable, so this avoids the shared {@code SecureRandom} behind
+     * {@link UUID#randomUUID()}.
+     */
+    private static String randomUUID() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long most = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long least = (random.nextLong() & ~(0xC000000000000000L)) | 0x8000000000000000L;
+        return new UUID(most, least).toString();
     }
 
     /**
@@ -205,6 +324,7 @@ public class Message {
     public String toString() {
         return "Message [type=" + messageType +
                 ", seq=" + sequenceNumber +
+                ", channel=" + getChannel() + "/" + channelSequence +
                 ", uuid=" + uuid +
                 ", params=" + Arrays.toString(parameters) +
                 ", option=" + option +
@@ -216,7 +336,7 @@ public class Message {
      * and concealed parameter arrays are copied, but the objects within them
      * are not deeply cloned.
      *
-     * <p>Note that the clone will receive a <strong>new</strong> UUID by default,
+     * <p>Note that the clone will receive a <strong>new</strong> UUID when one is requested,
      * since it calls the constructor. Sequence number is copied to the new instance.</p>
      *
      * @return A shallow copy of the original {@code Message} instance.
@@ -234,10 +354,16 @@ public class Message {
         // Create a new Message instance with the copied values.
         Message clone = new Message(this.messageType, clonedParams, this.option, clonedConcealed);
 
-        // Copy the sequence number.
+        // Copy the sequence number and channel.
         clone.setSequenceNumber(this.sequenceNumber);
+        clone.setChannel(this.channel);
+        clone.setChannelSequence(this.channelSequence);
+        if (peekUUID() == null) {
+            // Without a UUID the clone's body encodes exactly like ours.
+            clone.encodedBody = this.encodedBody;
+        }
 
-        // The clone will have a new UUID by default (from the constructor).
+        // The clone will have a new UUID once one is requested.
         // If desired, set it manually to match the original:
         // clone.setUUID(this.uuid);
 
@@ -1,6 +1,7 @@
 package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
 
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.stream.Collectors;
 
 /**
@@ -127,6 +128,7 @@ public class MessageCodec {
      *   <li><em>F:</em> {@link Float}</li>
      *   <li><em>D:</em> {@link Double}</li>
      *   <li><em>B:</em> {@link Boolean}</li>
+     *   <li><em>X:</em> {@code byte[]}, Base64 encoded</li>
      *   <li><em>S:</em> All other types (treated as strings)</li>
      * </ul>
      *
@@ -144,6 +146,8 @@ public class MessageCodec {
             return "D:" + param;
         } else if (param instanceof Boolean) {
             return "B:" + param;
+        } else if (param instanceof byte[]) {
+            return "X:" + Base64.getEncoder().encodeToString((byte[]) param);
         } else {
             // Default is string
             return "S:" + param.toString();
@@ -222,6 +226,8 @@ public class MessageCodec {
             return Double.parseDouble(token.substring(2));
         } else if (token.startsWith("B:")) {
             return Boolean.parseBoolean(token.substring(2));
+        } else if (token.startsWith("X:")) {
+            return Base64.getDecoder().decode(token.substring(2));
         } else if (token.startsWith("S:")) {
             return token.substring(2);
         } else {
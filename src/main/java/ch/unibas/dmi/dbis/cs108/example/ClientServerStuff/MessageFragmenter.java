@@ -0,0 +1,102 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits binary frames that do not fit into one datagram into fragments, which
+ * {@link FragmentAssembler} puts back together on the receiving side.
+ *
+ * <p>
+ * Every fragment travels in a datagram of its own, after the optional ACK header:
+ * </p>
+ * <pre>
+ *   u8   MAGIC (0xB8)
+ *   var  sequence number   (varint, the fragment's reliable sequence number or {@code 0})
+ *   u32  group id          (identifies the fragmented message per sender)
+ *   u16  fragment index
+ *   u16  fragment count
+ *   u16  payload length,   then the payload: a slice of the complete binary frame
+ * </pre>
+ *
+ * <p>
+ * On a reliable channel every fragment has its own sequence number, so it is acknowledged and
+ * retransmitted on its own and a lost fragment costs one small retransmission instead of the
+ * whole message. Fragments are sized so that a fragment's datagram, ACK header included, never
+ * exceeds {@link PacketAggregator#DEFAULT_MTU}. {@link UdpTransport} fragments every binary frame
+ * that does not fit into a datagram of its MTU, so with the default MTU no datagram it sends is
+ * fragmented again by IP.
+ * </p>
+ */
+public final class MessageFragmenter {
+
+    /** First byte of a fragment; distinct from the frame and ACK header markers. */
+    public static final byte MAGIC = (byte) 0xB8;
+
+    /** Largest possible fragment header: marker, varint sequence number, group id, index, count, length. */
+    public static final int MAX_HEADER_SIZE = 1 + 10 + 4 + 2 + 2 + 2;
+
+    /** Payload bytes per fragment. */
+    public static final int PAYLOAD_SIZE = PacketAggregator.DEFAULT_MTU - AckTracker.HEADER_SIZE - MAX_HEADER_SIZE;
+
+    /** Upper bound on the fragments of one message: a frame cannot be longer than its u16 length prefix allows. */
+    public static final int MAX_FRAGMENTS = (BinaryMessageCodec.HEADER_SIZE + 0xFFFF + PAYLOAD_SIZE - 1) / PAYLOAD_SIZE;
+
+    private MessageFragmenter() { }
+
+    /**
+     * @param in a datagram, positioned at its next frame
+     * @return {@code true} if that frame is a fragment
+     */
+    public static boolean isFragment(ByteBuffer in) {
+        return in.hasRemaining() && in.get(in.position()) == MAGIC;
+    }
+
+    /**
+     * @param frameLength the length of the complete binary frame
+     * @return the number of fragments it is split into
+     */
+    public static int fragmentCount(int frameLength) {
+        return (frameLength + PAYLOAD_SIZE - 1) / PAYLOAD_SIZE;
+    }
+
+    /**
+     * Writes fragment {@code index} of {@code frame} at the buffer's position.
+     *
+     * @param out     the target buffer, with room for {@link #MAX_HEADER_SIZE} + {@link #PAYLOAD_SIZE} bytes
+     * @param frame   the complete binary frame
+     * @param index   the fragment to write
+     * @param groupId identifies the message among everything fragmented by the sender
+     * @param seq     the fragment's reliable sequence number, {@code 0} if it is not sent reliably
+     */
+    public static void write(ByteBuffer out, byte[] frame, int index, int groupId, long seq) {
+        int count = fragmentCount(frame.length);
+        int offset = index * PAYLOAD_SIZE;
+        int length = Math.min(PAYLOAD_SIZE, frame.length - offset);
+        out.put(MAGIC);
+        MessageWriter.putVarLong(out, seq);
+        out.putInt(groupId);
+        out.putShort((short) index);
+        out.putShort((short) count);
+        out.putShort((short) length);
+        out.put(frame, offset, length);
+    }
+
+    /**
+     * Encodes fragment {@code index} of {@code frame} into an array of its own, for senders that
+     * keep fragments around to retransmit them.
+     *
+     * @param frame   the complete binary frame
+     * @param index   the fragment to encode
+     * @param groupId identifies the message among everything fragmented by the sender
+     * @param seq     the fragment's reliable sequence number
+     * @return the encoded fragment
+     */
+    public static byte[] encode(byte[] frame, int index, int groupId, long seq) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_HEADER_SIZE + PAYLOAD_SIZE);
+        write(out, frame, index, groupId, seq);
+        byte[] fragment = new byte[out.position()];
+        out.flip();
+        out.get(fragment);
+        return fragment;
+    }
+}
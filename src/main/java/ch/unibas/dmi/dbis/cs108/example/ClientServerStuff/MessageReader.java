@@ -0,0 +1,227 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.BinaryMessageCodec.*;
+
+/**
+ * Reads a {@link Message} straight out of a {@link ByteBuffer} written by {@link MessageWriter}.
+ *
+ * <p>
+ * Short strings such as message types, options, object and user names repeat in almost
+ * every packet. They are looked up in a small intern cache by their raw UTF-8 bytes, so
+ * decoding them neither copies the bytes nor creates a new {@link String}. Only the
+ * {@link Message} itself, its arrays and boxed parameter values are allocated.
+ * </p>
+ */
+public final class MessageReader {
+
+    /** Strings up to this many UTF-8 bytes are interned. */
+    private static final int MAX_INTERN_LENGTH = 32;
+
+    /** Size of the direct-mapped intern cache, must be a power of two. */
+    private static final int CACHE_SIZE = 1024;
+
+    /**
+     * An interned string together with its UTF-8 bytes. Immutable, so entries can be
+     * published through the plain cache array without further synchronization.
+     */
+    private static final class Interned {
+        final byte[] bytes;
+        final String value;
+
+        Interned(byte[] bytes, String value) {
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+
+    private static final Interned[] CACHE = new Interned[CACHE_SIZE];
+
+    /** Per-thread scratch space for strings that miss the cache. */
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[BufferPool.BUFFER_SIZE]);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private MessageReader() { }
+
+    /**
+     * Reads one binary frame starting at the buffer's current position and advances the
+     * position to the end of that frame.
+     *
+     * @param in the buffer to read from
+     * @return the decoded message
+     * @throws IllegalArgumentException if the data is not a valid binary frame
+     */
+    public static Message read(ByteBuffer in) {
+        int start = in.position();
+        try {
+            if (in.get() != MAGIC) {
+                throw new IllegalArgumentException("Not a binary encoded message");
+            }
+            int bodyLength = in.getShort() & 0xFFFF;
+            if (bodyLength > in.remaining()) {
+                throw new IllegalArgumentException("Truncated binary message: expected "
+                        + bodyLength + " bytes, got " + in.remaining());
+            }
+            int end = start + HEADER_SIZE + bodyLength;
+
+            long sequenceNumber = getVarLong(in);
+            DeliveryChannel channel = DeliveryChannel.fromId(in.get() & 0xFF);
+            long channelSequence = channel.isSequenced() ? getVarLong(in) : 0;
+            String messageType = getString(in);
+            String option = getString(in);
+            String uuid = getUUID(in);
+
+            int paramCount = in.get() & 0xFF;
+            Object[] parameters = new Object[paramCount];
+            for (int i = 0; i < paramCount; i++) {
+                parameters[i] = getParameter(in);
+            }
+
+            int concealedCount = in.get() & 0xFF;
+            String[] concealed = new String[concealedCount];
+            for (int i = 0; i < concealedCount; i++) {
+                concealed[i] = getString(in);
+            }
+            if (in.position() > end) {
+                throw new IllegalArgumentException("Binary message overruns its length prefix");
+            }
+            in.position(end);
+
+            Message message = new Message(messageType, parameters, option, concealed);
+            message.setSequenceNumber(sequenceNumber);
+            message.setChannel(channel);
+            message.setChannelSequence(channelSequence);
+            message.setUUID(uuid);
+            return message;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary message", e);
+        }
+    }
+
+    /**
+     * Reads a single tagged parameter.
+     */
+    private static Object getParameter(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case TAG_INT:
+                return in.getInt();
+            case TAG_LONG:
+                return in.getLong();
+            case TAG_FLOAT:
+                return in.getFloat();
+            case TAG_DOUBLE:
+                return in.getDouble();
+            case TAG_BOOLEAN:
+                return in.get() != 0;
+            case TAG_STRING:
+                return getString(in);
+            case TAG_NULL:
+                return null;
+            case TAG_BYTES:
+                byte[] bytes = new byte[in.getShort() & 0xFFFF];
+                in.get(bytes);
+                return bytes;
+            default:
+                throw new IllegalArgumentException("Unknown parameter tag: " + tag);
+        }
+    }
+
+    private static String getUUID(ByteBuffer in) {
+        byte kind = in.get();
+        switch (kind) {
+            case UUID_NULL:
+                return null;
+            case UUID_BINARY:
+                return formatUUID(in.getLong(), in.getLong());
+            case UUID_STRING:
+                return getString(in);
+            default:
+                throw new IllegalArgumentException("Unknown uuid kind: " + kind);
+        }
+    }
+
+    /**
+     * Formats the two halves of a UUID like {@link java.util.UUID#toString()} does.
+     */
+    private static String formatUUID(long msb, long lsb) {
+        char[] chars = new char[36];
+        int pos = 0;
+        for (int i = 0; i < 32; i++) {
+            if (i == 8 || i == 12 || i == 16 || i == 20) {
+                chars[pos++] = '-';
+            }
+            long half = i < 16 ? msb : lsb;
+            int shift = (15 - (i & 15)) * 4;
+            chars[pos++] = HEX[(int) ((half >>> shift) & 0xF)];
+        }
+        return new String(chars);
+    }
+
+    static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Reads a u16 length prefixed UTF-8 string, serving short strings from the intern cache.
+     */
+    static String getString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        int pos = in.position();
+        if (length <= MAX_INTERN_LENGTH) {
+            int hash = 1;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + in.get(pos + i);
+            }
+            int slot = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+            Interned cached = CACHE[slot];
+            if (cached != null && matches(cached.bytes, in, pos, length)) {
+                in.position(pos + length);
+                return cached.value;
+            }
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            CACHE[slot] = new Interned(bytes, value);
+            return value;
+        }
+        byte[] scratch = SCRATCH.get();
+        if (scratch.length < length) {
+            scratch = Arrays.copyOf(scratch, length);
+            SCRATCH.set(scratch);
+        }
+        in.get(scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static boolean matches(byte[] bytes, ByteBuffer in, int pos, int length) {
+        if (bytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != in.get(pos + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
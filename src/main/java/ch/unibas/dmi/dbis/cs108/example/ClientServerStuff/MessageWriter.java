@@ -0,0 +1,281 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import static ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.BinaryMessageCodec.*;
+
+/**
+ * Serializes a {@link Message} straight into a {@link ByteBuffer} using the frame layout
+ * described in {@link BinaryMessageCodec}.
+ *
+ * <p>
+ * Nothing is allocated while writing: strings are UTF-8 encoded character by character,
+ * canonical UUIDs are parsed in place and primitives are unboxed directly into the buffer.
+ * Together with a {@link BufferPool} this keeps the send path free of per-packet garbage.
+ * </p>
+ */
+public final class MessageWriter {
+
+    private MessageWriter() { }
+
+    /**
+     * Writes one binary frame for {@code message} at the buffer's current position and
+     * advances the position past it.
+     *
+     * @param message the message to write
+     * @param out     the target buffer
+     * @throws IllegalArgumentException if the message does not fit into the remaining space
+     *                                  or exceeds a limit of the frame format
+     */
+    public static void write(Message message, ByteBuffer out) {
+        write(message, message.getChannelSequence(), out);
+    }
+
+    /**
+     * Like {@link #write(Message, ByteBuffer)}, but with the channel sequence number given
+     * explicitly, so a message shared between destinations can be numbered per destination.
+     *
+     * @param message         the message to write
+     * @param channelSequence the channel sequence number, written only on sequenced channels
+     * @param out             the target buffer
+     * @throws IllegalArgumentException if the message does not fit into the remaining space
+     *                                  or exceeds a limit of the frame format
+     */
+    static void write(Message message, long channelSequence, ByteBuffer out) {
+        int start = out.position();
+        try {
+            out.put(MAGIC);
+            out.putShort((short) 0); // patched below
+            putVarLong(out, message.getSequenceNumber());
+            DeliveryChannel channel = message.getChannel();
+            out.put((byte) channel.getId());
+            if (channel.isSequenced()) {
+                putVarLong(out, channelSequence);
+            }
+            byte[] body = message.getEncodedBody();
+            if (body != null) {
+                out.put(body);
+            } else {
+                writeBody(message, out);
+            }
+        } catch (BufferOverflowException e) {
+            out.position(start);
+            throw new IllegalArgumentException("Message does not fit into " + out.remaining() + " bytes", e);
+        } catch (IllegalArgumentException e) {
+            out.position(start);
+            throw e;
+        }
+
+        int bodyLength = out.position() - start - HEADER_SIZE;
+        if (bodyLength > 0xFFFF) {
+            out.position(start);
+            throw new IllegalArgumentException("Encoded message too large: " + bodyLength + " bytes");
+        }
+        out.putShort(start + 1, (short) bodyLength);
+    }
+
+    /**
+     * Encodes the part of the frame that does not depend on the connection (everything after
+     * the sequence numbers) once and keeps it in the message. Writing the message, or a
+     * {@link Message#clone()} of it, for many peers then only encodes the small header per
+     * peer and copies the body.
+     *
+     * @param message the message to freeze; changing its fields afterwards drops the body again
+     * @throws IllegalArgumentException if the message exceeds a limit of the frame format
+     */
+    static void freezeBody(Message message) {
+        ByteBuffer out = ByteBuffer.allocate(BinaryMessageCodec.estimateSize(message));
+        try {
+            writeBody(message, out);
+        } catch (BufferOverflowException e) {
+            throw new IllegalArgumentException("Message body exceeds its estimated size", e);
+        }
+        byte[] body = new byte[out.position()];
+        out.flip();
+        out.get(body);
+        message.setEncodedBody(body);
+    }
+
+    /**
+     * Writes type, option, UUID, parameters and concealed parameters.
+     */
+    private static void writeBody(Message message, ByteBuffer out) {
+        putString(out, message.getMessageType());
+        putString(out, message.getOption());
+        putUUID(out, message.peekUUID());
+
+        Object[] params = message.getParameters();
+        int paramCount = params == null ? 0 : params.length;
+        checkCount(paramCount, "parameters");
+        out.put((byte) paramCount);
+        for (int i = 0; i < paramCount; i++) {
+            putParameter(out, params[i]);
+        }
+
+        String[] concealed = message.getConcealedParameters();
+        int concealedCount = concealed == null ? 0 : concealed.length;
+        checkCount(concealedCount, "concealed parameters");
+        out.put((byte) concealedCount);
+        for (int i = 0; i < concealedCount; i++) {
+            putString(out, concealed[i]);
+        }
+    }
+
+    /**
+     * Writes a single parameter as a type tag followed by its value in native width.
+     */
+    private static void putParameter(ByteBuffer out, Object param) {
+        if (param == null) {
+            out.put(TAG_NULL);
+        } else if (param instanceof Integer) {
+            out.put(TAG_INT).putInt((Integer) param);
+        } else if (param instanceof Long) {
+            out.put(TAG_LONG).putLong((Long) param);
+        } else if (param instanceof Float) {
+            out.put(TAG_FLOAT).putFloat((Float) param);
+        } else if (param instanceof Double) {
+            out.put(TAG_DOUBLE).putDouble((Double) param);
+        } else if (param instanceof Boolean) {
+            out.put(TAG_BOOLEAN).put((byte) (((Boolean) param) ? 1 : 0));
+        } else if (param instanceof String) {
+            out.put(TAG_STRING);
+            putString(out, (String) param);
+        } else if (param instanceof byte[]) {
+            byte[] bytes = (byte[]) param;
+            if (bytes.length >= NULL_LENGTH) {
+                throw new IllegalArgumentException("Byte array too long for binary encoding: " + bytes.length + " bytes");
+            }
+            out.put(TAG_BYTES).putShort((short) bytes.length).put(bytes);
+        } else {
+            // Default is string, same as the text codec.
+            out.put(TAG_STRING);
+            putString(out, param.toString());
+        }
+    }
+
+    /**
+     * Writes the UUID as 16 raw bytes when it is a canonical UUID, which is always the case
+     * for UUIDs generated by {@link Message}. Anything else falls back to a string.
+     */
+    private static void putUUID(ByteBuffer out, String uuid) {
+        if (uuid == null) {
+            out.put(UUID_NULL);
+        } else if (isCanonicalUUID(uuid)) {
+            out.put(UUID_BINARY);
+            out.putLong(parseHex(uuid, 0, 18));
+            out.putLong(parseHex(uuid, 19, 36));
+        } else {
+            out.put(UUID_STRING);
+            putString(out, uuid);
+        }
+    }
+
+    /**
+     * Checks for the lower-case {@code 8-4-4-4-12} form produced by {@link java.util.UUID#toString()},
+     * so that decoding yields exactly the same string again.
+     */
+    static boolean isCanonicalUUID(String value) {
+        if (value.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(String value, int from, int to) {
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c == '-') {
+                continue;
+            }
+            result = (result << 4) | (c <= '9' ? c - '0' : c - 'a' + 10);
+        }
+        return result;
+    }
+
+    static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Writes a u16 byte length followed by the UTF-8 encoding of {@code value}.
+     */
+    static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putShort((short) NULL_LENGTH);
+            return;
+        }
+        int length = utf8Length(value);
+        if (length >= NULL_LENGTH) {
+            throw new IllegalArgumentException("String too long for binary encoding: " + length + " bytes");
+        }
+        out.putShort((short) length);
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                out.put((byte) c);
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | (c >> 6)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | (cp >> 18)));
+                out.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                out.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                out.put((byte) '?'); // unpaired surrogate, same as String.getBytes
+            } else {
+                out.put((byte) (0xE0 | (c >> 12)));
+                out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                out.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Computes the number of bytes {@link #putString(ByteBuffer, String)} writes for the characters.
+     */
+    static int utf8Length(String value) {
+        int n = value.length();
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static void checkCount(int count, String what) {
+        if (count > 0xFF) {
+            throw new IllegalArgumentException("Too many " + what + " for binary encoding: " + count);
+        }
+    }
+}
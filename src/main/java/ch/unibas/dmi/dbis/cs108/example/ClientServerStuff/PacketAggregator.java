@@ -0,0 +1,194 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Packs every binary message queued for one destination during a tick into as few datagrams
+ * as possible, each at most {@code mtu} bytes.
+ *
+ * <p>
+ * Binary frames carry their own length prefix (see {@link BinaryMessageCodec}), so a datagram
+ * is simply several frames back to back and needs no extra container header. The receiver
+ * calls {@link WireFormat#read(java.nio.ByteBuffer)} until the datagram is exhausted.
+ * </p>
+ *
+ * <p>
+ * Batches are handed to the {@link UdpTransport} when they are full and, at the latest, on the
+ * next {@link #flush()}, which runs once per tick once {@link #start(int)} has been called.
+ * A message that does not fit into an empty batch on its own is sent in a datagram by itself.
+ * </p>
+ */
+public class PacketAggregator {
+
+    /** Default datagram size limit; stays below typical path MTUs after IP and UDP headers. */
+    public static final int DEFAULT_MTU = 1200;
+
+    /** Default number of flushes per second, matching the game loop's 60 fps. */
+    public static final int DEFAULT_FLUSH_HZ = 60;
+
+    /**
+     * The open datagram of one destination.
+     */
+    private static final class Batch {
+        ByteBuffer buffer;
+        /** Where the first frame starts; room for the ACK header is left in front of it. */
+        int start;
+        int count;
+    }
+
+    private final UdpTransport transport;
+    private final int mtu;
+    private final BufferPool pool = BufferPool.getInstance();
+    private final ConcurrentHashMap<InetSocketAddress, Batch> batches = new ConcurrentHashMap<>();
+
+    /** Pre-bound batch factory, avoids allocating a lambda per message. */
+    private final Function<InetSocketAddress, Batch> newBatch = address -> new Batch();
+
+    /**
+     * Creates an aggregator that hands full datagrams to {@code transport}.
+     *
+     * @param transport the transport to send the datagrams with
+     * @param mtu       the maximum size of an aggregated datagram in bytes
+     */
+    public PacketAggregator(UdpTransport transport, int mtu) {
+        if (mtu <= BinaryMessageCodec.HEADER_SIZE || mtu > BufferPool.BUFFER_SIZE) {
+            throw new IllegalArgumentException("MTU must be between " + (BinaryMessageCodec.HEADER_SIZE + 1)
+                    + " and " + BufferPool.BUFFER_SIZE + ": " + mtu);
+        }
+        this.transport = transport;
+        this.mtu = mtu;
+    }
+
+    /**
+     * Flushes all batches {@code flushHz} times per second on a background loop.
+     *
+     * @param flushHz the number of flushes per second
+     */
+    public void start(int flushHz) {
+        long intervalNanos = 1_000_000_000L / Math.max(1, flushHz);
+        AsyncManager.runLoop(() -> {
+            long start = System.nanoTime();
+            flush();
+            long sleepNanos = intervalNanos - (System.nanoTime() - start);
+            if (sleepNanos > 0) {
+                try {
+                    Thread.sleep(sleepNanos / 1_000_000, (int) (sleepNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the maximum size of an aggregated datagram in bytes
+     */
+    public int getMtu() {
+        return mtu;
+    }
+
+    /**
+     * Appends a message in binary format to the destination's current datagram.
+     *
+     * @param message     the message to send
+     * @param destination the destination address
+     * @throws IllegalArgumentException if the message cannot be encoded at all
+     */
+    public void add(Message message, InetSocketAddress destination) {
+        add(message, message.getChannelSequence(), destination);
+    }
+
+    /**
+     * Like {@link #add(Message, InetSocketAddress)}, with the channel sequence number the
+     * message carries to this destination.
+     */
+    void add(Message message, long channelSequence, InetSocketAddress destination) {
+        Batch batch = batches.computeIfAbsent(destination, newBatch);
+        synchronized (batch) {
+            if (batch.buffer == null) {
+                acquireBatchBuffer(batch);
+            }
+            try {
+                MessageWriter.write(message, channelSequence, batch.buffer);
+                batch.count++;
+                return;
+            } catch (IllegalArgumentException full) {
+                // Does not fit behind what is already there; MessageWriter restored the position.
+            }
+            if (batch.count > 0) {
+                ship(batch, destination);
+                acquireBatchBuffer(batch);
+                try {
+                    MessageWriter.write(message, channelSequence, batch.buffer);
+                    batch.count++;
+                    return;
+                } catch (IllegalArgumentException tooLarge) {
+                    // Larger than the MTU even on its own; send it alone below.
+                }
+            }
+            ByteBuffer single = pool.acquire();
+            int start = transport.reservedHeaderSize();
+            try {
+                single.position(start);
+                MessageWriter.write(message, channelSequence, single);
+            } catch (IllegalArgumentException e) {
+                pool.release(single);
+                throw e;
+            }
+            single.limit(single.position());
+            single.position(start);
+            transport.enqueue(single, destination);
+        }
+    }
+
+    /**
+     * Hands every non-empty batch to the transport.
+     */
+    public void flush() {
+        for (Map.Entry<InetSocketAddress, Batch> entry : batches.entrySet()) {
+            Batch batch = entry.getValue();
+            synchronized (batch) {
+                if (batch.count > 0) {
+                    ship(batch, entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the destination's batch, e.g. after the client disconnected.
+     *
+     * @param destination the address to forget
+     */
+    public void remove(InetSocketAddress destination) {
+        Batch batch = batches.remove(destination);
+        if (batch != null) {
+            synchronized (batch) {
+                pool.release(batch.buffer);
+                batch.buffer = null;
+                batch.count = 0;
+            }
+        }
+    }
+
+    private void acquireBatchBuffer(Batch batch) {
+        ByteBuffer buffer = pool.acquire();
+        buffer.limit(mtu);
+        batch.start = transport.reservedHeaderSize();
+        buffer.position(batch.start);
+        batch.buffer = buffer;
+    }
+
+    private void ship(Batch batch, InetSocketAddress destination) {
+        ByteBuffer buffer = batch.buffer;
+        batch.buffer = null;
+        batch.count = 0;
+        buffer.limit(buffer.position());
+        buffer.position(batch.start);
+        transport.enqueue(buffer, destination);
+    }
+}
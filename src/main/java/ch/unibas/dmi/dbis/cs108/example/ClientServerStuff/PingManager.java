@@ -1,65 +1,79 @@
 package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
 
-import java.net.InetAddress;
 import java.io.IOException;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.net.InetSocketAddress;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
- * The {@code PingManager} class sends periodic "PING" messages to a specified server
+ * The {@code PingManager} class sends periodic "PING" messages to the server
  * and maintains a timestamp of the last time a ping was sent. It is useful for
  * measuring round-trip times or keeping a connection alive.
+ *
+ * <p>
+ * Every PING carries its send time, which the server echoes in the PONG together with the
+ * times it received the PING and sent the PONG and the current tick of the client's game;
+ * {@link ClockSync} turns these into the server's clock and tick. Pings are sent best effort:
+ * a retransmitted PING would yield an ambiguous round-trip sample. The client hands every
+ * message it receives to {@link #receive(Message, InetSocketAddress)}, which consumes the PONGs
+ * and also feeds their round-trip times to the retransmission timeout of the reliable sender.
+ * </p>
  */
 public class PingManager {
 
     /**
-     * The outgoing message queue to which ping messages are enqueued.
+     * A {@link ScheduledExecutorService} that schedules the periodic ping tasks.
      */
-    private final ConcurrentLinkedQueue<Message> outgoingQueue;
+    private final ScheduledExecutorService scheduler;
 
     /**
-     * The {@link InetAddress} of the server to which pings are sent.
+     * The interval (in milliseconds) between consecutive pings.
      */
-    private final InetAddress serverAddress;
+    private final long periodMillis;
 
     /**
-     * The port on the server that receives pings.
+     * The timestamp (in milliseconds) of the last time a ping was enqueued.
+     * Initially set to 0 until the first ping is sent.
      */
-    private final int serverPort;
+    private volatile long lastPingTime = 0;
 
     /**
-     * A {@link ScheduledExecutorService} that schedules the periodic ping tasks.
+     * The round-trip time (in milliseconds) measured by the most recent PONG,
+     * or {@code -1} if none arrived yet.
      */
-    private final ScheduledExecutorService scheduler;
+    private volatile long lastRttMillis = -1;
 
     /**
-     * The interval (in milliseconds) between consecutive pings.
+     * Receives the clock samples of the PONGs.
      */
-    private final long periodMillis;
+    private final ClockSync clockSync;
 
     /**
-     * The timestamp (in milliseconds) of the last time a ping was enqueued.
-     * Initially set to 0 until the first ping is sent.
+     * Receives the round-trip times of the PONGs, or {@code null}.
      */
-    private volatile long lastPingTime = 0;
+    private final ReliableUDPSender reliableSender;
+
+    /**
+     * Sends a PING to the server, best effort.
+     */
+    private final Consumer<Message> pingSender;
 
     /**
      * Constructs a new {@code PingManager} for sending periodic ping messages.
      *
-     * @param outgoingQueue  The queue to which ping messages will be offered.
-     * @param serverAddress  The destination server's {@link InetAddress}.
-     * @param serverPort     The destination server's port number.
      * @param periodMillis   The interval between consecutive pings, in milliseconds.
+     * @param clockSync      Receives the clock samples of the PONGs.
+     * @param reliableSender Receives the round-trip times of the PONGs, or {@code null}.
+     * @param pingSender     Sends a PING to the server, best effort.
      */
-    public PingManager(ConcurrentLinkedQueue<Message> outgoingQueue,
-                       InetAddress serverAddress, int serverPort,
-                       long periodMillis) {
-        this.outgoingQueue = outgoingQueue;
-        this.serverAddress = serverAddress;
-        this.serverPort = serverPort;
+    public PingManager(long periodMillis, ClockSync clockSync, ReliableUDPSender reliableSender,
+                       Consumer<Message> pingSender) {
         this.periodMillis = periodMillis;
+        this.clockSync = clockSync;
+        this.reliableSender = reliableSender;
+        this.pingSender = pingSender;
         this.scheduler = Executors.newSingleThreadScheduledExecutor();
     }
 
@@ -87,18 +101,78 @@ public class PingManager {
     }
 
     /**
-     * Constructs and enqueues a "PING" message, storing the current system time
-     * as the {@link #lastPingTime}. This method is triggered by the periodic scheduler.
+     * Constructs and enqueues a "PING" message carrying the send time in microseconds,
+     * and stores the current system time as the {@link #lastPingTime}. This method is
+     * triggered by the periodic scheduler.
      *
      * @throws IOException if there is an error creating or enqueuing the ping message
      */
     private void sendPing() throws IOException {
-        Message pingMessage = new Message("PING", new Object[]{ System.currentTimeMillis() }, "REQUEST");
-        Client.sendMessageStatic(pingMessage);
-        System.out.println(pingMessage);
+        Message pingMessage = new Message("PING", new Object[]{ System.nanoTime() / 1000 }, "REQUEST");
+        pingSender.accept(pingMessage);
         lastPingTime = System.currentTimeMillis();
     }
 
+    /**
+     * Handles a message received from the server if it is a PONG. Its round-trip time becomes
+     * a sample of the sender's retransmission timeout, as a PONG is never retransmitted.
+     *
+     * @param msg    the received message
+     * @param sender the address it came from
+     * @return {@code true} if the message was a PONG and needs no further dispatch
+     */
+    public boolean receive(Message msg, InetSocketAddress sender) {
+        if (!"PONG".equalsIgnoreCase(msg.getMessageType())) {
+            return false;
+        }
+        long rtt = onPong(msg);
+        if (rtt >= 0 && reliableSender != null) {
+            reliableSender.addRttSample(sender, rtt);
+        }
+        return true;
+    }
+
+    /**
+     * Computes the round-trip time from a PONG that echoes the PING's send time, and hands
+     * the server's timestamps to the {@link ClockSync}:
+     * {@code PONG [t0, t1, t2, gameId, tick]}, where the game is absent if the client is in none.
+     * The time the server held the PING, {@code t2 - t1}, is not part of the round trip, the
+     * same way {@link ClockSync} leaves it out.
+     *
+     * @param pong the PONG received from the server
+     * @return the round-trip time in milliseconds, or {@code -1} if the PONG carries no timestamp
+     */
+    public long onPong(Message pong) {
+        long t3 = System.nanoTime() / 1000;
+        Object[] params = pong.getParameters();
+        if (params == null || params.length == 0 || !(params[0] instanceof Number)) {
+            return -1;
+        }
+        long t0 = ((Number) params[0]).longValue();
+        if (t3 < t0) {
+            return -1;
+        }
+        long roundTrip = t3 - t0;
+        if (params.length >= 3 && params[1] instanceof Number && params[2] instanceof Number) {
+            long t1 = ((Number) params[1]).longValue();
+            long t2 = ((Number) params[2]).longValue();
+            boolean hasTick = params.length >= 5 && params[3] != null && params[4] instanceof Number;
+            clockSync.onPong(t0, t1, t2, t3,
+                    hasTick ? params[3].toString() : null, hasTick ? ((Number) params[4]).longValue() : 0);
+            roundTrip = Math.max(0, roundTrip - Math.max(0, t2 - t1));
+        }
+        long rtt = roundTrip / 1000;
+        lastRttMillis = rtt;
+        return rtt;
+    }
+
+    /**
+     * @return the round-trip time of the most recent PONG in milliseconds, or {@code -1}
+     */
+    public long getLastRttMillis() {
+        return lastRttMillis;
+    }
+
     /**
      * Returns the elapsed time in milliseconds since the last ping was enqueued.
      * If no ping has been sent yet, this value may be the time since object creation.
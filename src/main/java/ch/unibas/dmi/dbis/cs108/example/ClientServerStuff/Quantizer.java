@@ -0,0 +1,85 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * Maps a float in a fixed range onto an unsigned integer of a few bits and back, e.g. a
+ * position in world bounds at 1/16 px. Values outside the range are clamped to it, and a
+ * range of {@code 2^n} steps takes exactly {@code n} bits.
+ */
+public final class Quantizer {
+
+    private final float min;
+    private final float max;
+    private final float step;
+    private final int bits;
+    private final long maxLevel;
+
+    /**
+     * Creates a quantizer.
+     *
+     * @param min  the smallest value, represented exactly
+     * @param max  the end of the range, exclusive; larger values become {@code max - step}
+     * @param step the resolution; values are rounded to {@code min + k * step}
+     */
+    public Quantizer(float min, float max, float step) {
+        if (!(max > min) || !(step > 0)) {
+            throw new IllegalArgumentException("Invalid quantizer range [" + min + ", " + max + "] / " + step);
+        }
+        this.min = min;
+        this.max = max;
+        this.step = step;
+        this.maxLevel = Math.max(1, (long) Math.ceil((max - min) / step)) - 1;
+        this.bits = 64 - Long.numberOfLeadingZeros(maxLevel);
+    }
+
+    /** @return the number of bits a quantized value takes */
+    public int getBits() {
+        return bits;
+    }
+
+    /**
+     * @param value a value, clamped to the range; NaN counts as the minimum
+     * @return the quantized value, {@code 0 <= q < 2^bits}
+     */
+    public long quantize(float value) {
+        if (!(value > min)) {
+            return 0;
+        }
+        if (value >= max - step) {
+            return maxLevel;
+        }
+        return Math.min(maxLevel, Math.round((value - min) / step));
+    }
+
+    /**
+     * @param quantized a value returned by {@link #quantize(float)}
+     * @return the value it stands for
+     */
+    public float dequantize(long quantized) {
+        return min + quantized * step;
+    }
+
+    /**
+     * Quantizes a value and writes it.
+     *
+     * @param out   the stream
+     * @param value the value
+     */
+    public void write(BitWriter out, float value) {
+        out.write(quantize(value), bits);
+    }
+
+    /**
+     * Reads a quantized value.
+     *
+     * @param in the stream
+     * @return the value it stands for
+     * @throws IllegalArgumentException if the stream is exhausted or the value is out of range
+     */
+    public float read(BitReader in) {
+        long quantized = in.read(bits);
+        if (quantized > maxLevel) {
+            throw new IllegalArgumentException("Quantized value " + quantized + " exceeds " + maxLevel);
+        }
+        return dequantize(quantized);
+    }
+}
@@ -1,238 +1,670 @@
 package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
 
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.UUID;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
 
 /**
  * The {@code ReliableUDPSender} class provides a mechanism for sending messages
  * over UDP with basic reliability. It uses a sliding window concept to control
  * how many messages can be unacknowledged at once, and retransmits messages that
  * are not acknowledged within a specified timeout period.
+ *
+ * <p>
+ * All reliability state is kept per destination in a {@link PeerState}: every peer has
+ * its own sequence space, send window, pending set and an {@link RttEstimator} that derives the
+ * retransmission timeout (RTO) from measured round trips.
+ * A lossy peer therefore only ever fills and delays its own window.
+ * </p>
+ *
+ * <p>
+ * The sequence number is the message's identity: it is assigned here, per connection, when the
+ * message is admitted to the window, travels as a varint in the frame header and is acknowledged
+ * as an unsigned 32-bit value by {@link AckTracker}. No UUID is created for a message unless
+ * application code asks for one; ACKs by UUID from text-format peers are still accepted.
+ * </p>
+ *
+ * <p>
+ * Only messages on a reliable {@link DeliveryChannel} enter the window. Messages on the
+ * {@link DeliveryChannel#RELIABLE_ORDERED} channel additionally get the next number of the
+ * peer's ordered sequence space, which the receiver delivers them by; messages on the
+ * unreliable channel are handed to the transport as they are.
+ * </p>
+ *
+ * <p>
+ * A binary message too large for one datagram is split by {@link MessageFragmenter}. Every
+ * fragment takes a sequence number and a window slot of its own, so fragments are acknowledged
+ * and retransmitted individually.
+ * </p>
+ *
+ * <p>
+ * Retransmissions are driven by a {@link TimerWheel}: every pending message arms one timeout
+ * when it is sent, an ACK cancels it, and only timeouts that actually expire cost any work.
+ * </p>
+ *
+ * <p>
+ * Messages that do not fit into a peer's full window wait in that peer's backlog and are sent
+ * in order as ACKs free the window. A {@link BackPressureListener} is told when a backlog
+ * reaches the high-water mark and when it exceeds its limit; the message that exceeds the
+ * limit is dropped so a dead peer cannot exhaust memory.
+ * </p>
  */
 public class ReliableUDPSender {
 
+    /** System property holding the backlog size at which a peer counts as saturated. */
+    public static final String HIGH_WATER_PROPERTY = "reliable.highWater";
+
+    /** System property holding the maximum number of backlogged messages per peer. */
+    public static final String BACKLOG_LIMIT_PROPERTY = "reliable.backlogLimit";
+
+    /** Default high-water mark, enough for the CREATEGO burst that synchronizes a late joiner. */
+    public static final int DEFAULT_HIGH_WATER = 256;
+
+    /** Default backlog limit. */
+    public static final int DEFAULT_BACKLOG_LIMIT = 4096;
+
+    /**
+     * Receives back-pressure events of single peers. Called on the thread that sent the
+     * message, outside the peer's lock.
+     */
+    public interface BackPressureListener {
+
+        /**
+         * Called once when a peer's backlog reaches the high-water mark. Called again only after
+         * the backlog has drained below half of it.
+         *
+         * @param peer   the saturated destination
+         * @param queued the number of backlogged messages
+         */
+        void onHighWater(InetSocketAddress peer, int queued);
+
+        /**
+         * Called for every message dropped because the peer's backlog is at its limit.
+         *
+         * @param peer   the destination
+         * @param queued the number of backlogged messages
+         */
+        void onOverflow(InetSocketAddress peer, int queued);
+    }
+
     /**
-     * The {@link DatagramSocket} used to send UDP packets.
+     * The {@link UdpTransport} used to send UDP packets.
      */
-    private final DatagramSocket socket;
+    private final UdpTransport transport;
 
     /**
-     * The maximum number of unacknowledged messages allowed in the window.
-     * If the window is full, new messages are not sent until space is freed
-     * by acknowledgments.
+     * The maximum number of unacknowledged messages allowed in each peer's window.
+     * If a peer's window is full, new messages to that peer are not sent until
+     * space is freed by acknowledgments.
      */
     private final int windowSize;
 
     /**
-     * The timeout duration (in milliseconds) after which a message is considered
+     * The initial timeout duration (in milliseconds) after which a message is considered
      * lost and eligible for retransmission if it is the base message or unblocked.
      */
     private final long timeoutMillis;
 
     /**
-     * An {@link AtomicInteger} used to generate sequence numbers for outgoing messages.
+     * The reliability state of every destination we have sent to.
      */
-    private final AtomicInteger nextSeqNum = new AtomicInteger(1);
+    private final ConcurrentHashMap<InetSocketAddress, PeerState> peers = new ConcurrentHashMap<>();
 
     /**
-     * A map of UUID to {@link PendingMessage}, representing all unacknowledged messages.
+     * Schedules the retransmission timeout of every pending message.
      */
-    private final ConcurrentHashMap<String, PendingMessage> pendingMessages = new ConcurrentHashMap<>();
+    private final TimerWheel timers;
+
+    private final int highWaterMark = Integer.getInteger(HIGH_WATER_PROPERTY, DEFAULT_HIGH_WATER);
+    private final int backlogLimit = Integer.getInteger(BACKLOG_LIMIT_PROPERTY, DEFAULT_BACKLOG_LIMIT);
+    private volatile BackPressureListener backPressureListener;
+
+    /** Pre-bound peer factory, avoids allocating a lambda per send. */
+    private final Function<InetSocketAddress, PeerState> newPeer = PeerState::new;
 
     /**
      * Encapsulates a message that has been sent but not yet acknowledged.
      * Contains metadata required for potential retransmission.
      */
-    private class PendingMessage {
+    private static class PendingMessage {
         Message message;
+        final long firstSentTime;
         volatile long lastSentTime;
-        InetAddress destination;
-        int destPort;
+        volatile boolean retransmitted;
+        volatile TimerWheel.Timeout timer;
+        /** The encoded fragment if this entry is one fragment of a larger message, else {@code null}. */
+        final byte[] fragment;
 
         /**
-         * Constructs a {@code PendingMessage} with the given message, last-sent time,
-         * and destination details.
+         * Constructs a {@code PendingMessage} with the given message and last-sent time.
          *
          * @param message      the {@link Message} being sent
          * @param lastSentTime the timestamp (in milliseconds) when the message was last sent
-         * @param destination  the destination {@link InetAddress}
-         * @param destPort     the destination port
          */
-        PendingMessage(Message message, long lastSentTime, InetAddress destination, int destPort) {
+        PendingMessage(Message message, long lastSentTime) {
+            this(message, lastSentTime, null);
+        }
+
+        /**
+         * Constructs a {@code PendingMessage} for one fragment of a message.
+         *
+         * @param message      the {@link Message} the fragment belongs to
+         * @param lastSentTime the timestamp (in milliseconds) when the fragment was last sent
+         * @param fragment     the encoded fragment, or {@code null} for a whole message
+         */
+        PendingMessage(Message message, long lastSentTime, byte[] fragment) {
             this.message = message;
+            this.firstSentTime = lastSentTime;
             this.lastSentTime = lastSentTime;
-            this.destination = destination;
-            this.destPort = destPort;
+            this.fragment = fragment;
+        }
+    }
+
+    /**
+     * The reliability state of a single destination.
+     */
+    private class PeerState {
+        final InetSocketAddress address;
+
+        /** Next sequence number in this peer's sequence space; {@code 0} means unsequenced. */
+        long nextSeqNum = 1;
+
+        /** Next channel sequence number of the reliable-ordered channel. */
+        long nextOrderedSeq = 1;
+
+        /** Unacknowledged messages ordered by sequence number. */
+        final ConcurrentSkipListMap<Long, PendingMessage> pending = new ConcurrentSkipListMap<>();
+
+        /** Messages waiting for room in the window; guarded by the peer's monitor. */
+        final ArrayDeque<Message> backlog = new ArrayDeque<>();
+
+        /** Whether the current saturation was already reported. */
+        boolean highWaterReported;
+
+        /** Round-trip estimate and current retransmission timeout. */
+        final RttEstimator rtt = new RttEstimator(timeoutMillis, timers.getTickMillis());
+
+        PeerState(InetSocketAddress address) {
+            this.address = address;
         }
     }
 
     /**
      * Constructs a {@code ReliableUDPSender} bound to the given socket, with a specified
-     * window size and retransmission timeout. Starts a background loop to monitor
-     * retransmissions.
+     * window size and retransmission timeout. Starts its own {@link TimerWheel} whose tick
+     * is read from {@link TimerWheel#TICK_PROPERTY}.
      *
-     * @param socket        the {@link DatagramSocket} used for sending messages
-     * @param windowSize    the maximum number of unacknowledged messages
-     * @param timeoutMillis the timeout (in milliseconds) after which an unacknowledged
+     * @param transport     the {@link UdpTransport} used for sending messages
+     * @param windowSize    the maximum number of unacknowledged messages per peer
+     * @param timeoutMillis the initial timeout (in milliseconds) after which an unacknowledged
      *                      message is eligible for retransmission
      */
-    public ReliableUDPSender(DatagramSocket socket, int windowSize, long timeoutMillis) {
-        this.socket = socket;
+    public ReliableUDPSender(UdpTransport transport, int windowSize, long timeoutMillis) {
+        this(transport, windowSize, timeoutMillis, startTimers());
+    }
+
+    /**
+     * Constructs a {@code ReliableUDPSender} that schedules its retransmissions on an
+     * already started {@link TimerWheel}.
+     *
+     * @param transport     the {@link UdpTransport} used for sending messages
+     * @param windowSize    the maximum number of unacknowledged messages per peer
+     * @param timeoutMillis the initial retransmission timeout in milliseconds
+     * @param timers        the wheel to schedule retransmission timeouts on
+     */
+    public ReliableUDPSender(UdpTransport transport, int windowSize, long timeoutMillis, TimerWheel timers) {
+        this.transport = transport;
         this.windowSize = windowSize;
         this.timeoutMillis = timeoutMillis;
-        AsyncManager.runLoop(this::checkTimeouts);
+        this.timers = timers;
+    }
+
+    private static TimerWheel startTimers() {
+        TimerWheel wheel = new TimerWheel();
+        wheel.start("reliable-udp-timers");
+        return wheel;
+    }
+
+    /**
+     * Sets the listener for back-pressure events.
+     *
+     * @param listener the listener, or {@code null} to only log them
+     */
+    public void setBackPressureListener(BackPressureListener listener) {
+        this.backPressureListener = listener;
     }
 
     /**
-     * Sends a message to a specified destination. Assigns a new sequence number and UUID
-     * to the message. If the window is full, the message is not sent.
+     * Sends a message to a specified destination. Assigns the next sequence number of
+     * that destination to the message. If the destination's window is
+     * full, the message waits in the destination's backlog. Messages on an unreliable
+     * {@link DeliveryChannel} are sent once, right away.
+     *
+     * <p>Sequence numbers are assigned and the window is checked on the caller's thread,
+     * so messages one thread sends to the same destination keep their order on the wire
+     * and on their ordered channel. This never blocks: the transport only queues the
+     * datagram for its I/O thread.</p>
      *
      * @param msg         the {@link Message} to send
      * @param destination the destination {@link InetAddress}
      * @param destPort    the destination port
      */
     public void sendMessage(Message msg, InetAddress destination, int destPort) {
-        AsyncManager.run(() -> {
-            try {
-                String uuid = UUID.randomUUID().toString();
-                int seq = nextSeqNum.getAndIncrement();
-                msg.setSequenceNumber(seq);
-                msg.setUUID(uuid);
-
-                if (pendingMessages.size() < windowSize) {
-                    pendingMessages.put(uuid, new PendingMessage(msg, System.currentTimeMillis(), destination, destPort));
-                    sendPacket(msg, destination, destPort);
-                    System.out.println("Sent: " + MessageCodec.encode(msg));
-                } else {
-                    System.out.println("Window full. Message not sent: " + MessageCodec.encode(msg));
+        InetSocketAddress target = new InetSocketAddress(destination, destPort);
+        if (!msg.getChannel().isReliable()) {
+            sendPacket(msg, target);
+            return;
+        }
+        PeerState peer = peers.computeIfAbsent(target, newPeer);
+        int queued;
+        boolean dropped = false;
+        boolean reachedHighWater = false;
+
+        // Sequence assignment and window check are atomic per peer, so the
+        // pending set always holds a contiguous, ordered sequence range.
+        synchronized (peer) {
+            if (peer.pending.size() < windowSize && peer.backlog.isEmpty()) {
+                admit(peer, msg);
+                return;
+            }
+            queued = peer.backlog.size();
+            if (queued >= backlogLimit) {
+                dropped = true;
+            } else {
+                peer.backlog.addLast(msg);
+                queued++;
+                if (queued >= highWaterMark && !peer.highWaterReported) {
+                    peer.highWaterReported = true;
+                    reachedHighWater = true;
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
             }
-        });
+        }
+
+        BackPressureListener listener = backPressureListener;
+        if (dropped) {
+            System.err.println("Backlog for " + target + " is full (" + queued
+                    + "). Message dropped: " + msg);
+            if (listener != null) {
+                listener.onOverflow(target, queued);
+            }
+        } else if (reachedHighWater) {
+            if (UdpTransport.DEBUG) {
+                System.err.println("Backlog for " + target + " reached " + queued + " messages");
+            }
+            if (listener != null) {
+                listener.onHighWater(target, queued);
+            }
+        }
+    }
+
+    /**
+     * Assigns the next sequence number (and ordered channel sequence number), arms the
+     * retransmission timer and sends the message. Must be called while holding the peer's monitor.
+     * A message that cannot be encoded gives its ordered sequence number back, since the receiver
+     * would otherwise hold every later ordered message waiting for it.
+     */
+    private void admit(PeerState peer, Message msg) {
+        boolean ordered = msg.getChannel() == DeliveryChannel.RELIABLE_ORDERED;
+        if (ordered) {
+            // The frame size depends on the channel sequence, so it is assigned before encoding.
+            msg.setChannelSequence(peer.nextOrderedSeq++);
+        }
+        byte[] frame;
+        try {
+            frame = transport.encodeIfOversized(msg, peer.address);
+        } catch (IllegalArgumentException e) {
+            if (ordered) {
+                peer.nextOrderedSeq--;
+            }
+            System.err.println("Cannot send message to " + peer.address + ": " + e.getMessage());
+            return;
+        }
+        if (frame != null) {
+            admitFragments(peer, msg, frame);
+            return;
+        }
+        long seq = peer.nextSeqNum++;
+        msg.setSequenceNumber(seq);
+        PendingMessage pm = new PendingMessage(msg, System.currentTimeMillis());
+        peer.pending.put(seq, pm);
+        arm(peer, seq, pm);
+        sendPacket(msg, peer.address);
+        if (UdpTransport.DEBUG) {
+            System.out.println("Sent seq " + seq + " to " + peer.address + ": " + msg);
+        }
     }
 
     /**
-     * Sends the given message asynchronously as a UDP packet.
+     * Admits every fragment of an oversized message with a sequence number of its own. The
+     * fragments may briefly overfill the window; it refills only once they are acknowledged.
+     * The message itself stays unsequenced, the fragments carry the sequence numbers.
+     */
+    private void admitFragments(PeerState peer, Message msg, byte[] frame) {
+        int groupId = transport.nextFragmentGroup();
+        int count = MessageFragmenter.fragmentCount(frame.length);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            long seq = peer.nextSeqNum++;
+            PendingMessage pm = new PendingMessage(msg, now, MessageFragmenter.encode(frame, i, groupId, seq));
+            peer.pending.put(seq, pm);
+            arm(peer, seq, pm);
+            sendPacket(pm, peer.address);
+        }
+        if (UdpTransport.DEBUG) {
+            System.out.println("Sent " + count + " fragments (seq " + (peer.nextSeqNum - count) + ".."
+                    + (peer.nextSeqNum - 1) + ") to " + peer.address + ": " + msg);
+        }
+    }
+
+    /**
+     * Moves backlogged messages into the window while it has room.
+     */
+    private void drainBacklog(PeerState peer) {
+        synchronized (peer) {
+            while (!peer.backlog.isEmpty() && peer.pending.size() < windowSize) {
+                admit(peer, peer.backlog.pollFirst());
+            }
+            if (peer.backlog.size() < highWaterMark / 2) {
+                peer.highWaterReported = false;
+            }
+        }
+    }
+
+    /**
+     * Hands the message to the transport, which encodes it into a pooled buffer and
+     * sends it from its I/O thread.
      *
      * @param msg         the {@link Message} to encode and send
-     * @param destination the destination IP address
-     * @param destPort    the destination port
+     * @param destination the destination address and port
      */
-    private void sendPacket(Message msg, InetAddress destination, int destPort) {
-        AsyncManager.run(() -> {
-            try {
-                String encoded = MessageCodec.encode(msg);
-                byte[] data = encoded.getBytes();
-                DatagramPacket packet = new DatagramPacket(data, data.length, destination, destPort);
-                socket.send(packet);
-                System.out.println("Asynchronously sent packet: " + encoded);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        });
+    private void sendPacket(Message msg, InetSocketAddress destination) {
+        try {
+            transport.send(msg, destination);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * (Re)sends a pending message or fragment.
+     */
+    private void sendPacket(PendingMessage pm, InetSocketAddress destination) {
+        if (pm.fragment != null) {
+            transport.sendFragment(pm.fragment, destination);
+        } else {
+            sendPacket(pm.message, destination);
+        }
+    }
+
+    /**
+     * Arms the retransmission timeout of a pending message at the peer's current RTO.
+     */
+    private void arm(PeerState peer, long seq, PendingMessage pm) {
+        pm.timer = timers.schedule(() -> onTimeout(peer, seq, pm), peer.rtt.getRtoMillis());
+        if (peer.pending.get(seq) != pm) {
+            // Acknowledged before the timer was stored.
+            pm.timer.cancel();
+        }
+    }
+
+    private static void cancelTimer(PendingMessage pm) {
+        TimerWheel.Timeout timer = pm.timer;
+        if (timer != null) {
+            timer.cancel();
+        }
     }
 
     /**
-     * Checks the list of pending messages and retransmits messages that have
-     * timed out based on {@link #timeoutMillis}.
+     * Runs on the timer thread when a pending message was not acknowledged within the
+     * peer's RTO.
      *
-     * <p>Messages are retransmitted if:</p>
+     * <p>The message is retransmitted if:</p>
      * <ul>
-     *   <li>They are the base message (lowest sequence number)</li>
-     *   <li>Their predecessor message is already acknowledged (gap-free logic)</li>
+     *   <li>It is the base message (lowest sequence number)</li>
+     *   <li>Its predecessor message is already acknowledged (gap-free logic)</li>
      * </ul>
+     * <p>Otherwise only its timer is restarted. Only the timeout of the base message backs the
+     * RTO off: a loss burst that times out several messages at once is one congestion signal,
+     * not one per message.</p>
      */
-    private void checkTimeouts() {
-        long now = System.currentTimeMillis();
-        if (pendingMessages.isEmpty()) {
+    private void onTimeout(PeerState peer, long seq, PendingMessage pm) {
+        TimerWheel.Timeout timer = pm.timer;
+        if (peer.pending.get(seq) != pm || (timer != null && !timer.isExpired())) {
+            // Acknowledged, dropped or re-armed by a forced resend while the timeout was firing.
             return;
         }
+        boolean canRetransmit = !peer.pending.containsKey(seq - 1);
 
-        List<PendingMessage> sorted = new ArrayList<>(pendingMessages.values());
-        sorted.sort(Comparator.comparingLong(pm -> pm.message.getSequenceNumber()));
-
-        for (PendingMessage pm : sorted) {
-            long seq = pm.message.getSequenceNumber();
-            if (now - pm.lastSentTime >= timeoutMillis) {
-                boolean canRetransmit = false;
-
-                if (sorted.get(0).message.getSequenceNumber() == seq) {
-                    canRetransmit = true;
-                } else {
-                    boolean predecessorExists = sorted.stream().anyMatch(
-                            p -> p.message.getSequenceNumber() == seq - 1
-                    );
-                    if (!predecessorExists) {
-                        canRetransmit = true;
-                    }
-                }
-
-                if (canRetransmit) {
-                    try {
-                        sendPacket(pm.message, pm.destination, pm.destPort);
-                        pm.lastSentTime = now;
-                        System.out.println("Retransmitted message with UUID "
-                                + pm.message.getUUID() + " (seq " + seq + "): "
-                                + MessageCodec.encode(pm.message));
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                } else {
-                    pm.lastSentTime = now;
-                    System.out.println("Updated timer for message with UUID "
-                            + pm.message.getUUID() + " (seq " + seq + ")");
-                }
+        if (canRetransmit) {
+            // Exponential backoff for this peer only, once per timeout of the base message.
+            Map.Entry<Long, PendingMessage> base = peer.pending.firstEntry();
+            if (base != null && base.getKey() == seq) {
+                peer.rtt.backoff();
+            }
+            pm.retransmitted = true;
+            pm.lastSentTime = System.currentTimeMillis();
+            sendPacket(pm, peer.address);
+            if (UdpTransport.DEBUG) {
+                System.out.println("Retransmitted seq " + seq + " to " + peer.address + ": " + pm.message);
+            }
+        } else {
+            pm.lastSentTime = System.currentTimeMillis();
+            if (UdpTransport.DEBUG) {
+                System.out.println("Updated timer for seq " + seq + " to " + peer.address);
             }
         }
+        arm(peer, seq, pm);
     }
 
     /**
-     * Immediately resends any pending message that has exceeded the timeout threshold,
+     * Immediately resends any pending message that has exceeded its peer's timeout,
      * regardless of whether it’s the base message or unblocked.
      */
     public void forceResendTimeouts() {
         long now = System.currentTimeMillis();
-        if (pendingMessages.isEmpty()) {
-            return;
-        }
-        for (PendingMessage pm : pendingMessages.values()) {
-            if (now - pm.lastSentTime >= timeoutMillis) {
-                try {
-                    sendPacket(pm.message, pm.destination, pm.destPort);
+        for (PeerState peer : peers.values()) {
+            for (Map.Entry<Long, PendingMessage> entry : peer.pending.entrySet()) {
+                PendingMessage pm = entry.getValue();
+                if (now - pm.lastSentTime >= peer.rtt.getRtoMillis()) {
+                    sendPacket(pm, peer.address);
                     pm.lastSentTime = now;
-                    System.out.println("Force resent message with UUID "
-                            + pm.message.getUUID() + " (seq "
-                            + pm.message.getSequenceNumber() + "): "
-                            + MessageCodec.encode(pm.message));
-                } catch (Exception e) {
-                    e.printStackTrace();
+                    pm.retransmitted = true;
+                    cancelTimer(pm);
+                    arm(peer, entry.getKey(), pm);
+                    if (UdpTransport.DEBUG) {
+                        System.out.println("Force resent seq " + entry.getKey() + " to "
+                                + peer.address + ": " + pm.message);
+                    }
                 }
             }
         }
     }
 
     /**
-     * Marks a message as acknowledged, removing it from the pending queue.
-     * This method is executed asynchronously.
+     * Marks a message sent to {@code peer} as acknowledged, removing it from that
+     * peer's pending set.
+     *
+     * @param peer the address the ACK came from
+     * @param uuid the UUID of the acknowledged message
+     */
+    public void acknowledge(InetSocketAddress peer, String uuid) {
+        PeerState state = peers.get(peer);
+        if (state == null || !acknowledge(state, uuid)) {
+            // The ACK may come from a different address than we sent to (e.g. NAT rebinding).
+            acknowledge(uuid);
+        }
+    }
+
+    /**
+     * Marks a message as acknowledged when the sender of the ACK is unknown,
+     * searching all peers for the UUID.
      *
      * @param uuid the UUID of the acknowledged message
      */
     public void acknowledge(String uuid) {
-        // ===== SYNCHRONOUS removal =====
-        System.out.println("Received ACK for UUID " + uuid);
-        PendingMessage removed = pendingMessages.remove(uuid);
-        if (removed != null) {
-            System.out.println(" Removed pending message with UUID " + uuid);
-        } else {
-            System.err.println(" No pending message found for UUID " + uuid);
+        if (UdpTransport.DEBUG) {
+            System.out.println("Received ACK for UUID " + uuid);
+        }
+        for (PeerState state : peers.values()) {
+            if (acknowledge(state, uuid)) {
+                return;
+            }
+        }
+        System.err.println(" No pending message found for UUID " + uuid);
+    }
+
+    /**
+     * Finds the pending message with the given UUID. Only messages whose UUID was requested
+     * before they were sent, i.e. those sent to text-format peers, can match, and the window
+     * is small, so a scan is cheaper than indexing every message by UUID.
+     */
+    private boolean acknowledge(PeerState state, String uuid) {
+        if (uuid == null) {
+            return false;
+        }
+        for (Map.Entry<Long, PendingMessage> entry : state.pending.entrySet()) {
+            if (uuid.equals(entry.getValue().message.peekUUID())) {
+                long seq = entry.getKey();
+                acknowledgeSeq(state, seq);
+                drainBacklog(state);
+                if (UdpTransport.DEBUG) {
+                    System.out.println(" Removed pending message with UUID " + uuid + " (seq " + seq + ") for " + state.address);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks the message with sequence number {@code seq} sent to {@code peer} as acknowledged.
+     * Used for ACKs that fall outside the range of a selective-ACK header.
+     *
+     * @param peer the address the ACK came from
+     * @param seq  the sequence number of the acknowledged message
+     */
+    public void acknowledge(InetSocketAddress peer, long seq) {
+        PeerState state = peers.get(peer);
+        if (state != null && acknowledgeSeq(state, seq)) {
+            drainBacklog(state);
+        }
+    }
+
+    /**
+     * Marks every message covered by a selective-ACK header as acknowledged: {@code latest}
+     * and each {@code latest - 1 - i} whose bit {@code i} is set.
+     *
+     * @param peer   the address the header came from
+     * @param latest the latest sequence number the peer received
+     * @param bits   the peer's ACK bitfield, see {@link AckTracker}
+     */
+    public void acknowledge(InetSocketAddress peer, long latest, int bits) {
+        PeerState state = peers.get(peer);
+        if (state == null || state.pending.isEmpty()) {
+            return;
+        }
+        boolean freed = acknowledgeSeq(state, latest);
+        for (int i = 0; i < AckTracker.WINDOW; i++) {
+            if ((bits & (1 << i)) != 0) {
+                freed |= acknowledgeSeq(state, latest - 1 - i);
+            }
+        }
+        if (freed) {
+            drainBacklog(state);
+        }
+    }
+
+    private boolean acknowledgeSeq(PeerState state, long seq) {
+        PendingMessage removed = state.pending.remove(seq);
+        if (removed == null) {
+            return false;
+        }
+        cancelTimer(removed);
+        if (!removed.retransmitted) {
+            // Karn's rule: only a message sent exactly once gives an unambiguous sample.
+            state.rtt.addSample(System.currentTimeMillis() - removed.firstSentTime);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of unacknowledged messages to a destination.
+     *
+     * @param peer the destination address
+     * @return the size of the peer's pending set, {@code 0} for unknown peers
+     */
+    public int getPendingCount(InetSocketAddress peer) {
+        PeerState state = peers.get(peer);
+        return state == null ? 0 : state.pending.size();
+    }
+
+    /**
+     * Feeds a round-trip time measured outside of this sender, e.g. by a PING/PONG
+     * exchange, into the destination's estimator.
+     *
+     * @param peer      the destination address
+     * @param rttMillis the measured round-trip time in milliseconds
+     */
+    public void addRttSample(InetSocketAddress peer, long rttMillis) {
+        peers.computeIfAbsent(peer, newPeer).rtt.addSample(rttMillis);
+    }
+
+    /**
+     * Returns the number of messages waiting for room in a destination's window.
+     *
+     * @param peer the destination address
+     * @return the size of the peer's backlog, {@code 0} for unknown peers
+     */
+    public int getBacklogSize(InetSocketAddress peer) {
+        PeerState state = peers.get(peer);
+        if (state == null) {
+            return 0;
+        }
+        synchronized (state) {
+            return state.backlog.size();
+        }
+    }
+
+    /**
+     * Returns the current retransmission timeout of a destination.
+     *
+     * @param peer the destination address
+     * @return the peer's RTO in milliseconds, or the initial timeout for unknown peers
+     */
+    public long getRtoMillis(InetSocketAddress peer) {
+        PeerState state = peers.get(peer);
+        return state == null ? timeoutMillis : state.rtt.getRtoMillis();
+    }
+
+    /**
+     * Returns the smoothed round-trip time of a destination.
+     *
+     * @param peer the destination address
+     * @return the peer's SRTT in milliseconds, or {@code -1} if nothing was measured yet
+     */
+    public long getRttMillis(InetSocketAddress peer) {
+        PeerState state = peers.get(peer);
+        return state == null ? -1 : state.rtt.getSrttMillis();
+    }
+
+    /**
+     * Forgets all reliability state of a destination, e.g. after the client disconnected.
+     *
+     * @param peer the destination address
+     */
+    public void removePeer(InetSocketAddress peer) {
+        PeerState state = peers.remove(peer);
+        if (state != null) {
+            synchronized (state) {
+                state.backlog.clear();
+            }
+            for (PendingMessage pm : state.pending.values()) {
+                cancelTimer(pm);
+            }
         }
     }
 }
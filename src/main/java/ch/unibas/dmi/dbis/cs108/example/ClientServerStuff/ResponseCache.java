@@ -0,0 +1,160 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Remembers the responses the server sent for recent {@code REQUEST}s, per client, so that a
+ * request the client sends again gets the original responses back instead of being executed
+ * a second time.
+ *
+ * <p>
+ * A request is identified by a key the caller derives from it, e.g. its per-connection sequence
+ * number. {@link #begin(String, String)} claims the key before the handler runs; responses are
+ * added with {@link #record(String, String, Message)}. Each client keeps at most
+ * {@link #CAPACITY_PROPERTY} entries, and entries older than {@link #TTL_PROPERTY} are evicted
+ * the next time the client's cache is touched.
+ * </p>
+ */
+public class ResponseCache {
+
+    /** System property holding how long a response is kept, in milliseconds. */
+    public static final String TTL_PROPERTY = "responseCache.ttlMillis";
+
+    /** System property holding the maximum number of cached requests per client. */
+    public static final String CAPACITY_PROPERTY = "responseCache.perClient";
+
+    /** Default time to keep a response; well beyond any retry a client makes. */
+    public static final long DEFAULT_TTL_MILLIS = 30_000;
+
+    /** Default number of cached requests per client. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * The responses of one request.
+     */
+    private static final class Entry {
+        final long createdMillis;
+        final List<Message> responses = new ArrayList<>();
+
+        Entry(long createdMillis) {
+            this.createdMillis = createdMillis;
+        }
+    }
+
+    private final long ttlMillis;
+    private final int capacity;
+
+    /** Cached requests per client, oldest first; each map is guarded by its own monitor. */
+    private final ConcurrentHashMap<String, LinkedHashMap<String, Entry>> clients = new ConcurrentHashMap<>();
+
+    /** Pre-bound map factory, avoids allocating a lambda per request. */
+    private final Function<String, LinkedHashMap<String, Entry>> newClient = client -> new LinkedHashMap<>();
+
+    /**
+     * Creates a cache with the limits from {@link #TTL_PROPERTY} and {@link #CAPACITY_PROPERTY}.
+     */
+    public ResponseCache() {
+        this(Long.getLong(TTL_PROPERTY, DEFAULT_TTL_MILLIS), Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param ttlMillis how long a request's responses are kept
+     * @param capacity  the maximum number of cached requests per client
+     */
+    public ResponseCache(long ttlMillis, int capacity) {
+        if (ttlMillis <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Invalid response cache limits: " + ttlMillis + " ms, " + capacity);
+        }
+        this.ttlMillis = ttlMillis;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Claims a request before its handler runs.
+     *
+     * @param client     the client that sent the request
+     * @param requestKey identifies the request
+     * @return {@code null} if the request is new and must be executed; otherwise the responses
+     *         sent for it the first time, which is empty while the first execution is still running
+     */
+    public List<Message> begin(String client, String requestKey) {
+        LinkedHashMap<String, Entry> entries = clients.computeIfAbsent(client, newClient);
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            evict(entries, now);
+            Entry entry = entries.get(requestKey);
+            if (entry != null) {
+                return new ArrayList<>(entry.responses);
+            }
+            if (entries.size() >= capacity) {
+                Iterator<Entry> oldest = entries.values().iterator();
+                oldest.next();
+                oldest.remove();
+            }
+            entries.put(requestKey, new Entry(now));
+            return null;
+        }
+    }
+
+    /**
+     * Adds a response to a request claimed with {@link #begin(String, String)}. Does nothing if
+     * the entry was evicted in the meantime.
+     *
+     * @param client     the client that sent the request
+     * @param requestKey identifies the request
+     * @param response   the response sent to the client
+     */
+    public void record(String client, String requestKey, Message response) {
+        LinkedHashMap<String, Entry> entries = clients.get(client);
+        if (entries == null) {
+            return;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(requestKey);
+            if (entry != null) {
+                entry.responses.add(response.clone());
+            }
+        }
+    }
+
+    /**
+     * @param client the client
+     * @return the number of requests cached for {@code client}
+     */
+    public int size(String client) {
+        LinkedHashMap<String, Entry> entries = clients.get(client);
+        if (entries == null) {
+            return 0;
+        }
+        synchronized (entries) {
+            evict(entries, System.currentTimeMillis());
+            return entries.size();
+        }
+    }
+
+    /**
+     * Forgets everything cached for a client, e.g. after it disconnected.
+     *
+     * @param client the client
+     */
+    public void remove(String client) {
+        clients.remove(client);
+    }
+
+    /**
+     * Drops expired entries; insertion order is creation order, so they are all at the front.
+     */
+    private void evict(LinkedHashMap<String, Entry> entries, long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext() && now - it.next().createdMillis >= ttlMillis) {
+            it.remove();
+        }
+    }
+}
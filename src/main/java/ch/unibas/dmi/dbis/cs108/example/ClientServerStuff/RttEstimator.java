@@ -0,0 +1,144 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * Estimates the round-trip time to one peer and derives the retransmission timeout (RTO) from it,
+ * following Jacobson/Karels as specified in RFC 6298.
+ *
+ * <ul>
+ *   <li>The first sample {@code R} sets {@code SRTT = R} and {@code RTTVAR = R / 2}.</li>
+ *   <li>Every later sample updates {@code RTTVAR = 3/4 RTTVAR + 1/4 |SRTT - R|} and then
+ *       {@code SRTT = 7/8 SRTT + 1/8 R}.</li>
+ *   <li>{@code RTO = SRTT + max(G, 4 RTTVAR)}, where {@code G} is the timer granularity,
+ *       clamped to {@code [minRto, maxRto]}.</li>
+ *   <li>Every retransmission doubles the RTO ({@link #backoff()}) until the next valid sample.</li>
+ * </ul>
+ *
+ * <p>
+ * Callers must follow Karn's rule and only feed samples of messages that were sent once.
+ * All methods are thread-safe.
+ * </p>
+ */
+public class RttEstimator {
+
+    /** System property holding the lower RTO bound in milliseconds. */
+    public static final String MIN_RTO_PROPERTY = "rto.minMillis";
+
+    /** System property holding the upper RTO bound in milliseconds. */
+    public static final String MAX_RTO_PROPERTY = "rto.maxMillis";
+
+    /**
+     * Default RTO before the first sample. Shorter than the 1 s of RFC 6298; the first
+     * acknowledged message replaces it with a measured value anyway.
+     */
+    public static final long DEFAULT_INITIAL_RTO_MILLIS = 250;
+
+    /**
+     * Default lower RTO bound. Far below the 1 s of RFC 6298, which is meant for TCP; a game
+     * has to recover from loss within a few frames on a LAN.
+     */
+    public static final long DEFAULT_MIN_RTO_MILLIS = 50;
+
+    /** Default upper RTO bound. */
+    public static final long DEFAULT_MAX_RTO_MILLIS = 8_000;
+
+    private final long minRtoMillis;
+    private final long maxRtoMillis;
+    private final long granularityMillis;
+
+    private boolean hasSample;
+    private double srtt;
+    private double rttvar;
+    private long rtoMillis;
+    private long lastSampleMillis = -1;
+
+    /**
+     * Creates an estimator with the bounds from {@link #MIN_RTO_PROPERTY} and
+     * {@link #MAX_RTO_PROPERTY}.
+     *
+     * @param initialRtoMillis  the RTO to use until the first sample arrives
+     * @param granularityMillis the resolution of the retransmission timer
+     */
+    public RttEstimator(long initialRtoMillis, long granularityMillis) {
+        this(initialRtoMillis, granularityMillis,
+                Long.getLong(MIN_RTO_PROPERTY, DEFAULT_MIN_RTO_MILLIS),
+                Long.getLong(MAX_RTO_PROPERTY, DEFAULT_MAX_RTO_MILLIS));
+    }
+
+    /**
+     * Creates an estimator.
+     *
+     * @param initialRtoMillis  the RTO to use until the first sample arrives
+     * @param granularityMillis the resolution of the retransmission timer
+     * @param minRtoMillis      the lower RTO bound
+     * @param maxRtoMillis      the upper RTO bound
+     */
+    public RttEstimator(long initialRtoMillis, long granularityMillis, long minRtoMillis, long maxRtoMillis) {
+        if (minRtoMillis <= 0 || maxRtoMillis < minRtoMillis) {
+            throw new IllegalArgumentException("Invalid RTO bounds: " + minRtoMillis + ".." + maxRtoMillis);
+        }
+        this.minRtoMillis = minRtoMillis;
+        this.maxRtoMillis = maxRtoMillis;
+        this.granularityMillis = Math.max(1, granularityMillis);
+        this.rtoMillis = clamp(initialRtoMillis);
+    }
+
+    /**
+     * Adds a round-trip time measurement.
+     *
+     * @param rttMillis the measured round-trip time in milliseconds; negative values are ignored
+     */
+    public synchronized void addSample(long rttMillis) {
+        if (rttMillis < 0) {
+            return;
+        }
+        if (!hasSample) {
+            srtt = rttMillis;
+            rttvar = rttMillis / 2.0;
+            hasSample = true;
+        } else {
+            rttvar = 0.75 * rttvar + 0.25 * Math.abs(srtt - rttMillis);
+            srtt = 0.875 * srtt + 0.125 * rttMillis;
+        }
+        lastSampleMillis = rttMillis;
+        rtoMillis = clamp((long) Math.ceil(srtt + Math.max(granularityMillis, 4 * rttvar)));
+    }
+
+    /**
+     * Doubles the RTO after a retransmission timeout, up to the upper bound.
+     */
+    public synchronized void backoff() {
+        rtoMillis = clamp(rtoMillis * 2);
+    }
+
+    /**
+     * @return the current retransmission timeout in milliseconds
+     */
+    public synchronized long getRtoMillis() {
+        return rtoMillis;
+    }
+
+    /**
+     * @return the smoothed round-trip time in milliseconds, or {@code -1} before the first sample
+     */
+    public synchronized long getSrttMillis() {
+        return hasSample ? Math.round(srtt) : -1;
+    }
+
+    /**
+     * @return the round-trip time variation in milliseconds, or {@code -1} before the first sample
+     */
+    public synchronized long getRttVarMillis() {
+        return hasSample ? Math.round(rttvar) : -1;
+    }
+
+    /**
+     * @return the most recent raw sample in milliseconds, or {@code -1} before the first sample
+     */
+    public synchronized long getLastSampleMillis() {
+        return lastSampleMillis;
+    }
+
+    private long clamp(long rto) {
+        return Math.max(minRtoMillis, Math.min(maxRtoMillis, rto));
+    }
+}
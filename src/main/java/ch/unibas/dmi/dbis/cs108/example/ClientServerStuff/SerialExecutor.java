@@ -0,0 +1,97 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on a shared thread pool, one at a time and in submission order per key.
+ *
+ * <p>The server hands the messages of a peer's ordered channel to this executor keyed by
+ * the peer's address: {@link ChannelReceiver} releases them in order, and this keeps them
+ * in order while their handlers run, without giving each peer a thread of its own.
+ * Tasks of different keys still run in parallel.</p>
+ *
+ * <p>A key only holds a queue while it has tasks waiting or running, so idle peers cost
+ * nothing.</p>
+ */
+public class SerialExecutor {
+
+    private final Executor executor;
+
+    /** Waiting tasks per key; the head is the task that is running. Only touched inside {@code compute}. */
+    private final ConcurrentHashMap<Object, ArrayDeque<Runnable>> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a serial executor running its tasks on the {@link AsyncManager} pool.
+     */
+    public SerialExecutor() {
+        this(AsyncManager::run);
+    }
+
+    /**
+     * Creates a serial executor running its tasks on the given executor.
+     *
+     * @param executor the executor the tasks run on
+     */
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the task after every task submitted for the same key before it.
+     *
+     * @param key  the key the task is ordered by, e.g. a peer's address
+     * @param task the task to run
+     */
+    public void execute(Object key, Runnable task) {
+        boolean[] idle = new boolean[1];
+        lanes.compute(key, (k, lane) -> {
+            if (lane == null) {
+                lane = new ArrayDeque<>();
+                idle[0] = true;
+            }
+            lane.addLast(task);
+            return lane;
+        });
+        if (idle[0]) {
+            executor.execute(() -> drain(key, task));
+        }
+    }
+
+    /**
+     * Returns the number of tasks of a key that are waiting or running.
+     *
+     * @param key the key
+     * @return the number of tasks
+     */
+    public int getQueuedCount(Object key) {
+        int[] count = new int[1];
+        lanes.computeIfPresent(key, (k, lane) -> {
+            count[0] = lane.size();
+            return lane;
+        });
+        return count[0];
+    }
+
+    /**
+     * Runs the tasks of a key until its queue is empty, then lets go of the key.
+     */
+    private void drain(Object key, Runnable first) {
+        Runnable task = first;
+        while (task != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            Runnable[] next = new Runnable[1];
+            lanes.computeIfPresent(key, (k, lane) -> {
+                lane.pollFirst();
+                next[0] = lane.peekFirst();
+                return lane.isEmpty() ? null : lane;
+            });
+            task = next[0];
+        }
+    }
+}
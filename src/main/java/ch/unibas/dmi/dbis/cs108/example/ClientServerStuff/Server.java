@@ -10,12 +10,16 @@ import ch.unibas.dmi.dbis.cs108.example.gameObjects.GameObject;
 import lombok.Getter;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Map;
 import java.io.IOException;
 import java.util.Map;
@@ -43,6 +47,7 @@ import lombok.Setter;
  *   <li>Game session management through {@link GameSessionManager}</li>
  *   <li>Command-based request handling via {@link CommandRegistry}</li>
  *   <li>Asynchronous message processing with outgoing queue</li>
+ *   <li>Non-blocking UDP I/O via {@link UdpTransport}, optionally sharded across cores with {@code SO_REUSEPORT}</li>
  *   <li>Broadcast capabilities to all or specific clients</li>
  * </ul>
  *
@@ -90,6 +95,20 @@ public class Server {
     /** The default UDP port on which this server listens for incoming messages. */
     public static int SERVER_PORT = 9876;
 
+    /**
+     * System property with the number of receive shards, e.g. {@code -Dserver.receiveShards=16}.
+     * Each shard is its own {@code SO_REUSEPORT} socket with its own I/O thread that decodes and
+     * dispatches the packets the kernel hashes to it. Defaults to {@code 1}.
+     */
+    public static final String RECEIVE_SHARDS_PROPERTY = "server.receiveShards";
+
+    /**
+     * System property with the maximum size of the datagrams the server packs its per-tick
+     * messages into, e.g. {@code -Dserver.mtu=1400}. {@code 0} sends one message per datagram.
+     * Defaults to {@link PacketAggregator#DEFAULT_MTU}.
+     */
+    public static final String MTU_PROPERTY = "server.mtu";
+
     /** Provides the server-side chat manager used for handling chat messages. */
     @Setter
     private ChatManager.ServerChatManager serverChatManager;
@@ -101,14 +120,53 @@ public class Server {
     @Getter
     private final ConcurrentHashMap<String, InetSocketAddress> clientsMap = new ConcurrentHashMap<>();
 
-    /** The underlying DatagramSocket used to receive and send UDP packets. */
-    private DatagramSocket serverSocket;
+    /**
+     * Owns the server's UDP channels: receives on one selector thread per shard and queues
+     * all sends per client.
+     */
+    private UdpTransport transport;
 
     /** Responsible for sending messages over a "reliable" UDP mechanism. */
     private ReliableUDPSender reliableSender;
 
-    /** Processes incoming ACK messages and notifies the ReliableUDPSender. */
-    private AckProcessor ackProcessor;
+    /**
+     * Tracks the reliable messages received from binary clients; their ACKs ride in the
+     * header of the datagrams sent back.
+     */
+    private final AckTracker ackTracker = new AckTracker();
+
+    /** Orders and filters the messages of binary clients per {@link DeliveryChannel}. */
+    private final ChannelReceiver channelReceiver = new ChannelReceiver();
+
+    /** Clients disconnected by the server that have not started a new session yet. */
+    private final DisconnectedPeers disconnectedPeers = new DisconnectedPeers();
+
+    /** Runs the handlers of each client's ordered channel one after another, in channel order. */
+    private final SerialExecutor orderedProcessing = new SerialExecutor();
+
+    /** Responses of recent requests, replayed when a client sends the same request again. */
+    private final ResponseCache responseCache = new ResponseCache();
+
+    /** Reassembles messages that binary clients had to split into several datagrams. */
+    private final FragmentAssembler fragmentAssembler = new FragmentAssembler();
+
+    /** Picks the session members an object update is relevant for. */
+    private final InterestManager interestManager = new InterestManager();
+
+    /** The world snapshots sent to each member of an authoritative game, by username. */
+    private final ConcurrentHashMap<String, SnapshotHistory> snapshotHistories = new ConcurrentHashMap<>();
+
+    /**
+     * The request whose handler runs on the current thread, so that the responses it
+     * sends to the requester can be recorded in {@link #responseCache}.
+     */
+    private final ThreadLocal<String[]> currentRequest = new ThreadLocal<>();
+
+    /**
+     * Remembers the {@link WireFormat} each peer registered with, so that every reply
+     * is encoded in a format the receiving client understands.
+     */
+    private final ConcurrentHashMap<InetSocketAddress, WireFormat> peerFormats = new ConcurrentHashMap<>();
 
     /** The game session(s) are managed via GameSessionManager. */
     private final GameSessionManager gameSessionManager = new GameSessionManager();
@@ -183,6 +241,13 @@ public class Server {
      * @param port    the destination UDP port
      */
     public void enqueueMessage(Message msg, InetAddress address, int port) {
+        String[] request = currentRequest.get();
+        if (request != null && "RESPONSE".equalsIgnoreCase(msg.getOption())) {
+            InetSocketAddress requester = clientsMap.get(request[0]);
+            if (requester != null && requester.getAddress().equals(address) && requester.getPort() == port) {
+                responseCache.record(request[0], request[1], msg);
+            }
+        }
         outgoingQueue.offer(new OutgoingMessage(msg, address, port));
     }
 
@@ -218,6 +283,18 @@ public class Server {
         return false;
     }
 
+    /**
+     * Returns the wire format negotiated with the given peer. The format is taken from
+     * the first datagram the peer sent (its {@code REGISTER}); peers we have not heard
+     * from yet default to {@link WireFormat#BINARY}.
+     *
+     * @param peer the remote socket address
+     * @return the format to encode messages for this peer with
+     */
+    public WireFormat wireFormatFor(InetSocketAddress peer) {
+        return peerFormats.getOrDefault(peer, WireFormat.BINARY);
+    }
+
     // ================================
     // Server Start Method
     // ================================
@@ -234,8 +311,10 @@ public class Server {
         try {
             InetAddress ipAddress = InetAddress.getByName(address);
             InetSocketAddress socketAddress = new InetSocketAddress(ipAddress, SERVER_PORT);
-            serverSocket = new DatagramSocket(socketAddress);
-            System.out.println("UDP Server is running on " + ipAddress.getHostAddress() + ":" + SERVER_PORT);
+            int receiveShards = Integer.getInteger(RECEIVE_SHARDS_PROPERTY, 1);
+            transport = UdpTransport.bind(socketAddress, receiveShards, this::wireFormatFor, this::onPacket);
+            System.out.println("UDP Server is running on " + ipAddress.getHostAddress() + ":" + SERVER_PORT
+                    + " with " + transport.getShardCount() + " receive shard(s)");
 
             commandRegistry.initCommandHandlers();
 
@@ -243,9 +322,21 @@ public class Server {
             myGameInstance = new Game("DefaultSessionID", "DefaultGameName");
             myGameInstance.startPlayersCommandProcessingLoop();
 
-            reliableSender = new ReliableUDPSender(serverSocket, 50, 200);
-            ackProcessor = new AckProcessor(serverSocket);
-            //ackProcessor.start();
+            reliableSender = new ReliableUDPSender(transport, 50, RttEstimator.DEFAULT_INITIAL_RTO_MILLIS);
+            reliableSender.setBackPressureListener(new ReliableUDPSender.BackPressureListener() {
+                @Override
+                public void onHighWater(InetSocketAddress peer, int queued) {
+                    System.err.println("Client " + peer + " is not keeping up: " + queued + " reliable messages queued");
+                }
+
+                @Override
+                public void onOverflow(InetSocketAddress peer, int queued) {
+                    // Bounded memory: a client that cannot drain its backlog is dropped.
+                    disconnectClient(peer, "too far behind, " + queued + " reliable messages queued");
+                }
+            });
+            transport.setAckTracker(ackTracker);
+            ackTracker.start(transport, AckTracker.DEFAULT_ACK_DELAY_MILLIS);
 
             // Process outgoing messages.
             AsyncManager.runLoop(() -> {
@@ -256,7 +347,9 @@ public class Server {
             
                         // No null-check needed: take() never returns null
                         reliableSender.sendMessage(om.msg, om.address, om.port);
-                        System.out.println("Sent message to " + om.address + ":" + om.port);
+                        if (UdpTransport.DEBUG) {
+                            System.out.println("Sent message to " + om.address + ":" + om.port);
+                        }
             
                     } catch (InterruptedException ie) {
                         // Restore the interrupt flag and exit the loop
@@ -272,53 +365,14 @@ public class Server {
             });
             
 
-            // Listen for incoming packets.
-            new Thread(() -> {
-                while (true) {
-                    try {
-                    byte[] buffer = new byte[1024];
-                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-                    serverSocket.receive(packet);
-
-                    // 1) Decode
-                    String raw = new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8);
-                    InetSocketAddress sender = new InetSocketAddress(packet.getAddress(), packet.getPort());
-                    Message msg = MessageCodec.decode(raw);
-                    System.out.println("Received: " + raw + " from " + sender);
-
-                    // 2) If it’s an ACK *for* one of our reliable sends, clear it immediately
-                    if ("ACK".equalsIgnoreCase(msg.getMessageType())) {
-                        String ackUuid = msg.getParameters()[0].toString();
-                        reliableSender.acknowledge(ackUuid);
-                        // don’t process it any further
-                        continue;
-                    }
-                    else
-                    {
-                        // 3) Best‑effort ACK back to the user who sent it:
-                        String[] concealed = msg.getConcealedParameters();
-                        if (msg.getUUID() != null
-                            && !msg.getUUID().isEmpty()
-                            && concealed != null
-                            && concealed.length > 0
-                            && !"GAME".equalsIgnoreCase(msg.getOption())
-                        ) {
-                        // last concealed parameter is the username
-                        String username = concealed[concealed.length - 1];
-                        sendPlainAckAsync(username, msg);
-                        }
-
-                        // 4) Finally hand it off to the rest of your server logic
-                        AsyncManager.run(() -> processMessage(msg, sender));
-                        messageHub.dispatch(msg);
-                    }
-
-                    } catch (IOException e) {
-                    e.printStackTrace();
-                    }
-                }
-            }).start();
+            // Coalesce everything sent to one client during a tick into as few datagrams as possible.
+            int mtu = Integer.getInteger(MTU_PROPERTY, PacketAggregator.DEFAULT_MTU);
+            if (mtu > 0) {
+                transport.enableAggregation(mtu, PacketAggregator.DEFAULT_FLUSH_HZ);
+            }
 
+            // Receive and send on the non-blocking I/O threads, one per shard.
+            transport.start("server-udp-io");
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -336,6 +390,132 @@ public class Server {
     // Message Processing
     // ================================
 
+    /**
+     * Handles one datagram on the I/O thread of the shard it arrived on. Decodes it, remembers
+     * the sender's wire format, settles ACKs right away and hands everything else off to
+     * {@link #processMessage(Message, InetSocketAddress)} and the {@link MessageHub}.
+     * Runs concurrently on all shards, so everything touched here must be thread-safe.
+     *
+     * @param datagram the received datagram
+     * @param sender   the address it came from
+     */
+    private void onPacket(ByteBuffer datagram, InetSocketAddress sender) {
+        try {
+            // 1) Selective ACKs for our reliable sends come first, ahead of any frame
+            boolean ackHeader = AckTracker.readHeader(datagram, sender, reliableSender::acknowledge);
+            if (!datagram.hasRemaining()) {
+                return;
+            }
+            // 2) Remember which wire format this peer speaks
+            WireFormat format = ackHeader ? WireFormat.BINARY : WireFormat.detect(datagram);
+            if (peerFormats.get(sender) != format) {
+                peerFormats.put(sender, format);
+            }
+            // 3) A binary datagram may carry several aggregated messages back to back
+            while (datagram.hasRemaining()) {
+                Message msg;
+                if (MessageFragmenter.isFragment(datagram)) {
+                    // Fragments are acknowledged one by one; the reassembled message is not.
+                    msg = fragmentAssembler.accept(sender, datagram, ackTracker);
+                    if (msg == null) {
+                        continue;
+                    }
+                } else {
+                    msg = WireFormat.read(datagram);
+                }
+                if (UdpTransport.DEBUG && !"GAME".equalsIgnoreCase(msg.getOption())) {
+                    System.out.println("Received (" + format + "): " + msg + " from " + sender);
+                }
+                handleIncoming(msg, sender);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Dropping undecodable packet: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles a single decoded message: settles ACKs, acknowledges reliable messages and
+     * hands everything else to the server logic.
+     *
+     * @param msg    the decoded message
+     * @param sender the address it came from
+     */
+    private void handleIncoming(Message msg, InetSocketAddress sender) {
+        if (disconnectedPeers.isDisconnected(sender)) {
+            Message notice = disconnectedPeers.screen(sender, msg);
+            if (notice != null) {
+                // Still the old session: remind the client that it is over.
+                sendMessageBestEffort(notice, sender);
+                return;
+            }
+            // The client starts over; whatever its old session left behind must not shadow it.
+            ackTracker.remove(sender);
+            channelReceiver.remove(sender);
+            fragmentAssembler.remove(sender);
+        }
+
+        // If it’s an ACK *for* one of our reliable sends, clear it immediately
+        if ("ACK".equalsIgnoreCase(msg.getMessageType())) {
+            Object acked = msg.getParameters()[0];
+            if (acked instanceof Number) {
+                // Binary peers acknowledge by sequence number.
+                reliableSender.acknowledge(sender, ((Number) acked).longValue());
+            } else {
+                reliableSender.acknowledge(sender, acked.toString());
+            }
+            // don’t process it any further
+            return;
+        }
+
+        // Snapshot ACKs arrive every tick and only move the delta baseline forward.
+        if (WorldSnapshot.ACK_TYPE.equals(msg.getMessageType())) {
+            acknowledgeSnapshot(msg);
+            return;
+        }
+
+        if (wireFormatFor(sender) == WireFormat.BINARY) {
+            // Binary clients get their ACKs piggybacked on the next datagram we send them.
+            if (msg.getSequenceNumber() > 0 && msg.getChannel().isReliable()
+                    && !ackTracker.onReceived(sender, msg.getSequenceNumber())) {
+                // A retransmission of something we already handled: re-ACKed, but not run again.
+                return;
+            }
+        } else {
+            // Best‑effort ACK back to the user who sent it:
+            String[] concealed = msg.getConcealedParameters();
+            if (msg.getUUID() != null
+                && !msg.getUUID().isEmpty()
+                && concealed != null
+                && concealed.length > 0
+                && msg.getChannel().isReliable()
+            ) {
+                // last concealed parameter is the username
+                String username = concealed[concealed.length - 1];
+                sendPlainAckAsync(username, msg);
+            }
+        }
+
+        // Finally hand it off to the rest of your server logic, in channel order
+        channelReceiver.receive(sender, msg, ready -> deliver(ready, sender));
+    }
+
+    /**
+     * Hands a message its channel released to the server logic. Messages of the ordered
+     * channel are processed one after another per client, so chat and lobby handlers see
+     * them in the order the client sent them; everything else runs on the shared pool.
+     *
+     * @param msg    the message
+     * @param sender the address it came from
+     */
+    private void deliver(Message msg, InetSocketAddress sender) {
+        if (msg.getChannel() == DeliveryChannel.RELIABLE_ORDERED) {
+            orderedProcessing.execute(sender, () -> processMessage(msg, sender));
+        } else {
+            AsyncManager.run(() -> processMessage(msg, sender));
+        }
+        messageHub.dispatch(msg);
+    }
+
     /**
      * Processes an incoming {@link Message} from a specified sender address.
      * <p>
@@ -353,30 +533,22 @@ public class Server {
      * @param senderSocket the network socket (IP + port) of the message sender
      */
     private void processMessage(Message msg, InetSocketAddress senderSocket) {
-
-        
+        // Runs off the receive thread already; handlers run inline to keep the channel order.
         if ("CHAT".equalsIgnoreCase(msg.getMessageType())) {
-            System.out.println("Processed CHAT message 1 ");
             if (serverChatManager == null) {
                 serverChatManager = new ChatManager.ServerChatManager();
             }
-            if (msg.getUUID() != null && !msg.getUUID().isEmpty()) {
-                ackProcessor.addAck(senderSocket, msg.getUUID());
-            }
-            AsyncManager.run(() -> broadcastMessageToAll(msg));
-            System.out.println("Processed CHAT message 2");
+            broadcastMessageToAll(msg);
             return;
         }
 
         String[] concealed = msg.getConcealedParameters();
         if (concealed != null && concealed.length >= 2) {
             String username = concealed[concealed.length - 1];
-            if (clientsMap.containsKey(username)) {
-                InetSocketAddress existingSocket = clientsMap.get(username);
+            // putIfAbsent keeps registration atomic when shards register users concurrently
+            InetSocketAddress existingSocket = clientsMap.putIfAbsent(username, senderSocket);
+            if (existingSocket != null) {
                 if (!existingSocket.equals(senderSocket)) {
-                    if (msg.getUUID() != null && !msg.getUUID().isEmpty()) {
-                        ackProcessor.addAck(senderSocket, msg.getUUID());
-                    }
                     String suggestedNickname = Nickname_Generator.generateNickname();
                     Message collisionResponse = new Message("NAME_TAKEN", new Object[]{suggestedNickname}, "RESPONSE");
                     collisionResponse.setUUID("");
@@ -384,19 +556,14 @@ public class Server {
                     return;
                 }
             } else {
-                clientsMap.put(username, senderSocket);
                 synchronizeNewClient(username, senderSocket);
-            }
-            System.out.println("Registered user: " + username + " at " + senderSocket + ". Total clients: " + clientsMap.size());
-            if (msg.getUUID() != null && !"GAME".equalsIgnoreCase(msg.getOption())) {
-                ackProcessor.addAck(senderSocket, msg.getUUID());
-                System.out.println("Added message UUID " + msg.getUUID() + " to ACK handler");
+                System.out.println("Registered user: " + username + " at " + senderSocket + ". Total clients: " + clientsMap.size());
             }
             if ("GAME".equalsIgnoreCase(msg.getOption())) {
                 //processMessageBestEffort(msg, senderSocket);
-                AsyncManager.run(() -> sendKeyEvent(msg));
+                sendKeyEvent(msg);
             } else if ("REQUEST".equalsIgnoreCase(msg.getOption())) {
-                AsyncManager.run(() -> handleRequest(msg, username));
+                handleRequest(msg, username);
             } else {
                 broadcastMessageToOthers(msg, username);
             }
@@ -406,32 +573,184 @@ public class Server {
     }
 
     /**
-     * Sends a key event message to all connected clients in a best-effort manner,
-     * but only if the message type contains "KEY".
+     * Relays a key event in a best-effort manner to the members of the game session it is
+     * addressed to that are near the controlled object, but only if the message type
+     * contains "KEY". The concealed parameters are the object id, the game id and the sender.
+     * The sender is left out: it predicted the input locally already. An {@link InputCommand}
+     * only moves the sender's focus; the other members see its effect in the world snapshots.
      */
     public void sendKeyEvent(Message msg) {
         try {
+            boolean input = InputCommand.TYPE.equals(msg.getMessageType());
             // Check if the message type contains "KEY" (case-insensitive).
-            if (!msg.getMessageType().toUpperCase().contains("KEY")) {
+            if (!input && !msg.getMessageType().toUpperCase().contains("KEY")) {
                 //System.out.println("sendKeyEvent: Message type does not contain 'KEY'; skipping key event send.");
                 return;
             }
-            
-            // Iterate over all connected clients.
-            for (Map.Entry<String, InetSocketAddress> entry : clientsMap.entrySet()) {
-                InetAddress dest = entry.getValue().getAddress();
-                int port = entry.getValue().getPort();
-                String encoded = MessageCodec.encode(msg);
-                byte[] data = encoded.getBytes();
-                DatagramPacket packet = new DatagramPacket(data, data.length, dest, port);
-                serverSocket.send(packet);
-                System.out.println("Key event sent to " + entry.getKey() + " at " + entry.getValue());
+            String[] concealed = msg.getConcealedParameters();
+            if (concealed == null || concealed.length < 3) {
+                System.out.println("sendKeyEvent: concealed parameters missing or too short.");
+                return;
+            }
+            String objectId = concealed[0];
+            Game game = concealed[1] == null ? null : gameSessionManager.getGameSession(concealed[1]);
+            if (game == null) {
+                return;
+            }
+            // Whoever presses keys for an object looks at it.
+            String sender = concealed[concealed.length - 1];
+            interestManager.setFocus(sender, objectId);
+            if (input) {
+                return;
+            }
+
+            GameObject target = null;
+            for (GameObject go : game.getGameObjects()) {
+                if (go.getId().equals(objectId)) {
+                    target = go;
+                    break;
+                }
+            }
+            List<String> recipients = target != null
+                    ? interestManager.interested(game, target)
+                    : new ArrayList<>(game.getUsers());
+            recipients.remove(sender);
+            int sent = transport.broadcast(msg, addressesOf(recipients));
+            if (UdpTransport.DEBUG) {
+                System.out.println("Key event sent to " + sent + " clients");
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * @param username a client
+     * @return the game whose world snapshots the client receives, or {@code null} if none
+     */
+    public Game getSnapshotGame(String username) {
+        SnapshotHistory history = snapshotHistories.get(username);
+        return history == null ? null : gameSessionManager.getGameSession(history.getGameId());
+    }
+
+    /**
+     * Sends an update about a game object in a best-effort manner to the members of its
+     * session whose view is near it, see {@link InterestManager}.
+     *
+     * @param msg    the update
+     * @param game   the session the object belongs to
+     * @param source the object the update is about
+     * @return the number of clients the update was queued for
+     */
+    public int sendMessageToInterested(Message msg, Game game, GameObject source) {
+        return transport.broadcast(msg, addressesOf(interestManager.interested(game, source)));
+    }
+
+    /**
+     * Sends the members of an authoritative game the state of the objects they can see after a
+     * simulation tick, as one {@link WorldSnapshot} each, delta-encoded against the newest
+     * snapshot the member acknowledged. Members that see the whole session and share a baseline
+     * share one message, which is encoded once.
+     *
+     * @param game the session
+     * @param tick the tick that was just simulated
+     */
+    public void sendWorldSnapshot(Game game, long tick) {
+        try {
+            List<GameObject> objects = new ArrayList<>();
+            List<float[]> states = new ArrayList<>();
+            List<StateLayout> layouts = new ArrayList<>();
+            for (GameObject go : game.getGameObjects()) {
+                float[] state = go.getSnapshotState();
+                if (state != null) {
+                    objects.add(go);
+                    states.add(state);
+                    layouts.add(go.getSnapshotLayout());
+                }
+            }
+            if (objects.isEmpty()) {
+                return;
+            }
+
+            WorldSnapshot full = null;
+            // Members that see everything, grouped by the baseline their snapshot is encoded against.
+            Map<WorldSnapshot, List<InetSocketAddress>> seeAllByBaseline = new IdentityHashMap<>();
+            for (String member : game.getUsers()) {
+                InetSocketAddress address = clientsMap.get(member);
+                if (address == null) {
+                    continue;
+                }
+                SnapshotHistory history = snapshotHistories.get(member);
+                if (history == null || !history.getGameId().equals(game.getGameId())) {
+                    history = new SnapshotHistory(game.getGameId());
+                    snapshotHistories.put(member, history);
+                }
+                WorldSnapshot baseline = history.getBaseline();
+
+                List<GameObject> visible = interestManager.visible(member, game, objects);
+                if (visible == objects) {
+                    if (full == null) {
+                        full = new WorldSnapshot(tick, objects.size());
+                        for (int i = 0; i < objects.size(); i++) {
+                            full.add(objects.get(i).getId(), layouts.get(i), states.get(i));
+                        }
+                    }
+                    history.put(full);
+                    seeAllByBaseline.computeIfAbsent(baseline, b -> new ArrayList<>()).add(address);
+                } else {
+                    WorldSnapshot snapshot = new WorldSnapshot(tick, visible.size());
+                    int next = 0;
+                    for (GameObject go : visible) {
+                        // visible keeps the order of objects, so the matching state is found by scanning forward
+                        while (objects.get(next) != go) {
+                            next++;
+                        }
+                        snapshot.add(go.getId(), layouts.get(next), states.get(next));
+                    }
+                    history.put(snapshot);
+                    transport.send(snapshot.toMessage(game.getGameId(), baseline), address);
+                }
+            }
+            for (Map.Entry<WorldSnapshot, List<InetSocketAddress>> group : seeAllByBaseline.entrySet()) {
+                transport.broadcast(full.toMessage(game.getGameId(), group.getKey()), group.getValue());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Records that a client received a world snapshot, so the next ones are encoded against it.
+     *
+     * @param ack a {@code SNAPACK} message: game id and tick, with the username as last concealed parameter
+     */
+    private void acknowledgeSnapshot(Message ack) {
+        Object[] params = ack.getParameters();
+        String[] concealed = ack.getConcealedParameters();
+        if (params == null || params.length < 2 || !(params[1] instanceof Number)
+                || concealed == null || concealed.length == 0) {
+            return;
+        }
+        SnapshotHistory history = snapshotHistories.get(concealed[concealed.length - 1]);
+        if (history != null && history.getGameId().equals(String.valueOf(params[0]))) {
+            history.acknowledge(((Number) params[1]).longValue());
+        }
+    }
+
+    /**
+     * Resolves usernames to the addresses of the connected clients; unknown users are skipped.
+     */
+    private List<InetSocketAddress> addressesOf(Collection<String> usernames) {
+        List<InetSocketAddress> addresses = new ArrayList<>(usernames.size());
+        for (String username : usernames) {
+            InetSocketAddress address = clientsMap.get(username);
+            if (address != null) {
+                addresses.add(address);
+            }
+        }
+        return addresses;
+    }
+
 
     /**
      * Asynchronously sends a best‑effort plain‑UDP ACK for the given message
@@ -452,25 +771,14 @@ public class Server {
             return;
         }
 
-        AsyncManager.run(() -> {
-            try {
-                // build a minimal ACK message
-                Message ack = new Message("ACK", new Object[]{ uuid }, "GAME");
-                String payload = MessageCodec.encode(ack);
-                byte[] data = payload.getBytes(StandardCharsets.UTF_8);
-
-                DatagramPacket packet = new DatagramPacket(
-                    data, data.length,
-                    dest.getAddress(), dest.getPort()
-                );
-                serverSocket.send(packet);
-
-                System.out.println("→ Sent best‑effort ACK to "
-                    + username + "@" + dest + " for UUID=" + uuid);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        });
+        // build a minimal ACK message; the transport only queues it, so no need to hop threads
+        Message ack = new Message("ACK", new Object[]{ uuid }, "GAME");
+        transport.send(ack, dest);
+
+        if (UdpTransport.DEBUG) {
+            System.out.println("→ Sent best‑effort ACK to "
+                + username + "@" + dest + " for UUID=" + uuid);
+        }
     }
 
 
@@ -484,43 +792,92 @@ public class Server {
      */
     public void sendMessageBestEffort(Message msg) {
         try {
-            // Check if the message type contains "KEY"
-            //boolean isKeyMessage = msg.getMessageType().contains("KEY");
-            for (Map.Entry<String, InetSocketAddress> entry : clientsMap.entrySet()) {
-                // If it's not a key message, then skip sending to the sender
-                //if (!isKeyMessage && entry.getValue().equals(senderSocket)) {
-                //    continue;
-                //}
-                InetAddress dest = entry.getValue().getAddress();
-                int port = entry.getValue().getPort();
-                String encoded = MessageCodec.encode(msg);
-                byte[] data = encoded.getBytes();
-                DatagramPacket packet = new DatagramPacket(data, data.length, dest, port);
-                serverSocket.send(packet);
-                System.out.println("Best effort sent message to " + entry.getKey() + " at " + entry.getValue());
-            }
+            transport.broadcast(msg, clientsMap.values());
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Sends the given {@link Message} to a single client without the reliable UDP layer.
+     *
+     * @param msg         the message to send
+     * @param destination the client's address
+     */
+    public void sendMessageBestEffort(Message msg, InetSocketAddress destination) {
+        try {
+            transport.send(msg, destination);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Forgets a client and all per-connection state kept for it, e.g. because its
+     * reliable backlog overflowed, and tells the client with a {@link DisconnectNotice}.
+     * The client then forgets its receive state as well, so the sequence numbers of its
+     * next session are not mistaken for retransmissions of this one.
+     *
+     * @param address the client's address
+     * @param reason  why the session ended, passed on to the client
+     */
+    public void disconnectClient(InetSocketAddress address, String reason) {
+        clientsMap.entrySet().removeIf(entry -> {
+            if (entry.getValue().equals(address)) {
+                System.out.println("Disconnected user: " + entry.getKey());
+                responseCache.remove(entry.getKey());
+                interestManager.remove(entry.getKey());
+                snapshotHistories.remove(entry.getKey());
+                return true;
+            }
+            return false;
+        });
+        peerFormats.remove(address);
+        ackTracker.remove(address);
+        channelReceiver.remove(address);
+        fragmentAssembler.remove(address);
+        reliableSender.removePeer(address);
+        transport.removePeer(address);
+        // Queued after the old traffic was discarded, so it is the only datagram still on its way.
+        sendMessageBestEffort(disconnectedPeers.disconnect(address, reason), address);
+    }
+
+    /**
+     * Returns the smoothed round-trip time to a client, measured from the ACKs of
+     * reliable messages sent to it.
+     *
+     * @param username the client's username
+     * @return the round-trip time in milliseconds, or {@code -1} if unknown
+     */
+    public long getClientRtt(String username) {
+        InetSocketAddress address = clientsMap.get(username);
+        return address == null ? -1 : reliableSender.getRttMillis(address);
+    }
+
+    /**
+     * Returns the current retransmission timeout used for a client.
+     *
+     * @param username the client's username
+     * @return the RTO in milliseconds, or {@code -1} if the client is unknown
+     */
+    public long getClientRto(String username) {
+        InetSocketAddress address = clientsMap.get(username);
+        return address == null ? -1 : reliableSender.getRtoMillis(address);
+    }
+
     /**
      * Broadcasts a given message to <strong>all</strong> connected clients using the reliable queue.
      *
      * @param msg the message to broadcast
      */
     public void broadcastMessageToAll(Message original) {
+        Message template = broadcastTemplate(original);
         for (Map.Entry<String, InetSocketAddress> entry : clientsMap.entrySet()) {
           String clientUsername  = entry.getKey();
           InetSocketAddress dest = entry.getValue();
       
-          // clone the original so constructor gives us a new UUID
-          Message perClient = new Message(
-            original.getMessageType(),
-            original.getParameters(),
-            original.getOption(),
-            original.getConcealedParameters()
-          );
+          // every client needs its own sequence number, but shares the encoded payload
+          Message perClient = template.clone();
       
           try {
             enqueueMessage(perClient, dest.getAddress(), dest.getPort());
@@ -534,18 +891,14 @@ public class Server {
       }
       
       public void broadcastMessageToOthers(Message original, String excludedUsername) {
+        Message template = broadcastTemplate(original);
         for (Map.Entry<String, InetSocketAddress> entry : clientsMap.entrySet()) {
           String clientUsername  = entry.getKey();
           if (clientUsername.equals(excludedUsername)) continue;
           InetSocketAddress dest = entry.getValue();
       
-          // again, new instance with its own UUID
-          Message perClient = new Message(
-            original.getMessageType(),
-            original.getParameters(),
-            original.getOption(),
-            original.getConcealedParameters()
-          );
+          // again, own sequence number, shared payload
+          Message perClient = template.clone();
       
           try {
             enqueueMessage(perClient, dest.getAddress(), dest.getPort());
@@ -557,6 +910,48 @@ public class Server {
           }
         }
       }
+
+    /**
+     * Broadcasts a message using the reliable queue to the members of one game session,
+     * instead of to every connected client.
+     *
+     * @param original the message to broadcast
+     * @param game     the session whose members receive it
+     * @param alsoTo   further users to include, e.g. a requester that has not joined yet
+     */
+    public void broadcastMessageToSession(Message original, Game game, String... alsoTo) {
+        Set<String> recipients = new LinkedHashSet<>(game.getUsers());
+        Collections.addAll(recipients, alsoTo);
+        Message template = broadcastTemplate(original);
+        for (String username : recipients) {
+            InetSocketAddress dest = clientsMap.get(username);
+            if (dest != null) {
+                enqueueMessage(template.clone(), dest.getAddress(), dest.getPort());
+            }
+        }
+    }
+
+    /**
+     * Copies a message for a broadcast and encodes its payload once, so the per-client clones
+     * only differ in the header written when each of them is sent.
+     *
+     * @param original the message to broadcast
+     * @return a fresh message without UUID whose clones share the encoded payload
+     */
+    private static Message broadcastTemplate(Message original) {
+        Message template = new Message(
+            original.getMessageType(),
+            original.getParameters(),
+            original.getOption(),
+            original.getConcealedParameters()
+        );
+        try {
+            MessageWriter.freezeBody(template);
+        } catch (IllegalArgumentException e) {
+            // Cannot be encoded at all; each clone reports that when it is sent.
+        }
+        return template;
+    }
       
 
     // ================================
@@ -576,13 +971,37 @@ public class Server {
         // Get the raw message type and normalize it.
         String rawType = msg.getMessageType();
         String commandType = rawType.replaceAll("\\s+", "").toUpperCase();
-        System.out.println("Raw type: '" + rawType + "' normalized: '" + commandType + "'");
+        if (UdpTransport.DEBUG) {
+            System.out.println("Raw type: '" + rawType + "' normalized: '" + commandType + "'");
+        }
+
+        // A request we already answered gets the original responses, not a second execution.
+        String requestKey = requestKey(msg, senderUsername);
+        if (requestKey != null) {
+            List<Message> cached = responseCache.begin(senderUsername, requestKey);
+            if (cached != null) {
+                InetSocketAddress senderAddress = clientsMap.get(senderUsername);
+                if (senderAddress != null) {
+                    for (Message response : cached) {
+                        enqueueMessage(response.clone(), senderAddress.getAddress(), senderAddress.getPort());
+                    }
+                }
+                System.out.println("Replayed " + cached.size() + " cached response(s) for repeated "
+                        + commandType + " from " + senderUsername);
+                return;
+            }
+        }
 
         // Lookup the handler in the registry.
         CommandHandler handler = commandRegistry.getHandler(commandType);
         if (handler != null) {
             // Delegate handling to the appropriate CommandHandler.
-            handler.handle(this, msg, senderUsername);
+            currentRequest.set(requestKey == null ? null : new String[]{ senderUsername, requestKey });
+            try {
+                handler.handle(this, msg, senderUsername);
+            } finally {
+                currentRequest.remove();
+            }
         } else {
             // Handler not found; print debug message and send default response.
             System.out.println("Unknown request type: " + msg.getMessageType());
@@ -598,44 +1017,88 @@ public class Server {
     }
 
     /**
-     * Synchronizes a newly connected client with the current game state by sending:
-     * 1) All existing game sessions
-     * 2) All game objects within those sessions
+     * Identifies a request across retransmissions: text clients repeat the UUID, binary clients
+     * the per-connection sequence number.
+     *
+     * @param msg            the request
+     * @param senderUsername the client that sent it
+     * @return the key, or {@code null} if the request cannot be recognized again
+     */
+    private String requestKey(Message msg, String senderUsername) {
+        String uuid = msg.peekUUID();
+        if (uuid != null && !uuid.isEmpty()) {
+            return uuid;
+        }
+        InetSocketAddress senderAddress = clientsMap.get(senderUsername);
+        if (msg.getSequenceNumber() > 0 && senderAddress != null) {
+            // The address tells a reconnected client's new sequence space from the old one.
+            return senderAddress + "#" + msg.getSequenceNumber();
+        }
+        return null;
+    }
+
+    /**
+     * Synchronizes a newly connected client with the list of game sessions, sent as one
+     * compressed {@link WorldImage}. The objects of a session follow when the client joins
+     * it, see {@link #synchronizeSession(String, String, Game)}.
      *
      * @param username      The username of the new client
      * @param clientSocket  The socket address of the new client
      */
     private void synchronizeNewClient(String username, InetSocketAddress clientSocket) {
-        // 1) For each existing game in the GameSessionManager:
+        List<Message> sessions = new ArrayList<>();
         for (Map.Entry<String, Game> entry : gameSessionManager.getAllGameSessions().entrySet()) {
-            String gameId = entry.getKey();
-            Game game = entry.getValue();
-
-            // a) Send a CREATEGAME message, so the client knows this game ID + name.
-            Message createGameMsg = new Message(
-                    "CREATEGAME",
-                    new Object[]{ gameId, game.getGameName() },
-                    "RESPONSE"
-            );
-            enqueueMessage(createGameMsg, clientSocket.getAddress(), clientSocket.getPort());
-
-            // b) For each GameObject in that game, send a CREATEGO message with all constructor params.
-            for (GameObject go : game.getGameObjects()) {
-                String objectUuid = go.getId();
-                String objectType = go.getClass().getSimpleName();
-                Object[] constructorParams = go.getConstructorParamValues();
-
-                // Build a combined param array:
-                Object[] createGoParams = new Object[3 + constructorParams.length];
-                createGoParams[0] = objectUuid;
-                createGoParams[1] = gameId;
-                createGoParams[2] = objectType;
-                System.arraycopy(constructorParams, 0, createGoParams, 3, constructorParams.length);
-
-                Message createGoMsg = new Message("CREATEGO", createGoParams, "RESPONSE");
-                enqueueMessage(createGoMsg, clientSocket.getAddress(), clientSocket.getPort());
+            sessions.add(new Message("CREATEGAME", new Object[]{ entry.getKey(), entry.getValue().getGameName() }, "RESPONSE"));
+        }
+        if (sessions.isEmpty()) {
+            return;
+        }
+        for (Message chunk : WorldImage.chunks(sessions)) {
+            enqueueMessage(chunk, clientSocket.getAddress(), clientSocket.getPort());
+        }
+    }
+
+    /**
+     * Sends a client everything in a game session as one compressed {@link WorldImage},
+     * streamed in datagram-sized chunks. Used when the client joins the session, since
+     * object updates are only broadcast to its members.
+     *
+     * @param username the client
+     * @param gameId   the id of the session
+     * @param game     the session
+     */
+    public void synchronizeSession(String username, String gameId, Game game) {
+        InetSocketAddress clientSocket = clientsMap.get(username);
+        if (clientSocket == null) {
+            return;
+        }
+        try {
+            for (Message chunk : WorldImage.chunks(sessionMessages(gameId, game))) {
+                enqueueMessage(chunk, clientSocket.getAddress(), clientSocket.getPort());
             }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Cannot synchronize game " + gameId + " with " + username + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the messages that recreate a game session on a client: {@code CREATEGAME} first,
+     * then one {@code CREATEGO} per game object with all constructor params.
+     */
+    private static List<Message> sessionMessages(String gameId, Game game) {
+        List<GameObject> objects = game.getGameObjects();
+        List<Message> messages = new ArrayList<>(objects.size() + 1);
+        messages.add(new Message("CREATEGAME", new Object[]{ gameId, game.getGameName() }, "RESPONSE"));
+        for (GameObject go : objects) {
+            Object[] constructorParams = go.getConstructorParamValues();
+            Object[] createGoParams = new Object[3 + constructorParams.length];
+            createGoParams[0] = go.getId();
+            createGoParams[1] = gameId;
+            createGoParams[2] = go.getClass().getSimpleName();
+            System.arraycopy(constructorParams, 0, createGoParams, 3, constructorParams.length);
+            messages.add(new Message("CREATEGO", createGoParams, "RESPONSE"));
         }
+        return messages;
     }
 
     // ================================
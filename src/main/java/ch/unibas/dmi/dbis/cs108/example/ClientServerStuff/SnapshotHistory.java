@@ -0,0 +1,95 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * The most recent {@link WorldSnapshot}s exchanged with one client for one game, kept in a ring
+ * indexed by tick. Thread-safe.
+ *
+ * <p>
+ * The server keeps one per member: every snapshot it sends goes in, and the newest one the
+ * member acknowledged becomes the baseline the next snapshot is encoded against. The client
+ * keeps one per game holding the snapshots it rebuilt, so it can find the baseline a delta
+ * refers to. Both ends use the same capacity, so a baseline the server still has is one the
+ * client still has too. Once an acknowledged snapshot has been overwritten, the server falls
+ * back to sending everything.
+ * </p>
+ */
+public class SnapshotHistory {
+
+    /** System property holding the number of snapshots kept. */
+    public static final String CAPACITY_PROPERTY = "snapshot.history";
+
+    /** Default capacity, about one second at 60 ticks per second. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final String gameId;
+    private final WorldSnapshot[] ring;
+    private long acknowledgedTick;
+
+    /**
+     * Creates a history with the capacity from {@link #CAPACITY_PROPERTY}.
+     *
+     * @param gameId the game the snapshots belong to
+     */
+    public SnapshotHistory(String gameId) {
+        this(gameId, Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Creates a history.
+     *
+     * @param gameId   the game the snapshots belong to
+     * @param capacity the number of snapshots kept
+     */
+    public SnapshotHistory(String gameId, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Snapshot history capacity must be positive: " + capacity);
+        }
+        this.gameId = gameId;
+        this.ring = new WorldSnapshot[capacity];
+    }
+
+    /** @return the game the snapshots belong to */
+    public String getGameId() {
+        return gameId;
+    }
+
+    /**
+     * Stores a snapshot, replacing the one {@code capacity} ticks older.
+     *
+     * @param snapshot the snapshot
+     */
+    public synchronized void put(WorldSnapshot snapshot) {
+        ring[slot(snapshot.getTick())] = snapshot;
+    }
+
+    /**
+     * @param tick a tick
+     * @return the snapshot of that tick, or {@code null} if it was never stored or was overwritten
+     */
+    public synchronized WorldSnapshot get(long tick) {
+        WorldSnapshot snapshot = ring[slot(tick)];
+        return snapshot != null && snapshot.getTick() == tick ? snapshot : null;
+    }
+
+    /**
+     * Records that the client received the snapshot of {@code tick}. Older or unknown ticks are ignored.
+     *
+     * @param tick the acknowledged tick
+     */
+    public synchronized void acknowledge(long tick) {
+        if (tick > acknowledgedTick && get(tick) != null) {
+            acknowledgedTick = tick;
+        }
+    }
+
+    /**
+     * @return the newest acknowledged snapshot, or {@code null} if there is none or it was overwritten
+     */
+    public synchronized WorldSnapshot getBaseline() {
+        return acknowledgedTick > 0 ? get(acknowledgedTick) : null;
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) ring.length);
+    }
+}
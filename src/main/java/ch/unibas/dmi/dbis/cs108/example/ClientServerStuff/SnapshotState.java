@@ -3,7 +3,8 @@ package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
 /**
  * Represents a snapshot of a target's state at a specific point in time.
  * This class is used to store position and timing information for synchronization
- * and state reconstruction purposes.
+ * and state reconstruction purposes; {@link InterpolationBuffer} keeps one per world
+ * snapshot of a remote object.
  *
  * <p>Typical use cases include:
  * <ul>
@@ -25,6 +26,12 @@ public class SnapshotState {
      */
     public long timestamp;
 
+    /**
+     * The full state of the target, as returned by {@code GameObject#getSnapshotState()},
+     * or {@code null} if only the position is known
+     */
+    public float[] state;
+
     /**
      * Constructs a new SnapshotState with the specified position and timestamp.
      *
@@ -37,4 +44,15 @@ public class SnapshotState {
         this.targetY = targetY;
         this.timestamp = timestamp;
     }
+
+    /**
+     * Constructs a new SnapshotState holding a full state, whose first two values are the position.
+     *
+     * @param state     the state of the target
+     * @param timestamp the time when this snapshot was taken
+     */
+    public SnapshotState(float[] state, long timestamp) {
+        this(state.length > 0 ? state[0] : 0, state.length > 1 ? state[1] : 0, timestamp);
+        this.state = state;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+/**
+ * How the state of a game object is quantized in a {@link WorldSnapshot}: one {@link Quantizer}
+ * per float. A layout is identified on the wire by a small id, so both ends must agree on the
+ * list below; add new layouts at the end.
+ *
+ * <p>
+ * Positions cover a world of 4096 x 4096 px around the screen at 1/16 px, velocities and
+ * accelerations are in px per tick and clamped to what the physics produces. A full
+ * {@link #BODY} takes 64 bits instead of six 32-bit floats.
+ * </p>
+ */
+public final class StateLayout {
+
+    /** Bits the layout id takes on the wire. */
+    static final int ID_BITS = 4;
+
+    private static final Quantizer POSITION_X = new Quantizer(-1024f, 3072f, 1 / 16f);
+    private static final Quantizer POSITION_Y = new Quantizer(-1024f, 3072f, 1 / 16f);
+    private static final Quantizer VELOCITY = new Quantizer(-32f, 32f, 1 / 8f);
+    private static final Quantizer ACCELERATION = new Quantizer(-8f, 8f, 1 / 8f);
+    private static final Quantizer INPUT_SEQUENCE = new Quantizer(0f, InputHistory.SEQUENCE_MODULUS, 1f);
+    private static final Quantizer STEPS = new Quantizer(0f, 64f, 1f);
+
+    /** Any number of floats, sent unquantized; for objects without a layout of their own. */
+    public static final StateLayout RAW = new StateLayout(0, null);
+
+    /** Position only: {x, y}. 32 bits. */
+    public static final StateLayout POSITION = new StateLayout(1, new Quantizer[]{ POSITION_X, POSITION_Y });
+
+    /** Position, velocity and acceleration: {x, y, vx, vy, ax, ay}. 64 bits. */
+    public static final StateLayout BODY = new StateLayout(2, new Quantizer[]{
+            POSITION_X, POSITION_Y, VELOCITY, VELOCITY, ACCELERATION, ACCELERATION });
+
+    /**
+     * {@link #BODY} plus the newest input sequence applied and the steps simulated since (at most 63),
+     * for objects clients predict (see {@link InputHistory}). 86 bits.
+     */
+    public static final StateLayout PLAYER = new StateLayout(3, new Quantizer[]{
+            POSITION_X, POSITION_Y, VELOCITY, VELOCITY, ACCELERATION, ACCELERATION, INPUT_SEQUENCE, STEPS });
+
+    private static final StateLayout[] BY_ID = { RAW, POSITION, BODY, PLAYER };
+
+    /** Bits the float count of a {@link #RAW} state takes. */
+    private static final int RAW_LENGTH_BITS = 8;
+
+    private final int id;
+    private final Quantizer[] fields;
+
+    private StateLayout(int id, Quantizer[] fields) {
+        this.id = id;
+        this.fields = fields;
+    }
+
+    /**
+     * @param id a layout id read from the wire
+     * @return the layout
+     * @throws IllegalArgumentException if there is no such layout
+     */
+    public static StateLayout byId(int id) {
+        if (id < 0 || id >= BY_ID.length) {
+            throw new IllegalArgumentException("Unknown state layout " + id);
+        }
+        return BY_ID[id];
+    }
+
+    /** @return the id of the layout on the wire */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @param length the number of floats in a state
+     * @return whether a state of that length fits this layout
+     */
+    public boolean accepts(int length) {
+        return fields == null ? length < (1 << RAW_LENGTH_BITS) : length == fields.length;
+    }
+
+    /**
+     * @return the quantized form of one field, comparable to detect changes that survive quantization
+     */
+    long quantize(int field, float value) {
+        return fields == null ? Float.floatToIntBits(value) & 0xFFFFFFFFL : fields[field].quantize(value);
+    }
+
+    /** Writes the number of fields, if the layout does not imply it. */
+    void writeLength(BitWriter out, int length) {
+        if (fields == null) {
+            out.write(length, RAW_LENGTH_BITS);
+        }
+    }
+
+    /** Reads the number of fields, if the layout does not imply it. */
+    int readLength(BitReader in) {
+        return fields == null ? (int) in.read(RAW_LENGTH_BITS) : fields.length;
+    }
+
+    /** Writes one field. */
+    void write(BitWriter out, int field, float value) {
+        if (fields == null) {
+            out.write(Float.floatToIntBits(value), 32);
+        } else {
+            fields[field].write(out, value);
+        }
+    }
+
+    /** Reads one field. */
+    float read(BitReader in, int field) {
+        return fields == null ? Float.intBitsToFloat((int) in.read(32)) : fields[field].read(in);
+    }
+}
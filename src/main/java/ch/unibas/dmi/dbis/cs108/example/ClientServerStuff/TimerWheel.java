@@ -0,0 +1,307 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel for short, frequently cancelled deadlines such as retransmission timers.
+ *
+ * <p>
+ * The wheel is a ring of {@code wheelSize} buckets, each covering one tick of {@code tickMillis}.
+ * A timeout is hashed into the bucket its deadline falls into and remembers how many full turns of
+ * the wheel are still left. Arming, cancelling and firing are O(1); the worker only touches the
+ * bucket of the current tick.
+ * </p>
+ *
+ * <p>
+ * Timeouts fire on the wheel's own thread, at the earliest on the tick after their deadline, so
+ * {@code tickMillis} is the scheduling resolution. Callbacks should be short and must not block.
+ * While no timeout is armed the worker parks and does not wake up at all.
+ * </p>
+ */
+public class TimerWheel {
+
+    /** System property holding the tick resolution in milliseconds. */
+    public static final String TICK_PROPERTY = "timer.tickMillis";
+
+    /** Default tick resolution in milliseconds. */
+    public static final long DEFAULT_TICK_MILLIS = 10;
+
+    /** Default number of buckets; at the default tick one turn of the wheel is about 5 seconds. */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /**
+     * A scheduled task. Returned by {@link #schedule(Runnable, long)} and used to cancel it.
+     */
+    public static final class Timeout {
+        private static final int ARMED = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimerWheel wheel;
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(ARMED);
+
+        /** Full turns of the wheel left before the timeout fires; only touched by the worker. */
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(TimerWheel wheel, Runnable task, long deadlineNanos) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the timeout. Has no effect if it already fired.
+         *
+         * @return {@code true} if this call cancelled it
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(ARMED, CANCELLED)) {
+                return false;
+            }
+            // The worker unlinks it from its bucket on the next tick.
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        /**
+         * @return {@code true} if the timeout was cancelled before it fired
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        /**
+         * @return {@code true} if the timeout fired
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    /**
+     * A doubly linked list of timeouts, so a cancelled timeout is unlinked in O(1).
+     */
+    private static final class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.prev != null) {
+                timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+    }
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    /** Timeouts armed by other threads, moved into buckets by the worker. */
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    /** Number of armed timeouts; the worker parks while this is zero. */
+    private final AtomicInteger armed = new AtomicInteger();
+
+    private final long startNanos = System.nanoTime();
+    private long tick;
+    private volatile Thread worker;
+    private volatile boolean running;
+
+    /**
+     * Creates a wheel with the tick from {@link #TICK_PROPERTY} and the default size.
+     */
+    public TimerWheel() {
+        this(Long.getLong(TICK_PROPERTY, DEFAULT_TICK_MILLIS), DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Creates a wheel.
+     *
+     * @param tickMillis the tick resolution in milliseconds
+     * @param wheelSize  the number of buckets, rounded up to a power of two
+     */
+    public TimerWheel(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid wheel size: " + wheelSize);
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        if (wheelSize == 1) {
+            size = 1;
+        }
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Starts the worker thread.
+     *
+     * @param name the thread name
+     */
+    public void start(String name) {
+        running = true;
+        Thread thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the worker thread. Timeouts that have not fired yet are dropped.
+     */
+    public void stop() {
+        running = false;
+        Thread thread = worker;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @return the tick resolution in milliseconds
+     */
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    /**
+     * @return the number of timeouts that are armed and have neither fired nor been cancelled
+     */
+    public int getArmedCount() {
+        return armed.get();
+    }
+
+    /**
+     * Runs {@code task} on the wheel's thread once {@code delayMillis} have passed.
+     *
+     * @param task        the task to run
+     * @param delayMillis the delay in milliseconds
+     * @return the handle to cancel the timeout with
+     */
+    public Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(this, task,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+        added.add(timeout);
+        if (armed.getAndIncrement() == 0) {
+            // The worker may be parked indefinitely on an empty wheel.
+            Thread thread = worker;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+        return timeout;
+    }
+
+    private void run() {
+        while (running) {
+            if (armed.get() == 0 && added.isEmpty()) {
+                LockSupport.park(this);
+                // Every bucket is empty, so skip the ticks we slept through.
+                tick = currentTick();
+                continue;
+            }
+
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+
+            processCancelled();
+            transferAdded();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startNanos) / tickNanos;
+    }
+
+    private void processCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+            armed.decrementAndGet();
+        }
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.state.get() != Timeout.ARMED) {
+                // Cancelled before it reached a bucket; processCancelled already counted it.
+                continue;
+            }
+            long ticks = (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+            long due = Math.max(ticks, tick);
+            timeout.remainingRounds = (due - tick) / wheel.length;
+            wheel[(int) (due & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+                continue;
+            }
+            Timeout next = bucket.remove(timeout);
+            if (timeout.state.compareAndSet(Timeout.ARMED, Timeout.EXPIRED)) {
+                armed.decrementAndGet();
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            timeout = next;
+        }
+    }
+}
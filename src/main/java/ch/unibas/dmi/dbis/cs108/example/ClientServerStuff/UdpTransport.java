@@ -0,0 +1,683 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Non-blocking UDP transport built on {@link DatagramChannel}s and {@link Selector}s.
+ *
+ * <p>
+ * Each channel is owned by one I/O thread (a <em>shard</em>). It waits for read readiness, then
+ * drains up to {@link #MAX_READ_BURST} datagrams per wakeup and hands each one to the
+ * {@link PacketHandler}. Other threads never touch a socket: {@link #send(Message, InetSocketAddress)}
+ * encodes the message into a pooled buffer and appends it to the destination's outbound queue.
+ * The shard flushes those queues round-robin and only registers for write readiness when the
+ * kernel send buffer is full, so a slow burst never blocks a caller.
+ * </p>
+ *
+ * <p>
+ * {@link #bind(InetSocketAddress, int, Function, PacketHandler)} can open several channels on the
+ * same port with {@code SO_REUSEPORT}. The kernel then hashes clients across them, so decoding and
+ * dispatch scale with cores. A client always lands on the same shard, and all datagrams to one
+ * destination leave through the same shard, so per-peer ordering is preserved. The handler is
+ * called concurrently from all shards and must be thread-safe.
+ * </p>
+ *
+ * <p>
+ * Kernel socket buffers are enlarged to {@link #SOCKET_BUFFER_SIZE} so that bursts such as
+ * 100+ clients sending {@code KEY_PRESS} at 20 Hz are absorbed instead of dropped.
+ * </p>
+ *
+ * <p>
+ * With an {@link AckTracker} set, every binary datagram is queued with
+ * {@link AckTracker#HEADER_SIZE} bytes of room in front of its first frame (its position is then
+ * {@code HEADER_SIZE}). The shard writes the destination's current selective-ACK header into that
+ * room right before sending, so ACKs ride along with whatever goes to the peer anyway.
+ * </p>
+ *
+ * <p>
+ * Messages on the {@link DeliveryChannel#UNRELIABLE_SEQUENCED} channel get their channel
+ * sequence number here, when they are sent. Each destination has a sequence space of its own,
+ * and a number is taken and queued under the destination's monitor, so every destination
+ * receives its numbers in increasing order no matter how many threads send to it.
+ * </p>
+ *
+ * <p>
+ * A binary message that would make a datagram larger than the MTU ({@link PacketAggregator#DEFAULT_MTU},
+ * or the one passed to {@link #enableAggregation(int, int)}) is split by {@link MessageFragmenter} and
+ * every fragment is sent in a datagram of its own; receivers reassemble it with a
+ * {@link FragmentAssembler}. Text messages cannot be fragmented.
+ * </p>
+ *
+ * <p>
+ * {@link #broadcast(Message, Iterable)} sends one message to many peers and encodes its payload
+ * only once; per peer only the frame header and ACK header are written.
+ * </p>
+ */
+public class UdpTransport {
+
+    /**
+     * Callback for incoming datagrams. It runs on a shard's I/O thread and receives that shard's
+     * receive buffer, so it must decode the datagram before returning and should not block.
+     */
+    public interface PacketHandler {
+        /**
+         * Handles one received datagram.
+         *
+         * @param datagram the datagram, between position and limit
+         * @param sender   the address it was sent from
+         */
+        void onPacket(ByteBuffer datagram, InetSocketAddress sender);
+    }
+
+    /** Maximum number of datagrams read per selector wakeup. */
+    public static final int MAX_READ_BURST = 256;
+
+    /** Maximum number of datagrams flushed for one peer before moving on to the next. */
+    public static final int MAX_WRITE_BURST = 64;
+
+    /** Requested size of the kernel send and receive buffers in bytes. */
+    public static final int SOCKET_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * System property that turns on logging of every message the networking code sends,
+     * retransmits or receives. Off by default; start with {@code -Dnet.debug=true} to trace traffic.
+     */
+    public static final String DEBUG_PROPERTY = "net.debug";
+
+    /** Whether per-message logging is on, see {@link #DEBUG_PROPERTY}. */
+    public static final boolean DEBUG = Boolean.getBoolean(DEBUG_PROPERTY);
+
+    /** Number of datagrams that may wait in a single peer's outbound queue. */
+    public static final int PEER_QUEUE_CAPACITY = 1024;
+
+    /**
+     * The outbound state of one destination.
+     */
+    private static final class Peer {
+        final InetSocketAddress address;
+        final Shard shard;
+        final ArrayBlockingQueue<ByteBuffer> outbound = new ArrayBlockingQueue<>(PEER_QUEUE_CAPACITY);
+        /** Whether this peer is currently in its shard's ready queue. */
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        /** Last unreliable-sequenced channel sequence number sent; guarded by this peer's monitor. */
+        long lastSequenced;
+
+        Peer(InetSocketAddress address, Shard shard) {
+            this.address = address;
+            this.shard = shard;
+        }
+    }
+
+    private final Shard[] shards;
+    private final PacketHandler handler;
+    private final Function<InetSocketAddress, WireFormat> formatResolver;
+    private final BufferPool pool = BufferPool.getInstance();
+
+    /** Outbound queues by destination. */
+    private final ConcurrentHashMap<InetSocketAddress, Peer> peers = new ConcurrentHashMap<>();
+
+    /** Pre-bound peer factory, avoids allocating a lambda per send. */
+    private final Function<InetSocketAddress, Peer> newPeer = this::newPeer;
+
+    /** Coalesces binary messages per destination and tick, {@code null} while disabled. */
+    private volatile PacketAggregator aggregator;
+
+    /** Largest datagram a binary message is sent in unfragmented, ACK header included. */
+    private volatile int mtu = PacketAggregator.DEFAULT_MTU;
+
+    /** Source of the group ids that tell fragmented messages apart at the receiver. */
+    private final AtomicInteger fragmentGroups = new AtomicInteger();
+
+    /** Supplies the ACK header of binary datagrams, {@code null} while disabled. */
+    private volatile AckTracker ackTracker;
+
+    private volatile boolean running;
+
+    /**
+     * Creates a single-shard transport for an already bound channel and switches it to
+     * non-blocking mode.
+     *
+     * @param channel        the bound channel
+     * @param formatResolver maps a destination to the wire format it understands
+     * @param handler        receives every incoming datagram
+     * @throws IOException if the channel cannot be configured or the selector cannot be opened
+     */
+    public UdpTransport(DatagramChannel channel, Function<InetSocketAddress, WireFormat> formatResolver,
+                        PacketHandler handler) throws IOException {
+        this(new DatagramChannel[]{channel}, formatResolver, handler);
+    }
+
+    private UdpTransport(DatagramChannel[] channels, Function<InetSocketAddress, WireFormat> formatResolver,
+                         PacketHandler handler) throws IOException {
+        this.formatResolver = formatResolver;
+        this.handler = handler;
+        this.shards = new Shard[channels.length];
+        for (int i = 0; i < channels.length; i++) {
+            shards[i] = new Shard(channels[i]);
+        }
+    }
+
+    /**
+     * Opens and binds {@code shardCount} channels to {@code address}. With more than one shard
+     * every channel is bound with {@code SO_REUSEPORT}; if the platform does not support that
+     * option the transport falls back to a single channel.
+     *
+     * @param address        the local address to bind to
+     * @param shardCount     the number of receive shards, values below 1 mean 1
+     * @param formatResolver maps a destination to the wire format it understands
+     * @param handler        receives every incoming datagram, from all shards concurrently
+     * @return the bound transport, not yet started
+     * @throws IOException if a channel cannot be opened or bound
+     */
+    public static UdpTransport bind(InetSocketAddress address, int shardCount,
+                                    Function<InetSocketAddress, WireFormat> formatResolver,
+                                    PacketHandler handler) throws IOException {
+        int count = Math.max(1, shardCount);
+        DatagramChannel first = DatagramChannel.open();
+        if (count > 1 && !first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            System.err.println("SO_REUSEPORT is not supported here, using a single receive shard");
+            count = 1;
+        }
+        DatagramChannel[] channels = new DatagramChannel[count];
+        channels[0] = first;
+        try {
+            for (int i = 0; i < count; i++) {
+                if (channels[i] == null) {
+                    channels[i] = DatagramChannel.open();
+                }
+                if (count > 1) {
+                    channels[i].setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                channels[i].bind(address);
+            }
+        } catch (IOException e) {
+            for (DatagramChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+            throw e;
+        }
+        return new UdpTransport(channels, formatResolver, handler);
+    }
+
+    /**
+     * @return the number of channels and I/O threads of this transport
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Starts one I/O thread per shard.
+     *
+     * @param name the name of the threads, shows up in thread dumps
+     */
+    public void start(String name) {
+        running = true;
+        for (int i = 0; i < shards.length; i++) {
+            new Thread(shards[i], shards.length == 1 ? name : name + "-" + i).start();
+        }
+    }
+
+    /**
+     * Stops the I/O threads and closes the selectors. The channels themselves are left open.
+     */
+    public void close() {
+        running = false;
+        for (Shard shard : shards) {
+            try {
+                shard.selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Packs binary messages into datagrams of up to {@code mtu} bytes per destination from now on,
+     * flushed {@code flushHz} times per second. Larger binary messages are fragmented from now on.
+     * Text peers keep getting one message per datagram.
+     *
+     * @param mtu     the maximum size of an aggregated datagram in bytes
+     * @param flushHz how often per second pending batches are sent
+     */
+    public void enableAggregation(int mtu, int flushHz) {
+        PacketAggregator packetAggregator = new PacketAggregator(this, mtu);
+        packetAggregator.start(flushHz);
+        this.mtu = mtu;
+        aggregator = packetAggregator;
+    }
+
+    /**
+     * Piggybacks the selective ACKs of {@code tracker} on every binary datagram from now on.
+     * Must be called before anything is sent.
+     *
+     * @param tracker the receive state to advertise
+     */
+    public void setAckTracker(AckTracker tracker) {
+        this.ackTracker = tracker;
+    }
+
+    /**
+     * @return the number of bytes to leave free in front of the first frame of a binary datagram
+     */
+    int reservedHeaderSize() {
+        return ackTracker != null ? AckTracker.HEADER_SIZE : 0;
+    }
+
+    /**
+     * Queues a datagram that carries nothing but the ACK header for {@code destination}, for
+     * when there is no other traffic to piggyback on. Does nothing without an {@link AckTracker}.
+     *
+     * @param destination the peer to acknowledge
+     */
+    public void sendAckOnly(InetSocketAddress destination) {
+        if (ackTracker == null) {
+            return;
+        }
+        ByteBuffer buffer = pool.acquire();
+        buffer.limit(AckTracker.HEADER_SIZE);
+        buffer.position(AckTracker.HEADER_SIZE);
+        enqueue(buffer, destination);
+    }
+
+    /**
+     * Encodes the message for {@code destination} and queues it for sending. Never blocks.
+     * With aggregation enabled, binary messages wait for the next flush and share a datagram
+     * with everything else sent to the same destination in that tick.
+     *
+     * @param message     the message to send
+     * @param destination the destination address
+     * @return {@code false} if the destination's queue is full and the message was dropped
+     * @throws IllegalArgumentException if the message cannot be encoded into a datagram
+     */
+    public boolean send(Message message, InetSocketAddress destination) {
+        WireFormat format = formatResolver.apply(destination);
+        if (message.getChannel() != DeliveryChannel.UNRELIABLE_SEQUENCED || format != WireFormat.BINARY) {
+            return send(message, message.getChannelSequence(), destination, format);
+        }
+        // Only binary frames carry the number. Taking it and queueing the message in one step
+        // keeps a sender that is overtaken by another thread from arriving as stale.
+        Peer peer = peers.computeIfAbsent(destination, newPeer);
+        synchronized (peer) {
+            return send(message, ++peer.lastSequenced, destination, format);
+        }
+    }
+
+    private boolean send(Message message, long channelSequence, InetSocketAddress destination, WireFormat format) {
+        byte[] oversized = encodeIfOversized(message, channelSequence, destination);
+        if (oversized != null) {
+            return sendFragmented(oversized, destination);
+        }
+        return sendEncoded(message, channelSequence, destination, format);
+    }
+
+    /**
+     * Sends one message to many destinations, encoding its payload only once. The binary body
+     * is frozen into the message (see {@link MessageWriter#freezeBody(Message)}), so each
+     * destination only costs its frame header and a copy; text destinations share one encoding.
+     * Meant for best-effort broadcasts: the message is not sent reliably.
+     *
+     * @param message      the message to send
+     * @param destinations the destination addresses
+     * @return the number of destinations the message was queued for
+     */
+    public int broadcast(Message message, Iterable<InetSocketAddress> destinations) {
+        // The text encoding creates the UUID, which the binary body has to include.
+        byte[] text = null;
+        for (InetSocketAddress destination : destinations) {
+            if (formatResolver.apply(destination) == WireFormat.TEXT) {
+                text = MessageCodec.encode(message).getBytes(StandardCharsets.UTF_8);
+                break;
+            }
+        }
+        boolean frozen = false;
+        int queued = 0;
+        for (InetSocketAddress destination : destinations) {
+            try {
+                boolean sent;
+                if (formatResolver.apply(destination) == WireFormat.TEXT) {
+                    sent = sendText(text, destination);
+                } else {
+                    if (!frozen) {
+                        MessageWriter.freezeBody(message);
+                        frozen = true;
+                    }
+                    // Sequenced messages are numbered per destination, so only the body is shared.
+                    sent = send(message, destination);
+                }
+                if (sent) {
+                    queued++;
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("Cannot broadcast to " + destination + ": " + e.getMessage());
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Queues a message that is known to fit into one datagram.
+     */
+    private boolean sendEncoded(Message message, long channelSequence, InetSocketAddress destination,
+                                WireFormat format) {
+        PacketAggregator packetAggregator = aggregator;
+        if (packetAggregator != null && format == WireFormat.BINARY) {
+            packetAggregator.add(message, channelSequence, destination);
+            return true;
+        }
+        ByteBuffer buffer = pool.acquire();
+        int start = format == WireFormat.BINARY ? reservedHeaderSize() : 0;
+        try {
+            buffer.position(start);
+            if (format == WireFormat.BINARY) {
+                MessageWriter.write(message, channelSequence, buffer);
+            } else {
+                format.write(message, buffer);
+            }
+        } catch (RuntimeException e) {
+            pool.release(buffer);
+            throw e;
+        }
+        buffer.limit(buffer.position());
+        buffer.position(start);
+        return enqueue(buffer, destination);
+    }
+
+    /**
+     * Queues an already text-encoded message.
+     */
+    private boolean sendText(byte[] text, InetSocketAddress destination) {
+        if (text.length > BufferPool.BUFFER_SIZE) {
+            throw new IllegalArgumentException("Message does not fit into " + BufferPool.BUFFER_SIZE + " bytes");
+        }
+        ByteBuffer buffer = pool.acquire();
+        buffer.put(text);
+        buffer.flip();
+        return enqueue(buffer, destination);
+    }
+
+    /**
+     * Encodes a message for a binary destination if it does not fit into a single datagram of
+     * at most the MTU, ACK header included.
+     *
+     * @param message     the message
+     * @param destination where it goes
+     * @return the encoded frame if it has to be fragmented, {@code null} if it fits into one
+     *         datagram or the destination does not speak the binary format
+     * @throws IllegalArgumentException if the message exceeds a limit of the frame format
+     */
+    byte[] encodeIfOversized(Message message, InetSocketAddress destination) {
+        return encodeIfOversized(message, message.getChannelSequence(), destination);
+    }
+
+    private byte[] encodeIfOversized(Message message, long channelSequence, InetSocketAddress destination) {
+        if (formatResolver.apply(destination) != WireFormat.BINARY) {
+            return null;
+        }
+        int capacity = mtu - reservedHeaderSize();
+        if (BinaryMessageCodec.estimateSize(message) <= capacity) {
+            return null;
+        }
+        byte[] frame = BinaryMessageCodec.encode(message, channelSequence);
+        return frame.length <= capacity ? null : frame;
+    }
+
+    /**
+     * @return a new group id for a message that is about to be fragmented
+     */
+    int nextFragmentGroup() {
+        return fragmentGroups.incrementAndGet();
+    }
+
+    /**
+     * Sends every fragment of an unreliable binary frame, see {@link MessageFragmenter}.
+     */
+    private boolean sendFragmented(byte[] frame, InetSocketAddress destination) {
+        int groupId = nextFragmentGroup();
+        int count = MessageFragmenter.fragmentCount(frame.length);
+        boolean queued = true;
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = pool.acquire();
+            int start = reservedHeaderSize();
+            buffer.position(start);
+            MessageFragmenter.write(buffer, frame, i, groupId, 0);
+            buffer.limit(buffer.position());
+            buffer.position(start);
+            queued &= enqueue(buffer, destination);
+        }
+        return queued;
+    }
+
+    /**
+     * Queues a fragment encoded by {@link MessageFragmenter#encode(byte[], int, int, long)} as a
+     * datagram of its own. Used by {@link ReliableUDPSender}, which retransmits fragments one by one.
+     *
+     * @param fragment    the encoded fragment
+     * @param destination the destination address
+     * @return {@code false} if the destination's queue is full and the fragment was dropped
+     */
+    public boolean sendFragment(byte[] fragment, InetSocketAddress destination) {
+        ByteBuffer buffer = pool.acquire();
+        int start = reservedHeaderSize();
+        buffer.position(start);
+        buffer.put(fragment);
+        buffer.limit(buffer.position());
+        buffer.position(start);
+        return enqueue(buffer, destination);
+    }
+
+    /**
+     * Queues an already encoded datagram. The transport takes ownership of the buffer and
+     * returns it to the {@link BufferPool} once it has been sent. A binary datagram should
+     * start at {@link #reservedHeaderSize()}, so the ACK header can be put in front of it.
+     *
+     * @param datagram    the datagram, between position and limit
+     * @param destination the destination address
+     * @return {@code false} if the destination's queue is full and the datagram was dropped
+     */
+    public boolean enqueue(ByteBuffer datagram, InetSocketAddress destination) {
+        Peer peer = peers.computeIfAbsent(destination, newPeer);
+        if (!peer.outbound.offer(datagram)) {
+            pool.release(datagram);
+            System.err.println("Outbound queue full, dropping datagram for " + destination);
+            return false;
+        }
+        if (peer.scheduled.compareAndSet(false, true)) {
+            peer.shard.readyPeers.offer(peer);
+            peer.shard.wakeup();
+        }
+        return true;
+    }
+
+    /**
+     * Forgets a destination and discards everything still queued for it.
+     *
+     * @param destination the address to forget
+     */
+    public void removePeer(InetSocketAddress destination) {
+        PacketAggregator packetAggregator = aggregator;
+        if (packetAggregator != null) {
+            packetAggregator.remove(destination);
+        }
+        Peer peer = peers.remove(destination);
+        if (peer != null) {
+            ByteBuffer buffer;
+            while ((buffer = peer.outbound.poll()) != null) {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Assigns a new destination to a shard by hashing its address.
+     */
+    private Peer newPeer(InetSocketAddress address) {
+        return new Peer(address, shards[Math.floorMod(address.hashCode(), shards.length)]);
+    }
+
+    /**
+     * One channel together with the selector and I/O thread that own it.
+     */
+    private final class Shard implements Runnable {
+        final DatagramChannel channel;
+        final Selector selector;
+        final SelectionKey key;
+
+        /** Peers of this shard with queued datagrams, in the order they became ready. */
+        final ConcurrentLinkedQueue<Peer> readyPeers = new ConcurrentLinkedQueue<>();
+
+        /** Set while a {@link Selector#wakeup()} is outstanding, so concurrent senders wake it only once. */
+        final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+        /** Buffer every datagram is received into; only used by this shard's thread. */
+        final ByteBuffer receiveBuffer = pool.acquire();
+
+        /** Pre-bound selection callback, avoids allocating a lambda per wakeup. */
+        final Consumer<SelectionKey> onReady = this::onReady;
+
+        Shard(DatagramChannel channel) throws IOException {
+            this.channel = channel;
+            channel.configureBlocking(false);
+            try {
+                channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_BUFFER_SIZE);
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, SOCKET_BUFFER_SIZE);
+            } catch (IOException | UnsupportedOperationException e) {
+                System.err.println("Could not enlarge socket buffers: " + e.getMessage());
+            }
+            this.selector = Selector.open();
+            this.key = channel.register(selector, SelectionKey.OP_READ);
+        }
+
+        void wakeup() {
+            if (wakeupPending.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * The I/O loop: wait for readiness, drain reads, flush writes.
+         */
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select(onReady);
+                    wakeupPending.set(false);
+                    flush();
+                } catch (ClosedSelectorException | CancelledKeyException e) {
+                    // close() shut the selector down, possibly in the middle of a flush.
+                    break;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private void onReady(SelectionKey readyKey) {
+            if (readyKey.isReadable()) {
+                drainReads();
+            }
+        }
+
+        /**
+         * Reads datagrams until the socket is empty or the burst limit is reached.
+         */
+        private void drainReads() {
+            for (int i = 0; i < MAX_READ_BURST; i++) {
+                SocketAddress sender;
+                try {
+                    receiveBuffer.clear();
+                    sender = channel.receive(receiveBuffer);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return;
+                }
+                if (sender == null) {
+                    return;
+                }
+                receiveBuffer.flip();
+                try {
+                    handler.onPacket(receiveBuffer, (InetSocketAddress) sender);
+                } catch (RuntimeException e) {
+                    System.err.println("Error handling packet from " + sender + ": " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Sends queued datagrams round-robin across this shard's peers. If the kernel buffer
+         * fills up, waits for write readiness instead of spinning.
+         */
+        private void flush() {
+            Peer peer;
+            int peersToVisit = readyPeers.size();
+            while (peersToVisit-- > 0 && (peer = readyPeers.poll()) != null) {
+                peer.scheduled.set(false);
+                int sent = 0;
+                ByteBuffer buffer;
+                while ((buffer = peer.outbound.peek()) != null) {
+                    if (sent == MAX_WRITE_BURST) {
+                        reschedule(peer);
+                        break;
+                    }
+                    AckTracker tracker = ackTracker;
+                    if (tracker != null && buffer.position() == AckTracker.HEADER_SIZE
+                            && tracker.writeHeader(peer.address, buffer, 0)) {
+                        buffer.position(0);
+                    }
+                    if (!buffer.hasRemaining()) {
+                        // A standalone ACK whose header already left with an earlier datagram.
+                        peer.outbound.poll();
+                        pool.release(buffer);
+                        continue;
+                    }
+                    try {
+                        if (channel.send(buffer, peer.address) == 0) {
+                            // Kernel send buffer is full; retry this datagram once writable.
+                            reschedule(peer);
+                            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                            return;
+                        }
+                    } catch (IOException e) {
+                        System.err.println("Dropping datagram for " + peer.address + ": " + e.getMessage());
+                    }
+                    peer.outbound.poll();
+                    pool.release(buffer);
+                    sent++;
+                }
+            }
+            if (!readyPeers.isEmpty()) {
+                // More work arrived or burst limits were hit; come back without sleeping.
+                selector.wakeup();
+            }
+            if ((key.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void reschedule(Peer peer) {
+            if (peer.scheduled.compareAndSet(false, true)) {
+                readyPeers.offer(peer);
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The encodings a {@link Message} can have on the wire.
+ *
+ * <ul>
+ *   <li>{@link #BINARY} – the compact {@link BinaryMessageCodec}, used by default</li>
+ *   <li>{@link #TEXT} – the human readable {@link MessageCodec}, kept as a debug mode</li>
+ * </ul>
+ *
+ * <p>
+ * A client picks its format once (see {@link #fromSystemProperty()}) and uses it for every
+ * datagram, starting with its initial {@code REGISTER}. The server detects the format of each
+ * incoming datagram and answers every peer in the format that peer registered with, so
+ * text and binary clients can be connected at the same time.
+ * </p>
+ */
+public enum WireFormat {
+
+    /** Human readable {@code TYPE {option}[params]|concealed, uuid|} format. */
+    TEXT,
+
+    /** Length-prefixed binary format with typed fields. */
+    BINARY;
+
+    /**
+     * The system property used to select the client's wire format, e.g.
+     * {@code -Dwire.format=text} to debug the protocol with readable packets.
+     */
+    public static final String PROPERTY = "wire.format";
+
+    /**
+     * Encodes the message in this format.
+     *
+     * @param message the message to encode
+     * @return the bytes to put into a datagram
+     */
+    public byte[] encode(Message message) {
+        if (this == BINARY) {
+            return BinaryMessageCodec.encode(message);
+        }
+        return MessageCodec.encode(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the message in this format into {@code out}, starting at its position.
+     * The binary format is written without allocating; the text format is a debug
+     * mode and goes through a temporary string.
+     *
+     * @param message the message to encode
+     * @param out     the buffer to write into
+     * @throws IllegalArgumentException if the message does not fit into the buffer
+     */
+    public void write(Message message, ByteBuffer out) {
+        if (this == BINARY) {
+            MessageWriter.write(message, out);
+            return;
+        }
+        byte[] text = MessageCodec.encode(message).getBytes(StandardCharsets.UTF_8);
+        if (text.length > out.remaining()) {
+            throw new IllegalArgumentException("Message does not fit into " + out.remaining() + " bytes");
+        }
+        out.put(text);
+    }
+
+    /**
+     * Reads a datagram in whatever format it was written in. The datagram spans from the
+     * buffer's position to its limit.
+     *
+     * @param in the buffer holding the datagram
+     * @return the decoded message
+     * @throws IllegalArgumentException if the datagram cannot be decoded
+     */
+    public static Message read(ByteBuffer in) {
+        if (detect(in) == BINARY) {
+            return MessageReader.read(in);
+        }
+        byte[] text = new byte[in.remaining()];
+        in.get(text);
+        return MessageCodec.decode(new String(text, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Determines the format of the datagram between the buffer's position and limit.
+     *
+     * @param in the buffer holding the datagram
+     * @return the detected format
+     */
+    public static WireFormat detect(ByteBuffer in) {
+        if (in.hasRemaining() && (in.get(in.position()) == BinaryMessageCodec.MAGIC
+                || in.get(in.position()) == MessageFragmenter.MAGIC)) {
+            return BINARY;
+        }
+        return TEXT;
+    }
+
+    /**
+     * Decodes a datagram in whatever format it was written in.
+     *
+     * @param data   the datagram buffer
+     * @param offset the offset of the first byte
+     * @param length the number of valid bytes
+     * @return the decoded message
+     * @throws IllegalArgumentException if the datagram cannot be decoded
+     */
+    public static Message decode(byte[] data, int offset, int length) {
+        if (detect(data, offset, length) == BINARY) {
+            return BinaryMessageCodec.decode(data, offset, length);
+        }
+        return MessageCodec.decode(new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Determines the format of a datagram by looking at its first byte.
+     *
+     * @param data   the datagram buffer
+     * @param offset the offset of the first byte
+     * @param length the number of valid bytes
+     * @return {@link #BINARY} if the datagram starts with {@link BinaryMessageCodec#MAGIC} or
+     *         {@link MessageFragmenter#MAGIC}, otherwise {@link #TEXT}
+     */
+    public static WireFormat detect(byte[] data, int offset, int length) {
+        if (length > 0 && (data[offset] == BinaryMessageCodec.MAGIC || data[offset] == MessageFragmenter.MAGIC)) {
+            return BINARY;
+        }
+        return TEXT;
+    }
+
+    /**
+     * Reads the configured format from the {@value #PROPERTY} system property.
+     * Anything other than {@code text} (case-insensitive) selects {@link #BINARY}.
+     *
+     * @return the configured wire format
+     */
+    public static WireFormat fromSystemProperty() {
+        String value = System.getProperty(PROPERTY);
+        if (value != null && TEXT.name().equalsIgnoreCase(value.trim())) {
+            return TEXT;
+        }
+        return BINARY;
+    }
+}
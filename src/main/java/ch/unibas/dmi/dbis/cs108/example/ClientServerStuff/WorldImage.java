@@ -0,0 +1,199 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A compressed image of one game session, sent to a client that connects late instead of one
+ * reliable {@code CREATEGAME} plus one {@code CREATEGO} per game object.
+ *
+ * <p>
+ * The image holds exactly those messages as {@link BinaryMessageCodec} frames, back to back and
+ * deflate-compressed. It is streamed as {@value #TYPE} messages of at most {@link #CHUNK_SIZE}
+ * bytes each:
+ * </p>
+ * <pre>
+ *   WORLDSYNC {RESPONSE}[imageId, chunk index, chunk count, bytes]
+ * </pre>
+ *
+ * <p>
+ * Every chunk fits into a single datagram, so the chunks flow through the window of the
+ * {@link ReliableUDPSender} back to back and a join costs one round trip plus the transfer
+ * time, however many objects the session has. {@link Receiver} collects the chunks on the
+ * client and hands back the messages once the image is complete, so they can be applied in
+ * one batch.
+ * </p>
+ */
+public final class WorldImage {
+
+    /** Message type of an image chunk. */
+    public static final String TYPE = "WORLDSYNC";
+
+    /** Image bytes per chunk; leaves room for the chunk's own message header in a datagram. */
+    public static final int CHUNK_SIZE = MessageFragmenter.PAYLOAD_SIZE - 128;
+
+    /** Upper bound on the chunks of one image, about one megabyte compressed. */
+    public static final int MAX_CHUNKS = 1024;
+
+    /** Upper bound on the size of an image after decompression. */
+    public static final int MAX_INFLATED_SIZE = 16 * 1024 * 1024;
+
+    /** Identifies the images of this process, so chunks of different images never mix. */
+    private static final AtomicInteger nextImageId = new AtomicInteger();
+
+    private WorldImage() { }
+
+    /**
+     * Compresses the messages that recreate a game session and splits the image into chunks.
+     *
+     * @param messages {@code CREATEGAME} for the session followed by one {@code CREATEGO} per game object
+     * @return the {@value #TYPE} messages to send, in order
+     * @throws IllegalArgumentException if a message cannot be encoded
+     */
+    public static List<Message> chunks(List<Message> messages) {
+        return split(compress(messages));
+    }
+
+    /**
+     * Splits a compressed image into chunk messages.
+     *
+     * @param image the compressed image
+     * @return the {@value #TYPE} messages to send, in order
+     */
+    static List<Message> split(byte[] image) {
+        int count = Math.max(1, (image.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        int imageId = nextImageId.incrementAndGet();
+        List<Message> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] data = Arrays.copyOfRange(image, i * CHUNK_SIZE, Math.min(image.length, (i + 1) * CHUNK_SIZE));
+            chunks.add(new Message(TYPE, new Object[]{ imageId, i, count, data }, "RESPONSE"));
+        }
+        return chunks;
+    }
+
+    /**
+     * Encodes and compresses messages into an image.
+     *
+     * @param messages the messages
+     * @return the compressed image
+     * @throws IllegalArgumentException if a message cannot be encoded
+     */
+    static byte[] compress(List<Message> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            for (Message message : messages) {
+                out.write(BinaryMessageCodec.encode(message));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decompresses an image and decodes the messages in it.
+     *
+     * @param image the compressed image
+     * @return the messages, in the order they were captured
+     * @throws IllegalArgumentException if the image is corrupt or too large
+     */
+    static List<Message> decompress(byte[] image) {
+        byte[] raw;
+        Inflater inflater = new Inflater();
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(image), inflater)) {
+            raw = in.readNBytes(MAX_INFLATED_SIZE + 1);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Corrupt world image: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        if (raw.length > MAX_INFLATED_SIZE) {
+            throw new IllegalArgumentException("World image exceeds " + MAX_INFLATED_SIZE + " bytes");
+        }
+        ByteBuffer in = ByteBuffer.wrap(raw);
+        List<Message> messages = new ArrayList<>();
+        while (in.hasRemaining()) {
+            messages.add(MessageReader.read(in));
+        }
+        return messages;
+    }
+
+    /**
+     * Collects the chunks of incoming images. Thread-safe.
+     */
+    public static final class Receiver {
+
+        /** Images being received at the same time; more only happen if chunks of old images straggle in. */
+        private static final int MAX_PENDING = 8;
+
+        private final LinkedHashMap<Integer, byte[][]> pending = new LinkedHashMap<>();
+
+        /**
+         * Adds a chunk.
+         *
+         * @param chunk a {@value #TYPE} message
+         * @return the messages of the image once this chunk completes it, otherwise {@code null}
+         * @throws IllegalArgumentException if the chunk or the completed image is malformed
+         */
+        public List<Message> accept(Message chunk) {
+            Object[] params = chunk.getParameters();
+            if (params == null || params.length < 4 || !(params[0] instanceof Integer) || !(params[1] instanceof Integer)
+                    || !(params[2] instanceof Integer) || !(params[3] instanceof byte[])) {
+                throw new IllegalArgumentException("Malformed " + TYPE + " chunk");
+            }
+            int imageId = (Integer) params[0];
+            int index = (Integer) params[1];
+            int count = (Integer) params[2];
+            if (count <= 0 || count > MAX_CHUNKS || index < 0 || index >= count) {
+                throw new IllegalArgumentException("Invalid " + TYPE + " chunk " + index + "/" + count);
+            }
+            byte[] image;
+            synchronized (this) {
+                byte[][] pieces = pending.get(imageId);
+                if (pieces == null) {
+                    if (pending.size() >= MAX_PENDING) {
+                        Iterator<byte[][]> oldest = pending.values().iterator();
+                        oldest.next();
+                        oldest.remove();
+                    }
+                    pieces = new byte[count][];
+                    pending.put(imageId, pieces);
+                } else if (pieces.length != count) {
+                    throw new IllegalArgumentException(TYPE + " chunk does not match image " + imageId);
+                }
+                pieces[index] = (byte[]) params[3];
+                int length = 0;
+                for (byte[] piece : pieces) {
+                    if (piece == null) {
+                        return null;
+                    }
+                    length += piece.length;
+                }
+                pending.remove(imageId);
+                image = new byte[length];
+                int offset = 0;
+                for (byte[] piece : pieces) {
+                    System.arraycopy(piece, 0, image, offset, piece.length);
+                    offset += piece.length;
+                }
+            }
+            return decompress(image);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The state of the game objects of one session after one simulation tick, sent by an
+ * authoritative game to each member once per tick instead of one {@code SNAPSHOT} per object.
+ *
+ * <pre>
+ *   WORLDSNAP {GAME}[gameId, tick, baselineTick, states]
+ * </pre>
+ *
+ * <p>
+ * A snapshot is encoded as a delta against a baseline: the newest snapshot the member has
+ * acknowledged with a {@value #ACK_TYPE} message (see {@link SnapshotHistory}). Objects whose
+ * state did not change since the baseline are left out, and of the others only the changed
+ * fields are sent. A {@code baselineTick} of 0 means there is no baseline and every state is
+ * sent in full. Fields are quantized as the object's {@link StateLayout} says and bit-packed
+ * with {@link BitWriter}; {@code states} holds, without any byte alignment:
+ * </p>
+ * <pre>
+ *   entry count (16 bits), entries:
+ *     id: 1 bit kind, then a UUID (128 bits) or length (8 bits) + UTF-8
+ *     layout id (4 bits), float count (8 bits, {@link StateLayout#RAW} only)
+ *     full flag (1 bit); if set every field follows, otherwise per field
+ *     a changed bit, followed by the field if set
+ *   removed count (16 bits), ids of the baseline objects that are no longer in the snapshot
+ * </pre>
+ *
+ * <p>
+ * A snapshot is superseded by the next one, so it travels on
+ * {@link DeliveryChannel#UNRELIABLE_SEQUENCED} and a lost one is never resent; the next one is
+ * simply encoded against an older baseline.
+ * </p>
+ */
+public final class WorldSnapshot {
+
+    /** Message type of a world snapshot. */
+    public static final String TYPE = "WORLDSNAP";
+
+    /** Message type a client acknowledges a snapshot with: {@code SNAPACK {GAME}[gameId, tick]}. */
+    public static final String ACK_TYPE = "SNAPACK";
+
+    /** Upper bound on the entries of one snapshot. */
+    public static final int MAX_ENTRIES = 0xFFFF;
+
+    /** Id kind bit of a UUID; other ids are sent as text. */
+    private static final boolean ID_UUID = false;
+
+    private final long tick;
+    private final List<String> ids;
+    private final List<StateLayout> layouts;
+    private final List<float[]> states;
+
+    /** Entry index by object id, built on first lookup. */
+    private Map<String, Integer> indexById;
+
+    /**
+     * Creates an empty snapshot.
+     *
+     * @param tick the simulation tick the snapshot was taken after
+     */
+    public WorldSnapshot(long tick) {
+        this(tick, 16);
+    }
+
+    /**
+     * Creates an empty snapshot.
+     *
+     * @param tick     the simulation tick the snapshot was taken after
+     * @param capacity the expected number of entries
+     */
+    public WorldSnapshot(long tick, int capacity) {
+        this.tick = tick;
+        this.ids = new ArrayList<>(capacity);
+        this.layouts = new ArrayList<>(capacity);
+        this.states = new ArrayList<>(capacity);
+    }
+
+    /**
+     * Adds the state of one object, sent unquantized.
+     *
+     * @param objectId the object's id
+     * @param state    the object's state; not copied, so it must not change afterwards
+     * @throws IllegalArgumentException if the snapshot is full or the state is too long
+     */
+    public void add(String objectId, float[] state) {
+        add(objectId, StateLayout.RAW, state);
+    }
+
+    /**
+     * Adds the state of one object.
+     *
+     * @param objectId the object's id
+     * @param layout   how the state is quantized
+     * @param state    the object's state; not copied, so it must not change afterwards
+     * @throws IllegalArgumentException if the snapshot is full or the state does not fit the layout
+     */
+    public void add(String objectId, StateLayout layout, float[] state) {
+        if (ids.size() >= MAX_ENTRIES) {
+            throw new IllegalArgumentException("World snapshot holds at most " + MAX_ENTRIES + " objects");
+        }
+        if (!layout.accepts(state.length)) {
+            throw new IllegalArgumentException("Snapshot state of " + objectId + " does not fit layout " + layout.getId()
+                    + ": " + state.length + " floats");
+        }
+        ids.add(objectId);
+        layouts.add(layout);
+        states.add(state);
+        indexById = null;
+    }
+
+    /** @return the simulation tick the snapshot was taken after */
+    public long getTick() {
+        return tick;
+    }
+
+    /** @return the number of objects in the snapshot */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * @param index the entry, {@code 0 <= index < size()}
+     * @return the id of the object in that entry
+     */
+    public String getId(int index) {
+        return ids.get(index);
+    }
+
+    /**
+     * @param index the entry, {@code 0 <= index < size()}
+     * @return the state of the object in that entry
+     */
+    public float[] getState(int index) {
+        return states.get(index);
+    }
+
+    /**
+     * @param index the entry, {@code 0 <= index < size()}
+     * @return how the state in that entry is quantized
+     */
+    public StateLayout getLayout(int index) {
+        return layouts.get(index);
+    }
+
+    /**
+     * @param objectId an object id
+     * @return the state of that object, or {@code null} if it is not in the snapshot
+     */
+    public float[] getState(String objectId) {
+        int index = indexOf(objectId);
+        return index < 0 ? null : states.get(index);
+    }
+
+    /**
+     * @param objectId an object id
+     * @return the entry of that object, or -1 if it is not in the snapshot
+     */
+    public synchronized int indexOf(String objectId) {
+        if (indexById == null) {
+            indexById = new HashMap<>(ids.size() * 2);
+            for (int i = 0; i < ids.size(); i++) {
+                indexById.put(ids.get(i), i);
+            }
+        }
+        Integer index = indexById.get(objectId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Builds the message carrying this snapshot in full.
+     *
+     * @param gameId the session the objects belong to
+     * @return a {@value #TYPE} message
+     */
+    public Message toMessage(String gameId) {
+        return toMessage(gameId, null);
+    }
+
+    /**
+     * Builds the message carrying this snapshot as a delta against a baseline.
+     *
+     * @param gameId   the session the objects belong to
+     * @param baseline a snapshot the receiver has, or {@code null} to send everything
+     * @return a {@value #TYPE} message
+     */
+    public Message toMessage(String gameId, WorldSnapshot baseline) {
+        long baselineTick = baseline == null ? 0 : baseline.getTick();
+        return new Message(TYPE, new Object[]{ gameId, tick, baselineTick, pack(baseline) }, "GAME");
+    }
+
+    /**
+     * Reads a snapshot from a {@value #TYPE} message and rebuilds the full state from its baseline.
+     *
+     * @param message   the message
+     * @param baselines the snapshots received so far, to find the baseline in
+     * @return the snapshot, or {@code null} if its baseline is no longer in {@code baselines}
+     * @throws IllegalArgumentException if the message is malformed
+     */
+    public static WorldSnapshot fromMessage(Message message, SnapshotHistory baselines) {
+        Object[] params = message.getParameters();
+        if (params == null || params.length < 4 || !(params[1] instanceof Number)
+                || !(params[2] instanceof Number) || !(params[3] instanceof byte[])) {
+            throw new IllegalArgumentException("Malformed " + TYPE + " message");
+        }
+        long baselineTick = ((Number) params[2]).longValue();
+        WorldSnapshot baseline = null;
+        if (baselineTick > 0) {
+            baseline = baselines.get(baselineTick);
+            if (baseline == null) {
+                return null;
+            }
+        }
+        return unpack(((Number) params[1]).longValue(), baseline, (byte[]) params[3]);
+    }
+
+    /**
+     * @param message a {@value #TYPE} message
+     * @return the id of the session the snapshot belongs to, or {@code null} if it is missing
+     */
+    public static String gameIdOf(Message message) {
+        Object[] params = message.getParameters();
+        return params == null || params.length == 0 || params[0] == null ? null : params[0].toString();
+    }
+
+    /**
+     * Encodes the entries that differ from {@code baseline}, or all of them if it is {@code null}.
+     * Changes are detected on the quantized values, so jitter below the resolution costs nothing.
+     */
+    byte[] pack(WorldSnapshot baseline) {
+        // First find the objects that changed, and what they changed from.
+        float[][] olds = new float[ids.size()][];
+        boolean[] changed = new boolean[ids.size()];
+        int count = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            StateLayout layout = layouts.get(i);
+            float[] state = states.get(i);
+            int oldIndex = baseline == null ? -1 : baseline.indexOf(ids.get(i));
+            float[] old = oldIndex < 0 || baseline.getLayout(oldIndex) != layout ? null : baseline.getState(oldIndex);
+            if (old != null && old.length != state.length) {
+                // Layout changed: send it as if the object were new.
+                old = null;
+            }
+            olds[i] = old;
+            changed[i] = old == null || differs(layout, old, state);
+            if (changed[i]) {
+                count++;
+            }
+        }
+
+        BitWriter out = new BitWriter(4 + count * 28);
+        out.write(count, 16);
+        for (int i = 0; i < ids.size(); i++) {
+            if (!changed[i]) {
+                // Same as in the baseline: leave the object out altogether.
+                continue;
+            }
+            StateLayout layout = layouts.get(i);
+            float[] state = states.get(i);
+            float[] old = olds[i];
+            writeId(out, ids.get(i));
+            out.write(layout.getId(), StateLayout.ID_BITS);
+            layout.writeLength(out, state.length);
+            out.writeBoolean(old == null);
+            for (int j = 0; j < state.length; j++) {
+                boolean send = old == null || layout.quantize(j, state[j]) != layout.quantize(j, old[j]);
+                if (old != null) {
+                    out.writeBoolean(send);
+                }
+                if (send) {
+                    layout.write(out, j, state[j]);
+                }
+            }
+        }
+
+        List<String> removed = new ArrayList<>();
+        if (baseline != null) {
+            for (int i = 0; i < baseline.size(); i++) {
+                String id = baseline.getId(i);
+                if (indexOf(id) < 0) {
+                    removed.add(id);
+                }
+            }
+        }
+        out.write(removed.size(), 16);
+        for (String id : removed) {
+            writeId(out, id);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean differs(StateLayout layout, float[] old, float[] state) {
+        for (int j = 0; j < state.length; j++) {
+            if (layout.quantize(j, state[j]) != layout.quantize(j, old[j])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decodes a delta and applies it to {@code baseline}, or to nothing if it is {@code null}.
+     */
+    static WorldSnapshot unpack(long tick, WorldSnapshot baseline, byte[] packed) {
+        BitReader in = new BitReader(packed);
+        int count = (int) in.read(16);
+        Map<String, float[]> changed = new LinkedHashMap<>(count * 2);
+        Map<String, StateLayout> changedLayouts = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String id = readId(in);
+            StateLayout layout = StateLayout.byId((int) in.read(StateLayout.ID_BITS));
+            float[] state = new float[layout.readLength(in)];
+            boolean full = in.readBoolean();
+            float[] old = null;
+            if (!full) {
+                int oldIndex = baseline == null ? -1 : baseline.indexOf(id);
+                if (oldIndex >= 0 && baseline.getLayout(oldIndex) == layout) {
+                    old = baseline.getState(oldIndex);
+                }
+                if (old == null || old.length != state.length) {
+                    throw new IllegalArgumentException("Delta for " + id + " does not match its baseline");
+                }
+            }
+            for (int j = 0; j < state.length; j++) {
+                state[j] = full || in.readBoolean() ? layout.read(in, j) : old[j];
+            }
+            changed.put(id, state);
+            changedLayouts.put(id, layout);
+        }
+        Set<String> removed = new HashSet<>();
+        int removedCount = (int) in.read(16);
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(readId(in));
+        }
+
+        int size = (baseline == null ? 0 : baseline.size()) + count;
+        WorldSnapshot snapshot = new WorldSnapshot(tick, size);
+        if (baseline != null) {
+            for (int i = 0; i < baseline.size(); i++) {
+                String id = baseline.getId(i);
+                if (removed.contains(id)) {
+                    continue;
+                }
+                float[] state = changed.remove(id);
+                if (state != null) {
+                    snapshot.add(id, changedLayouts.get(id), state);
+                } else {
+                    snapshot.add(id, baseline.getLayout(i), baseline.getState(i));
+                }
+            }
+        }
+        // Objects that are new since the baseline.
+        for (Map.Entry<String, float[]> entry : changed.entrySet()) {
+            snapshot.add(entry.getKey(), changedLayouts.get(entry.getKey()), entry.getValue());
+        }
+        return snapshot;
+    }
+
+    private static void writeId(BitWriter out, String id) {
+        UUID uuid = asUuid(id);
+        if (uuid != null) {
+            out.writeBoolean(ID_UUID);
+            out.write(uuid.getMostSignificantBits(), 64);
+            out.write(uuid.getLeastSignificantBits(), 64);
+        } else {
+            byte[] utf8 = id.getBytes(StandardCharsets.UTF_8);
+            if (utf8.length > 0xFF) {
+                throw new IllegalArgumentException("Object id too long for a snapshot: " + id);
+            }
+            out.writeBoolean(!ID_UUID);
+            out.write(utf8.length, 8);
+            out.writeBytes(utf8);
+        }
+    }
+
+    private static String readId(BitReader in) {
+        if (in.readBoolean() == ID_UUID) {
+            return new UUID(in.read(64), in.read(64)).toString();
+        }
+        return new String(in.readBytes((int) in.read(8)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the id as a UUID if it is the canonical form of one, so it round-trips exactly
+     */
+    private static UUID asUuid(String id) {
+        if (id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
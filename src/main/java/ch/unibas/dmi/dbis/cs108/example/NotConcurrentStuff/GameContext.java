@@ -3,11 +3,13 @@ package ch.unibas.dmi.dbis.cs108.example.NotConcurrentStuff;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.AsyncManager;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Client;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Game;
+import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.InputCommand;
 import ch.unibas.dmi.dbis.cs108.example.NotConcurrentStuff.KeyboardState;
 import ch.unibas.dmi.dbis.cs108.example.ThinkOutsideTheRoom;
 import ch.unibas.dmi.dbis.cs108.example.gameObjects.GameObject;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Message;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Nickname_Generator;
+import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.WorldImage;
 import ch.unibas.dmi.dbis.cs108.example.gui.javafx.CentralGraphicalUnit;
 import ch.unibas.dmi.dbis.cs108.example.gui.javafx.UIManager;
 import ch.unibas.dmi.dbis.cs108.example.gui.javafx.GUI;
@@ -30,9 +32,11 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.Node;
 import lombok.Getter;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
@@ -61,6 +65,9 @@ public class GameContext {
     private static final AtomicReference<String> currentGameId = new AtomicReference<>();
     private static final AtomicReference<String> selectedGameObjectId = new AtomicReference<>();
 
+    // Reassembles the compressed world images the server sends when we join.
+    private final WorldImage.Receiver worldImageReceiver = new WorldImage.Receiver();
+
     // Create a UIManager instance.
     private final UIManager uiManager = new UIManager();
 
@@ -73,6 +80,9 @@ public class GameContext {
 
     private Set<KeyCode> prevPressedKeys = new HashSet<>();
 
+    // Numbers the input ticks and remembers the last few, which every INPUT repeats.
+    private final InputCommand.Recorder inputRecorder = new InputCommand.Recorder();
+
     public GameContext() {
         instance = this;
         this.gameSessionManager = new GameSessionManager();
@@ -113,19 +123,45 @@ public class GameContext {
                     System.out.println("Processing CREATEGAME response");
                     String receivedId = receivedMessage.getParameters()[0].toString();
                     String receivedGameName = receivedMessage.getParameters()[1].toString();
-                    gameSessionManager.addGameSession(receivedId, receivedGameName);
-                    System.out.println("Game created with id: " + receivedId);
-
-                    // Update the ComboBox with the new game name.
-                    Platform.runLater(() -> {
-                        Node node = uiManager.getComponent("gameSelect");
-                        if (node instanceof ComboBox) {
-                            ComboBox<String> gameSelect = (ComboBox<String>) node;
-                            if (!gameSelect.getItems().contains(receivedGameName)) {
-                                gameSelect.getItems().add(receivedGameName);
+                    addGameSession(receivedId, receivedGameName);
+
+                } else if (WorldImage.TYPE.equals(type)) {
+                    List<Message> world;
+                    try {
+                        world = worldImageReceiver.accept(receivedMessage);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Dropping world image: " + e.getMessage());
+                        return;
+                    }
+                    if (world == null || world.isEmpty()) {
+                        // More chunks to come.
+                        return;
+                    }
+                    // The image holds sessions (CREATEGAME) and the objects in them (CREATEGO).
+                    Map<String, List<Message>> objectsByGame = new LinkedHashMap<>();
+                    for (Message m : world) {
+                        Object[] p = m.getParameters();
+                        if ("CREATEGAME".equals(m.getMessageType())) {
+                            if (gameSessionManager.getGameSession(p[0].toString()) == null) {
+                                addGameSession(p[0].toString(), p[1].toString());
                             }
+                        } else if ("CREATEGO".equals(m.getMessageType())) {
+                            objectsByGame.computeIfAbsent(p[1].toString(), id -> new ArrayList<>()).add(m);
                         }
-                    });
+                    }
+                    for (Map.Entry<String, List<Message>> entry : objectsByGame.entrySet()) {
+                        Game game = gameSessionManager.getGameSession(entry.getKey());
+                        if (game == null) {
+                            System.out.println("No game session found with id: " + entry.getKey());
+                            continue;
+                        }
+                        try {
+                            int added = game.addGameObjectsAsync(entry.getValue()).get();
+                            System.out.println("Synchronized game " + entry.getKey() + " with " + added + " game objects");
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
 
                 } else if ("JOINGAME".equals(type)) {
                     System.out.println("Processing JOINGAME response");
@@ -489,6 +525,28 @@ public class GameContext {
         return gameSessionManager;
     }
 
+    /**
+     * Registers a game session announced by the server and offers it in the game selection.
+     *
+     * @param gameId   the session's id
+     * @param gameName the session's name
+     */
+    private void addGameSession(String gameId, String gameName) {
+        gameSessionManager.addGameSession(gameId, gameName);
+        System.out.println("Game created with id: " + gameId);
+
+        // Update the ComboBox with the new game name.
+        Platform.runLater(() -> {
+            Node node = uiManager.getComponent("gameSelect");
+            if (node instanceof ComboBox) {
+                ComboBox<String> gameSelect = (ComboBox<String>) node;
+                if (!gameSelect.getItems().contains(gameName)) {
+                    gameSelect.getItems().add(gameName);
+                }
+            }
+        });
+    }
+
     /**
      * Starts the client operations and the game loop.
      */
@@ -577,19 +635,31 @@ public class GameContext {
         
         Set<KeyCode> currentPressedKeys = KeyboardState.getPressedKeys();
         
-        // Send KEY_PRESS messages for each key pressed.
+        String gameId = getCurrentGameId();
+        Game game = gameId == null ? null : gameSessionManager.getGameSession(gameId);
+
+        // Send one INPUT with every held button, and apply it locally right away. Idle ticks
+        // are only sent while the last input is still being repeated.
+        int buttons = 0;
         for (KeyCode key : currentPressedKeys) {
-            Message keyPressMsg = new Message("KEY_PRESS", new Object[]{ key.toString() }, "GAME");
-        
-            String[] concealed = keyPressMsg.getConcealedParameters();
+            buttons |= InputCommand.buttonOf(key.toString());
+        }
+        InputCommand command = inputRecorder.next(buttons);
+        if (!command.isIdle()) {
+            Message inputMsg = command.toMessage();
+
+            String[] concealed = inputMsg.getConcealedParameters();
             if (concealed == null || concealed.length < 2) {
                 concealed = new String[2];
             }
             concealed[0] = getSelectedGameObjectId();
-            concealed[1] = getCurrentGameId();
-            keyPressMsg.setConcealedParameters(concealed);
-        
-            Client.sendMessageBestEffort(keyPressMsg);
+            concealed[1] = gameId;
+            inputMsg.setConcealedParameters(concealed);
+
+            Client.sendMessageBestEffort(inputMsg);
+            if (game != null) {
+                game.predictInput(inputMsg);
+            }
         }
         
         Set<KeyCode> newlyReleased = new HashSet<>(prevPressedKeys);
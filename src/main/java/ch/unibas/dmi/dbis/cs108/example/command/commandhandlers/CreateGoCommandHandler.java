@@ -14,7 +14,7 @@ import static ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Server.makeResp
 
 /**
  * CREATEGO: Creates a new game object within a specified game session, assigning
- * a server-generated UUID and broadcasting the creation to all clients.
+ * a server-generated UUID and broadcasting the creation to the session's members.
  * Expected parameters:
  *   [0] - The game session ID
  *   [1] - The object type (e.g. "Player")
@@ -25,7 +25,7 @@ public class CreateGoCommandHandler implements CommandHandler {
     /**
      * Creates a new {@link GameObject} in the specified game session, identified by
      * the first parameter in {@code msg.getParameters()}. The new object is assigned
-     * a server-generated UUID and then broadcast to all connected clients.
+     * a server-generated UUID and then broadcast to the members of that session and the requester.
      */
     @Override
     public void handle(Server server, Message msg, String senderUsername) {
@@ -86,9 +86,9 @@ public class CreateGoCommandHandler implements CommandHandler {
         }
      
 
-        // Broadcast the CREATEGO response message to all clients.
-        System.out.println("Broadcasting CREATEGO to all: " + responseMsg);
-        server.broadcastMessageToAll(responseMsg);
+        // Broadcast the CREATEGO response message to the session (clients elsewhere get it when they join).
+        System.out.println("Broadcasting CREATEGO to session " + gameSessionId + ": " + responseMsg);
+        server.broadcastMessageToSession(responseMsg, targetGame, senderUsername);
 
         InetSocketAddress newUserAddress = server.getClientsMap().get(senderUsername);
         if (newUserAddress != null) {
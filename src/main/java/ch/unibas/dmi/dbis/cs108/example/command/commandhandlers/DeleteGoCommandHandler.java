@@ -7,7 +7,7 @@ import ch.unibas.dmi.dbis.cs108.example.command.CommandHandler;
 
 /**
  * DELETEGO: removes a game object from the specified session
- * and broadcasts that deletion to all clients.
+ * and broadcasts that deletion to the session's members.
  * Expected parameters:
  *   [0] - The game session ID
  *   [1] - The object ID (UUID) to remove
@@ -42,6 +42,6 @@ public class DeleteGoCommandHandler implements CommandHandler {
 
         // Broadcast a DELETEGO response with the original parameters
         Message responseMsg = new Message("DELETEGO", originalParams, "RESPONSE", msg.getConcealedParameters());
-        server.broadcastMessageToAll(responseMsg);
+        server.broadcastMessageToSession(responseMsg, game, senderUsername);
     }
 }
@@ -66,10 +66,15 @@ public class JoinGameCommandHandler implements CommandHandler {
                 + " joined game session name: " + requestedGameName
                 + " (ID: " + foundGameId + ")");
 
-        // remove the user from the previous game
+        // remove the user from the previous game; its members still need to hear about it
+        String[] previousMembers = new String[0];
         if(!prevGameId.equals("default"))
         {
-            server.getGameSessionManager().getGameSession(prevGameId).getUsers().remove(username);
+            Game prevGame = server.getGameSessionManager().getGameSession(prevGameId);
+            if (prevGame != null) {
+                prevGame.getUsers().remove(username);
+                previousMembers = prevGame.getUsers().toArray(new String[0]);
+            }
         }
         // add the username in the game
         foundGame.getUsers().add(username);
@@ -102,8 +107,10 @@ public class JoinGameCommandHandler implements CommandHandler {
         System.out.println(syncGamePlayers);
         InetSocketAddress address = server.getClientsMap().get(senderUsername);
         if (address != null) {
-            server.broadcastMessageToAll(response);
+            server.broadcastMessageToSession(response, foundGame, previousMembers);
             server.enqueueMessage(syncGamePlayers, address.getAddress(), address.getPort());
+            // Object updates are scoped to members, so the new member gets the session's current state.
+            server.synchronizeSession(senderUsername, foundGameId, foundGame);
         } else {
             System.err.println("Sender address not found for user: " + senderUsername);
         }
@@ -1,5 +1,6 @@
 package ch.unibas.dmi.dbis.cs108.example.command.commandhandlers;
 
+import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Game;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Message;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Server;
 import ch.unibas.dmi.dbis.cs108.example.command.CommandHandler;
@@ -12,7 +13,12 @@ import java.net.InetSocketAddress;
 public class PingCommandHandler implements CommandHandler {
 
     /**
-     * Looks up the sender's address and responds with a "PONG" message.
+     * Looks up the sender's address and responds with a "PONG" message that echoes the
+     * PING's timestamp, so the client can measure the round-trip time. For clock
+     * synchronization (see {@code ClockSync}) it adds the server times, in microseconds,
+     * at which the PING was handled and the PONG sent, and the current tick of the game
+     * whose snapshots the sender receives: {@code PONG [t0, t1, t2, gameId, tick]}. The PONG
+     * is sent best effort, since a retransmitted PONG would distort the measurement.
      *
      * @param server         the server instance
      * @param msg            the "PING" command message
@@ -20,11 +26,20 @@ public class PingCommandHandler implements CommandHandler {
      */
     @Override
     public void handle(Server server, Message msg, String senderUsername) {
+        long received = System.nanoTime() / 1000;
         InetSocketAddress senderAddress = server.getClientsMap().get(senderUsername);
         if (senderAddress != null) {
-            Message responseMsg = new Message("PONG", new Object[]{}, "RESPONSE");
-            server.enqueueMessage(responseMsg, senderAddress.getAddress(), senderAddress.getPort());
-            System.out.println("Enqueued PONG response to " + senderUsername);
+            Object[] params = msg.getParameters();
+            if (params == null || params.length == 0) {
+                server.sendMessageBestEffort(new Message("PONG", new Object[]{}, "RESPONSE"), senderAddress);
+                return;
+            }
+            Game game = server.getSnapshotGame(senderUsername);
+            Object[] pong = game == null
+                    ? new Object[]{ params[0], received, 0L }
+                    : new Object[]{ params[0], received, 0L, game.getGameId(), game.getTickCount() };
+            pong[2] = System.nanoTime() / 1000;
+            server.sendMessageBestEffort(new Message("PONG", pong, "RESPONSE"), senderAddress);
         }
     }
 }
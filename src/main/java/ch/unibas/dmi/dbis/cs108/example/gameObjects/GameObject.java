@@ -4,6 +4,7 @@ import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.AsyncManager;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Client;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Game;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Message;
+import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.StateLayout;
 import javafx.scene.canvas.GraphicsContext;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -33,6 +34,10 @@ public abstract class GameObject {
     private boolean collidable = true;
     // Whether the object is movable by external forces (e.g. collision resolution).
     private boolean movable = true;
+    // Whether this client moves the object ahead of the server (see Game#predictInput).
+    private volatile boolean predicted = false;
+    // Whether this client shows the object from interpolated snapshots instead of simulating it.
+    private volatile boolean interpolated = false;
 
     public GameObject(String name, String gameId) {
         this.name = name;
@@ -76,6 +81,10 @@ public abstract class GameObject {
     public void setCollidable(boolean collidable) { this.collidable = collidable; }
     public boolean isMovable() { return movable; }
     public void setMovable(boolean movable) { this.movable = movable; }
+    public boolean isPredicted() { return predicted; }
+    public void setPredicted(boolean predicted) { this.predicted = predicted; }
+    public boolean isInterpolated() { return interpolated; }
+    public void setInterpolated(boolean interpolated) { this.interpolated = interpolated; }
 
 
     // === Messaging ===
@@ -116,6 +125,37 @@ public abstract class GameObject {
 
     public abstract Message createSnapshot();
 
+    /**
+     * Returns the state this object contributes to the per-tick world snapshot of an
+     * authoritative game (see {@link ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.WorldSnapshot}).
+     * Objects that the server never moves keep the default and are left out.
+     *
+     * @return a fresh array with the state, or {@code null} if the object is not part of snapshots
+     */
+    public float[] getSnapshotState() {
+        return null;
+    }
+
+    /**
+     * Returns how the floats of {@link #getSnapshotState()} are quantized on the wire. The default
+     * sends them as they are; objects with a fixed state should pick a matching layout.
+     *
+     * @return the layout of the snapshot state
+     */
+    public StateLayout getSnapshotLayout() {
+        return StateLayout.RAW;
+    }
+
+    /**
+     * Applies a state received in a world snapshot; the counterpart of {@link #getSnapshotState()}.
+     * Called on the game loop thread.
+     *
+     * @param state the state as returned by {@link #getSnapshotState()} on the server
+     */
+    public void applySnapshotState(float[] state) {
+        // Not part of snapshots by default.
+    }
+
     // === Collision ===
 
     /**
@@ -1,6 +1,7 @@
 package ch.unibas.dmi.dbis.cs108.example.gameObjects;
 
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Message;
+import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.StateLayout;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
@@ -191,6 +192,28 @@ public class MovingPlatform extends GameObject implements IMovable {
         return snapshotMsg;
     }
 
+    /**
+     * Platforms are moved by the authoritative game, so their position is part of the world
+     * snapshot; while they stand still the delta encoding leaves them out.
+     */
+    @Override
+    public float[] getSnapshotState() {
+        return new float[]{ x, y };
+    }
+
+    @Override
+    public StateLayout getSnapshotLayout() {
+        return StateLayout.POSITION;
+    }
+
+    @Override
+    public synchronized void applySnapshotState(float[] state) {
+        if (state.length >= 2) {
+            setX(state[0]);
+            setY(state[1]);
+        }
+    }
+
     @Override
     public Object[] getConstructorParamValues() {
         // Return parameters in the same order as the constructor.
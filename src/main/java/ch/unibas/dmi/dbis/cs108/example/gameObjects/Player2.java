@@ -2,11 +2,13 @@ package ch.unibas.dmi.dbis.cs108.example.gameObjects;
 
 import java.util.Arrays;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Game;
+import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.InputCommand;
+import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.InputHistory;
+import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.InputQueue;
 import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Message;
-import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.Server;
+import ch.unibas.dmi.dbis.cs108.example.ClientServerStuff.StateLayout;
 import ch.unibas.dmi.dbis.cs108.example.NotConcurrentStuff.KeyboardState;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.scene.input.KeyCode;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import lombok.Getter;
@@ -78,25 +80,14 @@ public class Player2 extends GameObject implements IThrowable, IGrabbable {
     public boolean iAmGrabbed = false;
 
     // ---------------------------------
-    // INTERPOLATION FIELDS for smoothing out server SNAPSHOT corrections
+    // CLIENT-SIDE PREDICTION: the local player moves at once and is reconciled with SNAPSHOTS
     // ---------------------------------
-    private boolean interpolating = false;         // true if we're currently smoothing from an old state to a new state
-    private Vector2 interpStartPos = new Vector2();  // starting position
-    private Vector2 interpEndPos   = new Vector2();  // target position
-
-    // --- New: interpolation fields for velocity ---
-    private Vector2 interpStartVel = new Vector2();  // starting velocity
-    private Vector2 interpEndVel   = new Vector2();  // target velocity
-
-    // --- New: interpolation fields for acceleration ---
-    private Vector2 interpStartAcc = new Vector2();  // starting acceleration
-    private Vector2 interpEndAcc   = new Vector2();  // target acceleration
-
-    private float interpElapsed  = 0f;              // time elapsed during interpolation
-    private float interpDuration = 0.05f;            // duration (in seconds) over which to interpolate
-
-    private int syncCounter = 0;
-    private static final int SYNC_THRESHOLD = 0;     // only send snapshot every 50 KEY_PRESS messages
+    private static final int MAX_STEPS_SINCE_INPUT = 63;
+    private int lastInputSequence = 0;                    // newest input sequence applied
+    private int stepsSinceInput = MAX_STEPS_SINCE_INPUT;  // steps simulated since, capped
+    private long step = 0;                                // steps simulated so far
+    private final InputHistory inputHistory = new InputHistory();  // only filled when predicted
+    private final InputQueue inputQueue = new InputQueue();        // inputs not applied yet
 
 
     /**
@@ -123,38 +114,57 @@ public class Player2 extends GameObject implements IThrowable, IGrabbable {
 
     @Override
     public void myUpdateLocal(float deltaTime) {
-        // If we're interpolating from a previous state to a new authoritative state, interpolate position, velocity, and acceleration.
-        if (interpolating) {
-            // Update elapsed time
-            interpElapsed += deltaTime;
-
-            // Compute the fraction of interpolation completed (0 to 1)
-            float alpha = interpElapsed / interpDuration;
-            if (alpha >= 1.0f) {
-                alpha = 1.0f;
-                interpolating = false; // Finished interpolation
-            }
-
-            // Interpolate position.
-            pos.x = lerp(interpStartPos.x, interpEndPos.x, alpha);
-            pos.y = lerp(interpStartPos.y, interpEndPos.y, alpha);
-
-            // Interpolate velocity.
-            vel.x = lerp(interpStartVel.x, interpEndVel.x, alpha);
-            vel.y = lerp(interpStartVel.y, interpEndVel.y, alpha);
-
-            // --- New: interpolate acceleration ---
-            acc.x = lerp(interpStartAcc.x, interpEndAcc.x, alpha);
-            acc.y = lerp(interpStartAcc.y, interpEndAcc.y, alpha);
+        // Remote players are not simulated here; the game hands them interpolated snapshot states.
 
-            return;
+        // Apply the next input and count the step, so snapshots can say which inputs they include.
+        step++;
+        if (stepsSinceInput < MAX_STEPS_SINCE_INPUT) {
+            stepsSinceInput++;
+        }
+        int sequence = 0;
+        int buttons = inputQueue.poll();
+        if (buttons == InputQueue.NONE || iAmGrabbed) {
+            buttons = 0;
+        } else {
+            sequence = inputQueue.getLastTick();
+            lastInputSequence = sequence;
+            stepsSinceInput = 1;
+            applyButtons(buttons, inputQueue.getPressed());
+        }
+        if (isPredicted()) {
+            inputHistory.record(step, sequence, buttons);
         }
 
-        // If not interpolating, execute normal local update logic:
         if (iAmGrabbed) {
             updateMovement();
             return;
         }
+        // 1) - 5) Apply gravity, friction and velocity, then land on whatever is below.
+        simulateStep();
+
+        // Update the position of the grabbed object so it stays attached.
+        if (grabbedGuy != null) {
+            grabbedGuy.setPos(new Vector2(this.pos.x, this.pos.y - grabbedGuy.getHeight()));
+        }
+
+        // 6) If in throwing mode, update the throw angle with a windshield-wiper oscillation.
+        if (isThrowing) {
+            throwAngle += throwAngleDelta;
+            if (throwAngle < MIN_THROW_ANGLE) {
+                throwAngle = MIN_THROW_ANGLE;
+                throwAngleDelta = -throwAngleDelta;
+            } else if (throwAngle > MAX_THROW_ANGLE) {
+                throwAngle = MAX_THROW_ANGLE;
+                throwAngleDelta = -throwAngleDelta;
+            }
+        }
+        // The authoritative game sends our state in its world snapshots.
+    }
+
+    /**
+     * Advances position and velocity by one step and resolves ground contact.
+     */
+    private void simulateStep() {
         // 1) Reset acceleration and apply gravity.
         acc.y = 0.5f;
         acc.x += vel.x * PLAYER_FRICTION;
@@ -172,34 +182,130 @@ public class Player2 extends GameObject implements IThrowable, IGrabbable {
 
         // 5) Check for collision and update ground collision status.
         checkGroundCollision();
+    }
 
-        // Update the position of the grabbed object so it stays attached.
-        if (grabbedGuy != null) {
-            grabbedGuy.setPos(new Vector2(this.pos.x, this.pos.y - grabbedGuy.getHeight()));
+    /**
+     * Applies the movement buttons (left, right, jump) for the current step.
+     */
+    private void applyMovement(int buttons) {
+        if ((buttons & InputCommand.LEFT) != 0) {
+            acc.x += -PLAYER_ACC;
+        }
+        if ((buttons & InputCommand.RIGHT) != 0) {
+            acc.x += PLAYER_ACC;
         }
+        if ((buttons & InputCommand.JUMP) != 0 && !jumped && onGround) {
+            if (grabbedGuy != null) {
+                vel.y += JUMP_FORCE / 2;
+            } else {
+                vel.y += JUMP_FORCE;
+            }
+            jumped = true;
+        }
+    }
 
-        // 6) If in throwing mode, update the throw angle with a windshield-wiper oscillation.
-        if (isThrowing) {
-            throwAngle += throwAngleDelta;
-            if (throwAngle < MIN_THROW_ANGLE) {
-                throwAngle = MIN_THROW_ANGLE;
-                throwAngleDelta = -throwAngleDelta;
-            } else if (throwAngle > MAX_THROW_ANGLE) {
-                throwAngle = MAX_THROW_ANGLE;
-                throwAngleDelta = -throwAngleDelta;
+    /**
+     * Applies the buttons of one input tick: movement while they are held, everything else
+     * once per press.
+     *
+     * @param buttons the buttons held, see {@link InputCommand}
+     * @param pressed the buttons among them that were not held in the tick before
+     */
+    private void applyButtons(int buttons, int pressed) {
+        applyMovement(buttons);
+        if ((pressed & InputCommand.GRAB) != 0) {
+            toggleGrab();
+        }
+        if ((pressed & InputCommand.AIM) != 0) {
+            toggleThrowing();
+        }
+        if ((pressed & InputCommand.THROW) != 0) {
+            throwGrabbed();
+        }
+    }
+
+    /**
+     * Releases the grabbed player, or grabs the closest one within {@link #GRAB_RADIUS}.
+     */
+    private void toggleGrab() {
+        // If an object is already grabbed, release it and return.
+        if (grabbedGuy != null && grabbedGuy.iAmGrabbed) {
+            grabbedGuy.iAmGrabbed = false;
+            System.out.println("Player " + getName() + " released grabbed player: " + grabbedGuy.getName());
+            grabbedGuy = null;
+            return;
+        }
+
+        // Otherwise, search for the closest grabbable Player2
+        Game parentGame = getParentGame();
+        if (parentGame != null) {
+            Player2 closest = null;
+            double minDistance = Double.MAX_VALUE;
+            float myCenterX = getX() + getWidth() / 2;
+            float myCenterY = getY() + getHeight() / 2;
+
+            for (GameObject obj : parentGame.getGameObjects()) {
+                if (obj.getId().equals(getId())) continue;
+                if (!(obj instanceof Player2)) continue;
+                Player2 candidate = (Player2) obj;
+                if (candidate.iAmGrabbed) continue;
+
+                float candidateCenterX = candidate.getX() + (candidate.getWidth() / 2);
+                float candidateCenterY = candidate.getY() + (candidate.getHeight() / 2);
+                double dx = myCenterX - candidateCenterX;
+                double dy = myCenterY - candidateCenterY;
+                double distance = Math.sqrt(dx * dx + dy * dy);
+
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    closest = candidate;
+                }
+            }
+
+            if (closest != null && minDistance <= GRAB_RADIUS) {
+                grabbedGuy = closest;
+                grabbedGuy.iAmGrabbed = true;
+                System.out.println("Player " + getName() + " grabbed player: "
+                        + grabbedGuy.getName() + " at distance " + minDistance);
+            } else {
+                System.out.println("No player found within grab radius (" + GRAB_RADIUS + ").");
             }
         }
+    }
 
-        if (parentGame.isAuthoritative()) {
-            syncCounter++;
-            if (syncCounter >= SYNC_THRESHOLD) {
-                // Broadcast a snapshot.
-                Message snapshot = createSnapshot();
-                Server.getInstance().sendMessageBestEffort(snapshot);
+    /**
+     * Enters or leaves throwing mode.
+     */
+    private void toggleThrowing() {
+        // Toggle throwing mode.
+        if (!isThrowing) {
+            isThrowing = true;
+            throwAngle = 90f;
+            throwAngleDelta = 3.0f;
+            System.out.println("Entered throwing mode. Throw angle set to " + throwAngle);
+        } else {
+            isThrowing = false;
+            System.out.println("Exiting throwing mode.");
+        }
+    }
 
-                // Reset the counter.
-                syncCounter = 0;
+    /**
+     * Throws the grabbed player at the current throw angle and leaves throwing mode.
+     */
+    private void throwGrabbed() {
+        // Execute throw logic.
+        if (isThrowing) {
+            double rad = Math.toRadians(throwAngle);
+            float throwVx = (float) (throwMagnitude * Math.cos(rad));
+            float throwVy = (float) (throwMagnitude * Math.sin(rad));
+            throwVy = -throwVy;
+            if (grabbedGuy != null) {
+                throwObject(throwVx, throwVy);
+                System.out.println("Threw grabbed player with angle " + throwAngle + " degrees.");
+            } else {
+                System.out.println("No grabbed player to throw.");
             }
+            isThrowing = false;
         }
     }
 
@@ -251,102 +357,12 @@ public class Player2 extends GameObject implements IThrowable, IGrabbable {
         }
 
         String type = msg.getMessageType();
-        if ("KEY_PRESS".equals(type)) {
-            // Process key press events.
-            Object[] params = msg.getParameters();
-            if (params != null && params.length >= 1) {
-                String keyString = params[0].toString();
-
-                // Basic movement logic.
-                if (KeyCode.LEFT.toString().equals(keyString)) {
-                    acc.x += -PLAYER_ACC;
-                } else if (KeyCode.RIGHT.toString().equals(keyString)) {
-                    acc.x += PLAYER_ACC;
-                } else if (KeyCode.UP.toString().equals(keyString)) {
-                    if (!jumped && onGround) {
-                        if (grabbedGuy != null) {
-                            vel.y += JUMP_FORCE / 2;
-                        } else {
-                            vel.y += JUMP_FORCE;
-                        }
-                        jumped = true;
-                    }
-                }
-                // Additional keys for grabbing, throwing, etc.
-                else if (KeyCode.E.toString().equals(keyString)) {
-                    // If an object is already grabbed, release it and return.
-                    if (grabbedGuy != null && grabbedGuy.iAmGrabbed) {
-                        grabbedGuy.iAmGrabbed = false;
-                        System.out.println("Player " + getName() + " released grabbed player: " + grabbedGuy.getName());
-                        grabbedGuy = null;
-                        return;
-                    }
-
-                    // Otherwise, search for the closest grabbable Player2
-                    Game parentGame = getParentGame();
-                    if (parentGame != null) {
-                        Player2 closest = null;
-                        double minDistance = Double.MAX_VALUE;
-                        float myCenterX = getX() + getWidth() / 2;
-                        float myCenterY = getY() + getHeight() / 2;
-
-                        for (GameObject obj : parentGame.getGameObjects()) {
-                            if (obj.getId().equals(getId())) continue;
-                            if (!(obj instanceof Player2)) continue;
-                            Player2 candidate = (Player2) obj;
-                            if (candidate.iAmGrabbed) continue;
-
-                            float candidateCenterX = candidate.getX() + (candidate.getWidth() / 2);
-                            float candidateCenterY = candidate.getY() + (candidate.getHeight() / 2);
-                            double dx = myCenterX - candidateCenterX;
-                            double dy = myCenterY - candidateCenterY;
-                            double distance = Math.sqrt(dx * dx + dy * dy);
-
-                            if (distance < minDistance) {
-                                minDistance = distance;
-                                closest = candidate;
-                            }
-                        }
-
-                        if (closest != null && minDistance <= GRAB_RADIUS) {
-                            grabbedGuy = closest;
-                            grabbedGuy.iAmGrabbed = true;
-                            System.out.println("Player " + getName() + " grabbed player: "
-                                    + grabbedGuy.getName() + " at distance " + minDistance);
-                        } else {
-                            System.out.println("No player found within grab radius (" + GRAB_RADIUS + ").");
-                        }
-                    }
-
-                } else if (KeyCode.F.toString().equals(keyString)) {
-                    // Toggle throwing mode.
-                    if (!isThrowing) {
-                        isThrowing = true;
-                        throwAngle = 90f;
-                        throwAngleDelta = 3.0f;
-                        System.out.println("Entered throwing mode. Throw angle set to " + throwAngle);
-                    } else {
-                        isThrowing = false;
-                        System.out.println("Exiting throwing mode.");
-                    }
-                } else if (KeyCode.R.toString().equals(keyString)) {
-                    // Execute throw logic.
-                    if (isThrowing) {
-                        double rad = Math.toRadians(throwAngle);
-                        float throwVx = (float) (throwMagnitude * Math.cos(rad));
-                        float throwVy = (float) (throwMagnitude * Math.sin(rad));
-                        throwVy = -throwVy;
-                        if (grabbedGuy != null) {
-                            throwObject(throwVx, throwVy);
-                            System.out.println("Threw grabbed player with angle " + throwAngle + " degrees.");
-                        } else {
-                            System.out.println("No grabbed player to throw.");
-                        }
-                        isThrowing = false;
-                    }
-                }
-
-                System.out.println("Processed KEY_PRESS for " + getId() + ": " + keyString);
+        if (InputCommand.TYPE.equals(type)) {
+            // Queue the inputs; myUpdateLocal applies one per step, in tick order.
+            try {
+                inputQueue.offer(InputCommand.fromMessage(msg));
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error processing INPUT for " + getId() + ": " + e.getMessage());
             }
         }
         else if ("SNAPSHOT".equals(type)) {
@@ -354,41 +370,14 @@ public class Player2 extends GameObject implements IThrowable, IGrabbable {
             Object[] params = msg.getParameters();
             if (params != null && params.length >= 6) {
                 try {
-                    float newX    = Float.parseFloat(params[0].toString());
-                    float newY    = Float.parseFloat(params[1].toString());
-                    float newVelX = Float.parseFloat(params[2].toString());
-                    float newVelY = Float.parseFloat(params[3].toString());
-                    float newAccX = Float.parseFloat(params[4].toString());
-                    float newAccY = Float.parseFloat(params[5].toString());
-
-                    // Instead of snapping directly, set up interpolation:
-                    interpStartPos.x = pos.x;
-                    interpStartPos.y = pos.y;
-                    interpEndPos.x   = newX;
-                    interpEndPos.y   = newY;
-                    
-                    // --- New: store current and target velocity for interpolation ---
-                    interpStartVel.x = vel.x;
-                    interpStartVel.y = vel.y;
-                    interpEndVel.x   = newVelX;
-                    interpEndVel.y   = newVelY;
-                    
-                    // --- New: store current and target acceleration for interpolation ---
-                    interpStartAcc.x = acc.x;
-                    interpStartAcc.y = acc.y;
-                    interpEndAcc.x   = newAccX;
-                    interpEndAcc.y   = newAccY;
-                    
-                    interpolating = true;
-                    interpElapsed = 0f;
-
-                    // Optionally, if you want to immediately adopt the target acceleration after interpolation,
-                    // you may comment out the following direct assignment.
-                    // acc.x = newAccX;
-                    // acc.y = newAccY;
+                    float[] state = new float[6];
+                    for (int i = 0; i < state.length; i++) {
+                        state[i] = Float.parseFloat(params[i].toString());
+                    }
+                    applySnapshotState(state);
 
                     System.out.println("Processed SNAPSHOT for " + getId()
-                                       + ": pos=(" + newX + ", " + newY + ")");
+                                       + ": pos=(" + state[0] + ", " + state[1] + ")");
                 } catch (NumberFormatException ex) {
                     System.out.println("Error processing SNAPSHOT parameters: " + Arrays.toString(params));
                 }
@@ -479,6 +468,61 @@ public class Player2 extends GameObject implements IThrowable, IGrabbable {
         return snapshotMsg;
     }
 
+    /**
+     * Position, velocity, acceleration and the newest input applied with the steps since:
+     * {x, y, vx, vy, ax, ay, input sequence, steps}.
+     */
+    @Override
+    public float[] getSnapshotState() {
+        return new float[] { pos.x, pos.y, vel.x, vel.y, acc.x, acc.y, lastInputSequence, stepsSinceInput };
+    }
+
+    @Override
+    public StateLayout getSnapshotLayout() {
+        return StateLayout.PLAYER;
+    }
+
+    /**
+     * The player this client controls is reconciled, see {@link #reconcile(float[])}. Everybody
+     * else takes the state as is: the game already interpolated it between two snapshots.
+     */
+    @Override
+    public void applySnapshotState(float[] state) {
+        if (isPredicted() && state.length >= 8) {
+            reconcile(state);
+            return;
+        }
+        if (state.length < 6) {
+            System.out.println("Snapshot state of " + getId() + " is too short: " + Arrays.toString(state));
+            return;
+        }
+        pos.set(state[0], state[1]);
+        vel.set(state[2], state[3]);
+        acc.set(state[4], state[5]);
+    }
+
+    /**
+     * Resets to the server's state and replays the steps this client simulated after it, so
+     * the local player keeps moving without waiting for the round trip. The server state
+     * includes the step its newest applied input went into and the steps after that one.
+     * Only movement buttons are replayed; grabbing and throwing stay with the server.
+     */
+    private void reconcile(float[] state) {
+        pos.set(state[0], state[1]);
+        vel.set(state[2], state[3]);
+        acc.set(state[4], state[5]);
+
+        long appliedStep = inputHistory.stepOf((int) state[6]);
+        if (appliedStep < 0 || iAmGrabbed) {
+            // The server has none of the inputs we still remember: nothing to replay.
+            return;
+        }
+        for (int buttons : inputHistory.buttonsAfter(appliedStep + (long) state[7] - 1)) {
+            applyMovement(buttons);
+            simulateStep();
+        }
+    }
+
     @Override
     public float getX() {
         return pos.x;
@@ -571,11 +615,4 @@ public class Player2 extends GameObject implements IThrowable, IGrabbable {
             return "(" + x + ", " + y + ")";
         }
     }
-
-    // ---------------------------------
-    // Simple linear interpolation helper
-    // ---------------------------------
-    private float lerp(float start, float end, float alpha) {
-        return start + (end - start) * alpha;
-    }
 }
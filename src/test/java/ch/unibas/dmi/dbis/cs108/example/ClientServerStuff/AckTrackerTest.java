@@ -0,0 +1,116 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AckTrackerTest {
+
+    private static final InetSocketAddress PEER = new InetSocketAddress(InetAddress.getLoopbackAddress(), 4000);
+
+    @Test
+    public void testBitfieldTracksOutOfOrderArrivals() {
+        AckTracker tracker = new AckTracker();
+        ByteBuffer buffer = ByteBuffer.allocate(AckTracker.HEADER_SIZE);
+        assertFalse(tracker.writeHeader(PEER, buffer, 0));
+
+        assertTrue(tracker.onReceived(PEER, 1));
+        assertTrue(tracker.onReceived(PEER, 2));
+        assertTrue(tracker.onReceived(PEER, 5));
+        assertTrue(tracker.onReceived(PEER, 3));
+
+        assertTrue(tracker.writeHeader(PEER, buffer, 0));
+        AtomicLong latest = new AtomicLong();
+        AtomicInteger bits = new AtomicInteger();
+        assertTrue(AckTracker.readHeader(buffer, PEER, (peer, l, b) -> {
+            latest.set(l);
+            bits.set(b);
+        }));
+        assertEquals(5, latest.get());
+        // 4 missing, then 3, 2 and 1
+        assertEquals(0b1110, bits.get());
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void testRetransmissionsAreRecognizedAsDuplicates() {
+        AckTracker tracker = new AckTracker();
+        assertTrue(tracker.onReceived(PEER, 1));
+        assertFalse(tracker.onReceived(PEER, 1));
+        assertTrue(tracker.onReceived(PEER, 1 + AckTracker.WINDOW));
+        assertTrue(tracker.onReceived(PEER, 100));
+        // Too old for the header, but still remembered.
+        assertTrue(tracker.onReceived(PEER, 100 - AckTracker.WINDOW - 1));
+        assertFalse(tracker.onReceived(PEER, 100 - AckTracker.WINDOW - 1));
+        assertTrue(tracker.onReceived(PEER, 100 - AckTracker.WINDOW));
+        assertFalse(tracker.onReceived(PEER, 100));
+
+        // The sliding window forgets what it slides over, except what was received again.
+        assertTrue(tracker.onReceived(PEER, 2000));
+        assertTrue(tracker.onReceived(PEER, 2000 - AckTracker.HISTORY + 1));
+        assertFalse(tracker.onReceived(PEER, 2000 - AckTracker.HISTORY), "older than any send window");
+        assertTrue(tracker.onReceived(PEER, 1999));
+    }
+
+    @Test
+    public void testReliableMessagesAreAcknowledgedWithoutAckMessages() throws Exception {
+        try (DatagramChannel senderChannel = DatagramChannel.open();
+             DatagramChannel receiverChannel = DatagramChannel.open()) {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            senderChannel.bind(new InetSocketAddress(loopback, 0));
+            receiverChannel.bind(new InetSocketAddress(loopback, 0));
+            InetSocketAddress receiverAddress = (InetSocketAddress) receiverChannel.getLocalAddress();
+
+            AtomicInteger ackMessages = new AtomicInteger();
+            AtomicInteger datagrams = new AtomicInteger();
+            ReliableUDPSender[] sender = new ReliableUDPSender[1];
+            UdpTransport senderTransport = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (datagram, from) -> {
+                datagrams.incrementAndGet();
+                AckTracker.readHeader(datagram, from, sender[0]::acknowledge);
+                while (datagram.hasRemaining()) {
+                    if ("ACK".equals(WireFormat.read(datagram).getMessageType())) {
+                        ackMessages.incrementAndGet();
+                    }
+                }
+            });
+
+            AckTracker receiverTracker = new AckTracker();
+            UdpTransport receiverTransport = new UdpTransport(receiverChannel, peer -> WireFormat.BINARY, (datagram, from) -> {
+                while (datagram.hasRemaining()) {
+                    Message msg = WireFormat.read(datagram);
+                    receiverTracker.onReceived(from, msg.getSequenceNumber());
+                }
+            });
+            receiverTransport.setAckTracker(receiverTracker);
+            receiverTracker.start(receiverTransport, AckTracker.DEFAULT_ACK_DELAY_MILLIS);
+            senderTransport.start("test-ack-sender");
+            receiverTransport.start("test-ack-receiver");
+            sender[0] = new ReliableUDPSender(senderTransport, 50, 1000);
+
+            int messages = 20;
+            for (int i = 0; i < messages; i++) {
+                sender[0].sendMessage(new Message("CHAT", new Object[]{"msg-" + i}, "REQUEST"),
+                        loopback, receiverAddress.getPort());
+            }
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while ((datagrams.get() == 0 || sender[0].getPendingCount(receiverAddress) > 0)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, sender[0].getPendingCount(receiverAddress));
+            assertEquals(0, ackMessages.get());
+            assertTrue(datagrams.get() < messages, datagrams.get() + " ACK datagrams for " + messages + " messages");
+
+            senderTransport.close();
+            receiverTransport.close();
+        }
+    }
+}
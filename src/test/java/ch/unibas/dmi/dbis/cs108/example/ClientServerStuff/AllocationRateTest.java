@@ -0,0 +1,243 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bounds what the steady-state send and receive path allocates per packet, simulating a server
+ * that sends one snapshot per player to every player each tick.
+ *
+ * <ul>
+ *   <li>Encoding into pooled buffers and the raw socket round trip allocate nothing.</li>
+ *   <li>Through {@link UdpTransport}, the I/O threads' flush and receive allocate nothing, and
+ *       the only cost of {@code send} is the node of the shard's ready-peer queue, allocated when
+ *       a destination gets its first datagram since its queue was last flushed.</li>
+ *   <li>Not covered: decoding allocates the received {@link Message}, and reliable sends allocate
+ *       a pending entry and a timer entry per message until it is acknowledged.</li>
+ * </ul>
+ */
+public class AllocationRateTest {
+
+    private static final int PLAYERS = 16;
+    private static final int WARMUP_TICKS = 2_000;
+    private static final int MEASURED_TICKS = 2_000;
+
+    /** Allowed average allocation per packet, leaves room for JIT and MXBean noise. */
+    private static final double MAX_BYTES_PER_PACKET = 1.0;
+
+    /** Ticks of the transport test; each one waits for the I/O threads to catch up. */
+    private static final int TRANSPORT_TICKS = 500;
+
+    /**
+     * Allowed allocation per packet on the sending thread of the transport: at most one
+     * ready-queue node, 24 bytes with compressed pointers.
+     */
+    private static final double MAX_SEND_BYTES_PER_PACKET = 24.0;
+
+    private static long allocatedBytes() {
+        return allocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long allocatedBytes(long threadId) {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(threadId);
+    }
+
+    /**
+     * @return the total allocation of the given threads
+     */
+    private static long allocatedBytes(long[] threadIds) {
+        long total = 0;
+        for (long id : threadIds) {
+            total += allocatedBytes(id);
+        }
+        return total;
+    }
+
+    private static long[] threadIds(String prefix) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith(prefix))
+                .mapToLong(Thread::getId)
+                .toArray();
+    }
+
+    private static Message[] snapshots() {
+        Message[] snapshots = new Message[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            snapshots[i] = new Message("SNAPSHOT",
+                    new Object[]{"Player" + i, 100.5f + i, 200.25f, 1.5f, -3.0f, true}, "GAME",
+                    new String[]{"Player" + i, "GameSession"});
+        }
+        return snapshots;
+    }
+
+    @Test
+    public void testEncodingIntoPooledBuffersDoesNotAllocate() {
+        BufferPool pool = new BufferPool(BufferPool.BUFFER_SIZE, 8);
+        Message[] snapshots = snapshots();
+
+        long checksum = encodeTicks(pool, snapshots, WARMUP_TICKS);
+        long before = allocatedBytes();
+        checksum += encodeTicks(pool, snapshots, MEASURED_TICKS);
+        long allocated = allocatedBytes() - before;
+
+        double perPacket = (double) allocated / ((long) MEASURED_TICKS * PLAYERS * PLAYERS);
+        assertTrue(checksum > 0);
+        assertEquals(0, pool.getMisses());
+        assertTrue(perPacket < MAX_BYTES_PER_PACKET,
+                "encode path allocated " + allocated + " bytes (" + perPacket + " per packet)");
+    }
+
+    @Test
+    public void testSendAndReceiveThroughChannelDoesNotAllocate() throws Exception {
+        BufferPool pool = new BufferPool(BufferPool.BUFFER_SIZE, 8);
+        Message[] snapshots = snapshots();
+        try (DatagramChannel sender = DatagramChannel.open();
+             DatagramChannel receiver = DatagramChannel.open()) {
+            receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            InetSocketAddress target = (InetSocketAddress) receiver.getLocalAddress();
+            ByteBuffer in = pool.acquire();
+
+            long received = roundTrips(pool, snapshots, sender, receiver, target, in, WARMUP_TICKS);
+            long before = allocatedBytes();
+            received += roundTrips(pool, snapshots, sender, receiver, target, in, MEASURED_TICKS);
+            long allocated = allocatedBytes() - before;
+
+            double perPacket = (double) allocated / ((long) MEASURED_TICKS * PLAYERS);
+            assertEquals((long) (WARMUP_TICKS + MEASURED_TICKS) * PLAYERS, received);
+            assertTrue(perPacket < MAX_BYTES_PER_PACKET,
+                    "socket path allocated " + allocated + " bytes (" + perPacket + " per packet)");
+        }
+    }
+
+    @Test
+    public void testTransportSendFlushAndReceiveAllocationIsBounded() throws Exception {
+        Message[] snapshots = snapshots();
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        AtomicLong received = new AtomicLong();
+        UdpTransport[] receivers = new UdpTransport[PLAYERS];
+        InetSocketAddress[] players = new InetSocketAddress[PLAYERS];
+        for (int p = 0; p < PLAYERS; p++) {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(loopback, 0));
+            players[p] = (InetSocketAddress) channel.getLocalAddress();
+            // Counts instead of decoding, which allocates the message by design.
+            receivers[p] = new UdpTransport(channel, peer -> WireFormat.BINARY, (datagram, sender) -> {
+                if (datagram.get(datagram.position()) == BinaryMessageCodec.MAGIC) {
+                    received.incrementAndGet();
+                }
+            });
+            receivers[p].start("test-alloc-rx-" + p);
+        }
+        DatagramChannel serverChannel = DatagramChannel.open();
+        serverChannel.bind(new InetSocketAddress(loopback, 0));
+        UdpTransport server = new UdpTransport(serverChannel, peer -> WireFormat.BINARY, (datagram, sender) -> { });
+        server.start("test-alloc-tx");
+
+        try {
+            broadcastTicks(server, snapshots, players, received, TRANSPORT_TICKS);
+            long[] ioThreads = threadIds("test-alloc-");
+            long before = allocatedBytes();
+            long ioBefore = allocatedBytes(ioThreads);
+            broadcastTicks(server, snapshots, players, received, TRANSPORT_TICKS);
+            long sendAllocated = allocatedBytes() - before;
+            long ioAllocated = allocatedBytes(ioThreads) - ioBefore;
+
+            long packets = (long) TRANSPORT_TICKS * PLAYERS * PLAYERS;
+            assertTrue(received.get() > 0);
+            assertTrue((double) sendAllocated / packets < MAX_SEND_BYTES_PER_PACKET,
+                    "send path allocated " + sendAllocated + " bytes for " + packets + " packets");
+            assertTrue((double) ioAllocated / packets < MAX_BYTES_PER_PACKET,
+                    "I/O threads allocated " + ioAllocated + " bytes for " + packets + " packets");
+        } finally {
+            server.close();
+            for (UdpTransport receiver : receivers) {
+                receiver.close();
+            }
+        }
+    }
+
+    @Test
+    public void testReaderInternsRepeatedStrings() {
+        Message msg = snapshots()[0];
+        byte[] data = BinaryMessageCodec.encode(msg);
+
+        Message first = BinaryMessageCodec.decode(data, 0, data.length);
+        Message second = BinaryMessageCodec.decode(data, 0, data.length);
+
+        assertSame(first.getMessageType(), second.getMessageType());
+        assertSame(first.getParameters()[0], second.getParameters()[0]);
+        assertSame(first.getConcealedParameters()[1], second.getConcealedParameters()[1]);
+    }
+
+    /**
+     * Encodes every snapshot once per player, like a per-tick broadcast.
+     */
+    private static long encodeTicks(BufferPool pool, Message[] snapshots, int ticks) {
+        long checksum = 0;
+        for (int t = 0; t < ticks; t++) {
+            for (Message snapshot : snapshots) {
+                for (int p = 0; p < PLAYERS; p++) {
+                    ByteBuffer buffer = pool.acquire();
+                    MessageWriter.write(snapshot, buffer);
+                    checksum += buffer.position();
+                    pool.release(buffer);
+                }
+            }
+        }
+        return checksum;
+    }
+
+    /**
+     * Sends every snapshot to every player through the transport, then waits until the
+     * datagrams of the tick arrived, so the per-peer queues never overflow.
+     */
+    private static void broadcastTicks(UdpTransport server, Message[] snapshots, InetSocketAddress[] players,
+                                       AtomicLong received, int ticks) throws Exception {
+        for (int t = 0; t < ticks; t++) {
+            long expected = received.get() + (long) snapshots.length * players.length;
+            for (Message snapshot : snapshots) {
+                for (InetSocketAddress player : players) {
+                    server.send(snapshot, player);
+                }
+            }
+            long deadline = System.nanoTime() + 10_000_000L;
+            while (received.get() < expected && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Sends one datagram per snapshot and receives it again into a reused buffer.
+     */
+    private static long roundTrips(BufferPool pool, Message[] snapshots, DatagramChannel sender,
+                                   DatagramChannel receiver, InetSocketAddress target, ByteBuffer in,
+                                   int ticks) throws Exception {
+        long received = 0;
+        for (int t = 0; t < ticks; t++) {
+            for (Message snapshot : snapshots) {
+                ByteBuffer out = pool.acquire();
+                MessageWriter.write(snapshot, out);
+                out.flip();
+                sender.send(out, target);
+                pool.release(out);
+
+                in.clear();
+                if (receiver.receive(in) != null && in.position() > 0) {
+                    received++;
+                }
+            }
+        }
+        return received;
+    }
+}
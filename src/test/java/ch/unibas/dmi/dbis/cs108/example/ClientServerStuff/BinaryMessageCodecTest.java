@@ -0,0 +1,108 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryMessageCodecTest {
+
+    @Test
+    public void testRoundTripKeepsTypedParameters() {
+        Message msg = new Message("MOVE", new Object[]{"Player1", 42, 7L, 1.5f, 2.25, true, null}, "GAME",
+                new String[]{"Player1", "Session"});
+        msg.setSequenceNumber(123456789L);
+        String uuid = msg.getUUID();
+
+        byte[] data = BinaryMessageCodec.encode(msg);
+        Message decoded = BinaryMessageCodec.decode(data, 0, data.length);
+
+        assertEquals("MOVE", decoded.getMessageType());
+        assertEquals("GAME", decoded.getOption());
+        assertEquals(uuid, decoded.getUUID());
+        assertEquals(123456789L, decoded.getSequenceNumber());
+        assertArrayEquals(msg.getParameters(), decoded.getParameters());
+        assertArrayEquals(msg.getConcealedParameters(), decoded.getConcealedParameters());
+    }
+
+    @Test
+    public void testNullOptionAndOffsetDecoding() {
+        Message msg = new Message("PING", new Object[]{"äöü"}, null);
+        byte[] frame = BinaryMessageCodec.encode(msg);
+        byte[] padded = new byte[frame.length + 4];
+        System.arraycopy(frame, 0, padded, 2, frame.length);
+
+        Message decoded = BinaryMessageCodec.decode(padded, 2, frame.length);
+
+        assertNull(decoded.getOption());
+        assertEquals("äöü", decoded.getParameters()[0]);
+    }
+
+    @Test
+    public void testUuidIsOnlyEncodedWhenRequested() {
+        Message msg = new Message("CHAT", new Object[]{"hi"}, "REQUEST");
+        msg.setSequenceNumber(7);
+        byte[] withoutUuid = BinaryMessageCodec.encode(msg);
+
+        Message decoded = BinaryMessageCodec.decode(withoutUuid, 0, withoutUuid.length);
+        assertNull(decoded.getUUID(), "a UUID nobody asked for must not be invented on receipt");
+        assertEquals(7, decoded.getSequenceNumber());
+
+        String uuid = msg.getUUID();
+        assertEquals(uuid, msg.getUUID(), "the UUID is generated once");
+        byte[] withUuid = BinaryMessageCodec.encode(msg);
+        assertEquals(withoutUuid.length + 16, withUuid.length);
+        assertEquals(uuid, BinaryMessageCodec.decode(withUuid, 0, withUuid.length).getUUID());
+    }
+
+    @Test
+    public void testBinaryIsSmallerThanText() {
+        Message msg = new Message("MOVE", new Object[]{"Player1", 100.5f, 200.25f}, "GAME");
+        int text = MessageCodec.encode(msg).getBytes(StandardCharsets.UTF_8).length;
+        int binary = BinaryMessageCodec.encode(msg).length;
+        assertTrue(binary < text, "binary " + binary + " should be smaller than text " + text);
+    }
+
+    @Test
+    public void testTruncatedFrameIsRejected() {
+        byte[] data = BinaryMessageCodec.encode(new Message("PING", new Object[]{}, "REQUEST"));
+        assertThrows(IllegalArgumentException.class, () -> BinaryMessageCodec.decode(data, 0, data.length - 5));
+    }
+
+    @Test
+    public void testWireFormatDetectsBothFormats() {
+        Message msg = new Message("CHAT", new Object[]{"hi"}, "REQUEST");
+        byte[] binary = WireFormat.BINARY.encode(msg);
+        byte[] text = WireFormat.TEXT.encode(msg);
+
+        assertEquals(WireFormat.BINARY, WireFormat.detect(binary, 0, binary.length));
+        assertEquals(WireFormat.TEXT, WireFormat.detect(text, 0, text.length));
+        assertEquals("CHAT", WireFormat.decode(binary, 0, binary.length).getMessageType());
+        assertEquals("CHAT", WireFormat.decode(text, 0, text.length).getMessageType());
+    }
+
+    @Test
+    public void testFrozenBodyIsSharedByClones() {
+        Message template = new Message("CHAT", new Object[]{"hello", 42}, "RESPONSE");
+        MessageWriter.freezeBody(template);
+
+        Message perClient = template.clone();
+        perClient.setSequenceNumber(300);
+        perClient.setChannelSequence(7);
+        assertSame(template.getEncodedBody(), perClient.getEncodedBody());
+
+        Message fresh = new Message("CHAT", new Object[]{"hello", 42}, "RESPONSE");
+        fresh.setSequenceNumber(300);
+        fresh.setChannelSequence(7);
+        assertArrayEquals(BinaryMessageCodec.encode(fresh), BinaryMessageCodec.encode(perClient));
+
+        // Changing a field, or creating the UUID, drops the stale body.
+        perClient.setParameters(new Object[]{"changed"});
+        assertNull(perClient.getEncodedBody());
+        assertEquals("changed", BinaryMessageCodec.decode(BinaryMessageCodec.encode(perClient), 0,
+                BinaryMessageCodec.encode(perClient).length).getParameters()[0]);
+        template.getUUID();
+        assertNull(template.getEncodedBody());
+    }
+}
@@ -0,0 +1,83 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelReceiverTest {
+
+    private static final InetSocketAddress PEER = new InetSocketAddress("127.0.0.1", 4000);
+
+    @Test
+    public void testOrderedChannelHoldsUntilGapIsFilled() {
+        ChannelReceiver receiver = new ChannelReceiver();
+        List<Object> delivered = new ArrayList<>();
+
+        receiver.receive(PEER, message("CHAT", DeliveryChannel.RELIABLE_ORDERED, 2), m -> delivered.add(m.getParameters()[0]));
+        receiver.receive(PEER, message("CHAT", DeliveryChannel.RELIABLE_ORDERED, 3), m -> delivered.add(m.getParameters()[0]));
+        assertTrue(delivered.isEmpty());
+        assertEquals(2, receiver.getHeldCount(PEER));
+
+        // The lost chat message does not hold back gameplay traffic on the other channels.
+        receiver.receive(PEER, message("MOVE", DeliveryChannel.UNRELIABLE_SEQUENCED, 10), m -> delivered.add(m.getParameters()[0]));
+        receiver.receive(PEER, message("CREATEGO", DeliveryChannel.RELIABLE_UNORDERED, 0), m -> delivered.add(m.getParameters()[0]));
+        assertEquals(List.of("MOVE-10", "CREATEGO-0"), delivered);
+
+        delivered.clear();
+        receiver.receive(PEER, message("CHAT", DeliveryChannel.RELIABLE_ORDERED, 1), m -> delivered.add(m.getParameters()[0]));
+        assertEquals(List.of("CHAT-1", "CHAT-2", "CHAT-3"), delivered);
+        assertEquals(0, receiver.getHeldCount(PEER));
+
+        assertFalse(receiver.receive(PEER, message("CHAT", DeliveryChannel.RELIABLE_ORDERED, 2), m -> fail("duplicate")));
+    }
+
+    @Test
+    public void testSequencedChannelDropsStaleMessages() {
+        ChannelReceiver receiver = new ChannelReceiver();
+        List<Object> delivered = new ArrayList<>();
+
+        assertTrue(receiver.receive(PEER, message("SNAPSHOT", DeliveryChannel.UNRELIABLE_SEQUENCED, 5), m -> delivered.add(m.getParameters()[0])));
+        assertFalse(receiver.receive(PEER, message("SNAPSHOT", DeliveryChannel.UNRELIABLE_SEQUENCED, 4), m -> delivered.add(m.getParameters()[0])));
+        assertTrue(receiver.receive(PEER, message("SNAPSHOT", DeliveryChannel.UNRELIABLE_SEQUENCED, 9), m -> delivered.add(m.getParameters()[0])));
+        assertEquals(List.of("SNAPSHOT-5", "SNAPSHOT-9"), delivered);
+    }
+
+    @Test
+    public void testSequencedChannelIsTrackedPerMessageType() {
+        ChannelReceiver receiver = new ChannelReceiver();
+        List<Object> delivered = new ArrayList<>();
+
+        assertTrue(receiver.receive(PEER, message("INPUT", DeliveryChannel.UNRELIABLE_SEQUENCED, 5), m -> delivered.add(m.getParameters()[0])));
+        assertTrue(receiver.receive(PEER, message("SNAPACK", DeliveryChannel.UNRELIABLE_SEQUENCED, 7), m -> delivered.add(m.getParameters()[0])));
+        // Overtaken by the ACK, but still the newest INPUT.
+        assertTrue(receiver.receive(PEER, message("INPUT", DeliveryChannel.UNRELIABLE_SEQUENCED, 6), m -> delivered.add(m.getParameters()[0])));
+        assertFalse(receiver.receive(PEER, message("SNAPACK", DeliveryChannel.UNRELIABLE_SEQUENCED, 4), m -> delivered.add(m.getParameters()[0])));
+        assertEquals(List.of("INPUT-5", "SNAPACK-7", "INPUT-6"), delivered);
+    }
+
+    @Test
+    public void testChannelSurvivesBinaryRoundTrip() {
+        Message msg = new Message("CHAT", new Object[]{"hi"}, "REQUEST");
+        assertEquals(DeliveryChannel.RELIABLE_ORDERED, msg.getChannel());
+        msg.setChannelSequence(300);
+
+        byte[] data = BinaryMessageCodec.encode(msg);
+        Message decoded = BinaryMessageCodec.decode(data, 0, data.length);
+        assertEquals(DeliveryChannel.RELIABLE_ORDERED, decoded.getChannel());
+        assertEquals(300, decoded.getChannelSequence());
+
+        assertEquals(DeliveryChannel.UNRELIABLE_SEQUENCED, new Message("KEY_PRESS", new Object[]{"A"}, "GAME").getChannel());
+        assertEquals(DeliveryChannel.RELIABLE_UNORDERED, new Message("DELETEGO", new Object[]{"id"}, "REQUEST").getChannel());
+    }
+
+    private static Message message(String type, DeliveryChannel channel, long channelSeq) {
+        Message msg = new Message(type, new Object[]{type + "-" + channelSeq}, null);
+        msg.setChannel(channel);
+        msg.setChannelSequence(channelSeq);
+        return msg;
+    }
+}
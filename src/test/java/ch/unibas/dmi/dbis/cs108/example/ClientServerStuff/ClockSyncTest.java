@@ -0,0 +1,69 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ClockSyncTest {
+
+    /** The server clock runs this far ahead of ours. */
+    private static final long OFFSET = 5_000_000;
+
+    @Test
+    public void testSymmetricExchangeGivesExactOffset() {
+        ClockSync sync = new ClockSync();
+        assertFalse(sync.hasEstimate());
+        exchange(sync, 1_000_000, 20_000, 20_000, 1_000);
+        assertTrue(sync.hasEstimate());
+        assertEquals(OFFSET, sync.getOffset());
+        assertEquals(40_000, sync.getRtt(), "the server's processing time is not part of the RTT");
+        assertEquals(2_000_000 + OFFSET, sync.serverTime(2_000_000));
+    }
+
+    @Test
+    public void testQueuedSamplesAreFilteredOut() {
+        ClockSync sync = new ClockSync();
+        for (int i = 0; i < 40; i++) {
+            // Every other PONG is stuck in a queue on the way back for 60 ms.
+            long back = i % 2 == 0 ? 20_000 : 80_000;
+            exchange(sync, i * 1_000_000L, 20_000, back, 0);
+        }
+        assertEquals(OFFSET, sync.getOffset(), "only the least delayed samples count");
+        assertTrue(Math.abs(sync.getJitter() - 60_000) < 5_000, "jitter " + sync.getJitter());
+    }
+
+    @Test
+    public void testServerTickAdvancesFromAnchor() {
+        ClockSync sync = new ClockSync();
+        long t0 = 1_000_000;
+        // Tick 600 of game g at server time t2.
+        sync.onPong(t0, t0 + OFFSET + 10_000, t0 + OFFSET + 10_000, t0 + 20_000, "g", 600);
+        assertEquals(-1, sync.serverTick("other", t0 + 20_000, 60));
+        assertEquals(600, sync.serverTick("g", t0 + 10_000, 60));
+        assertEquals(660, sync.serverTick("g", t0 + 10_000 + 1_000_000, 60));
+    }
+
+    @Test
+    public void testRenderTimeFollowsServerTickTime() {
+        ClockSync sync = new ClockSync();
+        long t0 = 1_000_000;
+        sync.onPong(t0, t0 + OFFSET + 10_000, t0 + OFFSET + 10_000, t0 + 20_000, "g", 600);
+        assertEquals(-1, sync.serverTickTime("other", t0 + 10_000, 60));
+        assertEquals(ClockSync.tickTime(600, 60), sync.serverTickTime("g", t0 + 10_000, 60));
+        assertEquals(ClockSync.tickTime(600, 60) + 500_000, sync.serverTickTime("g", t0 + 510_000, 60));
+
+        InterpolationClock clock = new InterpolationClock(250, 100);
+        long local = t0 + 510_000;
+        long serverTime = sync.serverTickTime("g", local, 60);
+        // No snapshot yet, so no delay: render what left the server half a round trip ago.
+        assertEquals(serverTime - sync.getRtt() / 2, clock.renderTime(local, serverTime, sync.getRtt()));
+        assertEquals(clock.renderTime(local), clock.renderTime(local, -1, 0));
+    }
+
+    private static void exchange(ClockSync sync, long t0, long there, long back, long processing) {
+        long t1 = t0 + there + OFFSET;
+        long t2 = t1 + processing;
+        long t3 = t2 - OFFSET + back;
+        sync.onPong(t0, t1, t2, t3, null, 0);
+    }
+}
@@ -0,0 +1,132 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DisconnectedPeersTest {
+
+    @Test
+    public void testOverflowDisconnectAndReconnectStartClean() throws Exception {
+        System.setProperty(ReliableUDPSender.HIGH_WATER_PROPERTY, "2");
+        System.setProperty(ReliableUDPSender.BACKLOG_LIMIT_PROPERTY, "2");
+        try (DatagramChannel serverChannel = DatagramChannel.open();
+             DatagramChannel clientChannel = DatagramChannel.open()) {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            serverChannel.bind(new InetSocketAddress(loopback, 0));
+            clientChannel.bind(new InetSocketAddress(loopback, 0));
+            clientChannel.configureBlocking(true);
+            InetSocketAddress client = (InetSocketAddress) clientChannel.getLocalAddress();
+
+            // The server's side: on overflow, forget the client and tell it, as Server.disconnectClient does.
+            UdpTransport transport = new UdpTransport(serverChannel, peer -> WireFormat.BINARY, (d, s) -> { });
+            transport.start("test-server-io");
+            ReliableUDPSender sender = new ReliableUDPSender(transport, 2, 1000);
+            DisconnectedPeers disconnectedPeers = new DisconnectedPeers();
+            sender.setBackPressureListener(new ReliableUDPSender.BackPressureListener() {
+                @Override
+                public void onHighWater(InetSocketAddress peer, int queued) {
+                }
+
+                @Override
+                public void onOverflow(InetSocketAddress peer, int queued) {
+                    sender.removePeer(peer);
+                    transport.removePeer(peer);
+                    transport.send(disconnectedPeers.disconnect(peer, "too far behind"), peer);
+                }
+            });
+
+            // The client's receive state for the server. It never ACKs, so the server's backlog fills up.
+            AckTracker ackTracker = new AckTracker();
+            ChannelReceiver channelReceiver = new ChannelReceiver();
+            List<Message> delivered = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                sender.sendMessage(new Message("CHAT", new Object[]{"old " + i}, "REQUEST"), loopback, client.getPort());
+            }
+            assertTrue(disconnectedPeers.isDisconnected(client));
+            assertEquals(0, sender.getPendingCount(client));
+
+            Message notice = null;
+            while (notice == null) {
+                Message msg = receive(clientChannel);
+                if (DisconnectNotice.is(msg)) {
+                    notice = msg;
+                } else if (ackTracker.onReceived(client, msg.getSequenceNumber())) {
+                    channelReceiver.receive(client, msg, delivered::add);
+                }
+            }
+            assertEquals(List.of("old 0", "old 1"), payloads(delivered));
+            assertEquals("too far behind", DisconnectNotice.reasonOf(notice));
+
+            // The new session starts its numbering over; a client that kept its state drops it.
+            sender.sendMessage(new Message("CHAT", new Object[]{"new 0"}, "REQUEST"), loopback, client.getPort());
+            Message fresh = receive(clientChannel);
+            assertEquals(1, fresh.getSequenceNumber());
+            assertEquals(1, fresh.getChannelSequence());
+            assertFalse(ackTracker.onReceived(client, fresh.getSequenceNumber()), "stale receive state hangs the client");
+
+            // The client acts on the notice as Client does and receives the new session.
+            ackTracker.remove(client);
+            channelReceiver.remove(client);
+            delivered.clear();
+            assertTrue(ackTracker.onReceived(client, fresh.getSequenceNumber()));
+            channelReceiver.receive(client, fresh, delivered::add);
+            assertEquals(List.of("new 0"), payloads(delivered));
+
+            // Old-session traffic from the client is turned away with the notice again ...
+            Message stale = new Message("CREATEGAME", new Object[]{"g"}, "REQUEST");
+            stale.setSequenceNumber(7);
+            Message repeated = disconnectedPeers.screen(client, stale);
+            assertNotNull(repeated);
+            assertEquals(DisconnectNotice.disconnectedAtOf(notice), DisconnectNotice.disconnectedAtOf(repeated));
+            assertTrue(disconnectedPeers.isDisconnected(client));
+            assertNotNull(disconnectedPeers.screen(client, new Message("PING", new Object[]{1L}, "GAME")));
+
+            // ... until its first reliable message of the new session arrives.
+            Message first = new Message("CREATEGAME", new Object[]{"g"}, "REQUEST");
+            first.setSequenceNumber(1);
+            assertNull(disconnectedPeers.screen(client, first));
+            assertFalse(disconnectedPeers.isDisconnected(client));
+            assertNull(disconnectedPeers.screen(client, stale), "the new session is not screened");
+            transport.close();
+        } finally {
+            System.clearProperty(ReliableUDPSender.HIGH_WATER_PROPERTY);
+            System.clearProperty(ReliableUDPSender.BACKLOG_LIMIT_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testDisconnectedClientIsForgottenAfterLinger() throws Exception {
+        DisconnectedPeers disconnectedPeers = new DisconnectedPeers(20);
+        InetSocketAddress client = new InetSocketAddress(InetAddress.getLoopbackAddress(), 4000);
+        disconnectedPeers.disconnect(client, "bye");
+        Message stale = new Message("CHAT", new Object[]{"hi"}, "REQUEST");
+        stale.setSequenceNumber(9);
+        assertNotNull(disconnectedPeers.screen(client, stale));
+        Thread.sleep(40);
+        assertNull(disconnectedPeers.screen(client, stale));
+        assertFalse(disconnectedPeers.isDisconnected(client));
+    }
+
+    private static Message receive(DatagramChannel channel) throws Exception {
+        ByteBuffer in = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+        channel.receive(in);
+        in.flip();
+        return WireFormat.read(in);
+    }
+
+    private static List<Object> payloads(List<Message> messages) {
+        List<Object> payloads = new ArrayList<>();
+        for (Message msg : messages) {
+            payloads.add(msg.getParameters()[0]);
+        }
+        return payloads;
+    }
+}
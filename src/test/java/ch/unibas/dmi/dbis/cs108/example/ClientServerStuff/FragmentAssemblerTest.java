@@ -0,0 +1,63 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FragmentAssemblerTest {
+
+    private static final InetSocketAddress PEER = new InetSocketAddress("127.0.0.1", 4000);
+
+    @Test
+    public void testOutOfOrderFragmentsAreReassembled() {
+        String text = "x".repeat(5_000);
+        byte[] frame = BinaryMessageCodec.encode(new Message("CHAT", new Object[]{text}, "REQUEST"));
+        int count = MessageFragmenter.fragmentCount(frame.length);
+        assertTrue(count > 1);
+
+        FragmentAssembler assembler = new FragmentAssembler();
+        AckTracker ackTracker = new AckTracker();
+        Message result = null;
+        for (int i = count - 1; i >= 0; i--) {
+            byte[] fragment = MessageFragmenter.encode(frame, i, 7, 100 + i);
+            assertTrue(fragment.length + AckTracker.HEADER_SIZE <= PacketAggregator.DEFAULT_MTU);
+            result = assembler.accept(PEER, ByteBuffer.wrap(fragment), ackTracker);
+            if (i > 0) {
+                assertNull(result, "incomplete until the last fragment arrives");
+            }
+        }
+        assertNotNull(result);
+        assertEquals("CHAT", result.getMessageType());
+        assertEquals(text, result.getParameters()[0]);
+        assertEquals(0, assembler.getBufferedBytes(PEER));
+    }
+
+    @Test
+    public void testRetransmittedFragmentIsIgnored() {
+        byte[] frame = BinaryMessageCodec.encode(new Message("CHAT", new Object[]{"y".repeat(3_000)}, "REQUEST"));
+        FragmentAssembler assembler = new FragmentAssembler();
+        AckTracker ackTracker = new AckTracker();
+
+        byte[] first = MessageFragmenter.encode(frame, 0, 1, 1);
+        assertNull(assembler.accept(PEER, ByteBuffer.wrap(first), ackTracker));
+        int buffered = assembler.getBufferedBytes(PEER);
+        assertNull(assembler.accept(PEER, ByteBuffer.wrap(first), ackTracker));
+        assertEquals(buffered, assembler.getBufferedBytes(PEER));
+    }
+
+    @Test
+    public void testFragmentsBeyondMemoryCapAreDropped() {
+        byte[] frame = BinaryMessageCodec.encode(new Message("CHAT", new Object[]{"z".repeat(3_000)}, "REQUEST"));
+        FragmentAssembler assembler = new FragmentAssembler(10_000, MessageFragmenter.PAYLOAD_SIZE);
+        AckTracker ackTracker = new AckTracker();
+
+        assertNull(assembler.accept(PEER, ByteBuffer.wrap(MessageFragmenter.encode(frame, 0, 1, 1)), ackTracker));
+        assertNull(assembler.accept(PEER, ByteBuffer.wrap(MessageFragmenter.encode(frame, 1, 1, 2)), ackTracker));
+        assertEquals(MessageFragmenter.PAYLOAD_SIZE, assembler.getBufferedBytes(PEER));
+        // The dropped fragment was not acknowledged, so its retransmission is still accepted.
+        assertTrue(ackTracker.onReceived(PEER, 2));
+    }
+}
@@ -0,0 +1,44 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InputHistoryTest {
+
+    @Test
+    public void testReplaysStepsAfterAppliedInput() {
+        InputHistory history = new InputHistory(8);
+        history.record(1, 0, 0);
+        history.record(2, 7, InputCommand.LEFT);
+        history.record(3, 8, InputCommand.LEFT | InputCommand.JUMP);
+        history.record(4, 0, 0);
+
+        assertEquals(2, history.stepOf(7));
+        assertEquals(-1, history.stepOf(0), "0 is never an input");
+        assertEquals(-1, history.stepOf(9));
+
+        // The server applied input 7 in step 2 and simulated one step since: replay 3 and 4.
+        int[] replay = history.buttonsAfter(history.stepOf(7) + 1 - 1);
+        assertArrayEquals(new int[]{ InputCommand.LEFT | InputCommand.JUMP, 0 }, replay);
+    }
+
+    @Test
+    public void testOldStepsAreForgotten() {
+        InputHistory history = new InputHistory(2);
+        history.record(1, 5, InputCommand.RIGHT);
+        history.record(2, 6, InputCommand.RIGHT);
+        history.record(3, 0, 0);
+        assertEquals(-1, history.stepOf(5));
+        assertEquals(2, history.stepOf(6));
+        assertEquals(1, history.buttonsAfter(2).length);
+    }
+
+    @Test
+    public void testSequenceIsNeverZero() {
+        for (int i = 0; i < InputHistory.SEQUENCE_MODULUS + 2; i++) {
+            int seq = InputHistory.nextSequence();
+            assertTrue(seq > 0 && seq < InputHistory.SEQUENCE_MODULUS, "sequence " + seq);
+        }
+    }
+}
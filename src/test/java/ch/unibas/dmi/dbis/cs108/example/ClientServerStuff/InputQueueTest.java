@@ -0,0 +1,84 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InputQueueTest {
+
+    private static final int HELD = InputCommand.LEFT | InputCommand.GRAB;
+
+    @Test
+    public void testCommandSurvivesBothWireFormats() {
+        InputCommand command = new InputCommand(7, new byte[]{ (byte) HELD, 0, (byte) InputCommand.JUMP });
+        Message message = command.toMessage();
+        byte[] frame = BinaryMessageCodec.encode(message);
+
+        for (Message received : new Message[]{
+                BinaryMessageCodec.decode(frame, 0, frame.length),
+                MessageCodec.decode(MessageCodec.encode(message)) }) {
+            InputCommand decoded = InputCommand.fromMessage(received);
+            assertEquals(7, decoded.getTick());
+            assertEquals(3, decoded.size());
+            assertEquals(HELD, decoded.getButtons(0));
+            assertEquals(InputCommand.JUMP, decoded.getButtons(2));
+        }
+    }
+
+    @Test
+    public void testRedundantTicksFillGapsAndAreAppliedOnceInOrder() {
+        InputCommand.Recorder recorder = new InputCommand.Recorder(3);
+        InputCommand first = recorder.next(InputCommand.RIGHT);
+        InputCommand lost = recorder.next(InputCommand.JUMP);
+        InputCommand third = recorder.next(HELD);
+        assertFalse(lost.isIdle());
+
+        InputQueue queue = new InputQueue();
+        queue.offer(first);
+        queue.offer(third);
+        queue.offer(first);
+        assertEquals(3, queue.size(), "the lost tick is filled in, duplicates are ignored");
+
+        assertEquals(InputCommand.RIGHT, queue.poll());
+        assertEquals(first.getTick(), queue.getLastTick());
+        assertEquals(InputCommand.JUMP, queue.poll());
+        assertEquals(HELD, queue.poll());
+        assertEquals(HELD, queue.getPressed());
+        assertEquals(InputQueue.NONE, queue.poll());
+
+        queue.offer(lost);
+        assertEquals(0, queue.size(), "ticks that were applied already are ignored");
+    }
+
+    @Test
+    public void testHeldButtonsArePressedOnce() {
+        InputCommand.Recorder recorder = new InputCommand.Recorder(1);
+        InputQueue queue = new InputQueue();
+        queue.offer(recorder.next(HELD));
+        queue.offer(recorder.next(HELD));
+        queue.poll();
+        assertEquals(HELD, queue.getPressed());
+        queue.poll();
+        assertEquals(0, queue.getPressed(), "still held");
+
+        recorder.next(0);
+        queue.offer(recorder.next(HELD));
+        queue.poll();
+        assertEquals(HELD, queue.getPressed(), "pressed again after an idle tick that was never sent");
+    }
+
+    @Test
+    public void testTicksWrapAround() {
+        int last = InputHistory.SEQUENCE_MODULUS - 1;
+        assertEquals(last, InputCommand.previous(1));
+        assertTrue(InputCommand.isNewer(1, last));
+        assertFalse(InputCommand.isNewer(last, 1));
+
+        InputQueue queue = new InputQueue();
+        queue.offer(new InputCommand(2, new byte[]{ 3, 2, 1 }));
+        assertEquals(1, queue.poll());
+        assertEquals(last, queue.getLastTick());
+        assertEquals(2, queue.poll());
+        assertEquals(3, queue.poll());
+    }
+}
@@ -0,0 +1,48 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InterpolationBufferTest {
+
+    @Test
+    public void testInterpolatesBetweenSurroundingSnapshots() {
+        InterpolationBuffer buffer = new InterpolationBuffer();
+        assertNull(buffer.sample(0, 0));
+        buffer.add(0, new float[]{ 0, 0 });
+        buffer.add(50_000, new float[]{ 10, 20 });
+        buffer.add(100_000, new float[]{ 20, 20 });
+        assertFalse(buffer.add(100_000, new float[]{ 99, 99 }), "duplicates are ignored");
+
+        assertArrayEquals(new float[]{ 0, 0 }, buffer.sample(-10_000, 0), 1e-4f);
+        assertArrayEquals(new float[]{ 5, 10 }, buffer.sample(25_000, 0), 1e-4f);
+        assertArrayEquals(new float[]{ 15, 20 }, buffer.sample(75_000, 0), 1e-4f);
+        assertEquals(2, buffer.size(), "snapshots behind the render time are dropped");
+    }
+
+    @Test
+    public void testExtrapolatesLateSnapshotsForLimitedTime() {
+        InterpolationBuffer buffer = new InterpolationBuffer();
+        buffer.add(0, new float[]{ 0 });
+        buffer.add(50_000, new float[]{ 10 });
+        assertArrayEquals(new float[]{ 12 }, buffer.sample(60_000, 20_000), 1e-4f);
+        assertArrayEquals(new float[]{ 14 }, buffer.sample(200_000, 20_000), 1e-4f);
+    }
+
+    @Test
+    public void testDelayCoversIntervalAndJitter() {
+        InterpolationClock clock = new InterpolationClock(250, 100);
+        // 20 snapshots per second, every other one 10 ms late.
+        for (int i = 0; i < 400; i++) {
+            long serverTime = i * 50_000L;
+            clock.onSnapshot(serverTime, serverTime + 30_000 + (i % 2) * 10_000);
+        }
+        assertTrue(Math.abs(clock.getJitter() - 10_000) < 500, "jitter " + clock.getJitter());
+        assertTrue(Math.abs(clock.getDelay() - 70_000) < 2_000, "delay " + clock.getDelay());
+
+        long now = 400 * 50_000L + 35_000;
+        long renderTime = clock.renderTime(now);
+        assertTrue(renderTime < 399 * 50_000L && renderTime > 397 * 50_000L, "render time " + renderTime);
+    }
+}
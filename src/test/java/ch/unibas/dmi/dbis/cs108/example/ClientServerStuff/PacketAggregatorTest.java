@@ -0,0 +1,93 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PacketAggregatorTest {
+
+    private static final int MTU = 1200;
+
+    @Test
+    public void testOneTickOfMessagesIsPackedIntoFewDatagrams() throws Exception {
+        try (DatagramChannel receiver = DatagramChannel.open();
+             DatagramChannel senderChannel = DatagramChannel.open()) {
+            receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            receiver.configureBlocking(true);
+            senderChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            InetSocketAddress target = (InetSocketAddress) receiver.getLocalAddress();
+
+            UdpTransport transport = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (d, s) -> { });
+            transport.start("test-aggregator-io");
+            PacketAggregator aggregator = new PacketAggregator(transport, MTU);
+
+            int messages = 200;
+            int encodedBytes = 0;
+            for (int i = 0; i < messages; i++) {
+                Message msg = new Message("CREATEGO", new Object[]{"object-" + i, 10.0f * i, 20.0f}, "RESPONSE");
+                encodedBytes += BinaryMessageCodec.encode(msg).length;
+                aggregator.add(msg, target);
+            }
+            aggregator.flush();
+
+            List<String> received = new ArrayList<>();
+            int datagrams = 0;
+            ByteBuffer in = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+            while (received.size() < messages) {
+                in.clear();
+                receiver.receive(in);
+                in.flip();
+                assertTrue(in.remaining() <= MTU, "datagram of " + in.remaining() + " bytes exceeds MTU");
+                datagrams++;
+                while (in.hasRemaining()) {
+                    received.add((String) WireFormat.read(in).getParameters()[0]);
+                }
+            }
+
+            int minimum = (encodedBytes + MTU - 1) / MTU;
+            assertTrue(datagrams <= minimum + 1, datagrams + " datagrams for " + encodedBytes + " bytes");
+            for (int i = 0; i < messages; i++) {
+                assertEquals("object-" + i, received.get(i));
+            }
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testMessageLargerThanMtuIsSentOnItsOwn() throws Exception {
+        try (DatagramChannel receiver = DatagramChannel.open();
+             DatagramChannel senderChannel = DatagramChannel.open()) {
+            receiver.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            senderChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            InetSocketAddress target = (InetSocketAddress) receiver.getLocalAddress();
+
+            UdpTransport transport = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (d, s) -> { });
+            transport.start("test-aggregator-io");
+            PacketAggregator aggregator = new PacketAggregator(transport, MTU);
+
+            aggregator.add(new Message("PING", new Object[]{}, "REQUEST"), target);
+            aggregator.add(new Message("CHAT", new Object[]{"x".repeat(MTU + 100)}, "REQUEST"), target);
+            aggregator.flush();
+
+            receiver.configureBlocking(true);
+            ByteBuffer in = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+            receiver.receive(in);
+            in.flip();
+            assertEquals("PING", WireFormat.read(in).getMessageType());
+            assertFalse(in.hasRemaining());
+
+            in.clear();
+            receiver.receive(in);
+            in.flip();
+            assertEquals("CHAT", WireFormat.read(in).getMessageType());
+            transport.close();
+        }
+    }
+}
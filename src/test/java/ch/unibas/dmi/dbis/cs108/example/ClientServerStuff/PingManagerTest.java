@@ -0,0 +1,116 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PingManagerTest {
+
+    /** The server clock runs this far ahead of ours. */
+    private static final long OFFSET = 5_000_000;
+
+    @Test
+    public void testPongOnReceivePathFeedsClockSync() throws Exception {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        DatagramChannel serverChannel = DatagramChannel.open();
+        serverChannel.bind(new InetSocketAddress(loopback, 0));
+        DatagramChannel clientChannel = DatagramChannel.open();
+        clientChannel.bind(new InetSocketAddress(loopback, 0));
+        InetSocketAddress serverAddress = (InetSocketAddress) serverChannel.getLocalAddress();
+
+        // The server answers every PING the way PingCommandHandler does, for tick 600 of game g.
+        UdpTransport[] server = new UdpTransport[1];
+        server[0] = new UdpTransport(serverChannel, peer -> WireFormat.BINARY, (datagram, sender) -> {
+            Message ping = WireFormat.read(datagram);
+            long now = System.nanoTime() / 1000 + OFFSET;
+            server[0].send(new Message("PONG", new Object[]{ ping.getParameters()[0], now, now, "g", 600L }, "RESPONSE"), sender);
+        });
+        server[0].start("test-server-io");
+
+        // The client's receive path: decode, then let the ping manager take the PONGs.
+        ClockSync clockSync = new ClockSync();
+        PingManager[] pingManager = new PingManager[1];
+        ConcurrentLinkedQueue<Message> dispatched = new ConcurrentLinkedQueue<>();
+        UdpTransport client = new UdpTransport(clientChannel, peer -> WireFormat.BINARY, (datagram, sender) -> {
+            Message msg = WireFormat.read(datagram);
+            if (!pingManager[0].receive(msg, sender)) {
+                dispatched.add(msg);
+            }
+        });
+        pingManager[0] = new PingManager(20, clockSync, null, ping -> client.send(ping, serverAddress));
+        client.start("test-client-io");
+        pingManager[0].start();
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!clockSync.hasEstimate() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        pingManager[0].stop();
+        assertTrue(clockSync.hasEstimate(), "no PONG reached the clock sync");
+        assertTrue(pingManager[0].getLastRttMillis() >= 0);
+        assertTrue(Math.abs(clockSync.getOffset() - OFFSET) < 50_000, "offset " + clockSync.getOffset());
+        long tick = clockSync.serverTick("g", System.nanoTime() / 1000, 60);
+        assertTrue(tick >= 600 && tick < 600 + 60, "tick " + tick);
+        assertTrue(dispatched.isEmpty(), "PONGs are not dispatched further");
+
+        assertFalse(pingManager[0].receive(new Message("CHAT", new Object[]{ "hi" }, "REQUEST"), serverAddress));
+        client.close();
+        server[0].close();
+    }
+
+    @Test
+    public void testPongUpdatesRtoOfServer() throws Exception {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        UdpTransport transport = new UdpTransport(channel, peer -> WireFormat.BINARY, (d, s) -> { });
+        ReliableUDPSender reliableSender = new ReliableUDPSender(transport, 8, RttEstimator.DEFAULT_INITIAL_RTO_MILLIS);
+        PingManager pingManager = new PingManager(1000, new ClockSync(), reliableSender, ping -> { });
+        InetSocketAddress server = new InetSocketAddress(InetAddress.getLoopbackAddress(), 4000);
+        assertEquals(-1, reliableSender.getRttMillis(server));
+        long initialRto = reliableSender.getRtoMillis(server);
+
+        // A PONG for a PING sent 30 ms ago, straight off the wire.
+        long t0 = System.nanoTime() / 1000 - 30_000;
+        Message pong = new Message("PONG", new Object[]{ t0, t0 + OFFSET, t0 + OFFSET }, "RESPONSE");
+        ByteBuffer datagram = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+        MessageWriter.write(pong, datagram);
+        datagram.flip();
+        assertTrue(pingManager.receive(WireFormat.read(datagram), server));
+
+        long rtt = reliableSender.getRttMillis(server);
+        assertTrue(rtt >= 30 && rtt < 1000, "rtt " + rtt);
+        assertNotEquals(initialRto, reliableSender.getRtoMillis(server));
+        assertEquals(-1, reliableSender.getRttMillis(new InetSocketAddress(InetAddress.getLoopbackAddress(), 4001)),
+                "only the PONG's sender is affected");
+        transport.close();
+        pingManager.stop();
+    }
+
+    @Test
+    public void testServerProcessingTimeIsNotPartOfRtt() throws Exception {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        UdpTransport transport = new UdpTransport(channel, peer -> WireFormat.BINARY, (d, s) -> { });
+        ReliableUDPSender reliableSender = new ReliableUDPSender(transport, 8, RttEstimator.DEFAULT_INITIAL_RTO_MILLIS);
+        PingManager pingManager = new PingManager(1000, new ClockSync(), reliableSender, ping -> { });
+        InetSocketAddress server = new InetSocketAddress(InetAddress.getLoopbackAddress(), 4000);
+
+        // Sent 230 ms ago, of which the server held the PING for 200 ms.
+        long t0 = System.nanoTime() / 1000 - 230_000;
+        long t1 = t0 + OFFSET + 15_000;
+        Message pong = new Message("PONG", new Object[]{ t0, t1, t1 + 200_000 }, "RESPONSE");
+        assertTrue(pingManager.receive(pong, server));
+
+        long rtt = pingManager.getLastRttMillis();
+        assertTrue(rtt >= 30 && rtt < 200, "rtt " + rtt);
+        assertEquals(rtt, reliableSender.getRttMillis(server));
+        transport.close();
+        pingManager.stop();
+    }
+}
@@ -0,0 +1,43 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuantizerTest {
+
+    @Test
+    public void testRangeOfPowerOfTwoStepsUsesExactBits() {
+        assertEquals(16, new Quantizer(-1024f, 3072f, 1 / 16f).getBits());
+        assertEquals(9, new Quantizer(-32f, 32f, 1 / 8f).getBits());
+    }
+
+    @Test
+    public void testValuesAreRoundedAndClamped() {
+        Quantizer velocity = new Quantizer(-32f, 32f, 1 / 8f);
+        assertEquals(3.125f, velocity.dequantize(velocity.quantize(3.1f)));
+        assertEquals(-32f, velocity.dequantize(velocity.quantize(-100f)));
+        assertEquals(31.875f, velocity.dequantize(velocity.quantize(100f)));
+        assertEquals(-32f, velocity.dequantize(velocity.quantize(Float.NaN)));
+    }
+
+    @Test
+    public void testBitsRoundTripAcrossByteBoundaries() {
+        BitWriter out = new BitWriter(1);
+        out.write(5, 3);
+        out.writeBoolean(true);
+        out.write(-1L, 64);
+        out.write(0x1ABCD, 17);
+        out.writeBytes(new byte[]{ (byte) 0xF0, 0x0F });
+        assertEquals(3 + 1 + 64 + 17 + 16, out.getBitLength());
+
+        BitReader in = new BitReader(out.toByteArray());
+        assertEquals(5, in.read(3));
+        assertTrue(in.readBoolean());
+        assertEquals(-1L, in.read(64));
+        assertEquals(0x1ABCD, in.read(17));
+        assertArrayEquals(new byte[]{ (byte) 0xF0, 0x0F }, in.readBytes(2));
+        assertTrue(in.remaining() < 8, "only padding is left");
+        assertThrows(IllegalArgumentException.class, () -> in.read(8));
+    }
+}
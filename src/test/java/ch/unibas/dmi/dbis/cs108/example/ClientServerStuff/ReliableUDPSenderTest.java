@@ -0,0 +1,305 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReliableUDPSenderTest {
+
+    private static final int WINDOW = 4;
+
+    @Test
+    public void testLossyPeerDoesNotBlockOtherPeers() throws Exception {
+        try (DatagramChannel senderChannel = DatagramChannel.open();
+             DatagramChannel lossy = DatagramChannel.open();
+             DatagramChannel healthy = DatagramChannel.open()) {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            senderChannel.bind(new InetSocketAddress(loopback, 0));
+            lossy.bind(new InetSocketAddress(loopback, 0));
+            healthy.bind(new InetSocketAddress(loopback, 0));
+            healthy.configureBlocking(true);
+            InetSocketAddress lossyAddress = (InetSocketAddress) lossy.getLocalAddress();
+            InetSocketAddress healthyAddress = (InetSocketAddress) healthy.getLocalAddress();
+
+            UdpTransport transport = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (d, s) -> { });
+            transport.start("test-reliable-io");
+            ReliableUDPSender sender = new ReliableUDPSender(transport, WINDOW, 50);
+
+            // The lossy peer never acknowledges, so its window fills up and stays full.
+            for (int i = 0; i < WINDOW * 2; i++) {
+                sender.sendMessage(new Message("CHAT", new Object[]{"lost-" + i}, "REQUEST"), loopback, lossyAddress.getPort());
+            }
+            awaitPending(sender, lossyAddress, WINDOW);
+
+            ByteBuffer in = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+            for (int i = 0; i < WINDOW * 2; i++) {
+                sender.sendMessage(new Message("CHAT", new Object[]{"ok-" + i}, "REQUEST"), loopback, healthyAddress.getPort());
+                in.clear();
+                healthy.receive(in);
+                in.flip();
+                Message received = WireFormat.read(in);
+                assertEquals("ok-" + i, received.getParameters()[0]);
+                assertEquals(i + 1, received.getSequenceNumber(), "sequence space is per peer");
+                sender.acknowledge(healthyAddress, received.getSequenceNumber());
+            }
+
+            assertEquals(0, sender.getPendingCount(healthyAddress));
+            assertEquals(WINDOW, sender.getPendingCount(lossyAddress));
+            assertTrue(sender.getRttMillis(healthyAddress) >= 0);
+            // Only the lossy peer backs off once its retransmission timeout fires.
+            long deadline = System.currentTimeMillis() + 1000;
+            while (sender.getRtoMillis(lossyAddress) <= sender.getRtoMillis(healthyAddress)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertTrue(sender.getRtoMillis(lossyAddress) > sender.getRtoMillis(healthyAddress));
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testUnacknowledgedMessageIsRetransmitted() throws Exception {
+        try (DatagramChannel senderChannel = DatagramChannel.open();
+             DatagramChannel receiver = DatagramChannel.open()) {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            senderChannel.bind(new InetSocketAddress(loopback, 0));
+            receiver.bind(new InetSocketAddress(loopback, 0));
+            receiver.configureBlocking(true);
+            InetSocketAddress receiverAddress = (InetSocketAddress) receiver.getLocalAddress();
+
+            UdpTransport transport = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (d, s) -> { });
+            transport.start("test-reliable-io");
+            TimerWheel timers = new TimerWheel(5, 64);
+            timers.start("test-reliable-timers");
+            ReliableUDPSender sender = new ReliableUDPSender(transport, WINDOW, 60, timers);
+
+            sender.sendMessage(new Message("CHAT", new Object[]{"hello"}, "REQUEST"), loopback, receiverAddress.getPort());
+            ByteBuffer in = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+            receiver.receive(in);
+            in.flip();
+            Message first = WireFormat.read(in);
+            assertNull(first.getUUID(), "binary frames carry no UUID unless one was requested");
+
+            in.clear();
+            receiver.receive(in);
+            in.flip();
+            assertEquals(first.getSequenceNumber(), WireFormat.read(in).getSequenceNumber(),
+                    "second copy must be the retransmission");
+            assertEquals(120, sender.getRtoMillis(receiverAddress));
+
+            sender.acknowledge(receiverAddress, first.getSequenceNumber());
+            assertEquals(0, sender.getPendingCount(receiverAddress));
+            assertEquals(-1, sender.getRttMillis(receiverAddress), "no RTT sample from a retransmitted message");
+            long deadline = System.currentTimeMillis() + 1000;
+            while (timers.getArmedCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(0, timers.getArmedCount());
+
+            timers.stop();
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testLossBurstBacksOffOnce() throws Exception {
+        try (DatagramChannel senderChannel = DatagramChannel.open();
+             DatagramChannel receiver = DatagramChannel.open()) {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            senderChannel.bind(new InetSocketAddress(loopback, 0));
+            receiver.bind(new InetSocketAddress(loopback, 0));
+            receiver.configureBlocking(true);
+            InetSocketAddress receiverAddress = (InetSocketAddress) receiver.getLocalAddress();
+
+            UdpTransport transport = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (d, s) -> { });
+            transport.start("test-reliable-io");
+            TimerWheel timers = new TimerWheel(5, 64);
+            timers.start("test-reliable-timers");
+            ReliableUDPSender sender = new ReliableUDPSender(transport, 8, 60, timers);
+
+            for (int i = 0; i < 5; i++) {
+                sender.sendMessage(new Message("CHAT", new Object[]{"m" + i}, "REQUEST"), loopback, receiverAddress.getPort());
+            }
+            // Selective ACKs leave gaps, so 1, 3 and 5 all time out and are retransmitted together.
+            sender.acknowledge(receiverAddress, 2);
+            sender.acknowledge(receiverAddress, 4);
+            long rto = sender.getRtoMillis(receiverAddress);
+
+            Set<Long> retransmitted = new HashSet<>();
+            Set<Long> seen = new HashSet<>();
+            ByteBuffer in = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+            while (retransmitted.size() < 3) {
+                in.clear();
+                receiver.receive(in);
+                in.flip();
+                long seq = WireFormat.read(in).getSequenceNumber();
+                if (!seen.add(seq)) {
+                    retransmitted.add(seq);
+                }
+            }
+            assertEquals(Set.of(1L, 3L, 5L), retransmitted);
+            assertEquals(2 * rto, sender.getRtoMillis(receiverAddress), "one timeout event, one backoff");
+
+            timers.stop();
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testRejectedMessageDoesNotUseUpOrderedSequence() throws Exception {
+        try (DatagramChannel senderChannel = DatagramChannel.open();
+             DatagramChannel receiver = DatagramChannel.open()) {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            senderChannel.bind(new InetSocketAddress(loopback, 0));
+            receiver.bind(new InetSocketAddress(loopback, 0));
+            receiver.configureBlocking(true);
+            InetSocketAddress receiverAddress = (InetSocketAddress) receiver.getLocalAddress();
+
+            UdpTransport transport = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (d, s) -> { });
+            transport.start("test-reliable-io");
+            ReliableUDPSender sender = new ReliableUDPSender(transport, WINDOW, 1000);
+
+            // Too large even for fragmentation, so it is rejected when it is admitted.
+            sender.sendMessage(new Message("CHAT", new Object[]{"x".repeat(70_000)}, "REQUEST"), loopback, receiverAddress.getPort());
+            Thread.sleep(100);
+            sender.sendMessage(new Message("CHAT", new Object[]{"after"}, "REQUEST"), loopback, receiverAddress.getPort());
+
+            ByteBuffer in = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+            receiver.receive(in);
+            in.flip();
+            Message received = WireFormat.read(in);
+            assertEquals("after", received.getParameters()[0]);
+            assertEquals(DeliveryChannel.RELIABLE_ORDERED, received.getChannel());
+            assertEquals(1, received.getChannelSequence(), "the rejected message must give its sequence back");
+
+            ChannelReceiver channelReceiver = new ChannelReceiver();
+            List<Message> delivered = new ArrayList<>();
+            assertTrue(channelReceiver.receive(receiverAddress, received, delivered::add));
+            assertEquals(1, delivered.size(), "the ordered channel must not wait for the rejected message");
+            assertEquals(0, channelReceiver.getHeldCount(receiverAddress));
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testBackToBackOrderedMessagesAreNumberedInSendOrder() throws Exception {
+        try (DatagramChannel senderChannel = DatagramChannel.open();
+             DatagramChannel receiver = DatagramChannel.open()) {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            senderChannel.bind(new InetSocketAddress(loopback, 0));
+            receiver.bind(new InetSocketAddress(loopback, 0));
+            receiver.configureBlocking(true);
+            InetSocketAddress receiverAddress = (InetSocketAddress) receiver.getLocalAddress();
+
+            UdpTransport transport = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (d, s) -> { });
+            transport.start("test-reliable-io");
+            int count = 32;
+            ReliableUDPSender sender = new ReliableUDPSender(transport, count, 1000);
+            for (int i = 0; i < count; i++) {
+                sender.sendMessage(new Message("CHAT", new Object[]{"m" + i}, "REQUEST"), loopback, receiverAddress.getPort());
+            }
+            // Admitted before sendMessage returned.
+            assertEquals(count, sender.getPendingCount(receiverAddress));
+
+            ChannelReceiver channelReceiver = new ChannelReceiver();
+            List<Message> delivered = new ArrayList<>();
+            ByteBuffer in = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+            for (int i = 0; i < count; i++) {
+                in.clear();
+                receiver.receive(in);
+                in.flip();
+                Message received = WireFormat.read(in);
+                String payload = (String) received.getParameters()[0];
+                assertEquals("m" + (received.getChannelSequence() - 1), payload);
+                assertEquals("m" + (received.getSequenceNumber() - 1), payload);
+                channelReceiver.receive(receiverAddress, received, delivered::add);
+            }
+            assertEquals(count, delivered.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals("m" + i, delivered.get(i).getParameters()[0]);
+            }
+            transport.close();
+        }
+    }
+
+    @Test
+    public void testFullWindowQueuesMessagesUntilAcknowledged() throws Exception {
+        System.setProperty(ReliableUDPSender.HIGH_WATER_PROPERTY, "6");
+        System.setProperty(ReliableUDPSender.BACKLOG_LIMIT_PROPERTY, "10");
+        try (DatagramChannel senderChannel = DatagramChannel.open();
+             DatagramChannel receiver = DatagramChannel.open()) {
+            InetAddress loopback = InetAddress.getLoopbackAddress();
+            senderChannel.bind(new InetSocketAddress(loopback, 0));
+            receiver.bind(new InetSocketAddress(loopback, 0));
+            receiver.configureBlocking(true);
+            InetSocketAddress receiverAddress = (InetSocketAddress) receiver.getLocalAddress();
+
+            UdpTransport transport = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (d, s) -> { });
+            transport.start("test-reliable-io");
+            ReliableUDPSender sender = new ReliableUDPSender(transport, WINDOW, 1000);
+            AtomicInteger highWater = new AtomicInteger();
+            AtomicInteger overflow = new AtomicInteger();
+            sender.setBackPressureListener(new ReliableUDPSender.BackPressureListener() {
+                @Override
+                public void onHighWater(InetSocketAddress peer, int queued) {
+                    highWater.incrementAndGet();
+                }
+
+                @Override
+                public void onOverflow(InetSocketAddress peer, int queued) {
+                    overflow.incrementAndGet();
+                }
+            });
+
+            for (int i = 0; i < 20; i++) {
+                sender.sendMessage(new Message("CREATEGO", new Object[]{"object-" + i}, "RESPONSE"),
+                        loopback, receiverAddress.getPort());
+            }
+            awaitPending(sender, receiverAddress, WINDOW);
+            long deadline = System.currentTimeMillis() + 2000;
+            while (overflow.get() < 6 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(10, sender.getBacklogSize(receiverAddress));
+            assertEquals(6, overflow.get());
+            assertEquals(1, highWater.get());
+
+            // Every ACK frees a slot that the backlog refills, until everything accepted was sent.
+            Set<Long> delivered = new HashSet<>();
+            ByteBuffer in = ByteBuffer.allocate(BufferPool.BUFFER_SIZE);
+            while (delivered.size() < WINDOW + 10) {
+                in.clear();
+                receiver.receive(in);
+                in.flip();
+                long seq = WireFormat.read(in).getSequenceNumber();
+                if (delivered.add(seq)) {
+                    sender.acknowledge(receiverAddress, seq);
+                }
+            }
+            assertEquals(0, sender.getPendingCount(receiverAddress));
+            assertEquals(0, sender.getBacklogSize(receiverAddress));
+            transport.close();
+        } finally {
+            System.clearProperty(ReliableUDPSender.HIGH_WATER_PROPERTY);
+            System.clearProperty(ReliableUDPSender.BACKLOG_LIMIT_PROPERTY);
+        }
+    }
+
+    private static void awaitPending(ReliableUDPSender sender, InetSocketAddress peer, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (sender.getPendingCount(peer) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(expected, sender.getPendingCount(peer));
+    }
+}
@@ -0,0 +1,38 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void testRepeatedRequestGetsOriginalResponses() {
+        ResponseCache cache = new ResponseCache(10_000, 8);
+        assertNull(cache.begin("alice", "#1"), "first execution");
+        assertTrue(cache.begin("alice", "#1").isEmpty(), "still running, nothing to replay yet");
+
+        cache.record("alice", "#1", new Message("CREATEGAME", new Object[]{"id-1", "Lobby"}, "RESPONSE"));
+        List<Message> replay = cache.begin("alice", "#1");
+        assertEquals(1, replay.size());
+        assertEquals("id-1", replay.get(0).getParameters()[0]);
+
+        assertNull(cache.begin("bob", "#1"), "keys are per client");
+    }
+
+    @Test
+    public void testEntriesAreBoundedAndExpire() throws InterruptedException {
+        ResponseCache cache = new ResponseCache(50, 2);
+        assertNull(cache.begin("alice", "#1"));
+        assertNull(cache.begin("alice", "#2"));
+        assertNull(cache.begin("alice", "#3"));
+        assertEquals(2, cache.size("alice"));
+        assertNull(cache.begin("alice", "#1"), "the oldest entry was evicted for capacity");
+
+        Thread.sleep(80);
+        assertEquals(0, cache.size("alice"));
+        assertNull(cache.begin("alice", "#3"), "expired entries are executed again");
+    }
+}
@@ -0,0 +1,54 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RttEstimatorTest {
+
+    @Test
+    public void testFirstSampleFollowsRfc6298() {
+        RttEstimator estimator = new RttEstimator(1000, 10, 1, 60_000);
+        assertEquals(1000, estimator.getRtoMillis());
+        assertEquals(-1, estimator.getSrttMillis());
+
+        estimator.addSample(100);
+        assertEquals(100, estimator.getSrttMillis());
+        assertEquals(50, estimator.getRttVarMillis());
+        // SRTT + 4 * RTTVAR
+        assertEquals(300, estimator.getRtoMillis());
+    }
+
+    @Test
+    public void testStableRttConvergesTowardsMinimum() {
+        RttEstimator estimator = new RttEstimator(1000, 10, 50, 8000);
+        for (int i = 0; i < 100; i++) {
+            estimator.addSample(2);
+        }
+        assertEquals(2, estimator.getSrttMillis());
+        assertEquals(50, estimator.getRtoMillis());
+    }
+
+    @Test
+    public void testJitterRaisesTimeout() {
+        RttEstimator stable = new RttEstimator(1000, 10, 1, 8000);
+        RttEstimator jittery = new RttEstimator(1000, 10, 1, 8000);
+        for (int i = 0; i < 50; i++) {
+            stable.addSample(100);
+            jittery.addSample(i % 2 == 0 ? 50 : 150);
+        }
+        assertTrue(jittery.getRtoMillis() > stable.getRtoMillis());
+    }
+
+    @Test
+    public void testBackoffDoublesUntilMaximum() {
+        RttEstimator estimator = new RttEstimator(300, 10, 50, 1000);
+        estimator.backoff();
+        assertEquals(600, estimator.getRtoMillis());
+        estimator.backoff();
+        assertEquals(1000, estimator.getRtoMillis());
+
+        estimator.addSample(20);
+        assertEquals(60, estimator.getRtoMillis());
+    }
+}
@@ -0,0 +1,125 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SerialExecutorTest {
+
+    @Test
+    public void testTasksOfOneKeyRunInSubmissionOrder() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        SerialExecutor serial = new SerialExecutor(pool);
+        int peers = 3;
+        int count = 200;
+        List<List<Integer>> order = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(peers * count);
+        for (int p = 0; p < peers; p++) {
+            order.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        for (int i = 0; i < count; i++) {
+            for (int p = 0; p < peers; p++) {
+                int peer = p;
+                int n = i;
+                serial.execute("peer-" + p, () -> {
+                    if (n % 17 == 0) {
+                        sleep(1);
+                    }
+                    order.get(peer).add(n);
+                    done.countDown();
+                });
+            }
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int p = 0; p < peers; p++) {
+            assertEquals(count, order.get(p).size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, order.get(p).get(i).intValue(), "peer " + p);
+            }
+        }
+        // Drained keys are let go of.
+        assertEquals(0, serial.getQueuedCount("peer-0"));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testSlowKeyDoesNotBlockOtherKeys() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        SerialExecutor serial = new SerialExecutor(pool);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fast = new CountDownLatch(1);
+        serial.execute("slow", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        serial.execute("slow", () -> { });
+        serial.execute("fast", fast::countDown);
+        assertTrue(fast.await(2, TimeUnit.SECONDS));
+        assertEquals(2, serial.getQueuedCount("slow"));
+        release.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2, TimeUnit.SECONDS));
+        assertEquals(0, serial.getQueuedCount("slow"));
+    }
+
+    @Test
+    public void testOrderedRequestsReachHandlersInSendOrder() throws Exception {
+        // The server's receive path: channel order first, then serial processing per client.
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        SerialExecutor serial = new SerialExecutor(pool);
+        ChannelReceiver channelReceiver = new ChannelReceiver();
+        InetSocketAddress client = new InetSocketAddress(InetAddress.getLoopbackAddress(), 4000);
+        int count = 100;
+        List<Message> sent = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Message msg = i % 2 == 0
+                    ? new Message("CHAT", new Object[]{"line " + i}, "REQUEST")
+                    : new Message("CREATEGAME", new Object[]{"game " + i}, "REQUEST");
+            msg.setChannelSequence(i + 1);
+            sent.add(msg);
+        }
+        // Arrival reorders pairs of datagrams.
+        List<Message> arrival = new ArrayList<>(sent);
+        for (int i = 0; i + 1 < count; i += 2) {
+            Collections.swap(arrival, i, i + 1);
+        }
+
+        List<Object> handled = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(count);
+        for (Message msg : arrival) {
+            channelReceiver.receive(client, msg, ready -> serial.execute(client, () -> {
+                if (ready.getChannelSequence() % 7 == 0) {
+                    sleep(1);
+                }
+                handled.add(ready.getParameters()[0]);
+                done.countDown();
+            }));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(sent.get(i).getParameters()[0], handled.get(i));
+        }
+        pool.shutdown();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotHistoryTest {
+
+    @Test
+    public void testBaselineIsNewestAcknowledgedSnapshot() {
+        SnapshotHistory history = new SnapshotHistory("g", 8);
+        assertNull(history.getBaseline());
+        for (long tick = 1; tick <= 5; tick++) {
+            history.put(new WorldSnapshot(tick));
+        }
+        history.acknowledge(3);
+        history.acknowledge(2);
+        assertEquals(3, history.getBaseline().getTick(), "late ACKs never move the baseline back");
+        history.acknowledge(42);
+        assertEquals(3, history.getBaseline().getTick(), "ticks that were never sent are ignored");
+    }
+
+    @Test
+    public void testOverwrittenBaselineFallsBackToFullSnapshot() {
+        SnapshotHistory history = new SnapshotHistory("g", 4);
+        history.put(new WorldSnapshot(1));
+        history.acknowledge(1);
+        assertNotNull(history.getBaseline());
+        for (long tick = 2; tick <= 5; tick++) {
+            history.put(new WorldSnapshot(tick));
+        }
+        assertNull(history.get(1));
+        assertNull(history.getBaseline());
+    }
+}
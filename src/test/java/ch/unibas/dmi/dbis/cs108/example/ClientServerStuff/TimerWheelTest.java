@@ -0,0 +1,75 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerWheelTest {
+
+    private TimerWheel wheel;
+
+    @BeforeEach
+    public void setUp() {
+        // A small wheel, so the longer delays need several turns.
+        wheel = new TimerWheel(5, 8);
+        wheel.start("test-timer-wheel");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void testTimeoutsFireAfterTheirDelay() throws Exception {
+        CountDownLatch fired = new CountDownLatch(3);
+        long start = System.nanoTime();
+        long[] firedAfter = new long[3];
+        long[] delays = {10, 60, 150};
+        for (int i = 0; i < delays.length; i++) {
+            int index = i;
+            wheel.schedule(() -> {
+                firedAfter[index] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                fired.countDown();
+            }, delays[i]);
+        }
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        for (int i = 0; i < delays.length; i++) {
+            assertTrue(firedAfter[i] >= delays[i], "fired after " + firedAfter[i] + " ms, due at " + delays[i]);
+        }
+        assertEquals(0, wheel.getArmedCount());
+    }
+
+    @Test
+    public void testCancelledTimeoutDoesNotFire() throws Exception {
+        AtomicInteger fired = new AtomicInteger();
+        CountDownLatch last = new CountDownLatch(1);
+        TimerWheel.Timeout cancelled = wheel.schedule(fired::incrementAndGet, 20);
+        wheel.schedule(last::countDown, 60);
+
+        assertTrue(cancelled.cancel());
+        assertTrue(last.await(2, TimeUnit.SECONDS));
+        assertEquals(0, fired.get());
+        assertTrue(cancelled.isCancelled());
+        assertFalse(cancelled.cancel());
+    }
+
+    @Test
+    public void testWheelWakesUpAgainAfterIdling() throws Exception {
+        CountDownLatch first = new CountDownLatch(1);
+        wheel.schedule(first::countDown, 5);
+        assertTrue(first.await(1, TimeUnit.SECONDS));
+
+        Thread.sleep(100);
+        CountDownLatch second = new CountDownLatch(1);
+        wheel.schedule(second::countDown, 5);
+        assertTrue(second.await(1, TimeUnit.SECONDS));
+    }
+}
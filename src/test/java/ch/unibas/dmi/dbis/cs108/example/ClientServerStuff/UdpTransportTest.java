@@ -0,0 +1,297 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UdpTransportTest {
+
+    @Test
+    public void testBurstFromManySendersIsDelivered() throws Exception {
+        int senders = 8;
+        int perSender = 200;
+        CountDownLatch received = new CountDownLatch(senders * perSender);
+        ConcurrentLinkedQueue<String> types = new ConcurrentLinkedQueue<>();
+
+        DatagramChannel serverChannel = DatagramChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        UdpTransport server = new UdpTransport(serverChannel, peer -> WireFormat.BINARY, (datagram, sender) -> {
+            types.add(WireFormat.read(datagram).getMessageType());
+            received.countDown();
+        });
+        server.start("test-server-io");
+        InetSocketAddress serverAddress = (InetSocketAddress) serverChannel.getLocalAddress();
+
+        UdpTransport[] clients = new UdpTransport[senders];
+        for (int i = 0; i < senders; i++) {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            clients[i] = new UdpTransport(channel, peer -> WireFormat.BINARY, (datagram, sender) -> { });
+            clients[i].start("test-client-io-" + i);
+        }
+
+        Thread[] threads = new Thread[senders];
+        for (int i = 0; i < senders; i++) {
+            UdpTransport client = clients[i];
+            threads[i] = new Thread(() -> {
+                for (int n = 0; n < perSender; n++) {
+                    assertTrue(client.send(new Message("KEY_PRESS", new Object[]{n}, "GAME"), serverAddress));
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(received.await(5, TimeUnit.SECONDS), "missing " + received.getCount() + " datagrams");
+        assertTrue(types.stream().allMatch("KEY_PRESS"::equals));
+
+        server.close();
+        for (UdpTransport client : clients) {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testShardedBindSpreadsClientsAcrossThreads() throws Exception {
+        int clientCount = 32;
+        CountDownLatch received = new CountDownLatch(clientCount);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        InetSocketAddress bindAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), freePort());
+        UdpTransport server = UdpTransport.bind(bindAddress, 4, peer -> WireFormat.BINARY, (datagram, sender) -> {
+            WireFormat.read(datagram);
+            threads.add(Thread.currentThread().getName());
+            received.countDown();
+        });
+        server.start("test-shard");
+
+        DatagramChannel[] clients = new DatagramChannel[clientCount];
+        for (int i = 0; i < clientCount; i++) {
+            clients[i] = DatagramChannel.open();
+            clients[i].bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            byte[] data = BinaryMessageCodec.encode(new Message("REGISTER", new Object[]{i}, "REQUEST"));
+            clients[i].send(ByteBuffer.wrap(data), bindAddress);
+        }
+
+        assertTrue(received.await(5, TimeUnit.SECONDS), "missing " + received.getCount() + " datagrams");
+        if (server.getShardCount() > 1) {
+            assertTrue(threads.size() > 1, "all clients were handled by " + threads);
+        }
+
+        server.close();
+        for (DatagramChannel client : clients) {
+            client.close();
+        }
+    }
+
+    private static int freePort() throws Exception {
+        try (DatagramChannel probe = DatagramChannel.open()) {
+            probe.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            return ((InetSocketAddress) probe.getLocalAddress()).getPort();
+        }
+    }
+
+    @Test
+    public void testLargeMessageIsSentInFragments() throws Exception {
+        CountDownLatch received = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Message> messages = new ConcurrentLinkedQueue<>();
+        FragmentAssembler assembler = new FragmentAssembler();
+
+        DatagramChannel serverChannel = DatagramChannel.open();
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        UdpTransport server = new UdpTransport(serverChannel, peer -> WireFormat.BINARY, (datagram, sender) -> {
+            assertTrue(datagram.remaining() <= PacketAggregator.DEFAULT_MTU);
+            Message msg = assembler.accept(sender, datagram, null);
+            if (msg != null) {
+                messages.add(msg);
+                received.countDown();
+            }
+        });
+        server.start("test-server-io");
+
+        DatagramChannel clientChannel = DatagramChannel.open();
+        clientChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        UdpTransport client = new UdpTransport(clientChannel, peer -> WireFormat.BINARY, (datagram, sender) -> { });
+        client.start("test-client-io");
+
+        String text = "x".repeat(BufferPool.BUFFER_SIZE * 3);
+        assertTrue(client.send(new Message("CHAT", new Object[]{text}, "REQUEST"),
+                (InetSocketAddress) serverChannel.getLocalAddress()));
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertEquals(text, messages.poll().getParameters()[0]);
+
+        client.close();
+        server.close();
+        clientChannel.close();
+        serverChannel.close();
+    }
+
+    @Test
+    public void testMessageAboveMtuIsFragmentedWithAndWithoutAggregation() throws Exception {
+        for (boolean aggregate : new boolean[]{false, true}) {
+            CountDownLatch received = new CountDownLatch(1);
+            ConcurrentLinkedQueue<Message> messages = new ConcurrentLinkedQueue<>();
+            ConcurrentLinkedQueue<Integer> sizes = new ConcurrentLinkedQueue<>();
+            FragmentAssembler assembler = new FragmentAssembler();
+
+            DatagramChannel serverChannel = DatagramChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            UdpTransport server = new UdpTransport(serverChannel, peer -> WireFormat.BINARY, (datagram, sender) -> {
+                sizes.add(datagram.remaining());
+                AckTracker.readHeader(datagram, sender, (peer, latest, bits) -> { });
+                Message msg = assembler.accept(sender, datagram, null);
+                if (msg != null) {
+                    messages.add(msg);
+                    received.countDown();
+                }
+            });
+            server.start("test-server-io");
+
+            DatagramChannel clientChannel = DatagramChannel.open();
+            clientChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            UdpTransport client = new UdpTransport(clientChannel, peer -> WireFormat.BINARY, (datagram, sender) -> { });
+            client.setAckTracker(new AckTracker());
+            if (aggregate) {
+                client.enableAggregation(PacketAggregator.DEFAULT_MTU, PacketAggregator.DEFAULT_FLUSH_HZ);
+            }
+            client.start("test-client-io");
+
+            // Fits into a pooled buffer, but not into one datagram of the MTU.
+            String text = "x".repeat(1500);
+            assertTrue(client.send(new Message("CHAT", new Object[]{text}, "REQUEST"),
+                    (InetSocketAddress) serverChannel.getLocalAddress()));
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            assertEquals(text, messages.poll().getParameters()[0]);
+            assertTrue(sizes.size() > 1, "sent in fragments");
+            for (int size : sizes) {
+                assertTrue(size <= PacketAggregator.DEFAULT_MTU, "datagram of " + size + " bytes");
+            }
+
+            client.close();
+            server.close();
+            clientChannel.close();
+            serverChannel.close();
+        }
+    }
+
+    @Test
+    public void testBroadcastReachesBinaryAndTextPeers() throws Exception {
+        CountDownLatch received = new CountDownLatch(2);
+        ConcurrentLinkedQueue<WireFormat> formats = new ConcurrentLinkedQueue<>();
+        DatagramChannel[] channels = new DatagramChannel[2];
+        UdpTransport[] receivers = new UdpTransport[2];
+        for (int i = 0; i < 2; i++) {
+            channels[i] = DatagramChannel.open();
+            channels[i].bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            receivers[i] = new UdpTransport(channels[i], peer -> WireFormat.BINARY, (datagram, sender) -> {
+                formats.add(WireFormat.detect(datagram));
+                assertEquals("KEY_PRESS", WireFormat.read(datagram).getMessageType());
+                received.countDown();
+            });
+            receivers[i].start("test-receiver-io-" + i);
+        }
+        InetSocketAddress binaryPeer = (InetSocketAddress) channels[0].getLocalAddress();
+        InetSocketAddress textPeer = (InetSocketAddress) channels[1].getLocalAddress();
+
+        DatagramChannel senderChannel = DatagramChannel.open();
+        senderChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        UdpTransport sender = new UdpTransport(senderChannel,
+                peer -> peer.equals(textPeer) ? WireFormat.TEXT : WireFormat.BINARY, (datagram, from) -> { });
+        sender.start("test-sender-io");
+
+        Message keyPress = new Message("KEY_PRESS", new Object[]{"A"}, "GAME");
+        assertEquals(2, sender.broadcast(keyPress, List.of(binaryPeer, textPeer)));
+        assertTrue(received.await(5, TimeUnit.SECONDS));
+        assertTrue(formats.contains(WireFormat.BINARY) && formats.contains(WireFormat.TEXT));
+
+        sender.close();
+        senderChannel.close();
+        for (int i = 0; i < 2; i++) {
+            receivers[i].close();
+            channels[i].close();
+        }
+    }
+
+    @Test
+    public void testSequencedNumbersArriveInOrderPerDestination() throws Exception {
+        int threads = 4;
+        int perThread = 100;
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        UdpTransport[] receivers = new UdpTransport[2];
+        InetSocketAddress[] addresses = new InetSocketAddress[2];
+        List<ConcurrentLinkedQueue<Long>> sequences = List.of(new ConcurrentLinkedQueue<>(), new ConcurrentLinkedQueue<>());
+        CountDownLatch received = new CountDownLatch(2 * threads * perThread);
+        for (int r = 0; r < 2; r++) {
+            ConcurrentLinkedQueue<Long> seen = sequences.get(r);
+            DatagramChannel channel = DatagramChannel.open();
+            channel.bind(new InetSocketAddress(loopback, 0));
+            addresses[r] = (InetSocketAddress) channel.getLocalAddress();
+            receivers[r] = new UdpTransport(channel, peer -> WireFormat.BINARY, (datagram, sender) -> {
+                seen.add(WireFormat.read(datagram).getChannelSequence());
+                received.countDown();
+            });
+            receivers[r].start("test-receiver-io-" + r);
+        }
+
+        DatagramChannel senderChannel = DatagramChannel.open();
+        senderChannel.bind(new InetSocketAddress(loopback, 0));
+        UdpTransport sender = new UdpTransport(senderChannel, peer -> WireFormat.BINARY, (datagram, s) -> { });
+        sender.start("test-sender-io");
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                for (int n = 0; n < perThread; n++) {
+                    for (InetSocketAddress address : addresses) {
+                        sender.send(new Message("MOVE", new Object[]{n}, "GAME"), address);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertTrue(received.await(5, TimeUnit.SECONDS), "missing " + received.getCount() + " datagrams");
+        for (ConcurrentLinkedQueue<Long> seen : sequences) {
+            long expected = 1;
+            for (long seq : seen) {
+                assertEquals(expected++, seq, "each destination gets its own gapless, ordered numbers");
+            }
+        }
+        sender.close();
+        for (UdpTransport receiver : receivers) {
+            receiver.close();
+        }
+    }
+
+    @Test
+    public void testOversizedMessageIsRejectedWithoutLeakingBuffers() throws Exception {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        UdpTransport transport = new UdpTransport(channel, peer -> WireFormat.BINARY, (datagram, sender) -> { });
+        int idle = BufferPool.getInstance().available();
+
+        // Too large even for fragmentation: the frame length prefix is only 16 bits.
+        Message huge = new Message("CHAT", new Object[]{"x".repeat(70_000)}, "REQUEST");
+        assertThrows(IllegalArgumentException.class,
+                () -> transport.send(huge, (InetSocketAddress) channel.getLocalAddress()));
+        assertEquals(idle, BufferPool.getInstance().available());
+
+        transport.close();
+        channel.close();
+    }
+}
@@ -0,0 +1,50 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldImageTest {
+
+    @Test
+    public void testLargeWorldIsChunkedAndReassembled() {
+        List<Message> world = new ArrayList<>();
+        world.add(new Message("CREATEGAME", new Object[]{"game-1", "Lobby"}, "RESPONSE"));
+        for (int i = 0; i < 500; i++) {
+            world.add(new Message("CREATEGO", new Object[]{"object-" + i, "game-1", "Box", "box" + i, (float) i, 10.0f, 32.0f, 32.0f, "game-1"}, "RESPONSE"));
+        }
+
+        byte[] image = WorldImage.compress(world);
+        List<Message> chunks = WorldImage.split(image);
+        assertTrue(chunks.size() < world.size() / 10, "a few chunks instead of one message per object");
+        for (Message chunk : chunks) {
+            // Every chunk fits into one datagram, in both wire formats.
+            assertTrue(BinaryMessageCodec.encode(chunk).length <= MessageFragmenter.PAYLOAD_SIZE);
+            assertTrue(MessageCodec.encode(chunk).length() < BufferPool.BUFFER_SIZE);
+        }
+
+        WorldImage.Receiver receiver = new WorldImage.Receiver();
+        Collections.reverse(chunks);
+        List<Message> received = null;
+        for (int i = 0; i < chunks.size(); i++) {
+            received = receiver.accept(MessageCodec.decode(MessageCodec.encode(chunks.get(i))));
+            if (i < chunks.size() - 1) {
+                assertNull(received);
+            }
+        }
+        assertNotNull(received);
+        assertEquals(world.size(), received.size());
+        assertEquals("CREATEGAME", received.get(0).getMessageType());
+        assertArrayEquals(world.get(500).getParameters(), received.get(500).getParameters());
+    }
+
+    @Test
+    public void testCorruptImageIsRejected() {
+        List<Message> chunks = WorldImage.split(new byte[]{1, 2, 3, 4});
+        assertThrows(IllegalArgumentException.class, () -> new WorldImage.Receiver().accept(chunks.get(0)));
+    }
+}
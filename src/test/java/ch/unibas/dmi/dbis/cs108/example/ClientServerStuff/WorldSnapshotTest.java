@@ -0,0 +1,131 @@
+package ch.unibas.dmi.dbis.cs108.example.ClientServerStuff;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorldSnapshotTest {
+
+    @Test
+    public void testSnapshotSurvivesBothWireFormats() {
+        String uuid = UUID.randomUUID().toString();
+        WorldSnapshot snapshot = new WorldSnapshot(42);
+        snapshot.add(uuid, new float[]{ 400f, 300f, 1.5f, -2f, 0f, 0.5f });
+        snapshot.add("platform-1", new float[]{ 10f, 20f });
+        Message message = snapshot.toMessage("game-1");
+        byte[] frame = BinaryMessageCodec.encode(message);
+
+        for (Message received : new Message[]{
+                BinaryMessageCodec.decode(frame, 0, frame.length),
+                MessageCodec.decode(MessageCodec.encode(message)) }) {
+            assertEquals(WorldSnapshot.TYPE, received.getMessageType());
+            assertEquals("game-1", WorldSnapshot.gameIdOf(received));
+            WorldSnapshot decoded = WorldSnapshot.fromMessage(received, new SnapshotHistory("game-1"));
+            assertEquals(42, decoded.getTick());
+            assertEquals(2, decoded.size());
+            assertEquals(uuid, decoded.getId(0));
+            assertArrayEquals(snapshot.getState(0), decoded.getState(0));
+            assertEquals("platform-1", decoded.getId(1));
+            assertArrayEquals(new float[]{ 10f, 20f }, decoded.getState(1));
+        }
+    }
+
+    @Test
+    public void testSixteenPlayersFitIntoOneDatagram() {
+        WorldSnapshot snapshot = new WorldSnapshot(1);
+        for (int i = 0; i < 16; i++) {
+            snapshot.add(UUID.randomUUID().toString(), new float[6]);
+        }
+        assertTrue(BinaryMessageCodec.encode(snapshot.toMessage(UUID.randomUUID().toString())).length
+                <= MessageFragmenter.PAYLOAD_SIZE);
+        assertEquals(DeliveryChannel.UNRELIABLE_SEQUENCED, DeliveryChannel.forMessage(snapshot.toMessage("g")));
+    }
+
+    @Test
+    public void testQuantizedBodyTakesEightBytes() {
+        String uuid = UUID.randomUUID().toString();
+        float[] state = { 412.53f, 300.02f, 3.1f, -9.97f, 0f, 0.5f };
+        WorldSnapshot snapshot = new WorldSnapshot(3);
+        snapshot.add(uuid, StateLayout.BODY, state);
+
+        // 16 bits count, 1 + 128 bits id, 4 bits layout, 1 bit full flag, 16 bits removed count.
+        int overheadBits = 16 + 129 + 4 + 1 + 16;
+        assertEquals((overheadBits + 64 + 7) / 8, snapshot.pack(null).length);
+
+        WorldSnapshot decoded = WorldSnapshot.fromMessage(snapshot.toMessage("g"), new SnapshotHistory("g"));
+        float[] received = decoded.getState(uuid);
+        assertSame(StateLayout.BODY, decoded.getLayout(0));
+        assertArrayEquals(state, received, 1 / 16f);
+    }
+
+    @Test
+    public void testChangesBelowResolutionAreNotSent() {
+        String uuid = UUID.randomUUID().toString();
+        WorldSnapshot baseline = new WorldSnapshot(1);
+        baseline.add(uuid, StateLayout.POSITION, new float[]{ 100f, 200f });
+        WorldSnapshot jitter = new WorldSnapshot(2);
+        jitter.add(uuid, StateLayout.POSITION, new float[]{ 100.01f, 199.99f });
+
+        SnapshotHistory history = new SnapshotHistory("g");
+        history.put(baseline);
+        WorldSnapshot rebuilt = WorldSnapshot.fromMessage(jitter.toMessage("g", baseline), history);
+        assertEquals(4, jitter.pack(baseline).length, "only the two 16-bit counts");
+        assertArrayEquals(new float[]{ 100f, 200f }, rebuilt.getState(uuid));
+    }
+
+    @Test
+    public void testTruncatedStatesAreRejected() {
+        WorldSnapshot snapshot = new WorldSnapshot(7);
+        snapshot.add(UUID.randomUUID().toString(), new float[]{ 1f, 2f });
+        byte[] packed = snapshot.pack(null);
+        Message truncated = new Message(WorldSnapshot.TYPE,
+                new Object[]{ "g", 7L, 0L, Arrays.copyOf(packed, packed.length - 3) }, "GAME");
+        assertThrows(IllegalArgumentException.class,
+                () -> WorldSnapshot.fromMessage(truncated, new SnapshotHistory("g")));
+    }
+
+    @Test
+    public void testDeltaOmitsUnchangedObjectsAndRebuildsFullState() {
+        List<String> ids = new ArrayList<>();
+        WorldSnapshot baseline = new WorldSnapshot(10);
+        for (int i = 0; i < 20; i++) {
+            ids.add(UUID.randomUUID().toString());
+            baseline.add(ids.get(i), new float[]{ i * 40f, 500f, 0f, 0f, 0f, 0.5f });
+        }
+        WorldSnapshot current = new WorldSnapshot(11);
+        for (int i = 1; i < 20; i++) {
+            float[] state = baseline.getState(i).clone();
+            if (i == 5) {
+                // One player moves to the right.
+                state[0] += 3.5f;
+                state[2] = 3.5f;
+            }
+            current.add(ids.get(i), state);
+        }
+        String added = UUID.randomUUID().toString();
+        current.add(added, new float[]{ 1f, 2f, 3f, 4f, 5f, 6f });
+
+        SnapshotHistory clientHistory = new SnapshotHistory("g");
+        clientHistory.put(baseline);
+        Message delta = current.toMessage("g", baseline);
+        int fullSize = BinaryMessageCodec.encode(current.toMessage("g")).length;
+        int deltaSize = BinaryMessageCodec.encode(delta).length;
+        assertTrue(deltaSize * 5 < fullSize, deltaSize + " bytes vs " + fullSize + " in full");
+
+        WorldSnapshot rebuilt = WorldSnapshot.fromMessage(delta, clientHistory);
+        assertEquals(11, rebuilt.getTick());
+        assertEquals(current.size(), rebuilt.size());
+        assertNull(rebuilt.getState(ids.get(0)), "removed since the baseline");
+        for (int i = 0; i < current.size(); i++) {
+            assertArrayEquals(current.getState(i), rebuilt.getState(current.getId(i)));
+        }
+
+        // Without the baseline the delta cannot be rebuilt.
+        assertNull(WorldSnapshot.fromMessage(delta, new SnapshotHistory("g")));
+    }
+}